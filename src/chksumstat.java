@@ -20,6 +20,8 @@ limitations under the License.
 import net.sf.xsd2pgschema.*;
 import net.sf.xsd2pgschema.implement.ChkSumStatThrd;
 import net.sf.xsd2pgschema.option.*;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
+import net.sf.xsd2pgschema.xmlutil.XmlChkSumStore;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
 
 import java.io.File;
@@ -34,8 +36,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.concurrent.LinkedBlockingQueue;
 
-import org.apache.commons.io.FilenameUtils;
-
 /**
  * Report check sum directory status.
  *
@@ -68,14 +68,17 @@ public class chksumstat {
 		/** The target XML file patterns. */
 		HashSet<String> xml_file_names = new HashSet<String>();
 
-		/** The set of new document id while synchronization. */
-		HashSet<String> sync_new_doc_rows = new HashSet<String>();
+		/** The set of new document id while synchronization (key=document id, value=check sum). */
+		HashMap<String, String> sync_new_doc_rows = new HashMap<String, String>();
+
+		/** The set of updating document id while synchronization (key=document id, value=check sum). */
+		HashMap<String, String> sync_up_doc_rows = new HashMap<String, String>();
 
-		/** The set of updating document id while synchronization. */
-		HashSet<String> sync_up_doc_rows = new HashSet<String>();
+		/** The set of deleting document id while synchronization (key=document id, value=XML file name in check sum store). */
+		HashMap<String, String> sync_del_doc_rows = new HashMap<String, String>();
 
-		/** The set of deleting document id while synchronization (key=document id, value=check sum file path). */
-		HashMap<String, Path> sync_del_doc_rows = new HashMap<String, Path>();
+		/** The change manifest file name. */
+		String manifest_name = "";
 
 		/** The available processors. */
 		int cpu_num = Runtime.getRuntime().availableProcessors();
@@ -122,11 +125,21 @@ public class chksumstat {
 			else if (args[i].equals("--update"))
 				option.sync_dry_run = false;
 
+			else if (args[i].equals("--manifest") && i + 1 < args.length) {
+				manifest_name = args[++i];
+				option.sync_dry_run = false;
+			}
+
 			else if (args[i].equals("--checksum-by") && i + 1 < args.length) {
 				if (!option.setCheckSumAlgorithm(args[++i]))
 					showUsage();
 			}
 
+			else if (args[i].equals("--sync-verify-rate") && i + 1 < args.length) {
+				if (!option.setSyncVerifyRate(args[++i]))
+					showUsage();
+			}
+
 			else if (args[i].equals("--verbose"))
 				option.verbose = true;
 
@@ -194,23 +207,17 @@ public class chksumstat {
 
 		option.check_sum_dir_name = check_sum_dir_name;
 
-		String chk_sum_file_ext = option.check_sum_algorithm.toLowerCase();
-
-		FilenameFilter chk_sum_file_filter = new FilenameFilter() {
-
-			public boolean accept(File dir, String name) {
-				return chk_sum_file_ext.equals(FilenameUtils.getExtension(name));
-			}
-
-		};
+		XmlChkSumStore chk_sum_store = null;
 
 		try {
 
-			Files.list(check_sum_dir_path).filter(check_sum_path -> Files.isRegularFile(check_sum_path) && chk_sum_file_filter.accept(null, check_sum_path.getFileName().toString())).forEach(check_sum_path -> {
+			chk_sum_store = XmlChkSumStore.getInstance(option);
+
+			chk_sum_store.keySet().forEach(xml_file_name -> {
 
-				XmlParser xml_parser = new XmlParser(check_sum_path.getFileName().toString().replaceFirst("\\." + chk_sum_file_ext + "$", ""), xml_file_filter);
+				XmlParser xml_parser = new XmlParser(xml_file_name, xml_file_filter);
 
-				sync_del_doc_rows.put(xml_parser.document_id, check_sum_path);
+				sync_del_doc_rows.put(xml_parser.document_id, xml_file_name);
 
 			});
 
@@ -256,30 +263,45 @@ public class chksumstat {
 
 		if (!option.sync_dry_run && sync_del_doc_rows.size() > 0) {
 
-			sync_del_doc_rows.values().forEach(chk_sum_file_path -> {
+			for (String xml_file_name : sync_del_doc_rows.values()) {
 
 				try {
-					Files.deleteIfExists(chk_sum_file_path);
+					chk_sum_store.remove(xml_file_name);
 				} catch (IOException e) {
 					e.printStackTrace();
 					System.exit(1);
 				}
 
-			});
+			}
+
+		}
+
+		// write change manifest to be shared by loaders of several targets
+
+		if (!manifest_name.isEmpty()) {
+
+			try {
+				XmlChangeManifest.write(Paths.get(manifest_name), option.check_sum_algorithm, sync_new_doc_rows, sync_up_doc_rows, sync_del_doc_rows.keySet());
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
 
 		}
 
+		XmlChkSumStore.closeAll();
+
 		StringBuilder sb = new StringBuilder();
 
 		sb.append("# created docs: " + sync_new_doc_rows.size() + "\n");
 
 		if (option.verbose)
-			sync_new_doc_rows.forEach(document_id -> sb.append(document_id + "\n"));
+			sync_new_doc_rows.keySet().forEach(document_id -> sb.append(document_id + "\n"));
 
 		sb.append("\n# updated docs: " + sync_up_doc_rows.size() + "\n");
 
 		if (option.verbose)
-			sync_up_doc_rows.forEach(document_id -> sb.append(document_id + "\n"));
+			sync_up_doc_rows.keySet().forEach(document_id -> sb.append(document_id + "\n"));
 
 		sb.append("\n# deleted docs: " + sync_del_doc_rows.size() + "\n");
 
@@ -294,6 +316,8 @@ public class chksumstat {
 		sync_up_doc_rows.clear();
 		sync_del_doc_rows.clear();
 
+		PgSchemaUtil.closeArchives();
+
 	}
 
 	/**
@@ -305,9 +329,11 @@ public class chksumstat {
 		System.err.println("Usage:  --xml XML_FILE_OR_DIRECTORY --sync-dir CHECK_SUM_DIRECTORY");
 		System.err.println("        --xml-file-ext FILE_EXTENSION [xml (default) | gz (indicates xml.gz suffix) | zip (indicates xml.zip suffix)]");
 		System.err.println("Option: --checksum-by ALGORITHM [MD2 | MD5 (default) | SHA-1 | SHA-224 | SHA-256 | SHA-384 | SHA-512]");
+		System.err.println("        --sync-verify-rate RATE (sampling rate of XML files verified by check sum even if size, mtime and inode are unchanged, default=0.0)");
 		System.err.println("        --xml-file-prerix-digest DIGESTIBLE_PREFIX (default=\"\")");
 		System.err.println("        --xml-file-ext-digest DIGESTIBLE_EXTENSION (default=\".\")");
 		System.err.println("        --update (update check sum files anyway)");
+		System.err.println("        --manifest MANIFEST_FILE (write change manifest consumed by --sync-manifest option of xml2pgsql, xml2luceneidx and xml2sphinxds, select --update option)");
 		System.err.println("        --max-thrds MAX_THRDS (default is number of available processors)");
 		System.err.println("        --verbose (verbose mode)");
 		System.exit(1);
@@ -0,0 +1,104 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * Row batch of documents to be written to PostgreSQL via COPY command.
+ *
+ * @author yokochi
+ */
+public class PgCopyBatch {
+
+	/** The document ids in the batch. */
+	public List<String> document_ids = new ArrayList<String>();
+
+	/** The ids of updating documents whose rows are deleted in advance. */
+	protected List<String> delete_ids = new ArrayList<String>();
+
+	/** The PostgreSQL DELETE command of document id table (null indicates no rows in document id table). */
+	protected String delete_doc_id_sql = null;
+
+	/** The PostgreSQL DELETE commands of the other tables in order of foreign key constraint. */
+	protected List<String> delete_sqls = null;
+
+	/** Whether to delete rows of updating documents regardless of the existence of document id. */
+	protected boolean sync_rescue = false;
+
+	/** The PostgreSQL COPY commands in order of foreign key constraint. */
+	protected List<String> copy_sqls = new ArrayList<String>();
+
+	/** The COPY data corresponding to each COPY command. */
+	protected List<byte[]> copy_data = new ArrayList<byte[]>();
+
+	/**
+	 * Return whether the batch is empty.
+	 *
+	 * @return boolean whether the batch is empty
+	 */
+	public boolean isEmpty() {
+		return document_ids.isEmpty();
+	}
+
+	/**
+	 * Write the batch in a transaction.
+	 *
+	 * @param db_conn database connection
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void write(Connection db_conn) throws PgSchemaException {
+
+		try {
+
+			try {
+
+				if (!delete_ids.isEmpty())
+					PgSchema.deleteDocRows(db_conn, delete_doc_id_sql, delete_sqls, delete_ids, sync_rescue);
+
+				CopyManager copy_man = new CopyManager((BaseConnection) db_conn);
+
+				for (int i = 0; i < copy_sqls.size(); i++)
+					copy_man.copyIn(copy_sqls.get(i), new ByteArrayInputStream(copy_data.get(i)));
+
+				db_conn.commit(); // transaction ends
+
+			} catch (SQLException | IOException e) {
+
+				db_conn.rollback();
+
+				throw new PgSchemaException(e);
+			}
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+}
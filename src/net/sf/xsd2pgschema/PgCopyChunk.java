@@ -0,0 +1,60 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.nio.file.Path;
+
+/**
+ * Chunk of data (CSV/TSV/binary) file to be copied to PostgreSQL.
+ *
+ * @author yokochi
+ */
+public class PgCopyChunk {
+
+	/** The table. */
+	protected PgTable table;
+
+	/** The data file path. */
+	protected Path data_path;
+
+	/** The start offset in data file. */
+	protected long offset;
+
+	/** The length of chunk in bytes (-1 indicates whole file). */
+	protected long length;
+
+	/**
+	 * Instance of PgCopyChunk.
+	 *
+	 * @param table table
+	 * @param data_path data file path
+	 * @param offset start offset in data file
+	 * @param length length of chunk in bytes (-1 indicates whole file)
+	 */
+	public PgCopyChunk(PgTable table, Path data_path, long offset, long length) {
+
+		this.table = table;
+		this.data_path = data_path;
+		this.offset = offset;
+		this.length = length;
+
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Scheduler of parallel PostgreSQL data migration in dependency order of foreign keys.
+ *
+ * @author yokochi
+ */
+public class PgCopyLoader {
+
+	/** The tables waiting for completion of parent tables, sorted by the number of references. */
+	private LinkedList<PgTable> pending_tables;
+
+	/** The parent tables of each table. */
+	private HashMap<PgTable, HashSet<PgTable>> parent_tables;
+
+	/** The chunks of each table. */
+	private HashMap<PgTable, List<PgCopyChunk>> table_chunks;
+
+	/** The chunks ready to be copied. */
+	private LinkedList<PgCopyChunk> ready_chunks = new LinkedList<PgCopyChunk>();
+
+	/** The number of chunks remaining in each table. */
+	private HashMap<PgTable, Integer> remaining_chunks = new HashMap<PgTable, Integer>();
+
+	/** The tables completely copied. */
+	private HashSet<PgTable> completed_tables = new HashSet<PgTable>();
+
+	/** The number of chunks being copied. */
+	private int running_chunks = 0;
+
+	/**
+	 * Instance of PgCopyLoader.
+	 *
+	 * @param tables list of tables sorted by the number of references
+	 * @param parent_tables parent tables of each table
+	 * @param table_chunks chunks of each table
+	 */
+	public PgCopyLoader(List<PgTable> tables, HashMap<PgTable, HashSet<PgTable>> parent_tables, HashMap<PgTable, List<PgCopyChunk>> table_chunks) {
+
+		this.pending_tables = new LinkedList<PgTable>(tables);
+		this.parent_tables = parent_tables;
+		this.table_chunks = table_chunks;
+
+		tables.forEach(table -> remaining_chunks.put(table, table_chunks.get(table).size()));
+
+		release();
+
+	}
+
+	/**
+	 * Take a chunk ready to be copied, waiting for completion of parent tables if necessary.
+	 *
+	 * @return PgCopyChunk chunk ready to be copied (null indicates that all chunks have been taken)
+	 * @throws InterruptedException the interrupted exception
+	 */
+	public synchronized PgCopyChunk take() throws InterruptedException {
+
+		PgCopyChunk chunk;
+
+		while ((chunk = ready_chunks.poll()) == null) {
+
+			if (pending_tables.isEmpty())
+				return null;
+
+			// break circular dependency in order of the number of references
+
+			if (running_chunks == 0)
+				releaseTable(pending_tables.poll());
+
+			else
+				wait();
+
+		}
+
+		running_chunks++;
+
+		return chunk;
+	}
+
+	/**
+	 * Notify completion of a chunk.
+	 *
+	 * @param chunk copied chunk
+	 */
+	public synchronized void complete(PgCopyChunk chunk) {
+
+		running_chunks--;
+
+		int remains = remaining_chunks.get(chunk.table) - 1;
+
+		remaining_chunks.put(chunk.table, remains);
+
+		if (remains == 0) {
+
+			completed_tables.add(chunk.table);
+
+			release();
+
+		}
+
+		notifyAll();
+
+	}
+
+	/**
+	 * Release pending tables whose parent tables have been completely copied.
+	 */
+	private void release() {
+
+		pending_tables.removeIf(table -> {
+
+			if (!completed_tables.containsAll(parent_tables.get(table)))
+				return false;
+
+			ready_chunks.addAll(table_chunks.get(table));
+
+			return true;
+		});
+
+	}
+
+	/**
+	 * Release a table regardless of parent tables.
+	 *
+	 * @param table table
+	 */
+	private void releaseTable(PgTable table) {
+
+		ready_chunks.addAll(table_chunks.get(table));
+
+	}
+
+}
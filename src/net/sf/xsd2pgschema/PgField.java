@@ -20,6 +20,7 @@ limitations under the License.
 package net.sf.xsd2pgschema;
 
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -37,9 +38,11 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.time.OffsetTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.Calendar;
 
 import javax.xml.bind.DatatypeConverter;
@@ -2548,6 +2551,20 @@ public class PgField implements Serializable {
 
 	// PostgreSQL DDL
 
+	/**
+	 * Return PostgreSQL data type without check constraint.
+	 *
+	 * @return String PostgreSQL data type
+	 */
+	public String getPgBaseDataType() {
+
+		String type = getPgDataType();
+
+		int pos = type.indexOf(" CHECK ");
+
+		return pos < 0 ? type : type.substring(0, pos);
+	}
+
 	/**
 	 * Return PostgreSQL DDL type definition.
 	 *
@@ -3841,6 +3858,29 @@ public class PgField implements Serializable {
 		return java.sql.Types.NULL;
 	}
 
+	/**
+	 * Return SQL expression converting text of content to PostgreSQL data type, where binary content is decoded.
+	 *
+	 * @param expr SQL expression of text
+	 * @param schema_pgname PostgreSQL schema name prefix of enumeration type
+	 * @return String SQL expression of PostgreSQL data type
+	 */
+	public String getPgCastOfText(String expr, String schema_pgname) {
+
+		if (enum_name != null)
+			return expr + "::" + schema_pgname + enum_name;
+
+		switch (xs_type) {
+		case xs_hexBinary:
+			return "decode(" + expr + ", 'hex')";
+		case xs_base64Binary:
+			return "decode(" + expr + ", 'base64')";
+		default:
+			return expr + "::" + getPgBaseDataType();
+		}
+
+	}
+
 	/**
 	 * Return SQL predicate of content.
 	 *
@@ -6333,6 +6373,200 @@ public class PgField implements Serializable {
 
 	}
 
+	// PostgreSQL data migration via binary COPY command
+
+	/**
+	 * Write value in PostgreSQL binary COPY format.
+	 *
+	 * @param out data output stream
+	 * @param value content
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write(DataOutputStream out, String value) throws IOException {
+
+		if (enum_name != null) {
+			writeBinaryText(out, value);
+			return;
+		}
+
+		try {
+
+			switch (xs_type) {
+			case xs_boolean:
+				out.writeInt(1);
+				out.writeByte(value.equals("true") || value.equals("1") ? 1 : 0);
+				break;
+			case xs_hexBinary:
+				byte[] hexbin_value = DatatypeConverter.parseHexBinary(value);
+				out.writeInt(hexbin_value.length);
+				out.write(hexbin_value);
+				break;
+			case xs_base64Binary:
+				byte[] base64bin_value = DatatypeConverter.parseBase64Binary(value);
+				out.writeInt(base64bin_value.length);
+				out.write(base64bin_value);
+				break;
+			case xs_long:
+			case xs_unsignedLong:
+				long long_value = Long.valueOf(value);
+				out.writeInt(8);
+				out.writeLong(long_value);
+				break;
+			case xs_int:
+			case xs_unsignedInt:
+				int int_value = Integer.valueOf(value);
+				out.writeInt(4);
+				out.writeInt(int_value);
+				break;
+			case xs_short:
+			case xs_byte:
+			case xs_unsignedShort:
+			case xs_unsignedByte:
+				short short_value = Short.valueOf(value);
+				out.writeInt(2);
+				out.writeShort(short_value);
+				break;
+			case xs_float:
+				float float_value = Float.valueOf(value);
+				out.writeInt(4);
+				out.writeFloat(float_value);
+				break;
+			case xs_double:
+				double double_value = Double.valueOf(value);
+				out.writeInt(8);
+				out.writeDouble(double_value);
+				break;
+			case xs_decimal:
+				switch (pg_decimal) {
+				case big_decimal:
+					PgSchemaUtil.writePgNumeric(out, new BigDecimal(value));
+					break;
+				case double_precision_64:
+					double _double_value = Double.valueOf(value);
+					out.writeInt(8);
+					out.writeDouble(_double_value);
+					break;
+				case single_precision_32:
+					float _float_value = Float.valueOf(value);
+					out.writeInt(4);
+					out.writeFloat(_float_value);
+					break;
+				}
+				break;
+			case xs_integer:
+			case xs_nonNegativeInteger:
+			case xs_nonPositiveInteger:
+			case xs_positiveInteger:
+			case xs_negativeInteger:
+				switch (pg_integer) {
+				case signed_int_32:
+					int _int_value = Integer.valueOf(value);
+					out.writeInt(4);
+					out.writeInt(_int_value);
+					break;
+				case signed_long_64:
+					long _long_value = Long.valueOf(value);
+					out.writeInt(8);
+					out.writeLong(_long_value);
+					break;
+				case big_integer:
+					PgSchemaUtil.writePgNumeric(out, new BigDecimal(value));
+					break;
+				}
+				break;
+			case xs_dateTime:
+			case xs_dateTimeStamp:
+				if (dtf == null) {
+					if ((!restriction || (explicit_timezone != null && !explicit_timezone.equals("required"))) && xs_type.equals(XsFieldType.xs_dateTime))
+						dtf = DateTimeFormatter.ofPattern(PgSchemaUtil.pg_date_time_format);
+					else
+						dtf = DateTimeFormatter.ofPattern(PgSchemaUtil.pg_date_time_tz_format);
+				}
+				long timestamp;
+				if ((!restriction || (explicit_timezone != null && !explicit_timezone.equals("required"))) && xs_type.equals(XsFieldType.xs_dateTime))
+					timestamp = ChronoUnit.MICROS.between(PgSchemaUtil.pg_epoch_date_time, LocalDateTime.parse(value, dtf));
+				else
+					timestamp = ChronoUnit.MICROS.between(PgSchemaUtil.pg_epoch_date_time_tz, OffsetDateTime.parse(value, dtf));
+				out.writeInt(8);
+				out.writeLong(timestamp);
+				break;
+			case xs_time:
+				if (!restriction || (explicit_timezone != null && !explicit_timezone.equals("required"))) {
+					LocalTime local_time;
+					try {
+						local_time = LocalTime.parse(value);
+					} catch (DateTimeParseException e) {
+						local_time = OffsetTime.parse(value).toLocalTime();
+					}
+					out.writeInt(8);
+					out.writeLong(local_time.toNanoOfDay() / 1000L);
+				} else {
+					OffsetTime offset_time;
+					try {
+						offset_time = OffsetTime.parse(value);
+					} catch (DateTimeParseException e) {
+						offset_time = OffsetTime.of(LocalTime.parse(value), ZoneOffset.UTC);
+					}
+					out.writeInt(12);
+					out.writeLong(offset_time.toLocalTime().toNanoOfDay() / 1000L);
+					out.writeInt(-offset_time.getOffset().getTotalSeconds()); // seconds west of UTC
+				}
+				break;
+			case xs_date:
+				if (pg_date.equals(PgDateType.timestamp)) {
+					if (dtf == null) {
+						if (!restriction || (explicit_timezone != null && !explicit_timezone.equals("required")))
+							dtf = DateTimeFormatter.ofPattern(PgSchemaUtil.pg_date_time_format);
+						else
+							dtf = DateTimeFormatter.ofPattern(PgSchemaUtil.pg_date_time_tz_format);
+					}
+					long _timestamp;
+					if (!restriction || (explicit_timezone != null && !explicit_timezone.equals("required")))
+						_timestamp = ChronoUnit.MICROS.between(PgSchemaUtil.pg_epoch_date_time, LocalDateTime.parse(value, dtf));
+					else
+						_timestamp = ChronoUnit.MICROS.between(PgSchemaUtil.pg_epoch_date_time_tz, OffsetDateTime.parse(value, dtf));
+					out.writeInt(8);
+					out.writeLong(_timestamp);
+					return;
+				}
+				// pass through
+			case xs_gYearMonth:
+			case xs_gYear:
+				LocalDate local_date = LocalDate.parse(value);
+				out.writeInt(4);
+				out.writeInt((int) ChronoUnit.DAYS.between(PgSchemaUtil.pg_epoch_date, local_date));
+				break;
+			case xs_any:
+			case xs_anyAttribute:
+				writeBinaryText(out, value);
+				break;
+			default: // xs_duration, xs_string, etc
+				writeBinaryText(out, value);
+			}
+
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			e.printStackTrace();
+			out.writeInt(-1); // NULL
+		}
+
+	}
+
+	/**
+	 * Write text in PostgreSQL binary COPY format.
+	 *
+	 * @param out data output stream
+	 * @param value content
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeBinaryText(DataOutputStream out, String value) throws IOException {
+
+		byte[] bytes = value.getBytes(PgSchemaUtil.def_charset);
+
+		out.writeInt(bytes.length);
+		out.write(bytes);
+
+	}
+
 	// Lucene full-text indexing
 
 	/**
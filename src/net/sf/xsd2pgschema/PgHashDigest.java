@@ -0,0 +1,741 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Non-cryptographic hash functions for PostgreSQL hash keys, which are exposed as message digest.
+ *
+ * @author yokochi
+ */
+public abstract class PgHashDigest extends MessageDigest {
+
+	/** The algorithm name of xxHash64. */
+	public static final String xxhash64 = "XXHASH64";
+
+	/** The algorithm name of MurmurHash3 (x64, 128 bits). */
+	public static final String murmur3_128 = "MURMUR3-128";
+
+	/** The algorithm name of SipHash-2-4. */
+	public static final String siphash_2_4 = "SIPHASH-2-4";
+
+	/** The buffer of UTF-8 encoded key or digested input. */
+	private byte[] buffer = new byte[256];
+
+	/** The length of digested input. */
+	private int length = 0;
+
+	/**
+	 * Instance of PgHashDigest.
+	 *
+	 * @param algorithm algorithm name
+	 */
+	protected PgHashDigest(String algorithm) {
+
+		super(algorithm);
+
+	}
+
+	/**
+	 * Return message digest of either non-cryptographic hash function or JCA algorithm.
+	 *
+	 * @param algorithm algorithm name
+	 * @return MessageDigest message digest
+	 * @throws NoSuchAlgorithmException the no such algorithm exception
+	 */
+	public static MessageDigest getInstance(String algorithm) throws NoSuchAlgorithmException {
+
+		if (algorithm.equalsIgnoreCase(xxhash64))
+			return new XxHash64();
+
+		if (algorithm.equalsIgnoreCase(murmur3_128))
+			return new Murmur3();
+
+		if (algorithm.equalsIgnoreCase(siphash_2_4))
+			return new SipHash();
+
+		return MessageDigest.getInstance(algorithm);
+	}
+
+	/**
+	 * Return whether algorithm name indicates non-cryptographic hash function.
+	 *
+	 * @param algorithm algorithm name
+	 * @return boolean whether algorithm name indicates non-cryptographic hash function
+	 */
+	public static boolean isNonCryptographic(String algorithm) {
+		return algorithm.equalsIgnoreCase(xxhash64) || algorithm.equalsIgnoreCase(murmur3_128) || algorithm.equalsIgnoreCase(siphash_2_4);
+	}
+
+	/**
+	 * Return lower order 64 bits of digest, which is equivalent to new BigInteger(bytes).longValue().
+	 *
+	 * @param bytes digest
+	 * @return long lower order 64 bits
+	 */
+	public static long getLowerLong(byte[] bytes) {
+
+		int len = bytes.length;
+
+		long value = len < 8 && bytes[0] < 0 ? -1L : 0L;
+
+		for (int i = Math.max(0, len - 8); i < len; i++)
+			value = (value << 8) | (bytes[i] & 0xff);
+
+		return value;
+	}
+
+	/**
+	 * Return lower order 32 bits of digest, which is equivalent to new BigInteger(bytes).intValue().
+	 *
+	 * @param bytes digest
+	 * @return int lower order 32 bits
+	 */
+	public static int getLowerInt(byte[] bytes) {
+		return (int) getLowerLong(bytes);
+	}
+
+	/**
+	 * Return lower order 64 bits of hash of UTF-8 encoded key without allocation.
+	 *
+	 * @param key key string
+	 * @return long lower order 64 bits of hash
+	 */
+	public long hashLong(String key) {
+
+		length = 0;
+
+		return hash(buffer, encode(key));
+	}
+
+	/**
+	 * Return lower order 32 bits of hash of UTF-8 encoded key without allocation.
+	 *
+	 * @param key key string
+	 * @return int lower order 32 bits of hash
+	 */
+	public int hashInt(String key) {
+		return (int) hashLong(key);
+	}
+
+	/**
+	 * Encode key into buffer as UTF-8.
+	 *
+	 * @param key key string
+	 * @return int the length of encoded key
+	 */
+	private int encode(String key) {
+
+		int len = key.length();
+
+		if (buffer.length < len * 3)
+			buffer = new byte[len * 3];
+
+		return encode(key, 0, buffer);
+	}
+
+	/**
+	 * Encode key from given offset into buffer as UTF-8, where unpaired surrogate is replaced with '?' as String.getBytes() does.
+	 *
+	 * @param key key string
+	 * @param begin beginning index of key, which should not split surrogate pair
+	 * @param buf buffer having capacity of three bytes per character at least
+	 * @return int the length of encoded key
+	 */
+	public static int encode(String key, int begin, byte[] buf) {
+
+		int len = key.length();
+
+		int pos = 0;
+
+		char c;
+
+		for (int i = begin; i < len; i++) {
+
+			c = key.charAt(i);
+
+			if (c < 0x80)
+				buf[pos++] = (byte) c;
+
+			else if (c < 0x800) {
+
+				buf[pos++] = (byte) (0xc0 | (c >> 6));
+				buf[pos++] = (byte) (0x80 | (c & 0x3f));
+
+			}
+
+			else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(key.charAt(i + 1))) {
+
+				int cp = Character.toCodePoint(c, key.charAt(++i));
+
+				buf[pos++] = (byte) (0xf0 | (cp >> 18));
+				buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+
+			}
+
+			else if (Character.isSurrogate(c))
+				buf[pos++] = '?';
+
+			else {
+
+				buf[pos++] = (byte) (0xe0 | (c >> 12));
+				buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (c & 0x3f));
+
+			}
+
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Return lower order 64 bits of hash.
+	 *
+	 * @param buf input bytes
+	 * @param len length of input bytes
+	 * @return long lower order 64 bits of hash
+	 */
+	protected abstract long hash(byte[] buf, int len);
+
+	/**
+	 * Return digest of input bytes in big-endian order.
+	 *
+	 * @param buf input bytes
+	 * @param len length of input bytes
+	 * @return byte[] digest
+	 */
+	protected abstract byte[] digest(byte[] buf, int len);
+
+	/* (non-Javadoc)
+	 * @see java.security.MessageDigestSpi#engineUpdate(byte)
+	 */
+	@Override
+	protected void engineUpdate(byte input) {
+
+		ensureCapacity(length + 1);
+
+		buffer[length++] = input;
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.security.MessageDigestSpi#engineUpdate(byte[], int, int)
+	 */
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+
+		ensureCapacity(length + len);
+
+		System.arraycopy(input, offset, buffer, length, len);
+
+		length += len;
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.security.MessageDigestSpi#engineDigest()
+	 */
+	@Override
+	protected byte[] engineDigest() {
+
+		try {
+			return digest(buffer, length);
+		} finally {
+			length = 0;
+		}
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.security.MessageDigestSpi#engineReset()
+	 */
+	@Override
+	protected void engineReset() {
+
+		length = 0;
+
+	}
+
+	/**
+	 * Ensure capacity of buffer.
+	 *
+	 * @param capacity required capacity
+	 */
+	private void ensureCapacity(int capacity) {
+
+		if (buffer.length < capacity) {
+
+			byte[] _buffer = new byte[Math.max(capacity, buffer.length * 2)];
+
+			System.arraycopy(buffer, 0, _buffer, 0, length);
+
+			buffer = _buffer;
+
+		}
+
+	}
+
+	/**
+	 * Return 64 bits integer in little-endian order.
+	 *
+	 * @param buf input bytes
+	 * @param i offset
+	 * @return long 64 bits integer
+	 */
+	protected static long getLongLE(byte[] buf, int i) {
+		return (buf[i] & 0xffL) | (buf[i + 1] & 0xffL) << 8 | (buf[i + 2] & 0xffL) << 16 | (buf[i + 3] & 0xffL) << 24 | (buf[i + 4] & 0xffL) << 32 | (buf[i + 5] & 0xffL) << 40 | (buf[i + 6] & 0xffL) << 48 | (buf[i + 7] & 0xffL) << 56;
+	}
+
+	/**
+	 * Return 32 bits unsigned integer in little-endian order.
+	 *
+	 * @param buf input bytes
+	 * @param i offset
+	 * @return long 32 bits unsigned integer
+	 */
+	protected static long getIntLE(byte[] buf, int i) {
+		return (buf[i] & 0xffL) | (buf[i + 1] & 0xffL) << 8 | (buf[i + 2] & 0xffL) << 16 | (buf[i + 3] & 0xffL) << 24;
+	}
+
+	/**
+	 * Return 64 bits integers as bytes in big-endian order.
+	 *
+	 * @param values 64 bits integers
+	 * @return byte[] bytes in big-endian order
+	 */
+	protected static byte[] toBytes(long... values) {
+
+		byte[] bytes = new byte[values.length * 8];
+
+		int pos = 0;
+
+		for (long value : values) {
+
+			for (int shift = 56; shift >= 0; shift -= 8)
+				bytes[pos++] = (byte) (value >>> shift);
+
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * xxHash64 with seed 0.
+	 */
+	private static final class XxHash64 extends PgHashDigest {
+
+		/** The prime 1. */
+		private static final long p1 = 0x9E3779B185EBCA87L;
+
+		/** The prime 2. */
+		private static final long p2 = 0xC2B2AE3D27D4EB4FL;
+
+		/** The prime 3. */
+		private static final long p3 = 0x165667B19E3779F9L;
+
+		/** The prime 4. */
+		private static final long p4 = 0x85EBCA77C2B2AE63L;
+
+		/** The prime 5. */
+		private static final long p5 = 0x27D4EB2F165667C5L;
+
+		/**
+		 * Instance of xxHash64.
+		 */
+		private XxHash64() {
+
+			super(xxhash64);
+
+		}
+
+		/* (non-Javadoc)
+		 * @see net.sf.xsd2pgschema.PgHashDigest#hash(byte[], int)
+		 */
+		@Override
+		protected long hash(byte[] buf, int len) {
+
+			int i = 0;
+
+			long h;
+
+			if (len >= 32) {
+
+				long v1 = p1 + p2, v2 = p2, v3 = 0, v4 = -p1;
+
+				do {
+
+					v1 = round(v1, getLongLE(buf, i));
+					v2 = round(v2, getLongLE(buf, i + 8));
+					v3 = round(v3, getLongLE(buf, i + 16));
+					v4 = round(v4, getLongLE(buf, i + 24));
+
+					i += 32;
+
+				} while (i <= len - 32);
+
+				h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+
+				h = merge(h, v1);
+				h = merge(h, v2);
+				h = merge(h, v3);
+				h = merge(h, v4);
+
+			}
+
+			else
+				h = p5;
+
+			h += len;
+
+			for (; i + 8 <= len; i += 8) {
+
+				h ^= round(0, getLongLE(buf, i));
+				h = Long.rotateLeft(h, 27) * p1 + p4;
+
+			}
+
+			if (i + 4 <= len) {
+
+				h ^= getIntLE(buf, i) * p1;
+				h = Long.rotateLeft(h, 23) * p2 + p3;
+
+				i += 4;
+
+			}
+
+			for (; i < len; i++) {
+
+				h ^= (buf[i] & 0xffL) * p5;
+				h = Long.rotateLeft(h, 11) * p1;
+
+			}
+
+			h ^= h >>> 33;
+			h *= p2;
+			h ^= h >>> 29;
+			h *= p3;
+			h ^= h >>> 32;
+
+			return h;
+		}
+
+		/**
+		 * Accumulate input lane.
+		 *
+		 * @param acc accumulator
+		 * @param input input lane
+		 * @return long accumulator
+		 */
+		private static long round(long acc, long input) {
+			return Long.rotateLeft(acc + input * p2, 31) * p1;
+		}
+
+		/**
+		 * Merge accumulator.
+		 *
+		 * @param h hash
+		 * @param acc accumulator
+		 * @return long hash
+		 */
+		private static long merge(long h, long acc) {
+			return (h ^ round(0, acc)) * p1 + p4;
+		}
+
+		/* (non-Javadoc)
+		 * @see net.sf.xsd2pgschema.PgHashDigest#digest(byte[], int)
+		 */
+		@Override
+		protected byte[] digest(byte[] buf, int len) {
+			return toBytes(hash(buf, len));
+		}
+
+		/* (non-Javadoc)
+		 * @see java.security.MessageDigestSpi#engineGetDigestLength()
+		 */
+		@Override
+		protected int engineGetDigestLength() {
+			return 8;
+		}
+
+	}
+
+	/**
+	 * MurmurHash3 (x64, 128 bits) with seed 0, where the second half represents lower order 64 bits.
+	 */
+	private static final class Murmur3 extends PgHashDigest {
+
+		/** The constant 1. */
+		private static final long c1 = 0x87c37b91114253d5L;
+
+		/** The constant 2. */
+		private static final long c2 = 0x4cf5ad432745937fL;
+
+		/** The first half of hash. */
+		private long h1;
+
+		/** The second half of hash. */
+		private long h2;
+
+		/**
+		 * Instance of MurmurHash3.
+		 */
+		private Murmur3() {
+
+			super(murmur3_128);
+
+		}
+
+		/* (non-Javadoc)
+		 * @see net.sf.xsd2pgschema.PgHashDigest#hash(byte[], int)
+		 */
+		@Override
+		protected long hash(byte[] buf, int len) {
+
+			h1 = h2 = 0;
+
+			long k1, k2;
+
+			int i = 0;
+
+			for (; i + 16 <= len; i += 16) {
+
+				k1 = getLongLE(buf, i);
+				k2 = getLongLE(buf, i + 8);
+
+				h1 ^= Long.rotateLeft(k1 * c1, 31) * c2;
+				h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+
+				h2 ^= Long.rotateLeft(k2 * c2, 33) * c1;
+				h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+
+			}
+
+			k1 = k2 = 0;
+
+			switch (len & 15) {
+			case 15:
+				k2 ^= (buf[i + 14] & 0xffL) << 48;
+			case 14:
+				k2 ^= (buf[i + 13] & 0xffL) << 40;
+			case 13:
+				k2 ^= (buf[i + 12] & 0xffL) << 32;
+			case 12:
+				k2 ^= (buf[i + 11] & 0xffL) << 24;
+			case 11:
+				k2 ^= (buf[i + 10] & 0xffL) << 16;
+			case 10:
+				k2 ^= (buf[i + 9] & 0xffL) << 8;
+			case 9:
+				k2 ^= buf[i + 8] & 0xffL;
+				h2 ^= Long.rotateLeft(k2 * c2, 33) * c1;
+			case 8:
+				k1 ^= (buf[i + 7] & 0xffL) << 56;
+			case 7:
+				k1 ^= (buf[i + 6] & 0xffL) << 48;
+			case 6:
+				k1 ^= (buf[i + 5] & 0xffL) << 40;
+			case 5:
+				k1 ^= (buf[i + 4] & 0xffL) << 32;
+			case 4:
+				k1 ^= (buf[i + 3] & 0xffL) << 24;
+			case 3:
+				k1 ^= (buf[i + 2] & 0xffL) << 16;
+			case 2:
+				k1 ^= (buf[i + 1] & 0xffL) << 8;
+			case 1:
+				k1 ^= buf[i] & 0xffL;
+				h1 ^= Long.rotateLeft(k1 * c1, 31) * c2;
+			}
+
+			h1 ^= len;
+			h2 ^= len;
+
+			h1 += h2;
+			h2 += h1;
+
+			h1 = fmix(h1);
+			h2 = fmix(h2);
+
+			h1 += h2;
+			h2 += h1;
+
+			return h2;
+		}
+
+		/**
+		 * Finalize mixing.
+		 *
+		 * @param k hash
+		 * @return long mixed hash
+		 */
+		private static long fmix(long k) {
+
+			k ^= k >>> 33;
+			k *= 0xff51afd7ed558ccdL;
+			k ^= k >>> 33;
+			k *= 0xc4ceb9fe1a85ec53L;
+			k ^= k >>> 33;
+
+			return k;
+		}
+
+		/* (non-Javadoc)
+		 * @see net.sf.xsd2pgschema.PgHashDigest#digest(byte[], int)
+		 */
+		@Override
+		protected byte[] digest(byte[] buf, int len) {
+
+			hash(buf, len);
+
+			return toBytes(h1, h2);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.security.MessageDigestSpi#engineGetDigestLength()
+		 */
+		@Override
+		protected int engineGetDigestLength() {
+			return 16;
+		}
+
+	}
+
+	/**
+	 * SipHash-2-4 with fixed key 00 01 02 ... 0f.
+	 */
+	private static final class SipHash extends PgHashDigest {
+
+		/** The first half of key. */
+		private static final long k0 = 0x0706050403020100L;
+
+		/** The second half of key. */
+		private static final long k1 = 0x0f0e0d0c0b0a0908L;
+
+		/** The internal states. */
+		private long v0, v1, v2, v3;
+
+		/**
+		 * Instance of SipHash-2-4.
+		 */
+		private SipHash() {
+
+			super(siphash_2_4);
+
+		}
+
+		/* (non-Javadoc)
+		 * @see net.sf.xsd2pgschema.PgHashDigest#hash(byte[], int)
+		 */
+		@Override
+		protected long hash(byte[] buf, int len) {
+
+			v0 = k0 ^ 0x736f6d6570736575L;
+			v1 = k1 ^ 0x646f72616e646f6dL;
+			v2 = k0 ^ 0x6c7967656e657261L;
+			v3 = k1 ^ 0x7465646279746573L;
+
+			long m;
+
+			int i = 0;
+
+			for (; i + 8 <= len; i += 8) {
+
+				m = getLongLE(buf, i);
+
+				v3 ^= m;
+
+				round();
+				round();
+
+				v0 ^= m;
+
+			}
+
+			m = ((long) len) << 56;
+
+			for (int shift = 0; i < len; i++, shift += 8)
+				m |= (buf[i] & 0xffL) << shift;
+
+			v3 ^= m;
+
+			round();
+			round();
+
+			v0 ^= m;
+
+			v2 ^= 0xff;
+
+			round();
+			round();
+			round();
+			round();
+
+			return v0 ^ v1 ^ v2 ^ v3;
+		}
+
+		/**
+		 * SipRound.
+		 */
+		private void round() {
+
+			v0 += v1;
+			v1 = Long.rotateLeft(v1, 13);
+			v1 ^= v0;
+			v0 = Long.rotateLeft(v0, 32);
+
+			v2 += v3;
+			v3 = Long.rotateLeft(v3, 16);
+			v3 ^= v2;
+
+			v0 += v3;
+			v3 = Long.rotateLeft(v3, 21);
+			v3 ^= v0;
+
+			v2 += v1;
+			v1 = Long.rotateLeft(v1, 17);
+			v1 ^= v2;
+			v2 = Long.rotateLeft(v2, 32);
+
+		}
+
+		/* (non-Javadoc)
+		 * @see net.sf.xsd2pgschema.PgHashDigest#digest(byte[], int)
+		 */
+		@Override
+		protected byte[] digest(byte[] buf, int len) {
+			return toBytes(hash(buf, len));
+		}
+
+		/* (non-Javadoc)
+		 * @see java.security.MessageDigestSpi#engineGetDigestLength()
+		 */
+		@Override
+		protected int engineGetDigestLength() {
+			return 8;
+		}
+
+	}
+
+}
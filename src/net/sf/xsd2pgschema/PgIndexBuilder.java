@@ -0,0 +1,187 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Scheduler of PostgreSQL CREATE INDEX commands over a pool of connections.
+ *
+ * @author yokochi
+ */
+public class PgIndexBuilder {
+
+	/** The pending CREATE INDEX commands. */
+	private List<String> sqls = new ArrayList<String>();
+
+	/** The table of each CREATE INDEX command. */
+	private HashMap<String, PgTable> sql_tables = new HashMap<String, PgTable>();
+
+	/** The CREATE INDEX commands ready to be executed, sorted by size of table in descending order. */
+	private LinkedList<String> ready_sqls = null;
+
+	/**
+	 * Add CREATE INDEX command.
+	 *
+	 * @param table current table
+	 * @param sql CREATE INDEX command
+	 */
+	public void add(PgTable table, String sql) {
+
+		sqls.add(sql);
+		sql_tables.put(sql, table);
+
+	}
+
+	/**
+	 * Return whether any CREATE INDEX command is pending.
+	 *
+	 * @return boolean whether any CREATE INDEX command is pending
+	 */
+	public boolean isEmpty() {
+		return sqls.isEmpty();
+	}
+
+	/**
+	 * Execute all pending CREATE INDEX commands in parallel, where index of the largest table starts first.
+	 *
+	 * @param db_conns database connections
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void build(Connection[] db_conns) throws PgSchemaException {
+
+		if (sqls.isEmpty())
+			return;
+
+		HashMap<PgTable, Long> table_sizes = new HashMap<PgTable, Long>();
+
+		try {
+
+			// size of relation is proportional to the number of rows to be sorted
+
+			PreparedStatement ps = db_conns[0].prepareStatement("SELECT pg_relation_size(?::regclass)");
+
+			for (PgTable table : sql_tables.values()) {
+
+				if (table_sizes.containsKey(table))
+					continue;
+
+				ps.setString(1, table.pgname);
+
+				ResultSet rset = ps.executeQuery();
+
+				table_sizes.put(table, rset.next() ? rset.getLong(1) : 0L);
+
+				rset.close();
+
+			}
+
+			ps.close();
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+		sqls.sort(Comparator.comparingLong(sql -> -table_sizes.get(sql_tables.get(sql))));
+
+		ready_sqls = new LinkedList<String>(sqls);
+
+		int thrds = Math.min(db_conns.length, sqls.size());
+
+		Thread[] thrd = new Thread[thrds];
+
+		for (int thrd_id = 0; thrd_id < thrds; thrd_id++) {
+
+			Connection db_conn = db_conns[thrd_id];
+
+			thrd[thrd_id] = new Thread(() -> {
+
+				try {
+
+					boolean auto_commit = db_conn.getAutoCommit();
+
+					db_conn.setAutoCommit(true);
+
+					Statement stat = db_conn.createStatement();
+
+					String sql;
+
+					while ((sql = take()) != null) {
+
+						System.out.println(sql);
+
+						try {
+							stat.execute(sql);
+						} catch (SQLException e) {
+							e.printStackTrace();
+						}
+
+					}
+
+					stat.close();
+
+					db_conn.setAutoCommit(auto_commit);
+
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+
+			});
+
+			thrd[thrd_id].start();
+
+		}
+
+		for (Thread _thrd : thrd) {
+
+			try {
+				_thrd.join();
+			} catch (InterruptedException e) {
+				throw new PgSchemaException(e);
+			}
+
+		}
+
+		sqls.clear();
+		sql_tables.clear();
+
+		ready_sqls = null;
+
+	}
+
+	/**
+	 * Take the next CREATE INDEX command.
+	 *
+	 * @return String CREATE INDEX command (null indicates no command remains)
+	 */
+	private synchronized String take() {
+		return ready_sqls.poll();
+	}
+
+}
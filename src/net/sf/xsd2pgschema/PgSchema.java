@@ -19,23 +19,33 @@ limitations under the License.
 
 package net.sf.xsd2pgschema;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.JDBCType;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -49,12 +59,14 @@ import java.util.stream.Collectors;
 import javax.xml.bind.DatatypeConverter;
 import javax.xml.parsers.DocumentBuilder;
 
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.SerializationUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.nustaq.serialization.annotations.Flat;
 import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
 import org.postgresql.core.BaseConnection;
 import org.w3c.dom.*;
 import org.xml.sax.SAXException;
@@ -1966,6 +1978,24 @@ public class PgSchema implements Serializable {
 		unqs.clear();
 		unqs = null;
 
+		// retain parent tables of foreign keys for parallel data migration
+
+		foreign_keys.forEach(foreign_key -> {
+
+			PgTable child_table = getChildTable(foreign_key);
+
+			if (child_table != null && getParentTable(foreign_key) != null) {
+
+				if (child_table.keyref_parent_xnames == null)
+					child_table.keyref_parent_xnames = new ArrayList<String>();
+
+				if (!child_table.keyref_parent_xnames.contains(foreign_key.parent_table_xname))
+					child_table.keyref_parent_xnames.add(foreign_key.parent_table_xname);
+
+			}
+
+		});
+
 		foreign_keys.clear();
 		foreign_keys = null;
 
@@ -4123,7 +4153,7 @@ public class PgSchema implements Serializable {
 	 * @return String PostgreSQL name of table
 	 */
 	private String getDataFileNameOf(PgTable table) {
-		return (option.pg_named_schema ? table.schema_name + "." : "") + table.pname + (option.pg_tab_delimiter ? ".tsv" : ".csv");
+		return (option.pg_named_schema ? table.schema_name + "." : "") + table.pname + (option.pg_binary_copy ? ".bin" : option.pg_tab_delimiter ? ".tsv" : ".csv");
 	}
 
 	/**
@@ -6160,11 +6190,9 @@ public class PgSchema implements Serializable {
 			case native_default:
 				return "E'\\\\x" + DatatypeConverter.printHexBinary(bytes) + "'"; // PostgreSQL hex format
 			case unsigned_long_64:
-				BigInteger blong = new BigInteger(bytes);
-				return Long.toString(Math.abs(blong.longValue())); // use lower order 64 bits
+				return Long.toString(Math.abs(PgHashDigest.getLowerLong(bytes))); // use lower order 64 bits
 			case unsigned_int_32:
-				BigInteger bint = new BigInteger(bytes);
-				return Integer.toString(Math.abs(bint.intValue())); // use lower order 32 bits
+				return Integer.toString(Math.abs(PgHashDigest.getLowerInt(bytes))); // use lower order 32 bits
 			default:
 				return key_name;
 			}
@@ -6289,11 +6317,20 @@ public class PgSchema implements Serializable {
 				if (table.buffw != null)
 					table.buffw.close();
 
+				if (table.bin_out != null) {
+
+					PgSchemaUtil.writePgCopyBinaryTrailer(table.bin_out);
+
+					table.bin_out.close();
+
+				}
+
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
 
 			table.pathw = null;
+			table.bin_out = null;
 
 		});
 
@@ -6314,6 +6351,9 @@ public class PgSchema implements Serializable {
 
 			CopyManager copy_man = new CopyManager((BaseConnection) db_conn);
 
+			if (copy_freeze)
+				db_conn.setAutoCommit(false);
+
 			tables.stream().filter(table -> table.writable && (option.realize_simple_brdg || !table.simple_bridge)).sorted(Comparator.comparingInt(table -> -table.refs)).forEach(table -> {
 
 				Path data_path = Paths.get(work_dir.toString(), getDataFileNameOf(table));
@@ -6327,322 +6367,1782 @@ public class PgSchema implements Serializable {
 						if (buffer_size > PgSchemaUtil.def_buffered_output_stream_buffer_size)
 							buffer_size = PgSchemaUtil.def_buffered_output_stream_buffer_size;
 
-						String sql = "COPY " + table.pgname + " FROM STDIN" + (option.pg_tab_delimiter ? "" : " WITH CSV");
+						// COPY FREEZE requires the table truncated in the same transaction
+
+						if (copy_freeze) {
+
+							Statement stat = db_conn.createStatement();
+
+							stat.execute("TRUNCATE " + table.pgname);
+
+							stat.close();
+
+						}
+
+						copy_man.copyIn(getCopySql(table, copy_freeze), Files.newInputStream(data_path), (int) buffer_size);
 
-						copy_man.copyIn(sql, Files.newInputStream(data_path), (int) buffer_size);
+						if (copy_freeze)
+							db_conn.commit();
 
 					}
 
 				} catch (SQLException | IOException e) {
-					System.err.println("Exception occurred while processing " + (option.pg_tab_delimiter ? "TSV" : "CSV") + " document: " + data_path.toAbsolutePath().toString());
+					System.err.println("Exception occurred while processing " + (option.pg_binary_copy ? "binary" : option.pg_tab_delimiter ? "TSV" : "CSV") + " document: " + data_path.toAbsolutePath().toString());
 					e.printStackTrace();
+
+					if (copy_freeze) {
+
+						try {
+							db_conn.rollback();
+						} catch (SQLException e2) {
+							e2.printStackTrace();
+						}
+
+					}
+
 				}
 
 			});
 
+			if (copy_freeze)
+				db_conn.setAutoCommit(true);
+
 		} catch (SQLException e) {
 			throw new PgSchemaException(e);
 		}
 
 	}
 
-	// PostgreSQL data migration via prepared statement
-
-	/** The database connection. */
-	@Flat
-	public Connection db_conn = null;
-
-	/** Whether to set all constraints deferred. */
-	@Flat
-	private boolean pg_deferred = false;
-
 	/**
-	 * PostgreSQL data migration.
+	 * PostgreSQL data migration from data (CSV/TSV/binary) files over multiple connections, where independent tables are copied in parallel in dependency order of foreign keys.
 	 *
-	 * @param xml_parser XML parser
-	 * @param md_hash_key instance of message digest
-	 * @param update whether update or insertion
-	 * @param db_conn database connection
+	 * @param db_conns database connections
+	 * @param work_dir working directory contains data files
+	 * @param copy_chunk_bytes size of chunk to split large CSV/TSV file in bytes (0 indicates no split)
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	public void xml2PgSql(XmlParser xml_parser, MessageDigest md_hash_key, boolean update, Connection db_conn) throws PgSchemaException {
+	public void pgCsv2PgSql(Connection[] db_conns, Path work_dir, long copy_chunk_bytes) throws PgSchemaException {
 
-		Node node = getRootNode(xml_parser);
-
-		this.md_hash_key = md_hash_key;
-		this.db_conn = db_conn;
+		if (db_conns.length == 1) {
 
-		boolean sync_rescue = option.sync_rescue;
+			pgCsv2PgSql(db_conns[0], work_dir);
 
-		if (sync_rescue && !pg_deferred) {
+			return;
+		}
 
-			try {
+		List<PgTable> copy_tables = tables.stream().filter(table -> table.writable && (option.realize_simple_brdg || !table.simple_bridge) && Files.exists(Paths.get(work_dir.toString(), getDataFileNameOf(table)))).sorted(Comparator.comparingInt(table -> -table.refs)).collect(Collectors.toList());
 
-				Statement stat = db_conn.createStatement();
+		if (copy_tables.isEmpty())
+			return;
 
-				stat.execute("SET CONSTRAINTS ALL DEFERRED");
+		HashMap<PgTable, HashSet<PgTable>> parent_tables = new HashMap<PgTable, HashSet<PgTable>>();
+		HashMap<PgTable, List<PgCopyChunk>> table_chunks = new HashMap<PgTable, List<PgCopyChunk>>();
 
-				stat.close();
+		try {
 
-			} catch (SQLException e) {
-				throw new PgSchemaException(e);
-			}
+			for (PgTable table : copy_tables) {
 
-			pg_deferred = true;
+				HashSet<PgTable> parents = getParentTables(table);
 
-		}
+				boolean self_ref = parents.remove(table);
 
-		if (update || sync_rescue) {
+				parents.retainAll(copy_tables);
 
-			deleteBeforeUpdate(option.rel_data_ext && option.pg_retain_key);
+				parent_tables.put(table, parents);
+				table_chunks.put(table, getCopyChunks(table, Paths.get(work_dir.toString(), getDataFileNameOf(table)), self_ref ? 0 : copy_chunk_bytes));
 
-			if (!option.rel_data_ext || !option.pg_retain_key || sync_rescue)
-				update = false;
+			}
 
+		} catch (IOException e) {
+			throw new PgSchemaException(e);
 		}
 
-		// parse root node and send to PostgreSQL
-
-		PgSchemaNodeParserBuilder npb = new PgSchemaNodeParserBuilder(this, PgSchemaNodeParserType.pg_data_migration);
+		PgCopyLoader loader = new PgCopyLoader(copy_tables, parent_tables, table_chunks);
 
-		npb.xml2PgSql(root_table, node, update);
+		Thread[] thrd = new Thread[db_conns.length];
 
 		try {
-			db_conn.commit(); // transaction ends
-		} catch (SQLException e) {
-			throw new PgSchemaException(e);
-		}
 
-	}
+			for (int thrd_id = 0; thrd_id < db_conns.length; thrd_id++) {
 
-	/**
-	 * Close xml2PgSql.
-	 */
-	public void closeXml2PgSql() {
+				CopyManager copy_man = new CopyManager((BaseConnection) db_conns[thrd_id]);
 
-		closePreparedStatement(false);
+				thrd[thrd_id] = new Thread(() -> {
 
-	}
+					PgCopyChunk chunk;
 
-	/**
-	 * Return set of document ids stored in PostgreSQL.
-	 *
-	 * @param db_conn database connection
-	 * @return HashSet set of document ids stored in PostgreSQL
-	 * @throws PgSchemaException the pg schema exception
-	 */
-	public HashSet<String> getDocIdRows(Connection db_conn) throws PgSchemaException {
+					try {
 
-		HashSet<String> set = new HashSet<String>();
+						while ((chunk = loader.take()) != null) {
 
-		try {
+							try {
 
-			Statement stat = db_conn.createStatement();
+								copyIn(copy_man, chunk);
 
-			String sql = "SELECT " + doc_id_table.doc_key_pgname + " FROM " + doc_id_table.pgname;
+							} catch (SQLException | IOException e) {
+								System.err.println("Exception occurred while processing " + (option.pg_binary_copy ? "binary" : option.pg_tab_delimiter ? "TSV" : "CSV") + " document: " + chunk.data_path.toAbsolutePath().toString() + (chunk.length < 0 ? "" : " (offset: " + chunk.offset + ", length: " + chunk.length + ")"));
+								e.printStackTrace();
+							} finally {
+								loader.complete(chunk);
+							}
 
-			ResultSet rset = stat.executeQuery(sql);
+						}
 
-			while (rset.next())
-				set.add(rset.getString(1));
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
 
-			rset.close();
+				});
 
-			stat.close();
+				thrd[thrd_id].start();
 
-		} catch (SQLException e) {
+			}
+
+			for (Thread _thrd : thrd) {
+
+				if (_thrd != null)
+					_thrd.join();
+
+			}
+
+		} catch (SQLException | InterruptedException e) {
 			throw new PgSchemaException(e);
 		}
 
-		return set;
 	}
 
 	/**
-	 * Return document key name.
+	 * Return parent tables that should be copied in advance of table.
 	 *
 	 * @param table current table
-	 * @return String document key name
-	 * @throws PgSchemaException the pg schema exception
+	 * @return HashSet parent tables
 	 */
-	private String getDocKeyName(PgTable table) throws PgSchemaException {
-
-		if (option.document_key)
-			return option.document_key_name;
-
-		if (!option.in_place_document_key)
-			throw new PgSchemaException("Not defined document key, or select either --doc-key or --doc-key-if-no-inplace option.");
-
-		List<PgField> fields = table.fields;
+	private HashSet<PgTable> getParentTables(PgTable table) {
 
-		if (fields.stream().anyMatch(field -> field.document_key))
-			return option.document_key_name;
-
-		if (!fields.stream().anyMatch(field -> (field.dtd_data_holder && option.in_place_document_key_names.contains(field.name)) || ((field.dtd_data_holder || field.simple_content) && option.in_place_document_key_names.contains(table.name + "." + field.name)))) {
+		HashSet<PgTable> parents = new HashSet<PgTable>();
 
-			if (option.document_key_if_no_in_place)
-				return option.document_key_name;
+		table.fields.stream().filter(field -> field.foreign_key).map(field -> getForeignTable(field)).filter(foreign_table -> foreign_table != null).forEach(foreign_table -> parents.add(foreign_table));
 
-			throw new PgSchemaException("Not found in-place document key in " + table.pname + ", or select --doc-key-if-no-inplace option.");
-		}
+		if (table.keyref_parent_xnames != null)
+			table.keyref_parent_xnames.stream().map(parent_table_xname -> getCanTable(table.schema_name, parent_table_xname)).filter(parent_table -> parent_table != null).forEach(parent_table -> parents.add(parent_table));
 
-		return fields.stream().filter(field -> (field.dtd_data_holder && option.in_place_document_key_names.contains(field.name)) || ((field.dtd_data_holder || field.simple_content) && option.in_place_document_key_names.contains(table.name + "." + field.name))).findFirst().get().pname;
+		return parents;
 	}
 
 	/**
-	 * Execute PostgreSQL DELETE command for strict synchronization.
+	 * Return chunks of data file split on row boundaries.
 	 *
-	 * @param db_conn database connection
-	 * @param set set of target document ids
-	 * @throws PgSchemaException the pg schema exception
+	 * @param table current table
+	 * @param data_path data file path
+	 * @param copy_chunk_bytes size of chunk in bytes (0 indicates no split)
+	 * @return List chunks of data file
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public void deleteRows(Connection db_conn, HashSet<String> set) throws PgSchemaException {
-
-		this.db_conn = db_conn;
+	private List<PgCopyChunk> getCopyChunks(PgTable table, Path data_path, long copy_chunk_bytes) throws IOException {
 
-		set.forEach(id -> {
+		List<PgCopyChunk> chunks = new ArrayList<PgCopyChunk>();
 
-			try {
-
-				document_id = id;
+		// binary COPY format has no row delimiter to be split simply
 
-				deleteBeforeUpdate(false);
-
-			} catch (PgSchemaException e) {
-				e.printStackTrace();
-			}
+		if (copy_chunk_bytes <= 0 || option.pg_binary_copy || Files.size(data_path) <= copy_chunk_bytes) {
 
-		});
+			chunks.add(new PgCopyChunk(table, data_path, 0, -1));
 
-	}
+			return chunks;
+		}
 
-	/**
-	 * Execute PostgreSQL DELETE command before INSERT for all tables of current document.
-	 *
-	 * @param no_pkey delete whether relations not having primary key or uniformly (false)
-	 * @throws PgSchemaException the pg schema exception
-	 */
-	private void deleteBeforeUpdate(boolean no_pkey) throws PgSchemaException {
+		boolean csv = !option.pg_tab_delimiter;
 
-		try {
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(data_path), PgSchemaUtil.def_buffered_output_stream_buffer_size)) {
 
-			if (has_db_rows == null)
-				initHasDbRows();
+			long start = 0, pos = 0;
+			boolean quoted = false;
+			int b;
 
-			Statement stat = db_conn.createStatement();
+			while (true) {
 
-			boolean has_doc_id = false;
-			boolean sync_rescue = option.sync_rescue;
+				// TSV escapes line feed, so that scanning of rows can be skipped
 
-			if (has_db_rows.get(doc_id_table.pname)) {
+				if (!csv && pos - start < copy_chunk_bytes - 1) {
 
-				String sql = "DELETE FROM " + doc_id_table.pgname + " WHERE " + doc_id_table.doc_key_pgname + "='" + document_id + "'";
+					long skipped = in.skip(copy_chunk_bytes - 1 - (pos - start));
 
-				has_doc_id = stat.executeUpdate(sql) > 0;
+					if (skipped > 0) {
 
-			}
+						pos += skipped;
 
-			if (has_doc_id || sync_rescue) {
+						continue;
+					}
 
-				tables.stream().filter(table -> table.writable && (option.realize_simple_brdg || !table.simple_bridge) && !table.equals(doc_id_table) && ((no_pkey && !table.has_unique_primary_key) || !no_pkey || sync_rescue)).sorted(Comparator.comparingInt(table -> -table.refs)).forEach(table -> {
+				}
 
-					if (has_db_rows.get(table.pname)) {
+				if ((b = in.read()) == -1)
+					break;
 
-						try {
+				pos++;
 
-							String sql = "DELETE FROM " + table.pgname + " WHERE " + table.doc_key_pgname + "='" + document_id + "'";
+				if (b == '"' && csv)
+					quoted = !quoted;
 
-							stat.executeUpdate(sql);
+				else if (b == '\n' && !quoted && pos - start >= copy_chunk_bytes) {
 
-						} catch (SQLException e) {
-							e.printStackTrace();
-						}
+					chunks.add(new PgCopyChunk(table, data_path, start, pos - start));
 
-					}
+					start = pos;
 
-				});
+				}
 
 			}
 
-			stat.close();
-
-			if (has_doc_id || sync_rescue)
-				db_conn.commit(); // transaction ends
+			if (pos > start || chunks.isEmpty())
+				chunks.add(new PgCopyChunk(table, data_path, start, pos - start));
 
-		} catch (SQLException e) {
-			throw new PgSchemaException(e);
 		}
 
+		return chunks;
 	}
 
 	/**
-	 * Create PostgreSQL index on non-unique primary key if not exists.
+	 * Copy a chunk of data file to PostgreSQL.
 	 *
-	 * @param db_conn database connection
-	 * @param pg_option PostgreSQL option
-	 * @throws PgSchemaException the pg schema exception
+	 * @param copy_man copy manager
+	 * @param chunk chunk of data file
+	 * @throws SQLException the SQL exception
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public void createNonUniqPKeyIndex(Connection db_conn, PgOption pg_option) throws PgSchemaException {
+	private void copyIn(CopyManager copy_man, PgCopyChunk chunk) throws SQLException, IOException {
 
-		if (!option.rel_data_ext)
-			return;
+		long buffer_size = chunk.length < 0 ? Files.size(chunk.data_path) : chunk.length;
 
-		this.db_conn = db_conn;
+		if (buffer_size > PgSchemaUtil.def_buffered_output_stream_buffer_size)
+			buffer_size = PgSchemaUtil.def_buffered_output_stream_buffer_size;
 
-		if (has_db_rows == null)
-			initHasDbRows();
+		if (buffer_size <= 0)
+			buffer_size = 1;
 
-		try {
+		try (FileChannel channel = FileChannel.open(chunk.data_path, StandardOpenOption.READ)) {
 
-			Statement stat = db_conn.createStatement();
+			InputStream in = Channels.newInputStream(channel.position(chunk.offset));
 
-			DatabaseMetaData meta = db_conn.getMetaData();
+			copy_man.copyIn(getCopySql(chunk.table), chunk.length < 0 ? in : new BoundedInputStream(in, chunk.length), (int) buffer_size);
 
-			has_db_rows.entrySet().stream().filter(arg -> arg.getValue()).map(arg -> arg.getKey()).forEach(table_name -> {
+		}
 
-				PgTable table = getPgTable(option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name);
+	}
 
-				if (table.has_non_uniq_primary_key) {
+	/**
+	 * Return PostgreSQL COPY command of table.
+	 *
+	 * @param table current table
+	 * @return String PostgreSQL COPY command
+	 */
+	private String getCopySql(PgTable table) {
+		return getCopySql(table, false);
+	}
 
-					String primary_key_pname = table.fields.stream().filter(field -> field.primary_key).findFirst().get().pname;
+	/**
+	 * Return PostgreSQL COPY command of table.
+	 *
+	 * @param table current table
+	 * @param freeze whether to add FREEZE option
+	 * @return String PostgreSQL COPY command
+	 */
+	private String getCopySql(PgTable table, boolean freeze) {
 
-					try {
+		if (!freeze)
+			return "COPY " + table.pgname + " FROM STDIN" + (option.pg_binary_copy ? " WITH ( FORMAT binary )" : option.pg_tab_delimiter ? "" : " WITH CSV");
 
-						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+		return "COPY " + table.pgname + " FROM STDIN WITH ( " + (option.pg_binary_copy ? "FORMAT binary, " : option.pg_tab_delimiter ? "" : "FORMAT csv, ") + "FREEZE )";
+	}
 
-						boolean has_index = false;
+	/** Whether to copy data files with FREEZE option, where the table is truncated in advance. */
+	@Flat
+	private boolean copy_freeze = false;
 
-						String column_name;
+	/**
+	 * Set whether to copy data files with FREEZE option, where the table is truncated in advance.
+	 *
+	 * @param copy_freeze whether to copy data files with FREEZE option
+	 */
+	public void setCopyFreeze(boolean copy_freeze) {
 
-						while (rset.next()) {
+		this.copy_freeze = copy_freeze;
 
-							column_name = rset.getString("COLUMN_NAME");
+	}
 
-							if (column_name != null && column_name.contains(primary_key_pname)) {
+	// PostgreSQL data migration via prepared statement
 
-								has_index = true;
+	/** The database connection. */
+	@Flat
+	public Connection db_conn = null;
 
-								break;
-							}
+	/** Whether to set all constraints deferred. */
+	@Flat
+	private boolean pg_deferred = false;
 
-						}
+	/** The maximum rows of JDBC batch kept across nodes and documents (0 indicates executing JDBC batch per node). */
+	@Flat
+	private int jdbc_batch_size = 0;
 
-						rset.close();
+	/** The maximum bytes of JDBC batch kept across nodes and documents. */
+	@Flat
+	private long jdbc_batch_bytes = PgSchemaUtil.def_jdbc_batch_bytes;
 
-						if (!has_index) {
+	/** The number of rows pending in JDBC batch. */
+	@Flat
+	private int pending_batch_rows = 0;
 
-							String sql = "SELECT COUNT ( id ) FROM ( SELECT 1 AS id FROM " + table.pgname + " LIMIT " + pg_option.min_rows_for_index + " ) AS trunc";
+	/** The estimated bytes pending in JDBC batch. */
+	@Flat
+	private long pending_batch_bytes = 0;
 
-							rset = stat.executeQuery(sql);
+	/** Whether JDBC batch has been executed while processing current document. */
+	@Flat
+	private boolean batch_executed = false;
 
-							while (rset.next()) {
+	/** Whether to insert rows via column arrays expanded by unnest(). */
+	@Flat
+	private boolean unnest_insert = false;
 
-								if (rset.getInt(1) == pg_option.min_rows_for_index) {
+	/** Whether to write only rows changed in updating documents. */
+	@Flat
+	private boolean diff_update = false;
 
-									sql = "CREATE INDEX IDX_" + PgSchemaUtil.avoidPgReservedOps(table_name) + "_" + PgSchemaUtil.avoidPgReservedOps(primary_key_pname) + " ON " + table.pgname + " ( " + (table.doc_key_pgname != null ? table.doc_key_pgname + ", " : "") + table.primary_key_pgname + " )";
+	/** The ids of updating documents whose rows are pending in JDBC batch of differential update. */
+	@Flat
+	private List<String> diff_doc_ids = null;
 
-									System.out.println(sql);
+	/**
+	 * Set thresholds of JDBC batch kept across nodes and documents.
+	 *
+	 * @param pg_option PostgreSQL option
+	 */
+	public void setJdbcBatch(PgOption pg_option) {
 
-									stat.execute(sql);
+		jdbc_batch_size = pg_option.jdbc_batch_size;
+		jdbc_batch_bytes = pg_option.jdbc_batch_bytes;
+
+		unnest_insert = pg_option.unnest_insert;
+
+		// differential update compares rows of updating documents as column arrays
+
+		diff_update = pg_option.diff_update && option.rel_data_ext && option.pg_retain_key;
+
+		if (diff_update)
+			unnest_insert = true;
+
+		if (unnest_insert && jdbc_batch_size == 0)
+			jdbc_batch_size = PgSchemaUtil.def_unnest_batch_size;
+
+	}
+
+	/**
+	 * Return whether JDBC batch is kept across nodes and documents.
+	 *
+	 * @return boolean whether JDBC batch is kept across nodes and documents
+	 */
+	public boolean isJdbcBatch() {
+		return jdbc_batch_size > 0;
+	}
+
+	/**
+	 * Return whether to insert rows via column arrays expanded by unnest().
+	 *
+	 * @return boolean whether to insert rows via column arrays expanded by unnest()
+	 */
+	public boolean isUnnestInsert() {
+		return unnest_insert;
+	}
+
+	/**
+	 * Return whether to write only rows changed in updating documents.
+	 *
+	 * @return boolean whether to write only rows changed in updating documents
+	 */
+	public boolean isDiffUpdate() {
+		return diff_update;
+	}
+
+	/**
+	 * Return whether rows of table are written by differential update, which requires document key column.
+	 * The other tables fall back to plain upsert (or insert) of rows.
+	 *
+	 * @param table current table
+	 * @return boolean whether rows of table are written by differential update
+	 */
+	public boolean isDiffUpdatable(PgTable table) {
+		return diff_update && table.doc_key_pname != null && table.custom_fields.stream().anyMatch(field -> field.pname.equals(table.doc_key_pname));
+	}
+
+	/**
+	 * Count a row added to JDBC batch and execute all pending JDBC batches if threshold exceeds.
+	 *
+	 * @param row_bytes estimated bytes of the row
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void addJdbcBatch(long row_bytes) throws PgSchemaException {
+
+		pending_batch_bytes += row_bytes;
+
+		// differential update requires all rows of current document, which are executed at the end of document
+
+		if (++pending_batch_rows >= jdbc_batch_size || pending_batch_bytes >= jdbc_batch_bytes) {
+
+			if (diff_update)
+				return;
+
+			executeJdbcBatch();
+
+			batch_executed = true;
+
+		}
+
+	}
+
+	/**
+	 * Execute all pending JDBC batches in order of foreign key constraint.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void executeJdbcBatch() throws PgSchemaException {
+
+		if (pending_batch_rows == 0 && (diff_doc_ids == null || diff_doc_ids.isEmpty()))
+			return;
+
+		pending_batch_rows = 0;
+		pending_batch_bytes = 0;
+
+		try {
+
+			if (unnest_insert)
+				bindUnnestArrays();
+
+			for (PgTable table : tables.stream().filter(table -> table.ps != null || table.ps2 != null).sorted(Comparator.comparingInt(table -> -table.refs)).collect(Collectors.toList())) {
+
+				if (table.ps != null)
+					table.ps.executeBatch();
+
+				if (table.ps2 != null)
+					table.ps2.executeBatch();
+
+			}
+
+		} catch (SQLException e) {
+
+			rollbackXml2PgSql();
+
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Bind pending rows as column arrays of unnest() and add them to JDBC batch.
+	 *
+	 * @throws SQLException the SQL exception
+	 */
+	private void bindUnnestArrays() throws SQLException {
+
+		Array doc_ids = diff_doc_ids != null && !diff_doc_ids.isEmpty() ? db_conn.createArrayOf("text", diff_doc_ids.toArray(new String[0])) : null;
+
+		for (PgTable table : tables) {
+
+			if (table.unnest_rows != null && !table.unnest_rows.isEmpty())
+				bindUnnestArrays(table.ps, table.unnest_rows, table.custom_fields.size(), null);
+
+			// differential update is executed even if no rows remain in updating documents
+
+			if (doc_ids != null && table.ps2 != null && isDiffUpdatable(table))
+				bindUnnestArrays(table.ps2, table.unnest_upsert_rows, table.custom_fields.size(), doc_ids);
+
+			else if (table.unnest_upsert_rows != null && !table.unnest_upsert_rows.isEmpty())
+				bindUnnestArrays(table.ps2, table.unnest_upsert_rows, table.custom_fields.size(), null);
+
+		}
+
+		if (doc_ids != null)
+			diff_doc_ids.clear();
+
+	}
+
+	/**
+	 * Bind pending rows as column arrays of unnest() and add them to JDBC batch.
+	 *
+	 * @param ps prepared statement of unnest() array insert
+	 * @param rows pending rows (null indicates no rows)
+	 * @param col_size the number of columns
+	 * @param doc_ids ids of updating documents appended to column arrays (null indicates no differential update)
+	 * @throws SQLException the SQL exception
+	 */
+	private void bindUnnestArrays(PreparedStatement ps, List<String[]> rows, int col_size, Array doc_ids) throws SQLException {
+
+		int row_size = rows != null ? rows.size() : 0;
+
+		String[] column = new String[row_size];
+
+		for (int c = 0; c < col_size; c++) {
+
+			for (int r = 0; r < row_size; r++)
+				column[r] = rows.get(r)[c];
+
+			ps.setArray(c + 1, db_conn.createArrayOf("text", column));
+
+		}
+
+		if (doc_ids != null)
+			ps.setArray(col_size + 1, doc_ids);
+
+		ps.addBatch();
+
+		if (rows != null)
+			rows.clear();
+
+	}
+
+	/**
+	 * Prepare PostgreSQL statements of differential update for all tables.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void prepDiffUpdate() throws PgSchemaException {
+
+		if (diff_doc_ids == null)
+			diff_doc_ids = new ArrayList<String>();
+
+		try {
+
+			for (PgTable table : tables) {
+
+				if (!table.writable || (!option.realize_simple_brdg && table.simple_bridge) || table.ps2 != null || !isDiffUpdatable(table))
+					continue;
+
+				table.ps2 = db_conn.prepareStatement(getDiffUpdateSql(table));
+
+			}
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Return PostgreSQL statement of differential update, where rows of updating documents are compared with current rows by their text representation.
+	 * Rows of table having unique primary key are upserted only when changed and deleted when disappeared.
+	 * Rows of the other table are rewritten per document only when their multiset differs.
+	 *
+	 * @param table current table
+	 * @return String PostgreSQL statement of differential update
+	 */
+	private String getDiffUpdateSql(PgTable table) {
+
+		List<PgField> fields = table.custom_fields;
+
+		int col_size = fields.size();
+
+		String doc_key_col = null, pkey_col = null;
+
+		StringBuilder sql = new StringBuilder();
+
+		sql.append("WITH n AS ( SELECT ");
+
+		PgField field;
+
+		for (int f = 0; f < col_size; f++) {
+
+			field = fields.get(f);
+
+			sql.append(field.getPgCastOfText("u.c" + f, table.schema_pgname) + " AS c" + f + ", ");
+
+			if (field.pname.equals(table.doc_key_pname) && doc_key_col == null)
+				doc_key_col = "c" + f;
+
+			if (field.primary_key && pkey_col == null)
+				pkey_col = "c" + f;
+
+		}
+
+		sql.setLength(sql.length() - 2);
+		sql.append(" FROM unnest( ");
+
+		for (int f = 0; f < col_size; f++)
+			sql.append("?::text[], ");
+
+		sql.setLength(sql.length() - 2);
+		sql.append(" ) AS u ( ");
+
+		for (int f = 0; f < col_size; f++)
+			sql.append("c" + f + ", ");
+
+		sql.setLength(sql.length() - 2);
+		sql.append(" ) ), ");
+
+		String doc_key_pgname = "o." + table.doc_key_pgname;
+		String doc_ids = "?::" + getDocKeyArrayType(table);
+
+		// upsert changed rows and delete disappeared rows
+
+		if (table.has_unique_primary_key && pkey_col != null) {
+
+			sql.append("d AS ( DELETE FROM " + table.pgname + " o WHERE " + doc_key_pgname + " = ANY ( " + doc_ids + " ) AND NOT EXISTS ( SELECT 1 FROM n WHERE n." + pkey_col + " = o." + table.primary_key_pgname + " ) ) ");
+			sql.append("INSERT INTO " + table.pgname + " AS o SELECT * FROM n ON CONFLICT ( " + table.primary_key_pgname + " ) DO ");
+
+			StringBuilder set = new StringBuilder();
+
+			for (int f = 0; f < col_size; f++) {
+
+				field = fields.get(f);
+
+				if (field.primary_key)
+					continue;
+
+				String _name = PgSchemaUtil.avoidPgReservedWords(field.pname);
+
+				set.append(_name + "=EXCLUDED." + _name + ", ");
+
+			}
+
+			if (set.length() == 0)
+				sql.append("NOTHING");
+
+			else {
+
+				set.setLength(set.length() - 2);
+
+				sql.append("UPDATE SET " + set.toString() + " WHERE ROW(o.*)::TEXT IS DISTINCT FROM ROW(EXCLUDED.*)::TEXT");
+
+			}
+
+			set.setLength(0);
+
+		}
+
+		// rewrite rows of documents whose multiset of rows differs
+
+		else {
+
+			sql.append("c AS ( SELECT COALESCE(a.k, b.k) AS k FROM ");
+			sql.append("( SELECT " + doc_key_pgname + " AS k, string_agg(md5(ROW(o.*)::TEXT), ',' ORDER BY md5(ROW(o.*)::TEXT)) AS s FROM " + table.pgname + " o WHERE " + doc_key_pgname + " = ANY ( " + doc_ids + " ) GROUP BY " + doc_key_pgname + " ) a FULL JOIN ");
+			sql.append("( SELECT n." + doc_key_col + " AS k, string_agg(md5(ROW(n.*)::TEXT), ',' ORDER BY md5(ROW(n.*)::TEXT)) AS s FROM n GROUP BY n." + doc_key_col + " ) b ON a.k = b.k WHERE a.s IS DISTINCT FROM b.s ), ");
+			sql.append("d AS ( DELETE FROM " + table.pgname + " o WHERE " + doc_key_pgname + " IN ( SELECT k FROM c ) ) ");
+			sql.append("INSERT INTO " + table.pgname + " SELECT n.* FROM n WHERE n." + doc_key_col + " IN ( SELECT k FROM c )");
+
+		}
+
+		return sql.toString();
+	}
+
+	/** Whether to defer commit to the caller (group commit). */
+	@Flat
+	private boolean group_commit = false;
+
+	/**
+	 * Set whether to defer commit to the caller (group commit).
+	 *
+	 * @param group_commit whether to defer commit to the caller
+	 */
+	public void setGroupCommit(boolean group_commit) {
+
+		this.group_commit = group_commit;
+
+	}
+
+	/**
+	 * Execute all pending JDBC batches and commit current transaction.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void commitXml2PgSql() throws PgSchemaException {
+
+		executeJdbcBatch();
+
+		executeCopy();
+
+		batch_executed = false;
+
+		try {
+			db_conn.commit(); // transaction ends
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Discard all pending JDBC batches and rollback current transaction.
+	 */
+	public void rollbackXml2PgSql() {
+
+		pending_batch_rows = 0;
+		pending_batch_bytes = 0;
+
+		batch_executed = false;
+
+		if (diff_doc_ids != null)
+			diff_doc_ids.clear();
+
+		tables.stream().filter(table -> table.ps != null || table.ps2 != null).forEach(table -> {
+
+			if (table.unnest_rows != null)
+				table.unnest_rows.clear();
+
+			if (table.unnest_upsert_rows != null)
+				table.unnest_upsert_rows.clear();
+
+			try {
+
+				if (table.ps != null)
+					table.ps.clearBatch();
+
+				if (table.ps2 != null)
+					table.ps2.clearBatch();
+
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+
+		});
+
+		if (pg_copy)
+			tables.stream().filter(table -> table.copy_buffer != null).forEach(table -> resetCopyBuffer(table, 0));
+
+		if (copy_delete_ids != null)
+			copy_delete_ids.clear();
+
+		try {
+			db_conn.rollback();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * PostgreSQL data migration.
+	 *
+	 * @param xml_parser XML parser
+	 * @param md_hash_key instance of message digest
+	 * @param update whether update or insertion
+	 * @param db_conn database connection
+	 * @return boolean whether the transaction including current document has been committed
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public boolean xml2PgSql(XmlParser xml_parser, MessageDigest md_hash_key, boolean update, Connection db_conn) throws PgSchemaException {
+
+		Node node = getRootNode(xml_parser);
+
+		this.md_hash_key = md_hash_key;
+		this.db_conn = db_conn;
+
+		boolean sync_rescue = option.sync_rescue;
+
+		if (sync_rescue && !pg_deferred) {
+
+			try {
+
+				Statement stat = db_conn.createStatement();
+
+				stat.execute("SET CONSTRAINTS ALL DEFERRED");
+
+				stat.close();
+
+			} catch (SQLException e) {
+				throw new PgSchemaException(e);
+			}
+
+			pg_deferred = true;
+
+		}
+
+		// rows of updating document are compared with current rows instead of deleting them in advance
+
+		if (update && diff_update && !sync_rescue) {
+
+			prepDiffUpdate();
+
+			diff_doc_ids.add(document_id);
+
+			// rows of tables not written by differential update are deleted in advance
+
+			deleteBeforeDiffUpdate();
+
+		}
+
+		else if (update || sync_rescue) {
+
+			deleteBeforeUpdate(option.rel_data_ext && option.pg_retain_key);
+
+			if (!option.rel_data_ext || !option.pg_retain_key || sync_rescue)
+				update = false;
+
+		}
+
+		// parse root node and send to PostgreSQL
+
+		PgSchemaNodeParserBuilder npb = new PgSchemaNodeParserBuilder(this, PgSchemaNodeParserType.pg_data_migration);
+
+		npb.xml2PgSql(root_table, node, update);
+
+		if (group_commit)
+			return false;
+
+		// keep JDBC batch across documents unless executed while processing current document
+
+		if (jdbc_batch_size > 0) {
+
+			if (!batch_executed && pending_batch_rows < jdbc_batch_size && pending_batch_bytes < jdbc_batch_bytes)
+				return false;
+
+			executeJdbcBatch();
+
+			batch_executed = false;
+
+		}
+
+		try {
+			db_conn.commit(); // transaction ends
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Close xml2PgSql.
+	 *
+	 * @return boolean whether pending data has been committed successfully
+	 */
+	public boolean closeXml2PgSql() {
+
+		boolean committed = true;
+
+		if ((jdbc_batch_size > 0 || group_commit || pg_copy) && db_conn != null) {
+
+			try {
+				commitXml2PgSql();
+			} catch (PgSchemaException e) {
+				e.printStackTrace();
+				committed = false;
+			}
+
+		}
+
+		closePreparedStatement(false);
+
+		diff_doc_ids = null;
+
+		if (unnest_insert) {
+
+			tables.stream().filter(table -> table.unnest_rows != null || table.unnest_upsert_rows != null).forEach(table -> {
+
+				table.unnest_rows = null;
+				table.unnest_upsert_rows = null;
+
+			});
+
+		}
+
+		if (pg_copy) {
+
+			tables.stream().filter(table -> table.copy_buffer != null).forEach(table -> {
+
+				table.buffw = null;
+				table.bin_out = null;
+				table.copy_buffer = null;
+				table.copy_mark = 0;
+
+			});
+
+			copy_delete_ids = null;
+
+			pg_copy = false;
+
+		}
+
+		return committed;
+	}
+
+	// PostgreSQL data migration via streaming COPY command
+
+	/** Whether data is streamed via PostgreSQL COPY command. */
+	@Flat
+	private boolean pg_copy = false;
+
+	/** The maximum bytes of buffered PostgreSQL COPY data. */
+	@Flat
+	private int copy_buffer_bytes = PgSchemaUtil.def_copy_buffer_bytes;
+
+	/** The ids of updating documents whose current rows are deleted in the same transaction as COPY of their buffered rows. */
+	@Flat
+	private List<String> copy_delete_ids = null;
+
+	/**
+	 * Set maximum bytes of buffered PostgreSQL COPY data.
+	 *
+	 * @param pg_option PostgreSQL option
+	 */
+	public void setCopyBuffer(PgOption pg_option) {
+
+		copy_buffer_bytes = pg_option.copy_buffer_bytes;
+
+	}
+
+	/**
+	 * PostgreSQL data migration via streaming COPY command without intermediate files.
+	 *
+	 * @param xml_parser XML parser
+	 * @param md_hash_key instance of message digest
+	 * @param update whether update or insertion
+	 * @param db_conn database connection
+	 * @return boolean whether the transaction including current document has been committed
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public boolean xml2PgCopy(XmlParser xml_parser, MessageDigest md_hash_key, boolean update, Connection db_conn) throws PgSchemaException {
+
+		Node node = getRootNode(xml_parser);
+
+		this.md_hash_key = md_hash_key;
+		this.db_conn = db_conn;
+
+		long copy_bytes = parseCopyBuffer(node);
+
+		// COPY command can not resolve conflict, so that delete all rows of current document right before COPY in the same transaction
+
+		if (update || option.sync_rescue) {
+
+			if (copy_delete_ids == null)
+				copy_delete_ids = new ArrayList<String>();
+
+			copy_delete_ids.add(document_id);
+
+		}
+
+		if (copy_bytes < copy_buffer_bytes)
+			return false;
+
+		executeCopy();
+
+		if (group_commit)
+			return false;
+
+		try {
+			db_conn.commit(); // transaction ends
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Parse root node and write to COPY buffer, where partial data is discarded in case of exception.
+	 *
+	 * @param node root node
+	 * @return long total bytes of COPY buffer
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private long parseCopyBuffer(Node node) throws PgSchemaException {
+
+		List<PgTable> copy_tables = tables.stream().filter(table -> table.writable && (option.realize_simple_brdg || !table.simple_bridge)).collect(Collectors.toList());
+
+		if (!pg_copy) {
+
+			copy_tables.forEach(table -> {
+
+				table.copy_buffer = new ByteArrayOutputStream();
+				resetCopyBuffer(table, 0);
+
+			});
+
+			pg_copy = true;
+
+		}
+
+		// parse root node and write to COPY buffer
+
+		PgSchemaNodeParserBuilder npb = new PgSchemaNodeParserBuilder(this, PgSchemaNodeParserType.pg_data_migration);
+
+		long copy_bytes = 0;
+
+		try {
+
+			npb.xml2PgCsv(root_table, node);
+
+			for (PgTable table : copy_tables) {
+
+				if (table.buffw != null)
+					table.buffw.flush();
+
+				copy_bytes += table.copy_mark = table.copy_buffer.size();
+
+			}
+
+		} catch (PgSchemaException e) {
+
+			// discard partial data of current document
+
+			copy_tables.forEach(table -> resetCopyBuffer(table, table.copy_mark));
+
+			throw e;
+
+		} catch (IOException e) {
+
+			copy_tables.forEach(table -> resetCopyBuffer(table, table.copy_mark));
+
+			throw new PgSchemaException(e);
+		}
+
+		return copy_bytes;
+	}
+
+	/** The row batch of documents handed over to writer threads. */
+	@Flat
+	private PgCopyBatch copy_batch = null;
+
+	/**
+	 * PostgreSQL data migration via row batch that is written by writer threads.
+	 *
+	 * @param xml_parser XML parser
+	 * @param md_hash_key instance of message digest
+	 * @param update whether update or insertion
+	 * @param db_conn database connection
+	 * @return PgCopyBatch row batch to be written (null indicates that the batch is not filled yet)
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public PgCopyBatch xml2PgCopyBatch(XmlParser xml_parser, MessageDigest md_hash_key, boolean update, Connection db_conn) throws PgSchemaException {
+
+		Node node = getRootNode(xml_parser);
+
+		this.md_hash_key = md_hash_key;
+		this.db_conn = db_conn;
+
+		if (copy_batch == null)
+			copy_batch = new PgCopyBatch();
+
+		long copy_bytes = parseCopyBuffer(node);
+
+		copy_batch.document_ids.add(document_id);
+
+		// COPY command can not resolve conflict, so that writer thread deletes all rows of current document in advance
+
+		if (update || option.sync_rescue) {
+
+			if (copy_batch.delete_ids.isEmpty()) {
+
+				if (has_db_rows == null)
+					initHasDbRows();
+
+				copy_batch.delete_doc_id_sql = getDeleteDocIdSql();
+				copy_batch.delete_sqls = getDeleteSqls(false);
+				copy_batch.sync_rescue = option.sync_rescue;
+
+			}
+
+			copy_batch.delete_ids.add(document_id);
+
+		}
+
+		if (copy_bytes < copy_buffer_bytes)
+			return null;
+
+		return pollCopyBatch();
+	}
+
+	/**
+	 * Return current row batch, which takes over all buffered data in order of foreign key constraint.
+	 *
+	 * @return PgCopyBatch row batch to be written (null indicates no pending batch)
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public PgCopyBatch pollCopyBatch() throws PgSchemaException {
+
+		if (copy_batch == null || copy_batch.isEmpty())
+			return null;
+
+		try {
+
+			for (PgTable table : tables.stream().filter(table -> table.copy_buffer != null).sorted(Comparator.comparingInt(table -> -table.refs)).collect(Collectors.toList())) {
+
+				if (table.buffw != null)
+					table.buffw.flush();
+
+				if (table.copy_buffer.size() == 0)
+					continue;
+
+				if (option.pg_binary_copy) {
+
+					ByteArrayOutputStream out = new ByteArrayOutputStream(table.copy_buffer.size() + PgSchemaUtil.pg_copy_binary_signature.length + 10);
+					DataOutputStream bin_out = new DataOutputStream(out);
+
+					PgSchemaUtil.writePgCopyBinaryHeader(bin_out);
+
+					table.copy_buffer.writeTo(bin_out);
+
+					PgSchemaUtil.writePgCopyBinaryTrailer(bin_out);
+
+					bin_out.flush();
+
+					copy_batch.copy_data.add(out.toByteArray());
+
+				}
+
+				else
+					copy_batch.copy_data.add(table.copy_buffer.toByteArray());
+
+				copy_batch.copy_sqls.add(getCopySql(table));
+
+				resetCopyBuffer(table, 0);
+
+			}
+
+		} catch (IOException e) {
+			throw new PgSchemaException(e);
+		}
+
+		PgCopyBatch batch = copy_batch;
+
+		copy_batch = null;
+
+		return batch;
+	}
+
+	/**
+	 * Return PostgreSQL DELETE command of document id table, which returns deleted document ids.
+	 *
+	 * @return String PostgreSQL DELETE command taking an array of document ids (null indicates no rows in document id table)
+	 */
+	private String getDeleteDocIdSql() {
+
+		if (!has_db_rows.get(doc_id_table.pname))
+			return null;
+
+		return "DELETE FROM " + doc_id_table.pgname + " WHERE " + doc_id_table.doc_key_pgname + " = ANY ( ?::" + getDocKeyArrayType(doc_id_table) + " ) RETURNING " + doc_id_table.doc_key_pgname;
+	}
+
+	/**
+	 * Return PostgreSQL DELETE commands of all tables except for document id table in order of foreign key constraint.
+	 *
+	 * @param no_pkey delete whether relations not having primary key or uniformly (false)
+	 * @return List PostgreSQL DELETE commands taking an array of document ids
+	 */
+	private List<String> getDeleteSqls(boolean no_pkey) {
+
+		return tables.stream().filter(table -> table.writable && (option.realize_simple_brdg || !table.simple_bridge) && !table.equals(doc_id_table) && (!no_pkey || !table.has_unique_primary_key) && has_db_rows.get(table.pname)).sorted(Comparator.comparingInt(table -> -table.refs)).map(table -> "DELETE FROM " + table.pgname + " WHERE " + table.doc_key_pgname + " = ANY ( ?::" + getDocKeyArrayType(table) + " )").collect(Collectors.toList());
+	}
+
+	/**
+	 * Return PostgreSQL DELETE commands of tables not written by differential update in order of foreign key constraint.
+	 *
+	 * @return List PostgreSQL DELETE commands taking an array of document ids
+	 */
+	private List<String> getDiffDeleteSqls() {
+
+		return tables.stream().filter(table -> table.writable && (option.realize_simple_brdg || !table.simple_bridge) && !table.equals(doc_id_table) && !isDiffUpdatable(table) && has_db_rows.get(table.pname)).sorted(Comparator.comparingInt(table -> -table.refs)).map(table -> "DELETE FROM " + table.pgname + " WHERE " + table.doc_key_pgname + " = ANY ( ?::" + getDocKeyArrayType(table) + " )").collect(Collectors.toList());
+	}
+
+	/**
+	 * Return PostgreSQL array type of document key.
+	 *
+	 * @param table current table
+	 * @return String PostgreSQL array type of document key
+	 */
+	private String getDocKeyArrayType(PgTable table) {
+
+		Optional<PgField> opt = table.fields.stream().filter(field -> field.pname.equals(table.doc_key_pname)).findFirst();
+
+		if (!opt.isPresent())
+			return "TEXT[]";
+
+		PgField field = opt.get();
+
+		return (field.enum_name == null ? field.getPgBaseDataType() : table.schema_pgname + field.enum_name) + "[]";
+	}
+
+	/**
+	 * Execute set-based PostgreSQL DELETE commands for documents without committing.
+	 *
+	 * @param db_conn database connection
+	 * @param doc_id_sql PostgreSQL DELETE command of document id table (null indicates no rows in document id table)
+	 * @param delete_sqls PostgreSQL DELETE commands of the other tables in order of foreign key constraint
+	 * @param doc_ids target document ids
+	 * @param sync_rescue whether to delete rows regardless of the existence of document id
+	 * @return int the number of deleted document ids
+	 * @throws SQLException the SQL exception
+	 */
+	protected static int deleteDocRows(Connection db_conn, String doc_id_sql, List<String> delete_sqls, List<String> doc_ids, boolean sync_rescue) throws SQLException {
+
+		Array ids = db_conn.createArrayOf("text", doc_ids.toArray(new String[0]));
+
+		List<String> deleted_ids = new ArrayList<String>();
+
+		if (doc_id_sql != null) {
+
+			PreparedStatement ps = db_conn.prepareStatement(doc_id_sql);
+
+			ps.setArray(1, ids);
+
+			ResultSet rset = ps.executeQuery();
+
+			while (rset.next())
+				deleted_ids.add(rset.getString(1));
+
+			rset.close();
+
+			ps.close();
+
+		}
+
+		if (!sync_rescue) {
+
+			if (deleted_ids.isEmpty())
+				return 0;
+
+			// delete rows of documents whose id existed
+
+			if (deleted_ids.size() < doc_ids.size())
+				ids = db_conn.createArrayOf("text", deleted_ids.toArray(new String[0]));
+
+		}
+
+		for (String sql : delete_sqls) {
+
+			PreparedStatement ps = db_conn.prepareStatement(sql);
+
+			ps.setArray(1, ids);
+
+			ps.executeUpdate();
+
+			ps.close();
+
+		}
+
+		return deleted_ids.size();
+	}
+
+	/**
+	 * Send all buffered data via PostgreSQL COPY command in order of foreign key constraint.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void executeCopy() throws PgSchemaException {
+
+		if (!pg_copy)
+			return;
+
+		try {
+
+			// delete current rows of updating documents, which are committed or rolled back together with their new rows
+
+			if (copy_delete_ids != null && !copy_delete_ids.isEmpty()) {
+
+				if (has_db_rows == null)
+					initHasDbRows();
+
+				deleteDocRows(db_conn, getDeleteDocIdSql(), getDeleteSqls(false), copy_delete_ids, option.sync_rescue);
+
+				copy_delete_ids.clear();
+
+			}
+
+			for (PgTable table : tables.stream().filter(table -> table.copy_buffer != null && table.copy_buffer.size() > 0).sorted(Comparator.comparingInt(table -> -table.refs)).collect(Collectors.toList())) {
+
+				if (table.buffw != null)
+					table.buffw.flush();
+
+				PGCopyOutputStream out = new PGCopyOutputStream((BaseConnection) db_conn, getCopySql(table), PgSchemaUtil.def_buffered_output_stream_buffer_size);
+
+				try {
+
+					if (option.pg_binary_copy) {
+
+						DataOutputStream bin_out = new DataOutputStream(out);
+
+						PgSchemaUtil.writePgCopyBinaryHeader(bin_out);
+
+						table.copy_buffer.writeTo(bin_out);
+
+						PgSchemaUtil.writePgCopyBinaryTrailer(bin_out);
+
+						bin_out.flush();
+
+					}
+
+					else
+						table.copy_buffer.writeTo(out);
+
+				} finally {
+					out.close();
+				}
+
+				resetCopyBuffer(table, 0);
+
+			}
+
+		} catch (SQLException | IOException e) {
+
+			rollbackXml2PgSql();
+
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Truncate buffered data of PostgreSQL COPY command.
+	 *
+	 * @param table current table
+	 * @param size size of data to be retained
+	 */
+	private void resetCopyBuffer(PgTable table, int size) {
+
+		if (size > 0 && size < table.copy_buffer.size()) {
+
+			byte[] bytes = table.copy_buffer.toByteArray();
+
+			table.copy_buffer.reset();
+			table.copy_buffer.write(bytes, 0, size);
+
+		}
+
+		else if (size == 0)
+			table.copy_buffer.reset();
+
+		table.copy_mark = table.copy_buffer.size();
+
+		// discard characters remaining in buffered writer
+
+		if (option.pg_binary_copy)
+			table.bin_out = new DataOutputStream(table.copy_buffer);
+		else
+			table.buffw = new BufferedWriter(new OutputStreamWriter(table.copy_buffer, PgSchemaUtil.def_charset));
+
+	}
+
+	/**
+	 * Return set of document ids stored in PostgreSQL.
+	 *
+	 * @param db_conn database connection
+	 * @return HashSet set of document ids stored in PostgreSQL
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public HashSet<String> getDocIdRows(Connection db_conn) throws PgSchemaException {
+
+		HashSet<String> set = new HashSet<String>();
+
+		try {
+
+			Statement stat = db_conn.createStatement();
+
+			String sql = "SELECT " + doc_id_table.doc_key_pgname + " FROM " + doc_id_table.pgname;
+
+			ResultSet rset = stat.executeQuery(sql);
+
+			while (rset.next())
+				set.add(rset.getString(1));
+
+			rset.close();
+
+			stat.close();
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+		return set;
+	}
+
+	/**
+	 * Return whether document id is stored in PostgreSQL.
+	 *
+	 * @param db_conn database connection
+	 * @param document_id document id
+	 * @return boolean whether document id is stored in PostgreSQL
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public boolean hasDocIdRow(Connection db_conn, String document_id) throws PgSchemaException {
+
+		try {
+
+			PreparedStatement ps = db_conn.prepareStatement("SELECT 1 FROM " + doc_id_table.pgname + " WHERE " + doc_id_table.doc_key_pgname + " = ANY ( ?::" + getDocKeyArrayType(doc_id_table) + " ) LIMIT 1");
+
+			ps.setArray(1, db_conn.createArrayOf("text", new String[] { document_id }));
+
+			ResultSet rset = ps.executeQuery();
+
+			boolean has_row = rset.next();
+
+			rset.close();
+
+			ps.close();
+
+			return has_row;
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Scan document ids stored in PostgreSQL via server-side cursor in ascending order and merge them into synchronization plan.
+	 *
+	 * @param db_conn database connection (auto commit must be disabled)
+	 * @param sync_plan synchronization plan
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void scanDocIdRows(Connection db_conn, PgSyncPlan sync_plan) throws PgSchemaException {
+
+		try {
+
+			Statement stat = db_conn.createStatement();
+
+			stat.setFetchSize(PgSchemaUtil.def_sync_fetch_size);
+
+			// sort in code point order, which is consistent with PgSchemaUtil.compareCodePoint()
+
+			String sql = "SELECT " + doc_id_table.doc_key_pgname + "::TEXT FROM " + doc_id_table.pgname + " ORDER BY " + doc_id_table.doc_key_pgname + "::TEXT COLLATE \"C\"";
+
+			ResultSet rset = stat.executeQuery(sql);
+
+			while (rset.next())
+				sync_plan.merge(rset.getString(1));
+
+			rset.close();
+
+			stat.close();
+
+			db_conn.commit();
+
+		} catch (SQLException | IOException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Return document key name.
+	 *
+	 * @param table current table
+	 * @return String document key name
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private String getDocKeyName(PgTable table) throws PgSchemaException {
+
+		if (option.document_key)
+			return option.document_key_name;
+
+		if (!option.in_place_document_key)
+			throw new PgSchemaException("Not defined document key, or select either --doc-key or --doc-key-if-no-inplace option.");
+
+		List<PgField> fields = table.fields;
+
+		if (fields.stream().anyMatch(field -> field.document_key))
+			return option.document_key_name;
+
+		if (!fields.stream().anyMatch(field -> (field.dtd_data_holder && option.in_place_document_key_names.contains(field.name)) || ((field.dtd_data_holder || field.simple_content) && option.in_place_document_key_names.contains(table.name + "." + field.name)))) {
+
+			if (option.document_key_if_no_in_place)
+				return option.document_key_name;
+
+			throw new PgSchemaException("Not found in-place document key in " + table.pname + ", or select --doc-key-if-no-inplace option.");
+		}
+
+		return fields.stream().filter(field -> (field.dtd_data_holder && option.in_place_document_key_names.contains(field.name)) || ((field.dtd_data_holder || field.simple_content) && option.in_place_document_key_names.contains(table.name + "." + field.name))).findFirst().get().pname;
+	}
+
+	/**
+	 * Execute PostgreSQL DELETE command for strict synchronization.
+	 *
+	 * @param db_conn database connection
+	 * @param set set of target document ids
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void deleteRows(Connection db_conn, Collection<String> set) throws PgSchemaException {
+
+		this.db_conn = db_conn;
+
+		if (set.isEmpty())
+			return;
+
+		if (has_db_rows == null)
+			initHasDbRows();
+
+		String doc_id_sql = getDeleteDocIdSql();
+
+		List<String> delete_sqls = getDeleteSqls(false);
+
+		List<String> doc_ids = new ArrayList<String>(set);
+
+		int doc_size = doc_ids.size();
+
+		// send document ids per batch in a transaction
+
+		for (int i = 0; i < doc_size; i += PgSchemaUtil.def_delete_batch_docs) {
+
+			try {
+
+				deleteDocRows(db_conn, doc_id_sql, delete_sqls, doc_ids.subList(i, Math.min(i + PgSchemaUtil.def_delete_batch_docs, doc_size)), option.sync_rescue);
+
+				db_conn.commit(); // transaction ends
+
+			} catch (SQLException e) {
+
+				e.printStackTrace();
+
+				try {
+					db_conn.rollback();
+				} catch (SQLException e2) {
+					e2.printStackTrace();
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Execute PostgreSQL DELETE command before INSERT for all tables of current document,
+	 * which is committed or rolled back together with the new rows of the document.
+	 *
+	 * @param no_pkey delete whether relations not having primary key or uniformly (false)
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void deleteBeforeUpdate(boolean no_pkey) throws PgSchemaException {
+
+		try {
+
+			if (has_db_rows == null)
+				initHasDbRows();
+
+			boolean sync_rescue = option.sync_rescue;
+
+			deleteDocRows(db_conn, getDeleteDocIdSql(), getDeleteSqls(no_pkey && !sync_rescue), Collections.singletonList(document_id), sync_rescue);
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Execute PostgreSQL DELETE command for tables not written by differential update of current document,
+	 * which is committed or rolled back together with the new rows of the document.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void deleteBeforeDiffUpdate() throws PgSchemaException {
+
+		try {
+
+			if (has_db_rows == null)
+				initHasDbRows();
+
+			List<String> delete_sqls = getDiffDeleteSqls();
+
+			// document id remains, so that rows are deleted regardless of the existence of document id
+
+			if (!delete_sqls.isEmpty())
+				deleteDocRows(db_conn, null, delete_sqls, Collections.singletonList(document_id), true);
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/** The scheduler of CREATE INDEX commands (null indicates executing CREATE INDEX command immediately). */
+	@Flat
+	private PgIndexBuilder index_builder = null;
+
+	/** The PostgreSQL schema name where existing indexes are examined. */
+	@Flat
+	private String index_schema_name = PgSchemaUtil.pg_public_schema_name;
+
+	/**
+	 * Create or drop PostgreSQL indexes after data migration, where CREATE INDEX commands are executed in parallel over given connections.
+	 *
+	 * @param db_conns database connections (the first one is used to examine existing indexes)
+	 * @param pg_option PostgreSQL option
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void buildIndex(Connection[] db_conns, PgOption pg_option) throws PgSchemaException {
+
+		Connection db_conn = db_conns[0];
+
+		// tables may have been filled since examined
+
+		has_db_rows = null;
+
+		index_schema_name = pg_option.initial_load ? PgSchemaUtil.pg_staging_schema_name : PgSchemaUtil.pg_public_schema_name;
+
+		if (db_conns.length > 1)
+			index_builder = new PgIndexBuilder();
+
+		try {
+
+			if (pg_option.create_non_uniq_pkey_index)
+				createNonUniqPKeyIndex(db_conn, pg_option);
+			else if (pg_option.drop_non_uniq_pkey_index)
+				dropNonUniqPKeyIndex(db_conn);
+
+			if (pg_option.create_doc_key_index)
+				createDocKeyIndex(db_conn, pg_option);
+			else if (pg_option.drop_doc_key_index)
+				dropDocKeyIndex(db_conn);
+
+			if (pg_option.create_attr_index)
+				createAttrIndex(db_conn, pg_option);
+			else if (pg_option.drop_attr_index)
+				dropAttrIndex(db_conn);
+
+			if (pg_option.create_elem_index)
+				createElemIndex(db_conn, pg_option);
+			else if (pg_option.drop_elem_index)
+				dropElemIndex(db_conn);
+
+			if (pg_option.create_simple_cont_index)
+				createSimpleContIndex(db_conn, pg_option);
+			else if (pg_option.drop_simple_cont_index)
+				dropSimpleContIndex(db_conn);
+
+			if (index_builder != null)
+				index_builder.build(db_conns);
+
+		} finally {
+			index_builder = null;
+		}
+
+	}
+
+	/**
+	 * Drop PostgreSQL indexes that are going to be rebuilt after data migration, so that data migration does not maintain them.
+	 *
+	 * @param db_conn database connection
+	 * @param pg_option PostgreSQL option
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void dropIndexBeforeLoad(Connection db_conn, PgOption pg_option) throws PgSchemaException {
+
+		index_schema_name = pg_option.initial_load ? PgSchemaUtil.pg_staging_schema_name : PgSchemaUtil.pg_public_schema_name;
+
+		if (pg_option.create_non_uniq_pkey_index)
+			dropNonUniqPKeyIndex(db_conn);
+
+		if (pg_option.create_doc_key_index)
+			dropDocKeyIndex(db_conn);
+
+		if (pg_option.create_attr_index)
+			dropAttrIndex(db_conn);
+
+		if (pg_option.create_elem_index)
+			dropElemIndex(db_conn);
+
+		if (pg_option.create_simple_cont_index)
+			dropSimpleContIndex(db_conn);
+
+		try {
+
+			if (!db_conn.getAutoCommit())
+				db_conn.commit();
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Execute or schedule PostgreSQL CREATE INDEX command.
+	 *
+	 * @param stat statement
+	 * @param table current table
+	 * @param sql CREATE INDEX command
+	 * @throws SQLException the SQL exception
+	 */
+	private void executeCreateIndex(Statement stat, PgTable table, String sql) throws SQLException {
+
+		if (index_builder != null) {
+
+			index_builder.add(table, sql);
+
+			return;
+		}
+
+		System.out.println(sql);
+
+		stat.execute(sql);
+
+	}
+
+	/**
+	 * Create PostgreSQL index on non-unique primary key if not exists.
+	 *
+	 * @param db_conn database connection
+	 * @param pg_option PostgreSQL option
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void createNonUniqPKeyIndex(Connection db_conn, PgOption pg_option) throws PgSchemaException {
+
+		if (!option.rel_data_ext)
+			return;
+
+		this.db_conn = db_conn;
+
+		if (has_db_rows == null)
+			initHasDbRows();
+
+		try {
+
+			Statement stat = db_conn.createStatement();
+
+			DatabaseMetaData meta = db_conn.getMetaData();
+
+			has_db_rows.entrySet().stream().filter(arg -> arg.getValue()).map(arg -> arg.getKey()).forEach(table_name -> {
+
+				PgTable table = getPgTable(option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name);
+
+				if (table.has_non_uniq_primary_key) {
+
+					String primary_key_pname = table.fields.stream().filter(field -> field.primary_key).findFirst().get().pname;
+
+					try {
+
+						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
+
+						boolean has_index = false;
+
+						String column_name;
+
+						while (rset.next()) {
+
+							column_name = rset.getString("COLUMN_NAME");
+
+							if (column_name != null && column_name.contains(primary_key_pname)) {
+
+								has_index = true;
+
+								break;
+							}
+
+						}
+
+						rset.close();
+
+						if (!has_index) {
+
+							String sql = "SELECT COUNT ( id ) FROM ( SELECT 1 AS id FROM " + table.pgname + " LIMIT " + pg_option.min_rows_for_index + " ) AS trunc";
+
+							rset = stat.executeQuery(sql);
+
+							while (rset.next()) {
+
+								if (rset.getInt(1) == pg_option.min_rows_for_index) {
+
+									sql = "CREATE INDEX IDX_" + PgSchemaUtil.avoidPgReservedOps(table_name) + "_" + PgSchemaUtil.avoidPgReservedOps(primary_key_pname) + " ON " + table.pgname + " ( " + (table.doc_key_pgname != null ? table.doc_key_pgname + ", " : "") + table.primary_key_pgname + " )";
+
+									executeCreateIndex(stat, table, sql);
 
 								}
 
@@ -6698,7 +8198,7 @@ public class PgSchema implements Serializable {
 
 					try {
 
-						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 						String index_name, column_name, sql;
 
@@ -6769,7 +8269,7 @@ public class PgSchema implements Serializable {
 
 					try {
 
-						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 						boolean has_index = false;
 
@@ -6802,9 +8302,7 @@ public class PgSchema implements Serializable {
 
 									sql = "CREATE INDEX IDX_" + PgSchemaUtil.avoidPgReservedOps(table_name) + "_" + PgSchemaUtil.avoidPgReservedOps(table.doc_key_pname) + " ON " + table.pgname + " ( " + table.doc_key_pgname + " )";
 
-									System.out.println(sql);
-
-									stat.execute(sql);
+									executeCreateIndex(stat, table, sql);
 
 								}
 
@@ -6858,7 +8356,7 @@ public class PgSchema implements Serializable {
 
 					try {
 
-						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+						ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 						String index_name, column_name, sql;
 
@@ -6937,7 +8435,7 @@ public class PgSchema implements Serializable {
 
 						try {
 
-							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 							boolean[] has_index = new boolean[attr_count];
 
@@ -6980,9 +8478,7 @@ public class PgSchema implements Serializable {
 
 											sql = "CREATE INDEX IDX_" + PgSchemaUtil.avoidPgReservedOps(table_name) + "_" + PgSchemaUtil.avoidPgReservedOps(attr_pname) + " ON " + table.pgname + " ( " + PgSchemaUtil.avoidPgReservedWords(attr_pname) + " )";
 
-											System.out.println(sql);
-
-											stat.execute(sql);
+											executeCreateIndex(stat, table, sql);
 
 										}
 
@@ -7048,7 +8544,7 @@ public class PgSchema implements Serializable {
 
 						try {
 
-							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 							String sql;
 
@@ -7129,7 +8625,7 @@ public class PgSchema implements Serializable {
 
 						try {
 
-							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 							boolean[] has_index = new boolean[elem_count];
 
@@ -7172,9 +8668,7 @@ public class PgSchema implements Serializable {
 
 											sql = "CREATE INDEX IDX_" + PgSchemaUtil.avoidPgReservedOps(table_name) + "_" + PgSchemaUtil.avoidPgReservedOps(elem_pname) + " ON " + table.pgname + " ( " + PgSchemaUtil.avoidPgReservedWords(elem_pname) + " )";
 
-											System.out.println(sql);
-
-											stat.execute(sql);
+											executeCreateIndex(stat, table, sql);
 
 										}
 
@@ -7240,7 +8734,7 @@ public class PgSchema implements Serializable {
 
 						try {
 
-							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 							String sql;
 
@@ -7318,7 +8812,7 @@ public class PgSchema implements Serializable {
 
 						try {
 
-							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 							boolean[] has_index = new boolean[simple_cont_count];
 
@@ -7361,9 +8855,7 @@ public class PgSchema implements Serializable {
 
 											sql = "CREATE INDEX IDX_" + PgSchemaUtil.avoidPgReservedOps(table_name) + "_" + PgSchemaUtil.avoidPgReservedOps(simple_cont_pname) + " ON " + table.pgname + " ( " + PgSchemaUtil.avoidPgReservedWords(simple_cont_pname) + " )";
 
-											System.out.println(sql);
-
-											stat.execute(sql);
+											executeCreateIndex(stat, table, sql);
 
 										}
 
@@ -7429,7 +8921,7 @@ public class PgSchema implements Serializable {
 
 						try {
 
-							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : PgSchemaUtil.pg_public_schema_name, table_name, false, true);
+							ResultSet rset = meta.getIndexInfo(null, option.pg_named_schema ? null : index_schema_name, table_name, false, true);
 
 							String sql;
 
@@ -27,11 +27,14 @@ import java.io.EOFException;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -41,8 +44,15 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.TimeZone;
@@ -66,6 +76,7 @@ import javax.net.ssl.X509TrustManager;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -79,6 +90,10 @@ import com.github.antlr.grammars_v4.xpath.xpathLexer;
 import com.github.antlr.grammars_v4.xpath.xpathParser;
 import com.github.antlr.grammars_v4.xpath.xpathParser.MainContext;
 
+import net.sf.xsd2pgschema.option.XmlFileFilter;
+import net.sf.xsd2pgschema.xmlutil.GzipMemberInputStream;
+import net.sf.xsd2pgschema.xmlutil.TarEntryInputStream;
+import net.sf.xsd2pgschema.xmlutil.XmlParser;
 import net.sf.xsd2pgschema.xpathparser.XPathComp;
 import net.sf.xsd2pgschema.xpathparser.XPathCompList;
 
@@ -116,6 +131,12 @@ public class PgSchemaUtil {
 	/** The default PostgreSQL schema name. */
 	public static final String pg_public_schema_name = "public";
 
+	/** The PostgreSQL schema name of staging tables in initial load mode. */
+	public static final String pg_staging_schema_name = "xsd2pgschema_staging";
+
+	/** The PostgreSQL schema name of tables retired by initial load mode. */
+	public static final String pg_retired_schema_name = "xsd2pgschema_retired";
+
 	/** The PostgreSQL null value in TSV format. */
 	public static final String pg_tsv_null = "\\N";
 
@@ -263,6 +284,39 @@ public class PgSchemaUtil {
 	/** The default JDBC fetch size. */
 	public static final int def_jdbc_fetch_size = 10;
 
+	/** The default maximum bytes of pending JDBC batch. */
+	public static final long def_jdbc_batch_bytes = 1024 * 1024 * 16;
+
+	/** The default maximum rows of pending unnest() array insert. */
+	public static final int def_unnest_batch_size = 4096;
+
+	/** The default number of document ids deleted in a transaction. */
+	public static final int def_delete_batch_docs = 1000;
+
+	/** The default fetch size of document ids while building synchronization plan. */
+	public static final int def_sync_fetch_size = 10000;
+
+	/** The prefix of temporary file of synchronization plan. */
+	public static final String def_sync_plan_prefix = "xsd2pgschema_sync_";
+
+	/** The default maximum bytes of buffered PostgreSQL COPY data. */
+	public static final int def_copy_buffer_bytes = 1024 * 1024 * 16;
+
+	/** The default size of chunk to split large CSV/TSV file in parallel PostgreSQL data migration. */
+	public static final long def_copy_chunk_bytes = 1024L * 1024 * 256;
+
+	/** The signature of PostgreSQL binary COPY format. */
+	public static final byte[] pg_copy_binary_signature = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+	/** The epoch of PostgreSQL binary date format. */
+	public static final LocalDate pg_epoch_date = LocalDate.of(2000, 1, 1);
+
+	/** The epoch of PostgreSQL binary timestamp format. */
+	public static final LocalDateTime pg_epoch_date_time = pg_epoch_date.atStartOfDay();
+
+	/** The epoch of PostgreSQL binary timestamp with time zone format. */
+	public static final OffsetDateTime pg_epoch_date_time_tz = OffsetDateTime.of(pg_epoch_date_time, ZoneOffset.UTC);
+
 	/** The default buffer size for BufferedOutputStream(). */
 	public static final int def_buffered_output_stream_buffer_size = 1024 * 128;
 
@@ -290,6 +344,9 @@ public class PgSchemaUtil {
 	/** The compiled pattern matches simple content. */
 	public static final Pattern null_simple_cont_pattern = Pattern.compile("^\\s+$", Pattern.MULTILINE);
 
+	/** The comparator of strings in code point order, which is consistent with COLLATE "C" of PostgreSQL UTF-8 database. */
+	public static final Comparator<String> code_point_order = PgSchemaUtil::compareCodePoint;
+
 	/** The UTC time zone. */
 	public static final TimeZone tz_utc = TimeZone.getTimeZone("UTC");
 
@@ -709,12 +766,25 @@ public class PgSchemaUtil {
 				if (filter.accept(null, file_name))
 					queue.add(file_path);
 
+				else if (isArchive(file_path, filter))
+					addTargetFilesInArchive(queue, file_path, filter);
+
 			}
 
 			else if (Files.isDirectory(file_path)) {
 
 				try (Stream<Path> _stream = Files.list(file_path)) {
-					queue.addAll(_stream.filter(path -> Files.isReadable(path) && filter.accept(null, path.getFileName().toString())).collect(Collectors.toSet()));
+
+					_stream.filter(path -> Files.isReadable(path)).forEach(path -> {
+
+						if (filter.accept(null, path.getFileName().toString()))
+							queue.add(path);
+
+						else if (Files.isRegularFile(path) && isArchive(path, filter))
+							addTargetFilesInArchive(queue, path, filter);
+
+					});
+
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
@@ -747,6 +817,317 @@ public class PgSchemaUtil {
 
 	}
 
+	/**
+	 * Return sorted document ids of target files, which are extracted in parallel.
+	 *
+	 * @param xml_file_queue XML file queue
+	 * @param xml_file_filter XML file filter
+	 * @return String[] sorted and distinct document ids
+	 */
+	public static String[] getSortedDocIds(LinkedBlockingQueue<Path> xml_file_queue, XmlFileFilter xml_file_filter) {
+
+		String[] doc_ids = Arrays.stream(xml_file_queue.toArray(new Path[0])).parallel().map(xml_file_path -> new XmlParser(xml_file_path, xml_file_filter).document_id).toArray(String[]::new);
+
+		Arrays.parallelSort(doc_ids, code_point_order);
+
+		// remove duplicated document ids in place
+
+		int size = 0;
+
+		for (String doc_id : doc_ids) {
+
+			if (size == 0 || !doc_id.equals(doc_ids[size - 1]))
+				doc_ids[size++] = doc_id;
+
+		}
+
+		return size == doc_ids.length ? doc_ids : Arrays.copyOf(doc_ids, size);
+	}
+
+	/**
+	 * Compare two strings in code point order, while String.compareTo() compares UTF-16 code units.
+	 *
+	 * @param str1 string
+	 * @param str2 string
+	 * @return int negative integer, zero, or positive integer as the first string is less than, equal to, or greater than the second
+	 */
+	public static int compareCodePoint(String str1, String str2) {
+
+		int len = Math.min(str1.length(), str2.length());
+
+		for (int i = 0; i < len; i++) {
+
+			char c1 = str1.charAt(i);
+			char c2 = str2.charAt(i);
+
+			if (c1 == c2)
+				continue;
+
+			// supplementary character encoded by surrogate pair follows any character of basic multilingual plane
+
+			boolean s1 = Character.isSurrogate(c1);
+
+			if (s1 != Character.isSurrogate(c2))
+				return s1 ? 1 : -1;
+
+			return c1 - c2;
+		}
+
+		return str1.length() - str2.length();
+	}
+
+	/**
+	 * Return whether file path indicates archive holding multiple target files (zip, jar, tar, tar.gz, tgz or concatenated gzip).
+	 * Gzip file accepted by file name filter (e.g. xml.gz with --xml-file-ext gz) is a target file rather than archive.
+	 *
+	 * @param file_path file path
+	 * @param filter file name filter
+	 * @return boolean whether file path indicates archive
+	 */
+	private static boolean isArchive(Path file_path, FilenameFilter filter) {
+
+		String file_name = file_path.getFileName().toString();
+
+		return (file_name.endsWith(".zip") || file_name.endsWith(".jar") || file_name.endsWith(".tar") || file_name.endsWith(".tgz") || file_name.endsWith(".gz")) && !filter.accept(null, file_name);
+	}
+
+	/** The zip file systems holding target files, which are closed by closeArchives(). */
+	private static List<FileSystem> archive_fss = new ArrayList<FileSystem>();
+
+	/** The temporary directories holding entries spooled from tar archive or concatenated gzip file, which are deleted by closeArchives(). */
+	private static List<Path> archive_dirs = new ArrayList<Path>();
+
+	/**
+	 * Add target files in archive.
+	 * Entries sharing file name in different directories of the archive would share document id, so that only the first one is added.
+	 *
+	 * @param queue blocking queue of target file path
+	 * @param archive_path file path of archive
+	 * @param filter file name filter
+	 */
+	private static void addTargetFilesInArchive(LinkedBlockingQueue<Path> queue, Path archive_path, FilenameFilter filter) {
+
+		String archive_name = archive_path.getFileName().toString();
+
+		if (archive_name.endsWith(".zip") || archive_name.endsWith(".jar"))
+			addTargetFilesInZip(queue, archive_path, filter);
+		else
+			addTargetFilesInStream(queue, archive_path, filter);
+
+	}
+
+	/**
+	 * Add target files in zip archive, which are read via zip file system without extraction.
+	 *
+	 * @param queue blocking queue of target file path
+	 * @param archive_path file path of zip archive
+	 * @param filter file name filter
+	 */
+	private static void addTargetFilesInZip(LinkedBlockingQueue<Path> queue, Path archive_path, FilenameFilter filter) {
+
+		try {
+
+			// zip file system is kept open while target files are processed
+
+			FileSystem archive_fs = FileSystems.newFileSystem(archive_path, (ClassLoader) null);
+
+			synchronized (archive_fss) {
+				archive_fss.add(archive_fs);
+			}
+
+			HashMap<String, Path> entry_paths = new HashMap<String, Path>();
+
+			for (Path root_path : archive_fs.getRootDirectories()) {
+
+				try (Stream<Path> stream = Files.walk(root_path)) {
+
+					stream.filter(path -> Files.isRegularFile(path) && filter.accept(null, path.getFileName().toString())).forEach(path -> {
+
+						Path _path = entry_paths.putIfAbsent(path.getFileName().toString(), path);
+
+						if (_path == null)
+							queue.add(path);
+						else
+							System.err.println("Skipped entry sharing document id with " + _path.toString() + " in " + archive_path.toAbsolutePath().toString() + ": " + path.toString());
+
+					});
+
+				}
+
+			}
+
+			entry_paths.clear();
+
+		} catch (IOException e) {
+			System.err.println("Not readable archive: " + archive_path.toAbsolutePath().toString());
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * Add target files in tar archive (tar, tar.gz or tgz) or concatenated gzip file, which are read through in a single pass.
+	 * Since entries of a stream are not randomly accessible, target entries are spooled to a temporary directory.
+	 * Each member of concatenated gzip file is named after its original file name in gzip header, or after the gzip file without .gz suffix.
+	 *
+	 * @param queue blocking queue of target file path
+	 * @param archive_path file path of tar archive or concatenated gzip file
+	 * @param filter file name filter
+	 */
+	private static void addTargetFilesInStream(LinkedBlockingQueue<Path> queue, Path archive_path, FilenameFilter filter) {
+
+		String archive_name = archive_path.getFileName().toString();
+
+		boolean tar = archive_name.endsWith(".tar") || archive_name.endsWith(".tar.gz") || archive_name.endsWith(".tgz");
+
+		HashMap<String, String> entry_names = new HashMap<String, String>();
+
+		Path archive_dir = null;
+
+		try (InputStream in = Files.newInputStream(archive_path)) {
+
+			if (tar) {
+
+				try (TarEntryInputStream tar_in = new TarEntryInputStream(archive_name.endsWith(".tar") ? in : new GZIPInputStream(in))) {
+
+					String entry_name;
+
+					while ((entry_name = tar_in.getNextEntry()) != null)
+						archive_dir = spoolArchiveEntry(queue, archive_path, archive_dir, entry_name, tar_in, filter, entry_names);
+
+				}
+
+			}
+
+			else {
+
+				String def_name = archive_name.substring(0, archive_name.length() - 3);
+
+				try (GzipMemberInputStream gz_in = new GzipMemberInputStream(in)) {
+
+					while (gz_in.nextMember()) {
+
+						String member_name = gz_in.getMemberName();
+
+						archive_dir = spoolArchiveEntry(queue, archive_path, archive_dir, member_name != null ? member_name : def_name, gz_in, filter, entry_names);
+
+					}
+
+				}
+
+			}
+
+		} catch (IOException e) {
+			System.err.println("Not readable archive: " + archive_path.toAbsolutePath().toString());
+			e.printStackTrace();
+		} finally {
+			entry_names.clear();
+		}
+
+	}
+
+	/**
+	 * Spool entry of archive to temporary directory if it is a target file.
+	 *
+	 * @param queue blocking queue of target file path
+	 * @param archive_path file path of archive
+	 * @param archive_dir temporary directory of the archive (null indicates not created yet)
+	 * @param entry_name path name of entry
+	 * @param in input stream positioned at the entry
+	 * @param filter file name filter
+	 * @param entry_names map of spooled file name and path name of entry
+	 * @return Path temporary directory of the archive
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static Path spoolArchiveEntry(LinkedBlockingQueue<Path> queue, Path archive_path, Path archive_dir, String entry_name, InputStream in, FilenameFilter filter, HashMap<String, String> entry_names) throws IOException {
+
+		String file_name = entry_name.substring(entry_name.lastIndexOf('/') + 1);
+
+		if (file_name.isEmpty() || !filter.accept(null, file_name))
+			return archive_dir;
+
+		String _entry_name = entry_names.putIfAbsent(file_name, entry_name);
+
+		if (_entry_name != null) {
+			System.err.println("Skipped entry sharing document id with " + _entry_name + " in " + archive_path.toAbsolutePath().toString() + ": " + entry_name);
+			return archive_dir;
+		}
+
+		if (archive_dir == null) {
+
+			archive_dir = Files.createTempDirectory("xsd2pgschema-archive-");
+
+			synchronized (archive_dirs) {
+				archive_dirs.add(archive_dir);
+			}
+
+		}
+
+		Path path = archive_dir.resolve(file_name);
+
+		Files.copy(in, path);
+
+		queue.add(path);
+
+		return archive_dir;
+	}
+
+	/**
+	 * Close zip file systems and delete temporary directories holding target files after the run.
+	 */
+	public static void closeArchives() {
+
+		synchronized (archive_fss) {
+
+			archive_fss.forEach(archive_fs -> {
+
+				try {
+					archive_fs.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+
+			});
+
+			archive_fss.clear();
+
+		}
+
+		synchronized (archive_dirs) {
+
+			archive_dirs.forEach(archive_dir -> {
+
+				try {
+					FileUtils.deleteDirectory(archive_dir.toFile());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+
+			});
+
+			archive_dirs.clear();
+
+		}
+
+	}
+
+	/**
+	 * Return whether file path indicates entry of archive.
+	 *
+	 * @param file_path file path
+	 * @return boolean whether file path indicates entry of archive
+	 */
+	public static boolean isArchiveEntry(Path file_path) {
+
+		if (!file_path.getFileSystem().equals(FileSystems.getDefault()))
+			return true;
+
+		synchronized (archive_dirs) {
+			return archive_dirs.stream().anyMatch(archive_dir -> file_path.startsWith(archive_dir));
+		}
+
+	}
+
 	/**
 	 * Return unqualified name.
 	 *
@@ -933,6 +1314,103 @@ public class PgSchemaUtil {
 		return tab_pattern.matcher(lf_pattern.matcher(bs_pattern.matcher(text).replaceAll("\\\\\\\\")).replaceAll("\\\\n")).replaceAll("\\\\t");
 	}
 
+	/**
+	 * Write header of PostgreSQL binary COPY format.
+	 *
+	 * @param out data output stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void writePgCopyBinaryHeader(DataOutputStream out) throws IOException {
+
+		out.write(pg_copy_binary_signature);
+		out.writeInt(0); // flags field
+		out.writeInt(0); // header extension area length
+
+	}
+
+	/**
+	 * Write trailer of PostgreSQL binary COPY format.
+	 *
+	 * @param out data output stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void writePgCopyBinaryTrailer(DataOutputStream out) throws IOException {
+
+		out.writeShort(-1);
+
+	}
+
+	/**
+	 * Write numeric value in PostgreSQL binary format (length word included).
+	 *
+	 * @param out data output stream
+	 * @param value numeric value
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void writePgNumeric(DataOutputStream out, BigDecimal value) throws IOException {
+
+		int dscale = Math.max(value.scale(), 0);
+
+		String digits = value.abs().setScale(dscale).unscaledValue().toString();
+
+		int int_len = digits.length() - dscale;
+
+		// align integer part and fraction part to base 10000 digits
+
+		StringBuilder sb = new StringBuilder();
+
+		if (int_len > 0) {
+
+			for (int i = 0; i < (4 - int_len % 4) % 4; i++)
+				sb.append('0');
+
+			sb.append(digits.substring(0, int_len));
+
+		}
+
+		int weight = sb.length() / 4 - 1;
+
+		for (int i = int_len; i < 0; i++)
+			sb.append('0');
+
+		sb.append(digits.substring(Math.max(int_len, 0)));
+
+		while (sb.length() % 4 != 0)
+			sb.append('0');
+
+		short[] groups = new short[sb.length() / 4];
+
+		for (int i = 0; i < groups.length; i++)
+			groups[i] = Short.parseShort(sb.substring(i * 4, i * 4 + 4));
+
+		sb.setLength(0);
+
+		int first = 0, last = groups.length;
+
+		while (first < last && groups[first] == 0) {
+			first++;
+			weight--;
+		}
+
+		while (last > first && groups[last - 1] == 0)
+			last--;
+
+		int ndigits = last - first;
+
+		if (ndigits == 0)
+			weight = 0;
+
+		out.writeInt(8 + ndigits * 2);
+		out.writeShort(ndigits);
+		out.writeShort(weight);
+		out.writeShort(ndigits > 0 && value.signum() < 0 ? 0x4000 : 0x0000);
+		out.writeShort(dscale);
+
+		for (int i = first; i < last; i++)
+			out.writeShort(groups[i]);
+
+	}
+
 	/**
 	 * Extract one-liner annotation from xs:annotation/xs:appinfo|xs:documentation.
 	 *
@@ -0,0 +1,292 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Initial load of PostgreSQL via UNLOGGED staging tables, which are swapped in place of current tables afterward.
+ *
+ * @author yokochi
+ */
+public class PgStagingLoader {
+
+	/** The database connection. */
+	private Connection db_conn;
+
+	/** The staging schema name. */
+	private String staging_schema = PgSchemaUtil.pg_staging_schema_name;
+
+	/** The retired schema name. */
+	private String retired_schema = PgSchemaUtil.pg_retired_schema_name;
+
+	/** The public schema name. */
+	private String public_schema = PgSchemaUtil.pg_public_schema_name;
+
+	/** The names of tables to be loaded. */
+	private List<String> table_names;
+
+	/**
+	 * Instance of PgStagingLoader.
+	 *
+	 * @param db_conn database connection dedicated to staging tables
+	 * @param schema PostgreSQL data model
+	 */
+	public PgStagingLoader(Connection db_conn, PgSchema schema) {
+
+		this.db_conn = db_conn;
+
+		table_names = schema.getTableList().stream().filter(table -> table.writable && (schema.option.realize_simple_brdg || !table.simple_bridge)).map(table -> table.pname).collect(Collectors.toList());
+
+	}
+
+	/**
+	 * Create UNLOGGED staging tables without primary key, unique and foreign key constraints, which mirror tables in public schema.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void create() throws PgSchemaException {
+
+		try {
+
+			db_conn.setAutoCommit(false);
+
+			Statement stat = db_conn.createStatement();
+
+			checkDependentViews(stat);
+
+			stat.execute("DROP SCHEMA IF EXISTS " + staging_schema + " CASCADE");
+			stat.execute("CREATE SCHEMA " + staging_schema);
+
+			String sql;
+
+			for (String table_name : table_names) {
+
+				sql = "CREATE UNLOGGED TABLE " + getTableName(staging_schema, table_name) + " ( LIKE " + getTableName(public_schema, table_name) + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS )";
+
+				System.out.println(sql);
+
+				stat.execute(sql);
+
+			}
+
+			stat.close();
+
+			db_conn.commit();
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Set staging tables LOGGED, add constraints and indexes of current tables, then swap them in place of current tables in a transaction.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void swap() throws PgSchemaException {
+
+		try {
+
+			db_conn.setAutoCommit(true);
+
+			Statement stat = db_conn.createStatement();
+
+			checkDependentViews(stat);
+
+			String sql;
+
+			for (String table_name : table_names) {
+
+				sql = "ALTER TABLE " + getTableName(staging_schema, table_name) + " SET LOGGED";
+
+				System.out.println(sql);
+
+				stat.execute(sql);
+
+			}
+
+			// definitions are fully qualified with empty search path
+
+			stat.execute("SET search_path TO pg_catalog");
+
+			// primary key and unique constraints precede foreign key constraints
+
+			List<String> sqls = new ArrayList<String>();
+			List<String> validate_sqls = new ArrayList<String>();
+
+			ResultSet rset = stat.executeQuery("SELECT cl.relname, co.conname, co.contype, pg_get_constraintdef(co.oid) FROM pg_constraint co JOIN pg_class cl ON cl.oid = co.conrelid JOIN pg_namespace ns ON ns.oid = cl.relnamespace WHERE ns.nspname = '" + public_schema + "' AND co.contype IN ( 'p', 'u', 'f' ) ORDER BY co.contype DESC");
+
+			String table_name, constraint_name, def;
+
+			while (rset.next()) {
+
+				table_name = rset.getString(1);
+
+				if (!table_names.contains(table_name))
+					continue;
+
+				constraint_name = PgSchemaUtil.avoidPgReservedWords(rset.getString(2));
+				def = rset.getString(4);
+
+				if (rset.getString(3).equals("f")) {
+
+					def = def.replace(" REFERENCES " + public_schema + ".", " REFERENCES " + staging_schema + ".").replace(" NOT VALID", "") + " NOT VALID";
+
+					validate_sqls.add("ALTER TABLE " + getTableName(staging_schema, table_name) + " VALIDATE CONSTRAINT " + constraint_name);
+
+				}
+
+				sqls.add("ALTER TABLE " + getTableName(staging_schema, table_name) + " ADD CONSTRAINT " + constraint_name + " " + def);
+
+			}
+
+			rset.close();
+
+			// indexes of current tables, which are neither backing constraints nor created in staging tables
+
+			HashSet<String> staging_indexes = new HashSet<String>();
+
+			rset = stat.executeQuery("SELECT indexname FROM pg_indexes WHERE schemaname = '" + staging_schema + "'");
+
+			while (rset.next())
+				staging_indexes.add(rset.getString(1));
+
+			rset.close();
+
+			rset = stat.executeQuery("SELECT i.tablename, i.indexname, i.indexdef FROM pg_indexes i WHERE i.schemaname = '" + public_schema + "' AND NOT EXISTS ( SELECT 1 FROM pg_constraint co WHERE co.conindid = ( quote_ident(i.schemaname) || '.' || quote_ident(i.indexname) )::regclass )");
+
+			while (rset.next()) {
+
+				if (!table_names.contains(rset.getString(1)) || staging_indexes.contains(rset.getString(2)))
+					continue;
+
+				sqls.add(rset.getString(3).replace(" ON " + public_schema + ".", " ON " + staging_schema + "."));
+
+			}
+
+			rset.close();
+
+			sqls.addAll(validate_sqls);
+
+			for (String _sql : sqls) {
+
+				System.out.println(_sql);
+
+				stat.execute(_sql);
+
+			}
+
+			// swap tables in a transaction
+
+			db_conn.setAutoCommit(false);
+
+			stat.execute("DROP SCHEMA IF EXISTS " + retired_schema + " CASCADE");
+			stat.execute("CREATE SCHEMA " + retired_schema);
+
+			for (String _table_name : table_names) {
+
+				stat.execute("ALTER TABLE " + getTableName(public_schema, _table_name) + " SET SCHEMA " + retired_schema);
+				stat.execute("ALTER TABLE " + getTableName(staging_schema, _table_name) + " SET SCHEMA " + public_schema);
+
+			}
+
+			stat.execute("DROP SCHEMA " + staging_schema);
+
+			db_conn.commit();
+
+			stat.close();
+
+			System.out.println("Swapped " + table_names.size() + " staging tables in place of current tables, which are retired to schema " + retired_schema + ".");
+
+		} catch (SQLException e) {
+
+			try {
+				db_conn.rollback();
+			} catch (SQLException e2) {
+				e2.printStackTrace();
+			}
+
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Refuse staging tables if any view depends on current tables, since ALTER TABLE SET SCHEMA leaves the view bound to the retired table.
+	 *
+	 * @param stat statement
+	 * @throws SQLException the SQL exception
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void checkDependentViews(Statement stat) throws SQLException, PgSchemaException {
+
+		if (table_names.isEmpty())
+			return;
+
+		String in_table_names = table_names.stream().map(table_name -> "'" + table_name.replace("'", "''") + "'").collect(Collectors.joining(", "));
+
+		ResultSet rset = stat.executeQuery("SELECT DISTINCT vn.nspname, v.relname, t.relname FROM pg_depend d JOIN pg_rewrite r ON r.oid = d.objid JOIN pg_class v ON v.oid = r.ev_class JOIN pg_namespace vn ON vn.oid = v.relnamespace JOIN pg_class t ON t.oid = d.refobjid JOIN pg_namespace tn ON tn.oid = t.relnamespace WHERE d.classid = 'pg_rewrite'::regclass AND d.refclassid = 'pg_class'::regclass AND v.oid <> t.oid AND tn.nspname = '" + public_schema + "' AND t.relname IN ( " + in_table_names + " ) ORDER BY 1, 2, 3");
+
+		List<String> views = new ArrayList<String>();
+
+		while (rset.next())
+			views.add(rset.getString(1) + "." + rset.getString(2) + " on " + rset.getString(3));
+
+		rset.close();
+
+		if (!views.isEmpty())
+			throw new PgSchemaException("Initial load via staging tables is not available because the following views depend on current tables, which would remain bound to the retired tables: " + String.join(", ", views) + ".");
+
+	}
+
+	/**
+	 * Close database connection.
+	 */
+	public void close() {
+
+		try {
+			db_conn.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * Return qualified table name.
+	 *
+	 * @param schema_name schema name
+	 * @param table_name table name
+	 * @return String qualified table name
+	 */
+	private String getTableName(String schema_name, String table_name) {
+		return schema_name + "." + PgSchemaUtil.avoidPgReservedWords(table_name);
+	}
+
+}
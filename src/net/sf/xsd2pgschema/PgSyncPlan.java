@@ -0,0 +1,346 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import net.sf.xsd2pgschema.option.XmlFileFilter;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
+
+/**
+ * Synchronization plan shared by all threads, which merge-joins sorted document ids of XML files with those stored in PostgreSQL.
+ *
+ * @author yokochi
+ */
+public class PgSyncPlan {
+
+	/** The sorted document ids of XML files (available while building the plan). */
+	private String[] file_doc_ids = null;
+
+	/** The current position of the sorted document ids of XML files. */
+	private int file_pos = 0;
+
+	/** The sorted hash keys of updating document ids. */
+	private long[] update_keys = new long[PgSchemaUtil.def_sync_fetch_size];
+
+	/** The number of updating document ids. */
+	private int update_size = 0;
+
+	/** The positions of the sorted document ids of XML files matched with stored ones. */
+	private BitSet matched_pos = null;
+
+	/** The document ids whose hash key collides with that of updating document, although they are not stored in PostgreSQL. */
+	private HashSet<String> collided_doc_ids = new HashSet<String>();
+
+	/** The temporary file of deleting document ids. */
+	private Path delete_path = null;
+
+	/** The buffered writer of deleting document ids. */
+	private BufferedWriter delete_writer = null;
+
+	/** The number of inserting documents. */
+	public int inserts = 0;
+
+	/** The number of updating documents. */
+	public int updates = 0;
+
+	/** The number of deleting documents. */
+	public int deletes = 0;
+
+	/** Whether the plan has been built. */
+	private boolean built = false;
+
+	/** Whether XML files are not known in advance. */
+	private boolean unknown_files = false;
+
+	/** The deleted document ids listed in change manifest, which restrict deletion to them. */
+	private Set<String> manifest_del_doc_ids = null;
+
+	/**
+	 * Declare that XML files are not known in advance (e.g. XML documents split on the fly),
+	 * so that hash keys of all stored documents are held, which are verified exactly in PostgreSQL, and no document is deleted.
+	 */
+	public void setUnknownFiles() {
+
+		unknown_files = true;
+
+	}
+
+	/**
+	 * Declare that XML files are restricted to documents added or modified in change manifest,
+	 * so that only documents listed as deleted in the manifest are deleted.
+	 *
+	 * @param sync_manifest change manifest
+	 */
+	public void setChangeManifest(XmlChangeManifest sync_manifest) {
+
+		manifest_del_doc_ids = sync_manifest.getDeletedDocIds();
+
+	}
+
+	/**
+	 * Build synchronization plan and delete rows of documents whose XML file does not exist, unless the plan has been built by another thread.
+	 *
+	 * @param schema PostgreSQL data model
+	 * @param db_conn database connection
+	 * @param xml_file_queue XML file queue
+	 * @param xml_file_filter XML file filter
+	 * @param sync whether to delete rows of documents whose XML file does not exist
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public synchronized void build(PgSchema schema, Connection db_conn, LinkedBlockingQueue<Path> xml_file_queue, XmlFileFilter xml_file_filter, boolean sync) throws PgSchemaException {
+
+		if (built)
+			return;
+
+		if (unknown_files) {
+
+			sync = false;
+
+			System.out.println("Documents being split on the fly are not known in advance, so that no stored document is deleted.");
+
+		}
+
+		// document ids of XML files are extracted and sorted in parallel, while the other threads wait for the plan
+
+		file_doc_ids = unknown_files ? new String[0] : PgSchemaUtil.getSortedDocIds(xml_file_queue, xml_file_filter);
+
+		matched_pos = new BitSet(file_doc_ids.length);
+
+		try {
+
+			if (sync) {
+
+				delete_path = Files.createTempFile(PgSchemaUtil.def_sync_plan_prefix, ".txt");
+
+				delete_writer = Files.newBufferedWriter(delete_path);
+
+			}
+
+			schema.scanDocIdRows(db_conn, this);
+
+			inserts += file_doc_ids.length - file_pos;
+
+			update_keys = Arrays.copyOf(update_keys, update_size);
+
+			Arrays.sort(update_keys);
+
+			// register inserting documents whose hash key collides with that of updating one, so that isUpdate() returns exact answer
+
+			for (int pos = matched_pos.nextClearBit(0); pos < file_doc_ids.length; pos = matched_pos.nextClearBit(pos + 1)) {
+
+				if (Arrays.binarySearch(update_keys, getHashKey(file_doc_ids[pos])) >= 0)
+					collided_doc_ids.add(file_doc_ids[pos]);
+
+			}
+
+			file_doc_ids = null;
+
+			matched_pos = null;
+
+			if (sync) {
+
+				delete_writer.close();
+
+				delete_writer = null;
+
+				deleteRows(schema, db_conn);
+
+			}
+
+		} catch (IOException e) {
+			throw new PgSchemaException(e);
+		} finally {
+
+			if (delete_path != null) {
+
+				try {
+					Files.deleteIfExists(delete_path);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+
+				delete_path = null;
+
+			}
+
+		}
+
+		built = true;
+
+	}
+
+	/**
+	 * Merge a document id stored in PostgreSQL, which must be given in ascending order.
+	 *
+	 * @param db_doc_id document id stored in PostgreSQL
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	protected void merge(String db_doc_id) throws IOException {
+
+		if (unknown_files) {
+
+			if (update_size == update_keys.length)
+				update_keys = Arrays.copyOf(update_keys, update_size * 2);
+
+			update_keys[update_size++] = getHashKey(db_doc_id);
+
+			updates++;
+
+			return;
+		}
+
+		while (file_pos < file_doc_ids.length && PgSchemaUtil.compareCodePoint(file_doc_ids[file_pos], db_doc_id) < 0) {
+
+			file_pos++;
+			inserts++;
+
+		}
+
+		if (file_pos < file_doc_ids.length && file_doc_ids[file_pos].equals(db_doc_id)) {
+
+			if (update_size == update_keys.length)
+				update_keys = Arrays.copyOf(update_keys, update_size * 2);
+
+			update_keys[update_size++] = getHashKey(db_doc_id);
+
+			matched_pos.set(file_pos);
+
+			file_pos++;
+			updates++;
+
+		}
+
+		else if (delete_writer != null && (manifest_del_doc_ids == null || manifest_del_doc_ids.contains(db_doc_id))) {
+
+			delete_writer.write(db_doc_id);
+			delete_writer.newLine();
+
+			deletes++;
+
+		}
+
+	}
+
+	/**
+	 * Delete rows of documents listed in the temporary file per batch.
+	 *
+	 * @param schema PostgreSQL data model
+	 * @param db_conn database connection
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void deleteRows(PgSchema schema, Connection db_conn) throws IOException, PgSchemaException {
+
+		List<String> doc_ids = new ArrayList<String>();
+
+		try (BufferedReader reader = Files.newBufferedReader(delete_path)) {
+
+			String doc_id;
+
+			while ((doc_id = reader.readLine()) != null) {
+
+				doc_ids.add(doc_id);
+
+				if (doc_ids.size() == PgSchemaUtil.def_delete_batch_docs) {
+
+					schema.deleteRows(db_conn, doc_ids);
+
+					doc_ids.clear();
+
+				}
+
+			}
+
+		}
+
+		if (!doc_ids.isEmpty())
+			schema.deleteRows(db_conn, doc_ids);
+
+	}
+
+	/**
+	 * Return whether document is stored in PostgreSQL.
+	 * Hash collision is resolved exactly, since a false positive makes weak synchronization skip a new document.
+	 *
+	 * @param schema PostgreSQL data model
+	 * @param db_conn database connection
+	 * @param document_id document id
+	 * @return boolean whether document is stored in PostgreSQL
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public boolean isUpdate(PgSchema schema, Connection db_conn, String document_id) throws PgSchemaException {
+
+		if (Arrays.binarySearch(update_keys, getHashKey(document_id)) < 0)
+			return false;
+
+		// collision with document not known in advance is resolved in PostgreSQL
+
+		if (unknown_files)
+			return schema.hasDocIdRow(db_conn, document_id);
+
+		return !collided_doc_ids.contains(document_id);
+	}
+
+	/**
+	 * Show statistics of synchronization plan.
+	 */
+	public void showStatistics() {
+
+		if (!built)
+			return;
+
+		System.out.println("Synchronization plan: " + inserts + " documents to insert, " + updates + " documents to update, " + deletes + " documents deleted.");
+
+	}
+
+	/**
+	 * Return 64 bits FNV-1a hash key of document id.
+	 *
+	 * @param document_id document id
+	 * @return long hash key
+	 */
+	private long getHashKey(String document_id) {
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < document_id.length(); i++) {
+
+			hash ^= document_id.charAt(i);
+			hash *= 0x100000001b3L;
+
+		}
+
+		return hash;
+	}
+
+}
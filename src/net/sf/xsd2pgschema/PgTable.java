@@ -20,6 +20,8 @@ limitations under the License.
 package net.sf.xsd2pgschema;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.Serializable;
 import java.nio.file.Path;
 import java.sql.PreparedStatement;
@@ -98,6 +100,9 @@ public class PgTable implements Serializable {
 	/** The number of references. */
 	public int refs = 0;
 
+	/** The canonical names of parent tables referred via xs:keyref, which is retained for parallel data migration. */
+	protected List<String> keyref_parent_xnames = null;
+
 	/** The total number of nested key. */
 	public int total_nested_fields = 0;
 
@@ -269,6 +274,18 @@ public class PgTable implements Serializable {
 	@Flat
 	public BufferedWriter buffw = null;
 
+	/** The current data output stream for binary COPY format (internal use only). */
+	@Flat
+	public DataOutputStream bin_out = null;
+
+	/** The buffer of PostgreSQL COPY data (internal use only). */
+	@Flat
+	public ByteArrayOutputStream copy_buffer = null;
+
+	/** The size of PostgreSQL COPY data at the beginning of current document (internal use only). */
+	@Flat
+	public int copy_mark = 0;
+
 	/** The embedded document id in the primary prepared statement (internal use only). */
 	@Flat
 	public String ps_doc_id = "";
@@ -281,6 +298,14 @@ public class PgTable implements Serializable {
 	@Flat
 	public PreparedStatement ps2 = null;
 
+	/** The pending rows of unnest() array insert bound to the primary prepared statement (internal use only). */
+	@Flat
+	public List<String[]> unnest_rows = null;
+
+	/** The pending rows of unnest() array upsert bound to the secondary prepared statement (internal use only). */
+	@Flat
+	public List<String[]> unnest_upsert_rows = null;
+
 	/**
 	 * Instance of PostgreSQL table.
 	 *
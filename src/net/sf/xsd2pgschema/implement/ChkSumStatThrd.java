@@ -24,9 +24,10 @@ import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.concurrent.LinkedBlockingQueue;
 
+import org.apache.commons.codec.binary.Hex;
+
 import net.sf.xsd2pgschema.option.PgSchemaOption;
 import net.sf.xsd2pgschema.option.XmlFileFilter;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
@@ -47,14 +48,14 @@ public class ChkSumStatThrd implements Runnable {
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
-	/** The set of new document id while synchronization. */
-	private HashSet<String> sync_new_doc_rows;
+	/** The set of new document id while synchronization (key=document id, value=check sum). */
+	private HashMap<String, String> sync_new_doc_rows;
 
-	/** The set of updating document id while synchronization. */
-	private HashSet<String> sync_up_doc_rows;
+	/** The set of updating document id while synchronization (key=document id, value=check sum). */
+	private HashMap<String, String> sync_up_doc_rows;
 
-	/** The set of deleting document id while synchronization (key=document id, value=check sum file path). */
-	private HashMap<String, Path> sync_del_doc_rows;
+	/** The set of deleting document id while synchronization (key=document id, value=XML file name in check sum store). */
+	private HashMap<String, String> sync_del_doc_rows;
 
 	/** The instance of message digest for check sum. */
 	private MessageDigest md_chk_sum;
@@ -70,7 +71,7 @@ public class ChkSumStatThrd implements Runnable {
 	 * @param option PostgreSQL data model option
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 */
-	public ChkSumStatThrd(final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, HashSet<String> sync_new_doc_rows, HashSet<String> sync_up_doc_rows, HashMap<String, Path> sync_del_doc_rows, PgSchemaOption option) throws NoSuchAlgorithmException {
+	public ChkSumStatThrd(final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, HashMap<String, String> sync_new_doc_rows, HashMap<String, String> sync_up_doc_rows, HashMap<String, String> sync_del_doc_rows, PgSchemaOption option) throws NoSuchAlgorithmException {
 
 		this.xml_file_filter = xml_file_filter;
 		this.xml_file_queue = xml_file_queue;
@@ -91,9 +92,9 @@ public class ChkSumStatThrd implements Runnable {
 	@Override
 	public void run() {
 
-		Path xml_file_path, has_path;
+		Path xml_file_path;
 		XmlParser xml_parser;
-		String document_id;
+		String document_id, has_path;
 
 		while ((xml_file_path = xml_file_queue.poll()) != null) {
 
@@ -117,27 +118,25 @@ public class ChkSumStatThrd implements Runnable {
 				}
 
 				synchronized (sync_up_doc_rows) {
-					sync_up_doc_rows.add(document_id);
+					sync_up_doc_rows.put(document_id, getCheckSum(xml_parser));
 				}
 
 			}
 
 			else {
 
-				if (!option.sync_dry_run) {
-
-					try {
+				// check sum is calculated even in dry-run, which is not recorded in check sum store
 
-						xml_parser.identify(option, md_chk_sum);
+				try {
 
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
+					xml_parser.identify(option, md_chk_sum);
 
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 
 				synchronized (sync_new_doc_rows) {
-					sync_new_doc_rows.add(document_id);
+					sync_new_doc_rows.put(document_id, getCheckSum(xml_parser));
 				}
 
 			}
@@ -146,4 +145,14 @@ public class ChkSumStatThrd implements Runnable {
 
 	}
 
+	/**
+	 * Return check sum of XML file calculated by identification.
+	 *
+	 * @param xml_parser XML parser
+	 * @return String check sum in hexadecimal (empty if not calculated)
+	 */
+	private String getCheckSum(XmlParser xml_parser) {
+		return xml_parser.check_sum != null ? Hex.encodeHexString(xml_parser.check_sum) : "";
+	}
+
 }
@@ -0,0 +1,121 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.implement;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import net.sf.xsd2pgschema.PgCopyBatch;
+import net.sf.xsd2pgschema.PgSchemaException;
+import net.sf.xsd2pgschema.PgSchemaUtil;
+import net.sf.xsd2pgschema.option.PgOption;
+import net.sf.xsd2pgschema.option.PipelineOption;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
+
+/**
+ * Thread function for writer stage of xml2pgsql.
+ *
+ * @author yokochi
+ */
+public class PgCopyWriterThrd implements Runnable {
+
+	/** The queue of row batches. */
+	private PipelineQueue<PgCopyBatch> copy_batch_queue;
+
+	/** The database connection. */
+	private Connection db_conn;
+
+	/** The change manifest being applied (null indicates no change manifest). */
+	private XmlChangeManifest sync_manifest;
+
+	/**
+	 * Instance of PgCopyWriterThrd.
+	 *
+	 * @param copy_batch_queue queue of row batches
+	 * @param sync_manifest change manifest being applied (null indicates no change manifest)
+	 * @param pg_option PostgreSQL option
+	 * @throws SQLException the SQL exception
+	 */
+	public PgCopyWriterThrd(final PipelineQueue<PgCopyBatch> copy_batch_queue, final XmlChangeManifest sync_manifest, final PgOption pg_option) throws SQLException {
+
+		this.copy_batch_queue = copy_batch_queue;
+		this.sync_manifest = sync_manifest;
+
+		db_conn = DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass);
+
+		db_conn.setAutoCommit(false);
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+
+		PgCopyBatch copy_batch;
+
+		try {
+
+			while ((copy_batch = copy_batch_queue.take()) != null) {
+
+				try {
+
+					copy_batch.write(db_conn);
+
+				} catch (PgSchemaException e) {
+					System.err.println("Exception occurred while writing XML documents: " + String.join(", ", copy_batch.document_ids));
+					e.printStackTrace();
+
+					if (sync_manifest != null)
+						sync_manifest.addFailure();
+				}
+
+			}
+
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+
+			try {
+				db_conn.close();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+
+			copy_batch_queue.done();
+
+		}
+
+	}
+
+	/**
+	 * Return queue of row batches if writer stage is enabled.
+	 *
+	 * @param pipe_option pipeline option
+	 * @param producers number of parser threads
+	 * @return PipelineQueue queue of row batches (null indicates no writer stage)
+	 */
+	public static PipelineQueue<PgCopyBatch> createQueue(PipelineOption pipe_option, int producers) {
+		return pipe_option.writer_thrds > 0 ? new PipelineQueue<PgCopyBatch>("parse -> write", pipe_option.writer_queue_size, producers, pipe_option.writer_thrds) : null;
+	}
+
+}
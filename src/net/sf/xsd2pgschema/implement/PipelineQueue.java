@@ -0,0 +1,176 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.implement;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue connecting pipeline stages, which records backpressure of each side.
+ *
+ * @author yokochi
+ */
+public class PipelineQueue<E> {
+
+	/** The stage name. */
+	private String name;
+
+	/** The bounded queue. */
+	private LinkedBlockingQueue<E> queue;
+
+	/** The number of producers not closed yet. */
+	private AtomicInteger producers;
+
+	/** The latch waiting for completion of consumers. */
+	private CountDownLatch consumers;
+
+	/** The number of items passed. */
+	private AtomicLong items = new AtomicLong(0);
+
+	/** The total time of producers blocked by full queue in nanoseconds. */
+	private AtomicLong put_wait_nanos = new AtomicLong(0);
+
+	/** The total time of consumers blocked by empty queue in nanoseconds. */
+	private AtomicLong take_wait_nanos = new AtomicLong(0);
+
+	/** The polling interval of consumers in milliseconds. */
+	private static final long poll_interval = 100;
+
+	/**
+	 * Instance of PipelineQueue.
+	 *
+	 * @param name stage name
+	 * @param capacity capacity of queue
+	 * @param producers number of producers
+	 * @param consumers number of consumers
+	 */
+	public PipelineQueue(String name, int capacity, int producers, int consumers) {
+
+		this.name = name;
+
+		queue = new LinkedBlockingQueue<E>(capacity);
+
+		this.producers = new AtomicInteger(producers);
+		this.consumers = new CountDownLatch(consumers);
+
+	}
+
+	/**
+	 * Put an item, waiting for space to become available.
+	 *
+	 * @param item item
+	 * @throws InterruptedException the interrupted exception
+	 */
+	public void put(E item) throws InterruptedException {
+
+		if (!queue.offer(item)) {
+
+			long start_time = System.nanoTime();
+
+			queue.put(item);
+
+			put_wait_nanos.addAndGet(System.nanoTime() - start_time);
+
+		}
+
+		items.incrementAndGet();
+
+	}
+
+	/**
+	 * Take an item, waiting for arrival of item until all producers are closed.
+	 *
+	 * @return E item (null indicates that all producers are closed and the queue is empty)
+	 * @throws InterruptedException the interrupted exception
+	 */
+	public E take() throws InterruptedException {
+
+		E item = queue.poll();
+
+		if (item != null)
+			return item;
+
+		long start_time = System.nanoTime();
+
+		while ((item = queue.poll(poll_interval, TimeUnit.MILLISECONDS)) == null && producers.get() > 0);
+
+		if (item == null)
+			item = queue.poll();
+
+		take_wait_nanos.addAndGet(System.nanoTime() - start_time);
+
+		return item;
+	}
+
+	/**
+	 * Return number of items waiting in the queue.
+	 *
+	 * @return int number of items waiting in the queue
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Close a producer.
+	 */
+	public void close() {
+
+		producers.decrementAndGet();
+
+	}
+
+	/**
+	 * Notify completion of a consumer.
+	 */
+	public void done() {
+
+		consumers.countDown();
+
+	}
+
+	/**
+	 * Wait for completion of all consumers.
+	 *
+	 * @throws InterruptedException the interrupted exception
+	 */
+	public void awaitDone() throws InterruptedException {
+
+		consumers.await();
+
+	}
+
+	/**
+	 * Print backpressure statistics of the stage.
+	 */
+	public void showStatistics() {
+
+		long put_wait = put_wait_nanos.get() / 1000000L;
+		long take_wait = take_wait_nanos.get() / 1000000L;
+
+		System.out.println("Pipeline " + name + ": " + items.get() + " items, producers blocked " + put_wait + " ms by full queue, consumers blocked " + take_wait + " ms by empty queue"
+				+ (put_wait > take_wait ? " (consumer stage limits throughput)." : put_wait < take_wait ? " (producer stage limits throughput)." : "."));
+
+	}
+
+}
@@ -33,12 +33,14 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.xml.sax.SAXException;
 
+import net.sf.xsd2pgschema.PgHashDigest;
 import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientImpl;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientType;
 import net.sf.xsd2pgschema.type.PgHashSize;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 import net.sf.xsd2pgschema.xmlutil.XmlValidator;
 import net.sf.xsd2pgschema.docbuilder.JsonBuilder;
 import net.sf.xsd2pgschema.docbuilder.JsonBuilderOption;
@@ -74,6 +76,9 @@ public class Xml2JsonThrd implements Runnable {
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
+	/** The queue of prefetched XML files. */
+	private PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue;
+
 	/** the instance of message digest for hash key. */
 	private MessageDigest md_hash_key = null;
 
@@ -86,6 +91,7 @@ public class Xml2JsonThrd implements Runnable {
 	 * @param json_dir_path directory path contains JSON files
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param jsonb_option JsonBuilder option
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
@@ -94,14 +100,14 @@ public class Xml2JsonThrd implements Runnable {
 	 * @throws PgSchemaException the pg schema exception
 	 * @throws InterruptedException the interrupted exception
 	 */
-	public Xml2JsonThrd(final int thrd_id, final Thread get_thrd, final PgSchemaClientImpl[] clients, final Path json_dir_path, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final JsonBuilderOption jsonb_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, InterruptedException {
+	public Xml2JsonThrd(final int thrd_id, final Thread get_thrd, final PgSchemaClientImpl[] clients, final Path json_dir_path, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final JsonBuilderOption jsonb_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, InterruptedException {
 
 		if (get_thrd != null)
 			get_thrd.join();
 
 		this.client = clients[thrd_id];
 
-		init(thrd_id, json_dir_path, xml_file_filter, xml_file_queue, jsonb_option);
+		init(thrd_id, json_dir_path, xml_file_filter, xml_file_queue, xml_prefetch_queue, jsonb_option);
 
 	}
 
@@ -113,6 +119,7 @@ public class Xml2JsonThrd implements Runnable {
 	 * @param json_dir_path directory path contains JSON files
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param xml_post_editor XML post editor
 	 * @param option PostgreSQL data model option
 	 * @param jsonb_option JsonBuilder option
@@ -122,11 +129,11 @@ public class Xml2JsonThrd implements Runnable {
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	public Xml2JsonThrd(final int thrd_id, final InputStream is, final Path json_dir_path, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final JsonBuilderOption jsonb_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
+	public Xml2JsonThrd(final int thrd_id, final InputStream is, final Path json_dir_path, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final JsonBuilderOption jsonb_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
 
 		client = new PgSchemaClientImpl(is, option, null, PgSchemaClientType.json_conversion, Thread.currentThread().getStackTrace()[2].getClassName(), xml_post_editor, jsonb_option);
 
-		init(thrd_id, json_dir_path, xml_file_filter, xml_file_queue, jsonb_option);
+		init(thrd_id, json_dir_path, xml_file_filter, xml_file_queue, xml_prefetch_queue, jsonb_option);
 
 	}
 
@@ -137,6 +144,7 @@ public class Xml2JsonThrd implements Runnable {
 	 * @param json_dir_path directory path contains JSON files
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param jsonb_option JsonBuilder option
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
@@ -144,13 +152,14 @@ public class Xml2JsonThrd implements Runnable {
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	private void init(final int thrd_id, final Path json_dir_path, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final JsonBuilderOption jsonb_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
+	private void init(final int thrd_id, final Path json_dir_path, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final JsonBuilderOption jsonb_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
 
 		this.thrd_id = thrd_id;
 		this.json_dir_path = json_dir_path;
 
 		this.xml_file_filter = xml_file_filter;
 		this.xml_file_queue = xml_file_queue;
+		this.xml_prefetch_queue = xml_prefetch_queue;
 
 		PgSchemaOption option = client.option;
 
@@ -163,7 +172,7 @@ public class Xml2JsonThrd implements Runnable {
 		// prepare message digest for hash key
 
 		if (!option.hash_algorithm.isEmpty() && !option.hash_size.equals(PgHashSize.debug_string))
-			md_hash_key = MessageDigest.getInstance(option.hash_algorithm);
+			md_hash_key = PgHashDigest.getInstance(option.hash_algorithm);
 
 	}
 
@@ -185,11 +194,15 @@ public class Xml2JsonThrd implements Runnable {
 
 		XmlParser xml_parser;
 
-		while ((xml_file_path = xml_file_queue.poll()) != null) {
+		XmlPrefetchedFile xml_file = null;
+
+		while ((xml_file = XmlPrefetchThrd.poll(xml_file_queue, xml_prefetch_queue, xml_file)) != null) {
+
+			xml_file_path = xml_file.xml_file_path;
 
 			if (show_progress) {
 
-				queue_size = xml_file_queue.size();
+				queue_size = xml_file_queue.size() + (xml_prefetch_queue != null ? xml_prefetch_queue.size() : 0);
 
 				if (polled % (queue_size > 100 ? 10 : 1) == 0) {
 
@@ -208,7 +221,7 @@ public class Xml2JsonThrd implements Runnable {
 
 			try {
 
-				xml_parser = new XmlParser(client.doc_builder, validator, xml_file_path, xml_file_filter);
+				xml_parser = new XmlParser(client.doc_builder, validator, xml_file, xml_file_filter);
 
 				json_file_path = Paths.get(json_dir_path.toString(), xml_parser.basename + ".json");
 
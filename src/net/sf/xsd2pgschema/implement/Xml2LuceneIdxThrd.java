@@ -26,12 +26,15 @@ import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.xml.parsers.ParserConfigurationException;
 
@@ -46,6 +49,7 @@ import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.MMapDirectory;
 import org.xml.sax.SAXException;
 
+import net.sf.xsd2pgschema.PgHashDigest;
 import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
 import net.sf.xsd2pgschema.option.IndexFilter;
@@ -55,7 +59,9 @@ import net.sf.xsd2pgschema.option.XmlPostEditor;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientImpl;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientType;
 import net.sf.xsd2pgschema.type.PgHashSize;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 import net.sf.xsd2pgschema.xmlutil.XmlValidator;
 
 /**
@@ -92,6 +98,9 @@ public class Xml2LuceneIdxThrd implements Runnable {
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
+	/** The queue of prefetched XML files (null indicates no prefetch stage). */
+	private PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue;
+
 	/** The index directory path. */
 	private Path idx_dir_path;
 
@@ -107,6 +116,9 @@ public class Xml2LuceneIdxThrd implements Runnable {
 	/** The instance of message digest for check sum. */
 	private MessageDigest md_chk_sum = null;
 
+	/** The change manifest being applied (null indicates no change manifest). */
+	private XmlChangeManifest sync_manifest = null;
+
 	/**
 	 * Instance of Xml2LuceneIdxThrd (PgSchema server client).
 	 *
@@ -118,10 +130,12 @@ public class Xml2LuceneIdxThrd implements Runnable {
 	 * @param clients array of PgSchema server clients
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param index_filter index filter
 	 * @param idx_dir_path index directory path
 	 * @param writers array of Lucene index writers
 	 * @param doc_rows set of document id stored in index
+	 * @param file_doc_ids sorted document ids of XML files shared by all shards (null indicates no deletion by XML file)
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
 	 * @throws IOException Signals that an I/O exception has occurred.
@@ -129,14 +143,14 @@ public class Xml2LuceneIdxThrd implements Runnable {
 	 * @throws PgSchemaException the pg schema exception
 	 * @throws InterruptedException the interrupted exception
 	 */
-	public Xml2LuceneIdxThrd(final int shard_id, final int shard_size, final int thrd_id, final Thread get_thrd, final int client_id, final PgSchemaClientImpl[] clients, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final IndexFilter index_filter, final Path idx_dir_path, IndexWriter[] writers, HashMap<String, Integer> doc_rows) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, InterruptedException {
+	public Xml2LuceneIdxThrd(final int shard_id, final int shard_size, final int thrd_id, final Thread get_thrd, final int client_id, final PgSchemaClientImpl[] clients, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final IndexFilter index_filter, final Path idx_dir_path, IndexWriter[] writers, HashMap<String, Integer> doc_rows, final String[] file_doc_ids) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, InterruptedException {
 
 		if (get_thrd != null)
 			get_thrd.join();
 
 		this.client = clients[client_id];
 
-		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, index_filter, idx_dir_path, writers, doc_rows);
+		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, xml_prefetch_queue, index_filter, idx_dir_path, writers, doc_rows, file_doc_ids);
 
 	}
 
@@ -149,23 +163,25 @@ public class Xml2LuceneIdxThrd implements Runnable {
 	 * @param is InputStream of XML Schema
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param xml_post_editor XML post editor
 	 * @param option PostgreSQL data model option
 	 * @param index_filter index filter
 	 * @param idx_dir_path index directory path
 	 * @param writers array of Lucene index writers
 	 * @param doc_rows set of document id stored in index
+	 * @param file_doc_ids sorted document ids of XML files shared by all shards (null indicates no deletion by XML file)
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	public Xml2LuceneIdxThrd(final int shard_id, final int shard_size, final int thrd_id, final InputStream is, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final IndexFilter index_filter, final Path idx_dir_path, IndexWriter[] writers, HashMap<String, Integer> doc_rows) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
+	public Xml2LuceneIdxThrd(final int shard_id, final int shard_size, final int thrd_id, final InputStream is, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final IndexFilter index_filter, final Path idx_dir_path, IndexWriter[] writers, HashMap<String, Integer> doc_rows, final String[] file_doc_ids) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
 
 		client = new PgSchemaClientImpl(is, option, null, PgSchemaClientType.full_text_indexing, Thread.currentThread().getStackTrace()[2].getClassName(), xml_post_editor, index_filter);
 
-		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, index_filter, idx_dir_path, writers, doc_rows);
+		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, xml_prefetch_queue, index_filter, idx_dir_path, writers, doc_rows, file_doc_ids);
 
 	}
 
@@ -177,17 +193,19 @@ public class Xml2LuceneIdxThrd implements Runnable {
 	 * @param thrd_id thread id
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param index_filter index filter
 	 * @param idx_dir_path index directory path
 	 * @param writers array of Lucene index writers
 	 * @param doc_rows set of document id stored in index
+	 * @param file_doc_ids sorted document ids of XML files shared by all shards (null indicates no deletion by XML file)
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	private void init(final int shard_id, final int shard_size, final int thrd_id, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final IndexFilter index_filter, final Path idx_dir_path, IndexWriter[] writers, HashMap<String, Integer> doc_rows) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
+	private void init(final int shard_id, final int shard_size, final int thrd_id, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final IndexFilter index_filter, final Path idx_dir_path, IndexWriter[] writers, HashMap<String, Integer> doc_rows, final String[] file_doc_ids) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
 
 		this.shard_id = shard_id;
 		this.shard_size = shard_size;
@@ -196,6 +214,7 @@ public class Xml2LuceneIdxThrd implements Runnable {
 
 		this.xml_file_filter = xml_file_filter;
 		this.xml_file_queue = xml_file_queue;
+		this.xml_prefetch_queue = xml_prefetch_queue;
 
 		this.index_filter = index_filter;
 		this.idx_dir_path = idx_dir_path;
@@ -210,6 +229,9 @@ public class Xml2LuceneIdxThrd implements Runnable {
 
 		synchronizable = option.isSynchronizable(true);
 
+		if (option.sync && option.sync_manifest_name != null)
+			sync_manifest = XmlChangeManifest.getInstance(option);
+
 		// prepare index writer
 
 		if (thrd_id == 0) {
@@ -238,26 +260,35 @@ public class Xml2LuceneIdxThrd implements Runnable {
 
 			if (has_idx) {
 
-				HashMap<String, Integer> doc_map = new HashMap<String, Integer>();
+				ConcurrentHashMap<String, Integer> doc_map = new ConcurrentHashMap<String, Integer>();
 
 				IndexReader reader = DirectoryReader.open(MMapDirectory.open(shard_idx_dir_path));
 
-				for (int i = 0; i < reader.numDocs(); i++)
-					doc_map.put(reader.document(i).get(option.document_key_name), i);
+				// read stored document ids in parallel, IndexReader is thread-safe
+
+				IntStream.range(0, reader.numDocs()).parallel().forEach(i -> {
+
+					try {
+						doc_map.merge(reader.document(i).get(option.document_key_name), i, Math::max);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+
+				});
 
-				if (option.sync) {
+				if (option.sync && !option.split_on_the_fly) {
 
 					HashMap<String, Integer> _doc_map = new HashMap<String, Integer>();
 
 					_doc_map.putAll(doc_map);
 
-					xml_file_queue.forEach(xml_file_path -> {
+					// delete indexes listed in change manifest, otherwise ones whose XML not exists
 
-						XmlParser xml_parser = new XmlParser(xml_file_path, xml_file_filter);
+					if (option.sync_manifest_name != null)
+						_doc_map.keySet().retainAll(sync_manifest.getDeletedDocIds());
 
-						_doc_map.remove(xml_parser.document_id);
-
-					});
+					else
+						_doc_map.keySet().removeIf(doc_id -> Arrays.binarySearch(file_doc_ids, doc_id, PgSchemaUtil.code_point_order) >= 0);
 
 					List<Integer> del_ids = _doc_map.entrySet().stream().map(entry -> entry.getValue()).collect(Collectors.toList());
 
@@ -296,7 +327,7 @@ public class Xml2LuceneIdxThrd implements Runnable {
 		// prepare message digest for hash key
 
 		if (!option.hash_algorithm.isEmpty() && !option.hash_size.equals(PgHashSize.debug_string))
-			md_hash_key = MessageDigest.getInstance(option.hash_algorithm);
+			md_hash_key = PgHashDigest.getInstance(option.hash_algorithm);
 
 		// prepare message digest for check sum
 
@@ -338,11 +369,15 @@ public class Xml2LuceneIdxThrd implements Runnable {
 
 		XmlParser xml_parser;
 
-		while ((xml_file_path = xml_file_queue.poll()) != null) {
+		XmlPrefetchedFile xml_file = null;
+
+		while ((xml_file = XmlPrefetchThrd.poll(xml_file_queue, xml_prefetch_queue, xml_file)) != null) {
+
+			xml_file_path = xml_file.xml_file_path;
 
 			if (show_progress) {
 
-				queue_size = xml_file_queue.size();
+				queue_size = xml_file_queue.size() + (xml_prefetch_queue != null ? xml_prefetch_queue.size() : 0);
 
 				if (polled % (queue_size > 100 ? 10 : 1) == 0) {
 
@@ -372,13 +407,13 @@ public class Xml2LuceneIdxThrd implements Runnable {
 						if (option.sync_weak)
 							continue;
 
-						if (xml_parser.identify(option, md_chk_sum))
+						if (xml_parser.identify(option, md_chk_sum, xml_file))
 							continue;
 
 					}
 
 					else if (option.sync)
-						xml_parser.identify(option, md_chk_sum);
+						xml_parser.identify(option, md_chk_sum, xml_file);
 
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -388,7 +423,7 @@ public class Xml2LuceneIdxThrd implements Runnable {
 
 			try {
 
-				xml_parser = new XmlParser(client.doc_builder, validator, xml_file_path, xml_file_filter);
+				xml_parser = new XmlParser(client.doc_builder, validator, xml_file, xml_file_filter);
 
 				client.schema.xml2LucIdx(xml_parser, md_hash_key, index_filter, lucene_doc);
 
@@ -411,6 +446,9 @@ public class Xml2LuceneIdxThrd implements Runnable {
 			} catch (Exception e) {
 				System.err.println("Exception occurred while processing XML document: " + xml_file_path.toAbsolutePath().toString());
 				e.printStackTrace();
+
+				if (sync_manifest != null)
+					sync_manifest.addFailure();
 			}
 
 			++polled;
@@ -446,6 +484,9 @@ public class Xml2LuceneIdxThrd implements Runnable {
 
 		} catch (IOException e) {
 			e.printStackTrace();
+
+			if (sync_manifest != null)
+				sync_manifest.addFailure();
 		}
 
 		if (changed)
@@ -30,6 +30,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -38,6 +39,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.apache.commons.io.FileUtils;
 import org.xml.sax.SAXException;
 
+import net.sf.xsd2pgschema.PgHashDigest;
 import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
 import net.sf.xsd2pgschema.option.PgOption;
@@ -48,6 +50,7 @@ import net.sf.xsd2pgschema.serverutil.PgSchemaClientImpl;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientType;
 import net.sf.xsd2pgschema.type.PgHashSize;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 import net.sf.xsd2pgschema.xmlutil.XmlValidator;
 
 /**
@@ -84,6 +87,9 @@ public class Xml2PgCsvThrd implements Runnable {
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
+	/** The queue of prefetched XML files (null indicates no prefetch stage). */
+	private PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue;
+
 	/** the instance of message digest for hash key. */
 	private MessageDigest md_hash_key = null;
 
@@ -93,6 +99,18 @@ public class Xml2PgCsvThrd implements Runnable {
 	/** The database connection. */
 	private Connection db_conn = null;
 
+	/** The database connections to copy data files or to create index in parallel, which are opened on demand. */
+	private Connection[] db_conns = null;
+
+	/** The database URL to open connections on demand. */
+	private String db_url = null;
+
+	/** The database user to open connections on demand, which is kept since the PostgreSQL option is cleared after all threads start. */
+	private String db_user = null;
+
+	/** The database password to open connections on demand. */
+	private String db_pass = null;
+
 	/**
 	 * Instance of Xml2PgCsvThrd (PgShema server client).
 	 *
@@ -102,6 +120,7 @@ public class Xml2PgCsvThrd implements Runnable {
 	 * @param work_dir working directory contains CSV/TSV files
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param pg_option PostgreSQL option
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
@@ -111,14 +130,14 @@ public class Xml2PgCsvThrd implements Runnable {
 	 * @throws PgSchemaException the pg schema exception
 	 * @throws InterruptedException the interrupted exception
 	 */
-	public Xml2PgCsvThrd(final int thrd_id, final Thread get_thrd, final PgSchemaClientImpl[] clients, final Path work_dir, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException, InterruptedException {
+	public Xml2PgCsvThrd(final int thrd_id, final Thread get_thrd, final PgSchemaClientImpl[] clients, final Path work_dir, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException, InterruptedException {
 
 		if (get_thrd != null)
 			get_thrd.join();
 
 		this.client = clients[thrd_id];
 
-		init(thrd_id, work_dir, xml_file_filter, xml_file_queue, pg_option);
+		init(thrd_id, work_dir, xml_file_filter, xml_file_queue, xml_prefetch_queue, pg_option);
 
 	}
 
@@ -130,6 +149,7 @@ public class Xml2PgCsvThrd implements Runnable {
 	 * @param work_dir working directory contains CSV/TSV files
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param xml_post_editor XML post editor
 	 * @param option PostgreSQL data model option
 	 * @param pg_option PostgreSQL option
@@ -140,11 +160,11 @@ public class Xml2PgCsvThrd implements Runnable {
 	 * @throws SQLException the SQL exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	public Xml2PgCsvThrd(final int thrd_id, final InputStream is, final Path work_dir, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
+	public Xml2PgCsvThrd(final int thrd_id, final InputStream is, final Path work_dir, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
 
 		client = new PgSchemaClientImpl(is, option, null, PgSchemaClientType.pg_data_migration, Thread.currentThread().getStackTrace()[2].getClassName(), xml_post_editor);
 
-		init(thrd_id, work_dir, xml_file_filter, xml_file_queue, pg_option);
+		init(thrd_id, work_dir, xml_file_filter, xml_file_queue, xml_prefetch_queue, pg_option);
 
 	}
 
@@ -155,6 +175,7 @@ public class Xml2PgCsvThrd implements Runnable {
 	 * @param work_dir working directory contains CSV/TSV files
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param pg_option PostgreSQL option
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
@@ -163,12 +184,13 @@ public class Xml2PgCsvThrd implements Runnable {
 	 * @throws SQLException the SQL exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	private void init(final int thrd_id, final Path work_dir, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
+	private void init(final int thrd_id, final Path work_dir, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
 
 		this.thrd_id = thrd_id;
 
 		this.xml_file_filter = xml_file_filter;
 		this.xml_file_queue = xml_file_queue;
+		this.xml_prefetch_queue = xml_prefetch_queue;
 
 		option = client.option;
 
@@ -180,13 +202,28 @@ public class Xml2PgCsvThrd implements Runnable {
 
 		if (!pg_option.name.isEmpty()) {
 
-			db_conn = DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass);
+			db_url = pg_option.getDbUrl(PgSchemaUtil.def_encoding);
+			db_user = pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user;
+			db_pass = pg_option.pass;
+
+			db_conn = DriverManager.getConnection(db_url, db_user, db_pass);
+
+			db_conns = new Connection[] { db_conn };
 
 			// test PostgreSQL DDL with schema
 
 			if (pg_option.test && thrd_id == 0)
 				client.schema.testPgSql(db_conn, pg_option, true);
 
+			// drop index before data migration, which is rebuilt afterward
+
+			if (pg_option.rebuild_index && thrd_id == 0)
+				client.schema.dropIndexBeforeLoad(db_conn, pg_option);
+
+			// copy data files with FREEZE option into staging tables truncated in the same transaction
+
+			client.schema.setCopyFreeze(pg_option.copy_freeze);
+
 			db_name = pg_option.name;
 
 		}
@@ -201,7 +238,7 @@ public class Xml2PgCsvThrd implements Runnable {
 		// prepare message digest for hash key
 
 		if (!option.hash_algorithm.isEmpty() && !option.hash_size.equals(PgHashSize.debug_string))
-			md_hash_key = MessageDigest.getInstance(option.hash_algorithm);
+			md_hash_key = PgHashDigest.getInstance(option.hash_algorithm);
 
 		// prepare message digest for check sum
 
@@ -231,11 +268,15 @@ public class Xml2PgCsvThrd implements Runnable {
 
 		XmlParser xml_parser;
 
-		while ((xml_file_path = xml_file_queue.poll()) != null) {
+		XmlPrefetchedFile xml_file = null;
+
+		while ((xml_file = XmlPrefetchThrd.poll(xml_file_queue, xml_prefetch_queue, xml_file)) != null) {
+
+			xml_file_path = xml_file.xml_file_path;
 
 			if (show_progress) {
 
-				queue_size = xml_file_queue.size();
+				queue_size = xml_file_queue.size() + (xml_prefetch_queue != null ? xml_prefetch_queue.size() : 0);
 
 				if (polled % (queue_size > 100 ? 10 : 1) == 0) {
 
@@ -266,7 +307,7 @@ public class Xml2PgCsvThrd implements Runnable {
 
 			try {
 
-				xml_parser = new XmlParser(client.doc_builder, validator, xml_file_path, xml_file_filter);
+				xml_parser = new XmlParser(client.doc_builder, validator, xml_file, xml_file_filter);
 
 				client.schema.xml2PgCsv(xml_parser, md_hash_key, work_dir);
 
@@ -295,9 +336,11 @@ public class Xml2PgCsvThrd implements Runnable {
 
 			try {
 
-				client.schema.pgCsv2PgSql(db_conn, work_dir);
+				openConnections(pg_option.copy_thrds);
 
-			} catch (PgSchemaException e) {
+				client.schema.pgCsv2PgSql(Arrays.copyOf(db_conns, pg_option.copy_thrds), work_dir, pg_option.copy_chunk_bytes);
+
+			} catch (PgSchemaException | SQLException e) {
 				e.printStackTrace();
 			}
 
@@ -318,44 +361,77 @@ public class Xml2PgCsvThrd implements Runnable {
 		else if (show_progress)
 			System.out.println("\nDone");
 
-		if (db_conn == null)
+		// the first thread keeps its connection to build index after all threads finish
+
+		if (db_conn == null || thrd_id == 0)
 			return;
 
 		try {
+			closeConnections();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
 
-			if (thrd_id == 0) {
+	}
 
-				if (pg_option.create_non_uniq_pkey_index)
-					client.schema.createNonUniqPKeyIndex(db_conn, pg_option);
-				else if (pg_option.drop_non_uniq_pkey_index)
-					client.schema.dropNonUniqPKeyIndex(db_conn);
+	/**
+	 * Build index of PostgreSQL in parallel, which should be called once after all threads have finished loading.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void buildIndex() throws PgSchemaException {
 
-				if (pg_option.create_doc_key_index)
-					client.schema.createDocKeyIndex(db_conn, pg_option);
-				else if (pg_option.drop_doc_key_index)
-					client.schema.dropDocKeyIndex(db_conn);
+		if (db_conn == null || thrd_id != 0)
+			return;
 
-				if (pg_option.create_attr_index)
-					client.schema.createAttrIndex(db_conn, pg_option);
-				else if (pg_option.drop_attr_index)
-					client.schema.dropAttrIndex(db_conn);
+		try {
 
-				if (pg_option.create_elem_index)
-					client.schema.createElemIndex(db_conn, pg_option);
-				else if (pg_option.drop_elem_index)
-					client.schema.dropElemIndex(db_conn);
+			openConnections(pg_option.index_thrds);
 
-				if (pg_option.create_simple_cont_index)
-					client.schema.createSimpleContIndex(db_conn, pg_option);
-				else if (pg_option.drop_simple_cont_index)
-					client.schema.dropSimpleContIndex(db_conn);
+			client.schema.buildIndex(Arrays.copyOf(db_conns, pg_option.index_thrds), pg_option);
 
-			}
+			closeConnections();
 
-			db_conn.close();
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
+
+	/**
+	 * Close all database connections.
+	 *
+	 * @throws SQLException the SQL exception
+	 */
+	private void closeConnections() throws SQLException {
+
+		for (int i = 1; i < db_conns.length; i++) {
+
+			if (db_conns[i] != null)
+				db_conns[i].close();
+
+		}
+
+		db_conn.close();
+
+	}
+
+	/**
+	 * Open additional database connections up to the given size, so that only the thread loading data files holds connections to copy them in parallel.
+	 *
+	 * @param size number of database connections required
+	 * @throws SQLException the SQL exception
+	 */
+	private void openConnections(int size) throws SQLException {
+
+		if (db_conns.length < size)
+			db_conns = Arrays.copyOf(db_conns, size);
+
+		for (int i = 1; i < db_conns.length; i++) {
+
+			if (db_conns[i] == null)
+				db_conns[i] = DriverManager.getConnection(db_url, db_user, db_pass);
 
-		} catch (PgSchemaException | SQLException e) {
-			e.printStackTrace();
 		}
 
 	}
@@ -29,15 +29,19 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.xml.sax.SAXException;
 
+import net.sf.xsd2pgschema.PgCopyBatch;
+import net.sf.xsd2pgschema.PgHashDigest;
 import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
+import net.sf.xsd2pgschema.PgSyncPlan;
 import net.sf.xsd2pgschema.option.PgOption;
 import net.sf.xsd2pgschema.option.PgSchemaOption;
 import net.sf.xsd2pgschema.option.XmlFileFilter;
@@ -45,7 +49,10 @@ import net.sf.xsd2pgschema.option.XmlPostEditor;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientImpl;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientType;
 import net.sf.xsd2pgschema.type.PgHashSize;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
+import net.sf.xsd2pgschema.xmlutil.XmlChkSumStore;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 import net.sf.xsd2pgschema.xmlutil.XmlValidator;
 
 /**
@@ -79,6 +86,12 @@ public class Xml2PgSqlThrd implements Runnable {
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
+	/** The queue of prefetched XML files (null indicates no prefetch stage). */
+	private PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue;
+
+	/** The queue of row batches (null indicates no writer stage). */
+	private PipelineQueue<PgCopyBatch> copy_batch_queue;
+
 	/** the instance of message digest for hash key. */
 	private MessageDigest md_hash_key = null;
 
@@ -88,8 +101,14 @@ public class Xml2PgSqlThrd implements Runnable {
 	/** The database connection. */
 	private Connection db_conn;
 
-	/** The document id stored in PostgreSQL. */
-	private HashSet<String> doc_rows = null;
+	/** The database connections to create index in parallel (thread 0 only). */
+	private Connection[] index_conns = null;
+
+	/** The change manifest being applied (null indicates no change manifest). */
+	private XmlChangeManifest sync_manifest = null;
+
+	/** The synchronization plan shared by all threads. */
+	private PgSyncPlan sync_plan = null;
 
 	/**
 	 * Instance of Xml2PgSqlThrd (PgSchema server client).
@@ -99,6 +118,9 @@ public class Xml2PgSqlThrd implements Runnable {
 	 * @param clients array of PgSchema server clients
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
+	 * @param copy_batch_queue queue of row batches (null indicates no writer stage)
+	 * @param sync_plan synchronization plan shared by all threads
 	 * @param pg_option PostgreSQL option
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
@@ -108,14 +130,14 @@ public class Xml2PgSqlThrd implements Runnable {
 	 * @throws PgSchemaException the pg schema exception
 	 * @throws InterruptedException the interrupted exception
 	 */
-	public Xml2PgSqlThrd(final int thrd_id, final Thread get_thrd, final PgSchemaClientImpl[] clients, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException, InterruptedException {
+	public Xml2PgSqlThrd(final int thrd_id, final Thread get_thrd, final PgSchemaClientImpl[] clients, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final PipelineQueue<PgCopyBatch> copy_batch_queue, final PgSyncPlan sync_plan, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException, InterruptedException {
 
 		if (get_thrd != null)
 			get_thrd.join();
 
 		this.client = clients[thrd_id];
 
-		init(thrd_id, xml_file_filter, xml_file_queue, pg_option);
+		init(thrd_id, xml_file_filter, xml_file_queue, xml_prefetch_queue, copy_batch_queue, sync_plan, pg_option);
 
 	}
 
@@ -126,6 +148,9 @@ public class Xml2PgSqlThrd implements Runnable {
 	 * @param is InputStream of XML Schema
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
+	 * @param copy_batch_queue queue of row batches (null indicates no writer stage)
+	 * @param sync_plan synchronization plan shared by all threads
 	 * @param xml_post_editor XML post editor
 	 * @param option PostgreSQL data model option
 	 * @param pg_option PostgreSQL option
@@ -136,11 +161,11 @@ public class Xml2PgSqlThrd implements Runnable {
 	 * @throws SQLException the SQL exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	public Xml2PgSqlThrd(final int thrd_id, final InputStream is, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
+	public Xml2PgSqlThrd(final int thrd_id, final InputStream is, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final PipelineQueue<PgCopyBatch> copy_batch_queue, final PgSyncPlan sync_plan, final XmlPostEditor xml_post_editor, final PgSchemaOption option, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
 
 		client = new PgSchemaClientImpl(is, option, null, PgSchemaClientType.pg_data_migration, Thread.currentThread().getStackTrace()[2].getClassName(), xml_post_editor);
 
-		init(thrd_id, xml_file_filter, xml_file_queue, pg_option);
+		init(thrd_id, xml_file_filter, xml_file_queue, xml_prefetch_queue, copy_batch_queue, sync_plan, pg_option);
 
 	}
 
@@ -150,6 +175,9 @@ public class Xml2PgSqlThrd implements Runnable {
 	 * @param thrd_id thread id
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
+	 * @param copy_batch_queue queue of row batches (null indicates no writer stage)
+	 * @param sync_plan synchronization plan shared by all threads
 	 * @param pg_option PostgreSQL option
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
@@ -158,12 +186,15 @@ public class Xml2PgSqlThrd implements Runnable {
 	 * @throws SQLException the SQL exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	private void init(final int thrd_id, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
+	private void init(final int thrd_id, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final PipelineQueue<PgCopyBatch> copy_batch_queue, final PgSyncPlan sync_plan, final PgOption pg_option) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, SQLException, PgSchemaException {
 
 		this.thrd_id = thrd_id;
 
 		this.xml_file_filter = xml_file_filter;
 		this.xml_file_queue = xml_file_queue;
+		this.xml_prefetch_queue = xml_prefetch_queue;
+		this.copy_batch_queue = copy_batch_queue;
+		this.sync_plan = sync_plan;
 
 		option = client.option;
 
@@ -184,50 +215,77 @@ public class Xml2PgSqlThrd implements Runnable {
 
 		db_conn.setAutoCommit(false);
 
-		// delete rows if XML not exists
+		client.schema.setJdbcBatch(pg_option);
 
-		if (synchronizable = option.isSynchronizable(true)) {
+		if (pg_option.direct_copy)
+			client.schema.setCopyBuffer(pg_option);
 
-			doc_rows = client.schema.getDocIdRows(db_conn);
+		// build synchronization plan once and delete rows if XML not exists
 
-			if (option.sync) {
+		if (synchronizable = option.isSynchronizable(true))
+			sync_plan.build(client.schema, db_conn, xml_file_queue, xml_file_filter, option.sync);
 
-				if (thrd_id == 0) {
+		if (option.sync && option.sync_manifest_name != null)
+			sync_manifest = XmlChangeManifest.getInstance(option);
 
-					HashSet<String> _doc_rows = new HashSet<String>();
+		// prepare connections to create index in parallel
 
-					_doc_rows.addAll(doc_rows);
+		if (thrd_id == 0) {
 
-					xml_file_queue.forEach(xml_file_path -> {
+			index_conns = new Connection[pg_option.index_thrds];
 
-						XmlParser xml_parser = new XmlParser(xml_file_path, xml_file_filter);
+			index_conns[0] = db_conn;
 
-						_doc_rows.remove(xml_parser.document_id);
+			for (int i = 1; i < index_conns.length; i++)
+				index_conns[i] = DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass);
 
-					});
-
-					client.schema.deleteRows(db_conn, _doc_rows);
-
-					_doc_rows.clear();
-
-				}
+			// drop index before data migration, which is rebuilt afterward
 
-			}
+			if (pg_option.rebuild_index)
+				client.schema.dropIndexBeforeLoad(db_conn, pg_option);
 
 		}
 
 		// prepare message digest for hash key
 
 		if (!option.hash_algorithm.isEmpty() && !option.hash_size.equals(PgHashSize.debug_string))
-			md_hash_key = MessageDigest.getInstance(option.hash_algorithm);
+			md_hash_key = PgHashDigest.getInstance(option.hash_algorithm);
 
 		// prepare message digest for check sum
 
 		if (!option.check_sum_algorithm.isEmpty() && synchronizable)
 			md_chk_sum = MessageDigest.getInstance(option.check_sum_algorithm);
 
+
+		// prepare group commit
+
+		if (group_commit = pg_option.isGroupCommit())
+			client.schema.setGroupCommit(true);
+
+		// documents pending in current transaction are replayed one by one in case of rollback
+
+		if (copy_batch_queue == null)
+			pending_docs = new LinkedHashMap<Path, Boolean>();
+
+		// check sum of XML file is removed in case of failure so that next synchronization retries it
+
+		if (option.isSynchronizable(false) && option.sync_manifest_name == null)
+			chk_sum_store = XmlChkSumStore.getInstance(option);
+
 	}
 
+	/** Whether to commit several documents in a transaction. */
+	private boolean group_commit = false;
+
+	/** The documents pending in current transaction of group commit, JDBC batch or COPY buffer (key=XML file path, value=whether update or insertion). */
+	private LinkedHashMap<Path, Boolean> pending_docs = null;
+
+	/** The check sum store (null indicates no check sum store). */
+	private XmlChkSumStore chk_sum_store = null;
+
+	/** The start time of current group commit. */
+	private long group_start_time = 0;
+
 	/** Whether synchronization is possible. */
 	private boolean synchronizable = false;
 
@@ -250,11 +308,15 @@ public class Xml2PgSqlThrd implements Runnable {
 
 		XmlParser xml_parser;
 
-		while ((xml_file_path = xml_file_queue.poll()) != null) {
+		XmlPrefetchedFile xml_file = null;
+
+		while ((xml_file = XmlPrefetchThrd.poll(xml_file_queue, xml_prefetch_queue, xml_file)) != null) {
+
+			xml_file_path = xml_file.xml_file_path;
 
 			if (show_progress) {
 
-				queue_size = xml_file_queue.size();
+				queue_size = xml_file_queue.size() + (xml_prefetch_queue != null ? xml_prefetch_queue.size() : 0);
 
 				if (polled % (queue_size > 100 ? 10 : 1) == 0) {
 
@@ -277,43 +339,118 @@ public class Xml2PgSqlThrd implements Runnable {
 
 					xml_parser = new XmlParser(xml_file_path, xml_file_filter);
 
-					update = doc_rows.contains(xml_parser.document_id);
+					update = sync_plan.isUpdate(client.schema, db_conn, xml_parser.document_id);
 
 					if (update) {
 
 						if (option.sync_weak)
 							continue;
 
-						if (xml_parser.identify(option, md_chk_sum))
+						if (xml_parser.identify(option, md_chk_sum, xml_file))
 							continue;
 
 					}
 
 					else if (option.sync)
-						xml_parser.identify(option, md_chk_sum);
+						xml_parser.identify(option, md_chk_sum, xml_file);
 
-				} catch (IOException e) {
+				} catch (IOException | PgSchemaException e) {
 					e.printStackTrace();
 				}
 
 			}
 
+			if (pending_docs != null) {
+
+				if (group_commit && pending_docs.isEmpty())
+					group_start_time = System.currentTimeMillis();
+
+				pending_docs.put(xml_file_path, update);
+
+			}
+
 			try {
 
-				xml_parser = new XmlParser(client.doc_builder, validator, xml_file_path, xml_file_filter);
+				xml_parser = new XmlParser(client.doc_builder, validator, xml_file, xml_file_filter);
+
+				if (copy_batch_queue != null) {
+
+					PgCopyBatch copy_batch = client.schema.xml2PgCopyBatch(xml_parser, md_hash_key, update, db_conn);
+
+					if (copy_batch != null)
+						copy_batch_queue.put(copy_batch);
+
+				}
+
+				else if (pg_option.direct_copy ? client.schema.xml2PgCopy(xml_parser, md_hash_key, update, db_conn) : client.schema.xml2PgSql(xml_parser, md_hash_key, update, db_conn))
+					pending_docs.clear();
 
-				client.schema.xml2PgSql(xml_parser, md_hash_key, update, db_conn);
+				if (group_commit && ((pg_option.group_commit_docs > 0 && pending_docs.size() >= pg_option.group_commit_docs) || (pg_option.group_commit_interval > 0 && System.currentTimeMillis() - group_start_time >= pg_option.group_commit_interval)))
+					commitPendingDocs();
 
 			} catch (Exception e) {
-				System.err.println("Exception occurred while processing XML document: " + xml_file_path.toAbsolutePath().toString());
-				e.printStackTrace();
+
+				// the other documents of the rolled back transaction are not lost
+
+				if (pending_docs != null && (group_commit || pending_docs.size() > 1))
+					replayPendingDocs();
+
+				else {
+					System.err.println("Exception occurred while processing XML document: " + xml_file_path.toAbsolutePath().toString());
+					e.printStackTrace();
+
+					if (pending_docs != null) {
+
+						client.schema.rollbackXml2PgSql();
+
+						pending_docs.clear();
+
+					}
+
+					addFailure(xml_file_path);
+				}
+
 			}
 
 			++polled;
 
 		}
 
-		client.schema.closeXml2PgSql();
+		if (pending_docs != null && !pending_docs.isEmpty()) {
+
+			try {
+				commitPendingDocs();
+			} catch (PgSchemaException e) {
+				replayPendingDocs();
+			}
+
+		}
+
+		if (copy_batch_queue != null) {
+
+			try {
+
+				PgCopyBatch copy_batch = client.schema.pollCopyBatch();
+
+				if (copy_batch != null)
+					copy_batch_queue.put(copy_batch);
+
+			} catch (PgSchemaException | InterruptedException e) {
+				e.printStackTrace();
+
+				if (sync_manifest != null)
+					sync_manifest.addFailure();
+			} finally {
+				copy_batch_queue.close();
+			}
+
+		}
+
+		if (!client.schema.closeXml2PgSql() && sync_manifest != null)
+			sync_manifest.addFailure();
+
+		if (group_commit)
+			client.schema.setGroupCommit(false);
 
 		if (polled > 0)
 			System.out.println("Done XML (" + polled + " documents) -> DB (" + db_name + ").");
@@ -321,43 +458,116 @@ public class Xml2PgSqlThrd implements Runnable {
 		else if (show_progress)
 			System.out.println("\nDone");
 
+		// the first thread keeps its connections to build index after all threads finish
+
+		if (thrd_id == 0)
+			return;
+
+		try {
+			db_conn.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * Build index of PostgreSQL in parallel, which should be called once after all threads including writer threads have finished loading.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	public void buildIndex() throws PgSchemaException {
+
+		if (db_conn == null || thrd_id != 0)
+			return;
+
 		try {
 
-			if (thrd_id == 0) {
+			db_conn.setAutoCommit(true);
+
+			client.schema.buildIndex(index_conns, pg_option);
+
+			for (int i = 1; i < index_conns.length; i++)
+				index_conns[i].close();
+
+			db_conn.close();
+
+		} catch (SQLException e) {
+			throw new PgSchemaException(e);
+		}
+
+	}
 
-				db_conn.setAutoCommit(true);
+	/**
+	 * Commit documents pending in current transaction.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	private void commitPendingDocs() throws PgSchemaException {
 
-				if (pg_option.create_non_uniq_pkey_index)
-					client.schema.createNonUniqPKeyIndex(db_conn, pg_option);
-				else if (pg_option.drop_non_uniq_pkey_index)
-					client.schema.dropNonUniqPKeyIndex(db_conn);
+		client.schema.commitXml2PgSql();
 
-				if (pg_option.create_doc_key_index)
-					client.schema.createDocKeyIndex(db_conn, pg_option);
-				else if (pg_option.drop_doc_key_index)
-					client.schema.dropDocKeyIndex(db_conn);
+		pending_docs.clear();
 
-				if (pg_option.create_attr_index)
-					client.schema.createAttrIndex(db_conn, pg_option);
-				else if (pg_option.drop_attr_index)
-					client.schema.dropAttrIndex(db_conn);
+	}
 
-				if (pg_option.create_elem_index)
-					client.schema.createElemIndex(db_conn, pg_option);
-				else if (pg_option.drop_elem_index)
-					client.schema.dropElemIndex(db_conn);
+	/**
+	 * Rollback documents pending in current transaction and replay them one by one.
+	 */
+	private void replayPendingDocs() {
 
-				if (pg_option.create_simple_cont_index)
-					client.schema.createSimpleContIndex(db_conn, pg_option);
-				else if (pg_option.drop_simple_cont_index)
-					client.schema.dropSimpleContIndex(db_conn);
+		client.schema.rollbackXml2PgSql();
 
+		XmlParser xml_parser;
+
+		for (Entry<Path, Boolean> pending_doc : pending_docs.entrySet()) {
+
+			Path xml_file_path = pending_doc.getKey();
+
+			try {
+
+				xml_parser = new XmlParser(client.doc_builder, validator, xml_file_path, xml_file_filter);
+
+				if (pg_option.direct_copy)
+					client.schema.xml2PgCopy(xml_parser, md_hash_key, pending_doc.getValue(), db_conn);
+				else
+					client.schema.xml2PgSql(xml_parser, md_hash_key, pending_doc.getValue(), db_conn);
+
+				client.schema.commitXml2PgSql();
+
+			} catch (Exception e) {
+				System.err.println("Exception occurred while processing XML document: " + xml_file_path.toAbsolutePath().toString());
+				e.printStackTrace();
+
+				client.schema.rollbackXml2PgSql();
+
+				addFailure(xml_file_path);
 			}
 
-			db_conn.close();
+		}
+
+		pending_docs.clear();
+
+	}
+
+	/**
+	 * Count a document failed to be loaded, whose check sum is removed so that next synchronization loads it again.
+	 *
+	 * @param xml_file_path XML file path
+	 */
+	private void addFailure(Path xml_file_path) {
+
+		if (sync_manifest != null)
+			sync_manifest.addFailure();
+
+		if (chk_sum_store != null) {
+
+			try {
+				chk_sum_store.remove(xml_file_path.getFileName().toString());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 
-		} catch (PgSchemaException | SQLException e) {
-			e.printStackTrace();
 		}
 
 	}
@@ -33,6 +33,7 @@ import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,6 +51,7 @@ import org.apache.commons.io.FilenameUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import net.sf.xsd2pgschema.PgHashDigest;
 import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
 import net.sf.xsd2pgschema.option.IndexFilter;
@@ -60,7 +62,9 @@ import net.sf.xsd2pgschema.serverutil.PgSchemaClientImpl;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientType;
 import net.sf.xsd2pgschema.sphinxutil.*;
 import net.sf.xsd2pgschema.type.PgHashSize;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
 import net.sf.xsd2pgschema.xmlutil.XmlParser;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 import net.sf.xsd2pgschema.xmlutil.XmlValidator;
 
 /**
@@ -103,6 +107,9 @@ public class Xml2SphinxDsThrd implements Runnable {
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
+	/** The queue of prefetched XML files (null indicates no prefetch stage). */
+	private PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue;
+
 	/** The current data source path. */
 	private Path shard_ds_dir_path;
 
@@ -121,6 +128,9 @@ public class Xml2SphinxDsThrd implements Runnable {
 	/** The instance of message digest for check sum. */
 	private MessageDigest md_chk_sum = null;
 
+	/** The change manifest being applied (null indicates no change manifest). */
+	private XmlChangeManifest sync_manifest = null;
+
 	/** The Sphinx schema file path. */
 	private Path sphinx_schema_path;
 
@@ -135,11 +145,13 @@ public class Xml2SphinxDsThrd implements Runnable {
 	 * @param clients array of PgSchema server clients
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param index_filter index filter
 	 * @param ds_name data source name
 	 * @param ds_dir_path data source directory path
 	 * @param doc_rows set of document id stored in data source
 	 * @param sync_del_doc_rows set of deleting document id while synchronization
+	 * @param file_doc_ids sorted document ids of XML files shared by all shards (null indicates no deletion by XML file)
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
 	 * @throws IOException Signals that an I/O exception has occurred.
@@ -147,14 +159,14 @@ public class Xml2SphinxDsThrd implements Runnable {
 	 * @throws PgSchemaException the pg schema exception
 	 * @throws InterruptedException the interrupted exception
 	 */
-	public Xml2SphinxDsThrd(final int shard_id, final int shard_size, final int thrd_id, final Thread get_thrd, final int client_id, final PgSchemaClientImpl[] clients, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, IndexFilter index_filter, final String ds_name, final Path ds_dir_path, HashMap<String, Integer> doc_rows, HashSet<String>[] sync_del_doc_rows) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, InterruptedException {
+	public Xml2SphinxDsThrd(final int shard_id, final int shard_size, final int thrd_id, final Thread get_thrd, final int client_id, final PgSchemaClientImpl[] clients, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, IndexFilter index_filter, final String ds_name, final Path ds_dir_path, HashMap<String, Integer> doc_rows, HashSet<String>[] sync_del_doc_rows, final String[] file_doc_ids) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, InterruptedException {
 
 		if (get_thrd != null)
 			get_thrd.join();
 
 		this.client = clients[client_id];
 
-		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, index_filter, ds_name, ds_dir_path, doc_rows, sync_del_doc_rows);
+		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, xml_prefetch_queue, index_filter, ds_name, ds_dir_path, doc_rows, sync_del_doc_rows, file_doc_ids);
 
 	}
 
@@ -167,6 +179,7 @@ public class Xml2SphinxDsThrd implements Runnable {
 	 * @param is InputStream of XML Schema
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param xml_post_editor XML post editor
 	 * @param option PostgreSQL data model option
 	 * @param index_filter index filter
@@ -174,17 +187,18 @@ public class Xml2SphinxDsThrd implements Runnable {
 	 * @param ds_dir_path data source directory path
 	 * @param doc_rows set of document id stored in data source
 	 * @param sync_del_doc_rows set of deleting document id while synchronization
+	 * @param file_doc_ids sorted document ids of XML files shared by all shards (null indicates no deletion by XML file)
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	public Xml2SphinxDsThrd(final int shard_id, final int shard_size, final int thrd_id, final InputStream is, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, IndexFilter index_filter, final String ds_name, final Path ds_dir_path, HashMap<String, Integer> doc_rows, HashSet<String>[] sync_del_doc_rows) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
+	public Xml2SphinxDsThrd(final int shard_id, final int shard_size, final int thrd_id, final InputStream is, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final XmlPostEditor xml_post_editor, final PgSchemaOption option, IndexFilter index_filter, final String ds_name, final Path ds_dir_path, HashMap<String, Integer> doc_rows, HashSet<String>[] sync_del_doc_rows, final String[] file_doc_ids) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
 
 		client = new PgSchemaClientImpl(is, option, null, PgSchemaClientType.full_text_indexing, Thread.currentThread().getStackTrace()[2].getClassName(), xml_post_editor, index_filter);
 
-		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, index_filter, ds_name, ds_dir_path, doc_rows, sync_del_doc_rows);
+		init(shard_id, shard_size, thrd_id, xml_file_filter, xml_file_queue, xml_prefetch_queue, index_filter, ds_name, ds_dir_path, doc_rows, sync_del_doc_rows, file_doc_ids);
 
 	}
 
@@ -196,18 +210,20 @@ public class Xml2SphinxDsThrd implements Runnable {
 	 * @param thrd_id thread id
 	 * @param xml_file_filter XML file filter
 	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
 	 * @param index_filter index filter
 	 * @param ds_name data source name
 	 * @param ds_dir_path data source directory path
 	 * @param doc_rows set of document id stored in data source
 	 * @param sync_del_doc_rows set of deleting document id while synchronization
+	 * @param file_doc_ids sorted document ids of XML files shared by all shards (null indicates no deletion by XML file)
 	 * @throws ParserConfigurationException the parser configuration exception
 	 * @throws SAXException the SAX exception
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws NoSuchAlgorithmException the no such algorithm exception
 	 * @throws PgSchemaException the pg schema exception
 	 */
-	private void init(final int shard_id, final int shard_size, final int thrd_id, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, IndexFilter index_filter, final String ds_name, final Path ds_dir_path, HashMap<String, Integer> doc_rows, HashSet<String>[] sync_del_doc_rows) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
+	private void init(final int shard_id, final int shard_size, final int thrd_id, final XmlFileFilter xml_file_filter, final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, IndexFilter index_filter, final String ds_name, final Path ds_dir_path, HashMap<String, Integer> doc_rows, HashSet<String>[] sync_del_doc_rows, final String[] file_doc_ids) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException {
 
 		this.shard_id = shard_id;
 		this.shard_size = shard_size;
@@ -216,6 +232,7 @@ public class Xml2SphinxDsThrd implements Runnable {
 
 		this.xml_file_filter = xml_file_filter;
 		this.xml_file_queue = xml_file_queue;
+		this.xml_prefetch_queue = xml_prefetch_queue;
 
 		this.index_filter = index_filter;
 		this.ds_name = ds_name;
@@ -262,6 +279,9 @@ public class Xml2SphinxDsThrd implements Runnable {
 
 		synchronizable = option.isSynchronizable(true);
 
+		if (option.sync && option.sync_manifest_name != null)
+			sync_manifest = XmlChangeManifest.getInstance(option);
+
 		// delete indexes if XML not exists
 
 		Path sph_data_source_path = shard_ds_dir_path.resolve(PgSchemaUtil.sph_data_source_name);
@@ -289,15 +309,19 @@ public class Xml2SphinxDsThrd implements Runnable {
 
 			if (option.sync) {
 
-				sync_del_doc_rows[shard_id].addAll(doc_set);
+				if (!option.split_on_the_fly) {
 
-				xml_file_queue.forEach(xml_file_path -> {
+					sync_del_doc_rows[shard_id].addAll(doc_set);
 
-					XmlParser xml_parser = new XmlParser(xml_file_path, xml_file_filter);
+					// delete rows listed in change manifest, otherwise ones whose XML not exists
 
-					sync_del_doc_rows[shard_id].remove(xml_parser.document_id);
+					if (option.sync_manifest_name != null)
+						sync_del_doc_rows[shard_id].retainAll(sync_manifest.getDeletedDocIds());
 
-				});
+					else
+						sync_del_doc_rows[shard_id].removeIf(doc_id -> Arrays.binarySearch(file_doc_ids, doc_id, PgSchemaUtil.code_point_order) >= 0);
+
+				}
 
 				synchronized (doc_rows) {
 					doc_set.forEach(doc_id -> doc_rows.put(doc_id, shard_id));
@@ -312,7 +336,7 @@ public class Xml2SphinxDsThrd implements Runnable {
 		// prepare message digest for hash key
 
 		if (!option.hash_algorithm.isEmpty() && !option.hash_size.equals(PgHashSize.debug_string))
-			md_hash_key = MessageDigest.getInstance(option.hash_algorithm);
+			md_hash_key = PgHashDigest.getInstance(option.hash_algorithm);
 
 		// prepare message digest for check sum
 
@@ -350,11 +374,15 @@ public class Xml2SphinxDsThrd implements Runnable {
 		Integer _shard_id;
 		BufferedWriter buffw;
 
-		while ((xml_file_path = xml_file_queue.poll()) != null) {
+		XmlPrefetchedFile xml_file = null;
+
+		while ((xml_file = XmlPrefetchThrd.poll(xml_file_queue, xml_prefetch_queue, xml_file)) != null) {
+
+			xml_file_path = xml_file.xml_file_path;
 
 			if (show_progress) {
 
-				queue_size = xml_file_queue.size();
+				queue_size = xml_file_queue.size() + (xml_prefetch_queue != null ? xml_prefetch_queue.size() : 0);
 
 				if (polled % (queue_size > 100 ? 10 : 1) == 0) {
 
@@ -384,7 +412,7 @@ public class Xml2SphinxDsThrd implements Runnable {
 						if (option.sync_weak)
 							continue;
 
-						if (xml_parser.identify(option, md_chk_sum))
+						if (xml_parser.identify(option, md_chk_sum, xml_file))
 							continue;
 
 						synchronized (sync_del_doc_rows[_shard_id]) {
@@ -395,7 +423,7 @@ public class Xml2SphinxDsThrd implements Runnable {
 					}
 
 					else if (option.sync)
-						xml_parser.identify(option, md_chk_sum);
+						xml_parser.identify(option, md_chk_sum, xml_file);
 
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -409,7 +437,7 @@ public class Xml2SphinxDsThrd implements Runnable {
 
 				buffw = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(sph_doc_file_path), PgSchemaUtil.def_encoding), PgSchemaUtil.def_buffered_output_stream_buffer_size);
 
-				xml_parser = new XmlParser(client.doc_builder, validator, xml_file_path, xml_file_filter);
+				xml_parser = new XmlParser(client.doc_builder, validator, xml_file, xml_file_filter);
 
 				client.schema.xml2SphDs(xml_parser, md_hash_key, index_filter, buffw);
 
@@ -418,6 +446,9 @@ public class Xml2SphinxDsThrd implements Runnable {
 			} catch (IOException | SAXException | PgSchemaException e) {
 				System.err.println("Exception occurred while processing XML document: " + xml_file_path.toAbsolutePath().toString());
 				e.printStackTrace();
+
+				if (sync_manifest != null)
+					sync_manifest.addFailure();
 			}
 
 			++polled;
@@ -472,6 +503,9 @@ public class Xml2SphinxDsThrd implements Runnable {
 
 					} catch (XMLStreamException | IOException e) {
 						e.printStackTrace();
+
+						if (sync_manifest != null)
+							sync_manifest.addFailure();
 					}
 
 				}
@@ -578,6 +612,9 @@ public class Xml2SphinxDsThrd implements Runnable {
 
 			} catch (XMLStreamException | IOException e) {
 				e.printStackTrace();
+
+				if (sync_manifest != null)
+					sync_manifest.addFailure();
 			}
 
 			Files.move(sph_data_update_path, sph_data_source_path, StandardCopyOption.REPLACE_EXISTING);
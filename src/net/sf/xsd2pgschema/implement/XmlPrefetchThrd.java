@@ -0,0 +1,163 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.implement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import net.sf.xsd2pgschema.option.PipelineOption;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchBufferPool;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
+
+/**
+ * Thread function for prefetch stage of XML files.
+ *
+ * @author yokochi
+ */
+public class XmlPrefetchThrd implements Runnable {
+
+	/** The XML file queue. */
+	private LinkedBlockingQueue<Path> xml_file_queue;
+
+	/** The queue of prefetched XML files. */
+	private PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue;
+
+	/** The buffer pool shared by prefetch threads. */
+	private XmlPrefetchBufferPool buffer_pool;
+
+	/**
+	 * Instance of XmlPrefetchThrd.
+	 *
+	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files
+	 * @param buffer_pool buffer pool shared by prefetch threads
+	 */
+	public XmlPrefetchThrd(final LinkedBlockingQueue<Path> xml_file_queue, final PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, final XmlPrefetchBufferPool buffer_pool) {
+
+		this.xml_file_queue = xml_file_queue;
+		this.xml_prefetch_queue = xml_prefetch_queue;
+		this.buffer_pool = buffer_pool;
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+
+		Path xml_file_path;
+
+		try {
+
+			while ((xml_file_path = xml_file_queue.poll()) != null) {
+
+				XmlPrefetchedFile xml_file;
+
+				try {
+
+					xml_file = buffer_pool.prefetch(xml_file_path);
+
+				} catch (IOException e) {
+					// leave it to parser thread to report the exception
+					xml_file = new XmlPrefetchedFile(xml_file_path);
+				}
+
+				xml_prefetch_queue.put(xml_file);
+
+			}
+
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} finally {
+			xml_prefetch_queue.close();
+		}
+
+	}
+
+	/**
+	 * Return queue of prefetched XML files if prefetch stage is enabled.
+	 *
+	 * @param pipe_option pipeline option
+	 * @param consumers number of parser threads
+	 * @return PipelineQueue queue of prefetched XML files (null indicates no prefetch stage)
+	 */
+	public static PipelineQueue<XmlPrefetchedFile> createQueue(PipelineOption pipe_option, int consumers) {
+		return pipe_option.prefetch_thrds > 0 ? new PipelineQueue<XmlPrefetchedFile>("prefetch -> parse", pipe_option.prefetch_queue_size, pipe_option.prefetch_thrds, consumers) : null;
+	}
+
+	/**
+	 * Start prefetch threads.
+	 *
+	 * @param pipe_option pipeline option
+	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files
+	 * @return Thread[] prefetch threads
+	 */
+	public static Thread[] start(PipelineOption pipe_option, LinkedBlockingQueue<Path> xml_file_queue, PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue) {
+
+		Thread[] prefetch_thrd = new Thread[pipe_option.prefetch_thrds];
+
+		XmlPrefetchBufferPool buffer_pool = new XmlPrefetchBufferPool(pipe_option.prefetch_mem_budget, pipe_option.prefetch_mmap);
+
+		for (int thrd_id = 0; thrd_id < pipe_option.prefetch_thrds; thrd_id++) {
+
+			prefetch_thrd[thrd_id] = new Thread(new XmlPrefetchThrd(xml_file_queue, xml_prefetch_queue, buffer_pool), "prefetch-" + thrd_id);
+
+			prefetch_thrd[thrd_id].start();
+
+		}
+
+		return prefetch_thrd;
+	}
+
+	/**
+	 * Poll next XML file from either prefetch stage or XML file queue.
+	 *
+	 * @param xml_file_queue XML file queue
+	 * @param xml_prefetch_queue queue of prefetched XML files (null indicates no prefetch stage)
+	 * @param last_xml_file XML file polled last time, whose content is released if it remains
+	 * @return XmlPrefetchedFile next XML file (null indicates no more XML file)
+	 */
+	public static XmlPrefetchedFile poll(LinkedBlockingQueue<Path> xml_file_queue, PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue, XmlPrefetchedFile last_xml_file) {
+
+		if (last_xml_file != null)
+			last_xml_file.release();
+
+		if (xml_prefetch_queue == null) {
+
+			Path xml_file_path = xml_file_queue.poll();
+
+			return xml_file_path != null ? new XmlPrefetchedFile(xml_file_path) : null;
+		}
+
+		try {
+
+			return xml_prefetch_queue.take();
+
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.implement;
+
+import net.sf.xsd2pgschema.option.PipelineOption;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
+
+/**
+ * Thread function for split stage, which feeds XML documents split in memory to parser threads.
+ *
+ * @author yokochi
+ */
+public class XmlSplitThrd implements Runnable {
+
+	/** The XML splitter. */
+	private XmlSplitterImpl splitter;
+
+	/**
+	 * Instance of XmlSplitThrd.
+	 *
+	 * @param splitter XML splitter emitting split XML documents to queue
+	 */
+	public XmlSplitThrd(final XmlSplitterImpl splitter) {
+
+		this.splitter = splitter;
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+
+		splitter.exec();
+
+	}
+
+	/**
+	 * Return queue of split XML documents.
+	 *
+	 * @param pipe_option pipeline option
+	 * @param consumers number of parser threads
+	 * @return PipelineQueue queue of split XML documents
+	 */
+	public static PipelineQueue<XmlPrefetchedFile> createQueue(PipelineOption pipe_option, int consumers) {
+		return new PipelineQueue<XmlPrefetchedFile>("split -> parse", pipe_option.prefetch_queue_size, 1, consumers);
+	}
+
+	/**
+	 * Start split thread.
+	 *
+	 * @param splitter XML splitter
+	 * @param xml_split_queue queue of split XML documents
+	 * @param split_file_ext extension of split XML document, which determines document id
+	 * @return Thread[] split thread
+	 */
+	public static Thread[] start(XmlSplitterImpl splitter, PipelineQueue<XmlPrefetchedFile> xml_split_queue, String split_file_ext) {
+
+		splitter.setSplitQueue(xml_split_queue, split_file_ext);
+
+		Thread split_thrd = new Thread(new XmlSplitThrd(splitter), "split-0");
+
+		split_thrd.start();
+
+		return new Thread[] { split_thrd };
+	}
+
+}
@@ -19,32 +19,27 @@ limitations under the License.
 
 package net.sf.xsd2pgschema.implement;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
-import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.stream.XMLEventFactory;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
@@ -58,11 +53,13 @@ import com.github.antlr.grammars_v4.xpath.xpathListenerException;
 import com.github.antlr.grammars_v4.xpath.xpathParser;
 import com.github.antlr.grammars_v4.xpath.xpathParser.MainContext;
 
-import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
+import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.option.PgSchemaOption;
+import net.sf.xsd2pgschema.option.PipelineOption;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientImpl;
 import net.sf.xsd2pgschema.serverutil.PgSchemaClientType;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 import net.sf.xsd2pgschema.xpathparser.XPathCompList;
 
 /**
@@ -72,67 +69,65 @@ import net.sf.xsd2pgschema.xpathparser.XPathCompList;
  */
 public class XmlSplitterImpl {
 
-	/** The proc id. */
-	private int proc_id = 0;
+	/** The sequence of split XML documents, which distributes them to shards. */
+	private AtomicInteger proc_id = new AtomicInteger(0);
+
+	/** The number of split XML documents actually written. */
+	private AtomicInteger written_docs = new AtomicInteger(0);
 
 	/** The shard size. */
 	private int shard_size;
 
+	/** The maximum number of threads. */
+	private int max_thrds;
+
 	/** The PgSchema client. */
 	public PgSchemaClientImpl client;
 
 	/** The XML file queue. */
 	private LinkedBlockingQueue<Path> xml_file_queue;
 
-	/** The StAX read event handlers. */
-	private HashMap<Integer, EventHandler> read_handlers = new HashMap<Integer, EventHandler>();
-
-	/** The absolute path of document unit. */
-	private String doc_unit_path;
+	/** The element names along the absolute path of document unit. */
+	private String[] doc_unit_names;
 
-	/** The absolute path of document key. */
-	private String doc_key_path;
+	/** The element names along the absolute path of document key (or of its holder in case that document key is attribute). */
+	private String[] doc_key_names;
 
-	/** The element path of document key in case that document key is attribute. */
-	private String attr_doc_key_holder = null;
+	/** The attribute name of document key (null indicates that document key is element). */
+	private String doc_key_attr_name = null;
 
-	/** Whether document key is attribute or element (false). */
-	private boolean attr_doc_key;
+	/** The XML directory path. */
+	private Path xml_dir_path;
 
-	/** The current path. */
-	private StringBuilder cur_path = null;
-
-	/** The XML write event factory. */
-	private XMLEventFactory xml_event_factory = null;
-
-	/** Whether XML header is empty. */
-	private boolean no_header;
+	/** The XML directory paths. */
+	private Path[] xml_dir_paths;
 
-	/** Whether no document key has appeared in document unit. */
-	private boolean no_document_key;
+	/** Whether to append split XML documents to packed shard archives. */
+	private boolean pack_shard = false;
 
-	/** The list of XML start event for XML header. */
-	private List<XMLEvent> header_start_events = null;
+	/** The output streams of packed shard archives (null indicates writing split XML files individually). */
+	private ZipOutputStream[] shard_zouts = null;
 
-	/** The list of XML end event for XML header. */
-	private List<XMLEvent> header_end_events = null;
+	/** The number of entries in each packed shard archive. */
+	private int[] shard_entries = null;
 
-	/** The list of XML event of interim XML content before xml_writer is prepared. */
-	private List<XMLEvent> interim_events = null;
+	/** Whether any dictionary has been updated. */
+	public boolean updated = false;
 
-	/** The XML event writer. */
-	private XMLEventWriter xml_writer = null;
+	/** The queue of split XML documents (null indicates writing split XML files). */
+	private PipelineQueue<XmlPrefetchedFile> split_queue = null;
 
-	/** The XML directory paths. */
-	private Path[] xml_dir_paths;
+	/** The extension of split XML document in queue. */
+	private String split_file_ext;
 
-	/** Whether any dictionary has been updated. */
-	public boolean updated = false;
+	/** The queue of split XML documents passed from split threads to write threads (null indicates that split threads write by themselves). */
+	private PipelineQueue<SplitDoc> split_doc_queue = null;
 
 	/**
 	 * Instance of XmlSplitterImpl.
 	 *
 	 * @param shard_size shard size
+	 * @param max_thrds maximum number of threads
 	 * @param is InputStream of XML Schema
 	 * @param xml_dir_path XML directory path
 	 * @param xml_file_queue XML file queue
@@ -146,33 +141,16 @@ public class XmlSplitterImpl {
 	 * @throws PgSchemaException the pg schema exception
 	 * @throws xpathListenerException the xpath listener exception
 	 */
-	public XmlSplitterImpl(final int shard_size, final InputStream is, final Path xml_dir_path, final LinkedBlockingQueue<Path> xml_file_queue, final PgSchemaOption option, final FSTConfiguration fst_conf, final String xpath_doc_key) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, xpathListenerException {
+	public XmlSplitterImpl(final int shard_size, final int max_thrds, final InputStream is, final Path xml_dir_path, final LinkedBlockingQueue<Path> xml_file_queue, final PgSchemaOption option, final FSTConfiguration fst_conf, final String xpath_doc_key) throws ParserConfigurationException, SAXException, IOException, NoSuchAlgorithmException, PgSchemaException, xpathListenerException {
 
 		this.shard_size = shard_size <= 0 ? 1 : shard_size;
+		this.max_thrds = max_thrds <= 0 ? 1 : max_thrds;
 
 		this.xml_file_queue = xml_file_queue;
 
 		client = new PgSchemaClientImpl(is, option, fst_conf, PgSchemaClientType.xpath_evaluation, Thread.currentThread().getStackTrace()[2].getClassName(), null);
 
-		// prepare shard directories
-
-		xml_dir_paths = new Path[shard_size];
-
-		if (shard_size == 1)
-			xml_dir_paths[0] = xml_dir_path;
-
-		else {
-
-			for (int shard_id = 0; shard_id < shard_size; shard_id++) {
-
-				xml_dir_paths[shard_id] = Paths.get(xml_dir_path.toString(), PgSchemaUtil.shard_dir_prefix + shard_id);
-
-				if (!Files.isDirectory(xml_dir_paths[shard_id]))
-					Files.createDirectory(xml_dir_paths[shard_id]);
-
-			}
-
-		}
+		this.xml_dir_path = xml_dir_path;
 
 		// validate XPath expression with schema
 
@@ -246,512 +224,774 @@ public class XmlSplitterImpl {
 			throw new xpathListenerException("Cound not specify document key from XPath expression. (" + main_text + ")");
 		}
 
-		doc_unit_path = doc_unit.path_exprs.get(0).getReadablePath();
-		doc_key_path = doc_key.path_exprs.get(0).getReadablePath();
+
+		String doc_unit_path = doc_unit.path_exprs.get(0).getReadablePath();
+		String doc_key_path = doc_key.path_exprs.get(0).getReadablePath();
 
 		if (doc_key.hasPathEndsWithTextNode())
 			doc_key_path = doc_key_path.substring(0, doc_key_path.lastIndexOf('/'));
 
-		attr_doc_key = doc_key_path.substring(doc_key_path.lastIndexOf('/') + 1, doc_key_path.length()).startsWith("@");
+		if (doc_key_path.substring(doc_key_path.lastIndexOf('/') + 1).startsWith("@")) {
+
+			doc_key_attr_name = doc_key_path.substring(doc_key_path.lastIndexOf('/') + 2);
+			doc_key_path = doc_key_path.substring(0, doc_key_path.lastIndexOf('/'));
 
-		if (attr_doc_key)
-			attr_doc_key_holder = doc_key_path.substring(0, doc_key_path.lastIndexOf('/'));
+		}
 
 		updated = doc_unit.updated || doc_key.updated;
 
 		doc_unit.clear();
 		doc_key.clear();
 
-		// StAX read event handlers
+		// compile paths into element names per depth
 
-		read_handlers.put(XMLEvent.START_DOCUMENT, new StartDocumentReadHandler());
-		read_handlers.put(XMLEvent.END_DOCUMENT, new EndDocumentReadHandler());
+		doc_unit_names = doc_unit_path.substring(1).split("/");
+		doc_key_names = doc_key_path.substring(1).split("/");
 
-		read_handlers.put(XMLEvent.START_ELEMENT, new StartElementReadHandler());
-		read_handlers.put(XMLEvent.END_ELEMENT, new EndElementReadHandler());
+		if (doc_key_names.length < doc_unit_names.length)
+			throw new xpathListenerException("Document key is not included in document unit. (" + main_text + ")");
 
-		read_handlers.put(XMLEvent.ATTRIBUTE, new CommonReadHandler());
-
-		read_handlers.put(XMLEvent.NAMESPACE, new CommonReadHandler());
-
-		read_handlers.put(XMLEvent.CHARACTERS, new CharactersReadHandler());
-		read_handlers.put(XMLEvent.SPACE, new CommonReadHandler());
-		read_handlers.put(XMLEvent.CDATA, new CommonReadHandler());
+	}
 
-		read_handlers.put(XMLEvent.COMMENT, new CommonReadHandler());
+	/**
+	 * Emit split XML documents to queue instead of writing XML files.
+	 *
+	 * @param split_queue queue of split XML documents
+	 * @param split_file_ext extension of split XML document, which determines document id
+	 */
+	public void setSplitQueue(PipelineQueue<XmlPrefetchedFile> split_queue, String split_file_ext) {
 
-		read_handlers.put(XMLEvent.PROCESSING_INSTRUCTION, new CommonReadHandler());
+		this.split_queue = split_queue;
+		this.split_file_ext = split_file_ext;
 
-		read_handlers.put(XMLEvent.ENTITY_REFERENCE, new CommonReadHandler());
-		read_handlers.put(XMLEvent.ENTITY_DECLARATION, new CommonReadHandler());
+	}
 
-		read_handlers.put(XMLEvent.DTD, new CommonReadHandler());
+	/**
+	 * Append split XML documents to packed shard archives (part-N.zip), instead of writing split XML files individually.
+	 * Each entry is named after document key, and the central directory of archive serves as index of document key to offset.
+	 */
+	public void setPackShard() {
 
-		read_handlers.put(XMLEvent.NOTATION_DECLARATION, new CommonReadHandler());
+		pack_shard = true;
 
 	}
 
 	/**
-	 * Execute splitting large XML file.
+	 * Prepare shard directories or packed shard archives.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public void exec() {
+	private void prepareShards() throws IOException {
 
-		long start_time = System.currentTimeMillis();
+		if (pack_shard) {
 
-		try {
+			shard_zouts = new ZipOutputStream[shard_size];
+			shard_entries = new int[shard_size];
 
-			xml_event_factory = XMLEventFactory.newInstance();
+			// existing packed shard archive is never overwritten
 
-			XMLInputFactory in_factory = XMLInputFactory.newInstance();
+			try {
 
-			InputStream in;
-			XMLEventReader reader;
-			XMLEvent event;
-			EventHandler handler;
-			Path xml_file_path;
+				for (int shard_id = 0; shard_id < shard_size; shard_id++)
+					shard_zouts[shard_id] = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(getShardArchivePath(shard_id), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), PgSchemaUtil.def_buffered_output_stream_buffer_size));
 
-			while ((xml_file_path = xml_file_queue.poll()) != null) {
+			} catch (FileAlreadyExistsException e) {
 
-				System.out.println("Splitting " + xml_file_path.getFileName().toString() + "...");
+				closeShards();
+
+				throw new IOException("Packed shard archive " + e.getFile() + " already exists. Remove it or select another directory.");
+			}
+
+			return;
+		}
+
+		xml_dir_paths = new Path[shard_size];
+
+		if (shard_size == 1)
+			xml_dir_paths[0] = xml_dir_path;
+
+		else {
+
+			for (int shard_id = 0; shard_id < shard_size; shard_id++) {
+
+				xml_dir_paths[shard_id] = Paths.get(xml_dir_path.toString(), PgSchemaUtil.shard_dir_prefix + shard_id);
+
+				if (!Files.isDirectory(xml_dir_paths[shard_id]))
+					Files.createDirectory(xml_dir_paths[shard_id]);
 
-				// XML event reader of source XML file
+			}
 
-				in = PgSchemaUtil.getSchemaInputStream(xml_file_path);
+		}
 
-				reader = in_factory.createXMLEventReader(in);
+	}
 
-				// XML event writer for XML header
+	/**
+	 * Return file path of packed shard archive.
+	 *
+	 * @param shard_id shard id
+	 * @return Path file path of packed shard archive
+	 */
+	private Path getShardArchivePath(int shard_id) {
+		return Paths.get(xml_dir_path.toString(), PgSchemaUtil.shard_dir_prefix + shard_id + ".zip");
+	}
 
-				header_start_events = new ArrayList<XMLEvent>();
-				header_end_events = new ArrayList<XMLEvent>();
+	/**
+	 * Close packed shard archives, where archive having no entry is deleted.
+	 */
+	private void closeShards() {
 
-				// XML event writer for interim XML content before xml_writer is prepared
+		if (shard_zouts == null)
+			return;
 
-				interim_events = new ArrayList<XMLEvent>();
+		for (int shard_id = 0; shard_id < shard_size; shard_id++) {
 
-				no_header = true;
+			ZipOutputStream zout = shard_zouts[shard_id];
 
-				while (reader.hasNext()) {
+			if (zout == null)
+				continue;
 
-					event = reader.nextEvent();
+			// archive having no entry may fail to be closed, but it is deleted anyway
 
-					handler = read_handlers.get(event.getEventType());
+			try {
+				zout.close();
+			} catch (IOException e) {
+				if (shard_entries[shard_id] > 0)
+					e.printStackTrace();
+			}
 
-					handler.handleEvent(event);
+			if (shard_entries[shard_id] == 0) {
 
+				try {
+					Files.deleteIfExists(getShardArchivePath(shard_id));
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 
-				header_start_events.clear();
-				header_end_events.clear();
+			}
 
-				interim_events.clear();
+		}
 
-				reader.close();
+		shard_zouts = null;
+		shard_entries = null;
 
-				in.close();
+	}
 
-				System.out.println("\nDone.");
+	/**
+	 * Execute splitting large XML files.
+	 * Several XML files are split in parallel, and remaining threads write split XML documents of shards in parallel.
+	 */
+	public void exec() {
+
+		long start_time = System.currentTimeMillis();
+
+		if (split_queue == null) {
 
+			try {
+				prepareShards();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
 			}
 
-		} catch (IOException | XMLStreamException e) {
+		}
+
+		int split_thrds = Math.max(1, Math.min(xml_file_queue.size(), max_thrds));
+		int write_thrds = max_thrds - split_thrds;
+
+		if (write_thrds > 0)
+			split_doc_queue = new PipelineQueue<SplitDoc>("split -> write", PipelineOption.def_queue_size * write_thrds, split_thrds, write_thrds);
+
+		Thread[] thrd = new Thread[split_thrds + write_thrds];
+
+		for (int thrd_id = 0; thrd_id < split_thrds; thrd_id++) {
+
+			thrd[thrd_id] = new Thread(new SplitThrd(), "split-" + thrd_id);
+
+			thrd[thrd_id].start();
+
+		}
+
+		for (int thrd_id = 0; thrd_id < write_thrds; thrd_id++) {
+
+			thrd[split_thrds + thrd_id] = new Thread(new WriteThrd(), "split-writer-" + thrd_id);
+
+			thrd[split_thrds + thrd_id].start();
+
+		}
+
+		try {
+
+			for (Thread _thrd : thrd)
+				_thrd.join();
+
+		} catch (InterruptedException e) {
 			e.printStackTrace();
+		} finally {
+
+			if (split_queue != null)
+				split_queue.close();
+
+			closeShards();
+
+		}
+
+		System.out.println("\rGenerated " + written_docs.get() + " XML documents.");
+
+		if (split_doc_queue != null) {
+
+			split_doc_queue.showStatistics();
+
+			split_doc_queue = null;
+
 		}
 
 		long end_time = System.currentTimeMillis();
 
 		System.out.println("Execution time: " + (end_time - start_time) + " ms");
 
-		read_handlers.clear();
-
 	}
 
 	/**
-	 * The Interface EventHandler.
+	 * Split XML document passed to write thread.
 	 */
-	interface EventHandler {
+	private static class SplitDoc {
+
+		/** The document id. */
+		String document_id;
+
+		/** The content of split XML document. */
+		String content;
 
 		/**
-		 * Handle event.
+		 * Instance of SplitDoc.
 		 *
-		 * @param element the element
+		 * @param document_id document id
+		 * @param content content of split XML document
 		 */
-		public void handleEvent(XMLEvent element);
+		SplitDoc(String document_id, String content) {
+
+			this.document_id = document_id;
+			this.content = content;
+
+		}
+
 	}
 
 	/**
-	 * The Class StartDocumentReadHandler.
+	 * Write split XML document into XML file or queue of split XML documents.
+	 *
+	 * @param document_id document id
+	 * @param content content of split XML document
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	class StartDocumentReadHandler implements EventHandler {
+	private void write(String document_id, String content) throws IOException {
 
-		/* (non-Javadoc)
-		 * @see XmlSplitterImpl.EventHandler#handleEvent(javax.xml.stream.events.XMLEvent)
-		 */
-		@Override
-		public void handleEvent(XMLEvent element) {
+		byte[] bytes = content.getBytes(PgSchemaUtil.def_encoding);
+
+		int doc_id = proc_id.getAndIncrement();
 
-			cur_path = new StringBuilder();
+		if (split_queue != null) {
 
-			if (no_header) {
+			XmlPrefetchedFile xml_file = new XmlPrefetchedFile(Paths.get(document_id + split_file_ext), bytes);
 
-				header_start_events.add(element);
-				header_end_events.add(xml_event_factory.createEndDocument());
+			xml_file.in_memory = true;
 
+			try {
+				split_queue.put(xml_file);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
 			}
 
 		}
 
+		else if (shard_zouts != null) {
+
+			ZipOutputStream zout = shard_zouts[doc_id % shard_size];
+
+			synchronized (zout) {
+
+				try {
+					zout.putNextEntry(new ZipEntry(document_id + ".xml"));
+				} catch (ZipException e) {
+					System.err.println("Skipped duplicated document key: " + document_id);
+					return;
+				}
+
+				zout.write(bytes);
+				zout.closeEntry();
+
+				shard_entries[doc_id % shard_size]++;
+
+			}
+
+		}
+
+		else
+			Files.write(Paths.get(xml_dir_paths[doc_id % shard_size].toString(), document_id + ".xml"), bytes);
+
+		int written = written_docs.incrementAndGet();
+
+		if (written % 1000 == 0)
+			System.out.print("\rGenerated " + written + " XML documents.");
+
 	}
 
 	/**
-	 * The Class EndDocumentReadHandler.
+	 * Thread function for write stage, which writes split XML documents of shards.
 	 */
-	class EndDocumentReadHandler implements EventHandler {
+	private class WriteThrd implements Runnable {
 
 		/* (non-Javadoc)
-		 * @see XmlSplitterImpl.EventHandler#handleEvent(javax.xml.stream.events.XMLEvent)
+		 * @see java.lang.Runnable#run()
 		 */
 		@Override
-		public void handleEvent(XMLEvent element) {
+		public void run() {
 
-			cur_path.setLength(0);
+			SplitDoc split_doc;
+
+			try {
+
+				while ((split_doc = split_doc_queue.take()) != null) {
+
+					try {
+						write(split_doc.document_id, split_doc.content);
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+
+				}
+
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} finally {
+				split_doc_queue.done();
+			}
 
 		}
 
 	}
 
 	/**
-	 * The Class StartElementReadHandler.
+	 * Thread function for split stage, which splits XML files via StAX cursor.
+	 * Element names are compared against compiled paths only while the current path keeps matching them.
 	 */
-	class StartElementReadHandler implements EventHandler {
+	private class SplitThrd implements Runnable {
 
-		/* (non-Javadoc)
-		 * @see XmlSplitterImpl.EventHandler#handleEvent(javax.xml.stream.events.XMLEvent)
-		 */
-		@Override
-		public void handleEvent(XMLEvent element) {
+		/** The current depth of element. */
+		private int depth;
+
+		/** The depth matched with path of document unit. */
+		private int unit_matched;
 
-			StartElement start_elem = element.asStartElement();
+		/** The depth matched with path of document key. */
+		private int key_matched;
 
-			cur_path.append("/" + start_elem.getName().getLocalPart());
+		/** The XML declaration. */
+		private String xml_decl;
 
-			String _cur_path = cur_path.toString();
+		/** The start tags of ancestors of document unit. */
+		private String[] header_start_tags = new String[doc_unit_names.length];
 
-			boolean doc_unit = _cur_path.equals(doc_unit_path);
+		/** The end tags of ancestors of document unit. */
+		private String[] header_end_tags = new String[doc_unit_names.length];
 
-			if (doc_unit)
-				no_document_key = true;
+		/** The header of split XML document. */
+		private String header = null;
 
-			if (no_header) {
+		/** The footer of split XML document. */
+		private String footer = null;
 
-				header_start_events.add(element);
+		/** The content of current document unit. */
+		private StringBuilder unit_body = new StringBuilder(PgSchemaUtil.def_buffered_output_stream_buffer_size);
 
-				if (doc_unit) {
+		/** The text content of document key. */
+		private StringBuilder key_text = new StringBuilder();
 
-					// reverse order of end events
+		/** The document id of current document unit. */
+		private String document_id;
+
+		/* (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
 
-					Collections.reverse(header_end_events);
+			XMLInputFactory in_factory = XMLInputFactory.newInstance();
 
-					no_header = false;
+			Path xml_file_path;
 
-				}
+			while ((xml_file_path = xml_file_queue.poll()) != null) {
 
-				else {
+				System.out.println("Splitting " + xml_file_path.getFileName().toString() + "...");
 
-					// append end event
+				try (InputStream in = PgSchemaUtil.getSchemaInputStream(xml_file_path)) {
 
-					QName qname = start_elem.getName();
+					if (in instanceof ZipInputStream)
+						((ZipInputStream) in).getNextEntry();
 
-					header_end_events.add(xml_event_factory.createEndElement(qname.getPrefix(), qname.getNamespaceURI(), qname.getLocalPart()));
+					XMLStreamReader reader = in_factory.createXMLStreamReader(in);
 
+					try {
+						split(reader);
+					} finally {
+						reader.close();
+					}
+
+				} catch (IOException | XMLStreamException e) {
+					System.err.println("Exception occurred while splitting XML file: " + xml_file_path.toAbsolutePath().toString());
+					e.printStackTrace();
 				}
 
 			}
 
-			else if (xml_writer == null) {
+			if (split_doc_queue != null)
+				split_doc_queue.close();
 
-				if (!doc_unit)
-					interim_events.add(element);
+		}
 
-				if (attr_doc_key && _cur_path.equals(attr_doc_key_holder)) {
+		/**
+		 * Split XML file.
+		 *
+		 * @param reader XML stream reader
+		 * @throws XMLStreamException the XML stream exception
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private void split(XMLStreamReader reader) throws XMLStreamException, IOException {
 
-					Iterator<?> iter_attr = start_elem.getAttributes();
+			int unit_depth = doc_unit_names.length;
+			int key_depth = doc_key_names.length;
 
-					if (iter_attr != null) {
+			boolean in_unit = false;
 
-						javax.xml.stream.events.Attribute attr;
+			depth = unit_matched = key_matched = 0;
 
-						while (iter_attr.hasNext()) {
+			xml_decl = "<?xml version=\"" + (reader.getVersion() != null ? reader.getVersion() : "1.0") + "\" encoding=\"" + PgSchemaUtil.def_encoding + "\"?>\n";
 
-							attr = (Attribute) iter_attr.next();
+			header = footer = null;
 
-							if (doc_key_path.equals(attr_doc_key_holder + "/@" + attr.getName())) {
+			while (reader.hasNext()) {
 
-								try {
+				switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					++depth;
 
-									createXMLEventWriter(PgSchemaUtil.collapseWhiteSpace(attr.getValue()));
+					if (unit_matched == depth - 1 && depth <= unit_depth && reader.getLocalName().equals(doc_unit_names[depth - 1])) {
 
-								} catch (PgSchemaException | IOException | XMLStreamException e) {
-									e.printStackTrace();
-								}
+						unit_matched = depth;
 
-								break;
-							}
+						if (depth < unit_depth) {
+
+							header_start_tags[depth - 1] = getStartTag(reader);
+							header_end_tags[depth - 1] = "</" + getQName(reader) + ">";
+
+							header = null;
 
 						}
 
-					}
+						else {
 
-				}
+							in_unit = true;
 
-			}
+							document_id = null;
 
-			else {
+							key_matched = depth - 1;
 
-				try {
+							unit_body.setLength(0);
 
-					xml_writer.add(element);
+						}
 
-				} catch (XMLStreamException e) {
-					e.printStackTrace();
-				}
+					}
 
-			}
+					if (in_unit) {
 
-		}
+						unit_body.append(getStartTag(reader));
 
-	}
+						if (document_id == null && key_matched == depth - 1 && depth <= key_depth && reader.getLocalName().equals(doc_key_names[depth - 1])) {
 
-	/**
-	 * The Class EndElementReadHandler.
-	 */
-	class EndElementReadHandler implements EventHandler {
+							key_matched = depth;
 
-		/* (non-Javadoc)
-		 * @see XmlSplitterImpl.EventHandler#handleEvent(javax.xml.stream.events.XMLEvent)
-		 */
-		@Override
-		public void handleEvent(XMLEvent element) {
+							if (depth == key_depth) {
 
-			boolean doc_unit = cur_path.toString().equals(doc_unit_path);
+								if (doc_key_attr_name == null)
+									key_text.setLength(0);
 
-			if (no_header)
-				header_start_events.add(element);
+								else {
 
-			else if (xml_writer == null) {
+									for (int i = 0; i < reader.getAttributeCount(); i++) {
 
-				if (!doc_unit)
-					interim_events.add(element);
+										if (reader.getAttributeLocalName(i).equals(doc_key_attr_name)) {
 
-			}
+											document_id = PgSchemaUtil.collapseWhiteSpace(reader.getAttributeValue(i));
 
-			else {
+											break;
+										}
 
-				try {
+									}
 
-					xml_writer.add(element);
+								}
 
-				} catch (XMLStreamException e) {
-					e.printStackTrace();
-				}
+							}
 
-			}
+						}
 
-			if (doc_unit) {
+					}
 
-				try {
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					if (in_unit) {
 
-					closeXMLEventWriter();
+						unit_body.append("</").append(getQName(reader)).append('>');
 
-				} catch (XMLStreamException | IOException e) {
-					e.printStackTrace();
-				}
+						if (document_id == null && doc_key_attr_name == null && key_matched == key_depth && depth == key_depth)
+							document_id = PgSchemaUtil.collapseWhiteSpace(key_text.toString());
 
-			}
+						if (depth == unit_depth) {
 
-			int len = cur_path.length() - element.asEndElement().getName().getLocalPart().length() - 1;
+							in_unit = false;
 
-			cur_path.setLength(len);
+							emit();
 
-		}
+						}
 
-	}
+					}
 
-	/**
-	 * The Class CommonReadHandler.
-	 */
-	class CommonReadHandler implements EventHandler {
+					if (unit_matched >= depth)
+						unit_matched = depth - 1;
 
-		/* (non-Javadoc)
-		 * @see XmlSplitterImpl.EventHandler#handleEvent(javax.xml.stream.events.XMLEvent)
-		 */
-		@Override
-		public void handleEvent(XMLEvent element) {
+					if (key_matched >= depth)
+						key_matched = depth - 1;
 
-			if (no_header)
-				header_start_events.add(element);
+					--depth;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					if (in_unit) {
 
-			else if (xml_writer == null) {
+						appendEscaped(unit_body, reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(), false);
 
-				if (!cur_path.toString().equals(doc_unit_path))
-					interim_events.add(element);
+						if (document_id == null && doc_key_attr_name == null && key_matched == key_depth && depth == key_depth)
+							key_text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
 
-			}
+					}
+					break;
+				case XMLStreamConstants.CDATA:
+					if (in_unit) {
 
-			else {
+						unit_body.append("<![CDATA[").append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength()).append("]]>");
 
-				try {
+						if (document_id == null && doc_key_attr_name == null && key_matched == key_depth && depth == key_depth)
+							key_text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+
+					}
+					break;
+				case XMLStreamConstants.COMMENT:
+					if (in_unit)
+						unit_body.append("<!--").append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength()).append("-->");
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					if (in_unit) {
 
-					xml_writer.add(element);
+						String data = reader.getPIData();
 
-				} catch (XMLStreamException e) {
-					e.printStackTrace();
+						unit_body.append("<?").append(reader.getPITarget());
+
+						if (data != null && !data.isEmpty())
+							unit_body.append(' ').append(data);
+
+						unit_body.append("?>");
+
+					}
+					break;
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					if (in_unit)
+						unit_body.append('&').append(reader.getLocalName()).append(';');
+					break;
 				}
 
 			}
 
 		}
 
-	}
+		/**
+		 * Emit current document unit as split XML document.
+		 *
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		private void emit() throws IOException {
 
-	/**
-	 * The Class CharactersReadHandler.
-	 */
-	class CharactersReadHandler implements EventHandler {
+			if (document_id == null || document_id.isEmpty()) {
 
-		/* (non-Javadoc)
-		 * @see XmlSplitterImpl.EventHandler#handleEvent(javax.xml.stream.events.XMLEvent)
-		 */
-		@Override
-		public void handleEvent(XMLEvent element) {
+				System.err.println("Skipped document unit without document key.");
 
-			if (no_header)
-				header_start_events.add(element);
+				return;
+			}
 
-			else if (xml_writer == null) {
+			// header and footer are rebuilt only when ancestors of document unit change
 
-				if (!cur_path.toString().equals(doc_unit_path))
-					interim_events.add(element);
+			if (header == null) {
 
-				if (no_document_key && !attr_doc_key && cur_path.toString().equals(doc_key_path)) {
+				StringBuilder sb = new StringBuilder(xml_decl);
 
-					try {
+				for (int d = 0; d < header_start_tags.length - 1; d++)
+					sb.append(header_start_tags[d]).append('\n');
 
-						createXMLEventWriter(PgSchemaUtil.collapseWhiteSpace(element.asCharacters().getData()));
+				header = sb.toString();
 
-					} catch (PgSchemaException | IOException | XMLStreamException e) {
-						e.printStackTrace();
-					}
+				sb.setLength(0);
 
-				}
+				for (int d = header_end_tags.length - 2; d >= 0; d--)
+					sb.append('\n').append(header_end_tags[d]);
+
+				sb.append('\n');
+
+				footer = sb.toString();
 
 			}
 
-			else {
+			String content = new StringBuilder(header.length() + unit_body.length() + footer.length()).append(header).append(unit_body).append(footer).toString();
 
-				try {
+			if (split_doc_queue == null) {
 
-					xml_writer.add(element);
+				write(document_id, content);
 
-				} catch (XMLStreamException e) {
-					e.printStackTrace();
-				}
+				return;
+			}
 
+			try {
+				split_doc_queue.put(new SplitDoc(document_id, content));
+			} catch (InterruptedException e) {
+				e.printStackTrace();
 			}
 
 		}
 
 	}
 
-	/** The buffered writer for split XML file. */
-	private BufferedWriter bout = null;
-
 	/**
-	 * Create XML event writer.
+	 * Return qualified name of current element.
 	 *
-	 * @param document_id current document key
-	 * @throws PgSchemaException the pg schema exception
-	 * @throws IOException Signals that an I/O exception has occurred.
-	 * @throws XMLStreamException the XML stream exception
+	 * @param reader XML stream reader
+	 * @return String qualified name of current element
 	 */
-	private void createXMLEventWriter(String document_id) throws PgSchemaException, IOException, XMLStreamException {
+	private static String getQName(XMLStreamReader reader) {
 
-		if (document_id == null || document_id.isEmpty())
-			throw new PgSchemaException("Invalid document id.");
+		String prefix = reader.getPrefix();
 
-		no_document_key = false;
+		return prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+	}
 
-		Path xml_file_path = Paths.get(xml_dir_paths[proc_id++ % shard_size].toString(), document_id + ".xml");
+	/**
+	 * Return start tag of current element including namespace declarations and attributes.
+	 *
+	 * @param reader XML stream reader
+	 * @return String start tag of current element
+	 */
+	private static String getStartTag(XMLStreamReader reader) {
 
-		XMLOutputFactory out_factory = XMLOutputFactory.newInstance();
+		StringBuilder sb = new StringBuilder();
 
-		bout = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(xml_file_path), PgSchemaUtil.def_encoding), PgSchemaUtil.def_buffered_output_stream_buffer_size);
+		sb.append('<').append(getQName(reader));
 
-		// XML event writer of split XML file
+		String prefix;
 
-		xml_writer = out_factory.createXMLEventWriter(bout);
+		for (int i = 0; i < reader.getNamespaceCount(); i++) {
 
-		header_start_events.forEach(event -> {
+			prefix = reader.getNamespacePrefix(i);
 
-			try {
+			sb.append(prefix == null || prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix).append("=\"");
 
-				xml_writer.add(event);
+			appendEscaped(sb, reader.getNamespaceURI(i), true);
 
-			} catch (XMLStreamException e) {
-				e.printStackTrace();
-			}
+			sb.append('"');
 
-		});
+		}
 
-		if (!interim_events.isEmpty()) {
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
 
-			interim_events.forEach(event -> {
+			prefix = reader.getAttributePrefix(i);
 
-				try {
+			sb.append(' ');
 
-					xml_writer.add(event);
+			if (prefix != null && !prefix.isEmpty())
+				sb.append(prefix).append(':');
 
-				} catch (XMLStreamException e) {
-					e.printStackTrace();
-				}
+			sb.append(reader.getAttributeLocalName(i)).append("=\"");
 
-			});
+			appendEscaped(sb, reader.getAttributeValue(i), true);
 
-			interim_events.clear();
+			sb.append('"');
 
 		}
 
+		return sb.append('>').toString();
 	}
 
 	/**
-	 * Close XML event writer.
+	 * Append escaped text.
 	 *
-	 * @throws XMLStreamException the XML stream exception
-	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @param sb string builder
+	 * @param text text
+	 * @param attr whether text is attribute value
 	 */
-	private void closeXMLEventWriter() throws XMLStreamException, IOException {
+	private static void appendEscaped(StringBuilder sb, String text, boolean attr) {
 
-		header_end_events.forEach(event -> {
+		if (text != null)
+			appendEscaped(sb, text.toCharArray(), 0, text.length(), attr);
 
-			try {
+	}
+
+	/**
+	 * Append escaped characters.
+	 *
+	 * @param sb string builder
+	 * @param chars array of characters
+	 * @param start start offset
+	 * @param length length of characters
+	 * @param attr whether characters are attribute value
+	 */
+	private static void appendEscaped(StringBuilder sb, char[] chars, int start, int length, boolean attr) {
 
-				xml_writer.add(event);
+		int end = start + length, last = start;
 
-			} catch (XMLStreamException e) {
-				e.printStackTrace();
-			}
+		char c;
 
-		});
+		for (int i = start; i < end; i++) {
 
-		xml_writer.close();
+			c = chars[i];
 
-		bout.close();
+			switch (c) {
+			case '&':
+			case '<':
+			case '>':
+				break;
+			case '"':
+				if (attr)
+					break;
+			default:
+				continue;
+			}
+
+			sb.append(chars, last, i - last);
+
+			switch (c) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			default:
+				sb.append("&quot;");
+			}
 
-		// set null for recursive document generation
+			last = i + 1;
 
-		xml_writer = null;
+		}
 
-		System.out.print("\rGenerated " + proc_id + " XML documents.");
+		sb.append(chars, last, end - last);
 
 	}
 
@@ -0,0 +1,378 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.nodeparser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.xml.transform.TransformerException;
+
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import net.sf.xsd2pgschema.PgField;
+import net.sf.xsd2pgschema.PgSchemaException;
+import net.sf.xsd2pgschema.PgSchemaUtil;
+import net.sf.xsd2pgschema.PgTable;
+
+/**
+ * Node parser for PostgreSQL binary COPY format conversion.
+ *
+ * @author yokochi
+ */
+public class PgSchemaNode2PgBin extends PgSchemaNodeParser {
+
+	/** The data output stream for binary COPY format. */
+	private DataOutputStream bin_out = null;
+
+	/** Whether to enable PostgreSQL view for this table. */
+	private boolean pg_view;
+
+	/** The buffer of current row. */
+	private ByteArrayOutputStream row_buffer = null;
+
+	/** The data output stream of current row. */
+	private DataOutputStream row_out = null;
+
+	/**
+	 * Node parser for PostgreSQL binary COPY format conversion.
+	 *
+	 * @param npb node parser builder
+	 * @param parent_table parent table (set null if current table is root table)
+	 * @param table current table
+	 * @param as_attr whether parent node as attribute
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	protected PgSchemaNode2PgBin(final PgSchemaNodeParserBuilder npb, final PgTable parent_table, final PgTable table, final boolean as_attr) throws PgSchemaException {
+
+		super(npb, parent_table, table);
+
+		if (table.writable)
+			init(as_attr);
+
+	}
+
+	/**
+	 * Initialize node parser.
+	 *
+	 * @param as_attr whether parent node as attribute
+	 */
+	@Override
+	protected void init(boolean as_attr) {
+
+		this.as_attr = as_attr;
+
+		pg_view = !npb.schema.option.realize_simple_brdg && table.simple_bridge;
+
+		if (table.writable) {
+
+			if (!pg_view)
+				bin_out = table.bin_out;
+
+			row_buffer = new ByteArrayOutputStream();
+			row_out = new DataOutputStream(row_buffer);
+
+		}
+
+	}
+
+	/**
+	 * Traverse nested node.
+	 *
+	 * @param parent_node parent node
+	 * @param nested_key nested key
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	@Override
+	protected void traverseNestedNode(final Node parent_node, final PgSchemaNestedKey nested_key) throws PgSchemaException {
+
+		PgSchemaNode2PgBin node_parser = new PgSchemaNode2PgBin(npb, table, nested_key.table, nested_key.as_attr);
+		PgSchemaNodeTester node_test = node_parser.node_test;
+
+		node_test.prepForTraversal(table, parent_node, nested_key);
+
+		try {
+
+			for (Node node = parent_node.getFirstChild(); node != null; node = node.getNextSibling()) {
+
+				if (node.getNodeType() != Node.ELEMENT_NODE)
+					continue;
+
+				if (node_test.isOmissibleNode(node))
+					continue;
+
+				if (node_parser.parseProcNode())
+					break;
+
+			}
+
+			if (node_parser.visited)
+				return;
+
+			node_parser.parseNode(parent_node);
+
+		} finally {
+			node_parser.clear();
+		}
+
+	}
+
+	/**
+	 * Parse processing node.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	@Override
+	protected void parse() throws PgSchemaException {
+
+		if (table.visited_key.equals(current_key = node_test.proc_key))
+			return;
+
+		if (table.has_path_restriction)
+			extractParentAncestorNodeName();
+
+		Node proc_node = node_test.proc_node;
+
+		clear();
+
+		if (!table.writable) {
+
+			if (total_nested_fields > 0)
+				table.nested_fields.forEach(field -> setNestedKey(proc_node, field));
+
+			return;
+		}
+
+		if (visited)
+			not_complete = null_simple_list = false;
+
+		row_buffer.reset();
+
+		try {
+
+			PgField field;
+
+			row_out.writeShort(_fields_size);
+
+			if (npb.rel_data_ext) {
+
+				for (int f = 0; f < _fields_size; f++) {
+
+					field = _fields.get(f);
+
+					// document_key
+
+					if (field.document_key)
+						field.write(row_out, npb.document_id);
+
+					// primary_key
+
+					else if (field.primary_key)
+						npb.writeHashKey(row_out, node_test.primary_key);
+
+					// foreign_key
+
+					else if (field.foreign_key) {
+
+						if (parent_table.xname.equals(field.foreign_table_xname))
+							npb.writeHashKey(row_out, node_test.parent_key);
+						else
+							row_out.writeInt(-1);
+
+					}
+
+					// nested_key
+
+					else if (field.nested_key) {
+
+						String nested_key;
+
+						if ((nested_key = setNestedKey(proc_node, field)) != null)
+							npb.writeHashKey(row_out, nested_key);
+						else
+							row_out.writeInt(-1);
+
+					}
+
+					// attribute, simple_content, element
+
+					else if (field.content_holder) {
+
+						if (setContent(proc_node, field)) {
+
+							if (!content.isEmpty())
+								field.write(row_out, content);
+							else
+								row_out.writeInt(-1);
+
+						} else if (field.required) {
+
+							not_complete = true;
+
+							return;
+						}
+
+						else
+							row_out.writeInt(-1);
+
+					}
+
+					// any, any_attribute
+
+					else if (field.any_content_holder) {
+
+						try {
+
+							if (npb.setAnyContent(proc_node, table, field))
+								field.write(row_out, npb.content);
+							else
+								row_out.writeInt(-1);
+
+						} catch (TransformerException | SAXException e) {
+							throw new PgSchemaException(e);
+						}
+
+					}
+
+					// serial_key
+
+					else if (field.serial_key)
+						npb.writeSerKey(row_out, node_test.node_ordinal);
+
+					// xpath_key
+
+					else if (field.xpath_key)
+						npb.writeHashKey(row_out, current_key.substring(npb.document_id_len));
+
+					else
+						row_out.writeInt(-1);
+
+				}
+
+			}
+
+			else {
+
+				for (int f = 0; f < _fields_size; f++) {
+
+					field = _fields.get(f);
+
+					// nested_key should be processed
+
+					if (field.nested_key) {
+
+						setNestedKey(proc_node, field);
+
+						row_out.writeInt(-1);
+
+					}
+
+					// document_key
+
+					else if (field.document_key)
+						field.write(row_out, npb.document_id);
+
+					// attribute, simple_content, element
+
+					else if (field.content_holder) {
+
+						if (setContent(proc_node, field)) {
+
+							if (!content.isEmpty())
+								field.write(row_out, content);
+							else
+								row_out.writeInt(-1);
+
+						} else if (field.required) {
+
+							not_complete = true;
+
+							return;
+						}
+
+						else
+							row_out.writeInt(-1);
+
+					}
+
+					// any, any_attribute
+
+					else if (field.any_content_holder) {
+
+						try {
+
+							if (npb.setAnyContent(proc_node, table, field))
+								field.write(row_out, npb.content);
+							else
+								row_out.writeInt(-1);
+
+						} catch (TransformerException | SAXException e) {
+							throw new PgSchemaException(e);
+						}
+
+					}
+
+					// serial_key
+
+					else if (field.serial_key)
+						npb.writeSerKey(row_out, node_test.node_ordinal);
+
+					// xpath_key
+
+					else if (field.xpath_key)
+						npb.writeHashKey(row_out, current_key.substring(npb.document_id_len));
+
+					else
+						row_out.writeInt(-1);
+
+				}
+
+			}
+
+			if (null_simple_list && (total_nested_fields == 0 || nested_keys.size() == 0))
+				return;
+
+			if (!pg_view) {
+
+				if (bin_out == null) {
+
+					bin_out = table.bin_out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(table.pathw), PgSchemaUtil.def_buffered_output_stream_buffer_size));
+
+					PgSchemaUtil.writePgCopyBinaryHeader(bin_out);
+
+				}
+
+				row_buffer.writeTo(bin_out);
+
+			}
+
+		} catch (IOException e) {
+			System.err.println("Exception occurred while processing table: " + table.xname);
+			throw new PgSchemaException(e);
+		}
+
+		table.visited_key = current_key;
+
+	}
+
+}
@@ -292,6 +292,8 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 
 			PgField field;
 
+			long row_bytes = _fields_size * 8;
+
 			if (npb.rel_data_ext) {
 
 				for (int f = 0; f < _fields_size; f++) {
@@ -347,6 +349,8 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 								field.write(ps, upsert, content);
 								occupied[f] = true;
 
+								row_bytes += content.length();
+
 							}
 
 						} else if (field.required) {
@@ -376,6 +380,8 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 
 								occupied[f] = true;
 
+								row_bytes += npb.content.length();
+
 							}
 
 						} catch (TransformerException | IOException | SAXException e) {
@@ -425,6 +431,8 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 								field.write(ps, upsert, content);
 								occupied[f] = true;
 
+								row_bytes += content.length();
+
 							}
 
 						} else if (field.required) {
@@ -454,6 +462,8 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 
 								occupied[f] = true;
 
+								row_bytes += npb.content.length();
+
 							}
 
 						} catch (TransformerException | IOException | SAXException e) {
@@ -517,7 +527,10 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 
 				ps.addBatch();
 
-				if (npb.rel_data_ext)
+				if (npb.schema.isJdbcBatch())
+					npb.schema.addJdbcBatch(row_bytes);
+
+				else if (npb.rel_data_ext)
 					ps.executeBatch();
 
 			}
@@ -539,7 +552,7 @@ public class PgSchemaNode2PgSql extends PgSchemaNodeParser {
 	@Override
 	protected void clear() throws PgSchemaException {
 
-		if (written && !npb.rel_data_ext && !pg_view) {
+		if (written && !npb.rel_data_ext && !pg_view && !npb.schema.isJdbcBatch()) {
 
 			try {
 				ps.executeBatch();
@@ -0,0 +1,479 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.nodeparser;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.transform.TransformerException;
+
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import net.sf.xsd2pgschema.PgField;
+import net.sf.xsd2pgschema.PgSchemaException;
+import net.sf.xsd2pgschema.PgSchemaUtil;
+import net.sf.xsd2pgschema.PgTable;
+
+/**
+ * Node parser for PostgreSQL data migration via unnest() array insert.
+ *
+ * @author yokochi
+ */
+public class PgSchemaNode2PgUnnest extends PgSchemaNodeParser {
+
+	/** Whether to update. */
+	private boolean update;
+
+	/** Whether to enable PostgreSQL view for this table. */
+	private boolean pg_view;
+
+	/** Whether to upsert. */
+	private boolean upsert = false;
+
+	/** The pending rows of this table. */
+	private List<String[]> rows = null;
+
+	/** The content of fields. */
+	private String[] values = null;
+
+	/**
+	 * Node parser for PostgreSQL data migration via unnest() array insert.
+	 *
+	 * @param npb node parser builder
+	 * @param parent_table parent table (set null if current table is root table)
+	 * @param table current table
+	 * @param as_attr whether parent node as attribute
+	 * @param update whether update or insertion
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	protected PgSchemaNode2PgUnnest(final PgSchemaNodeParserBuilder npb, final PgTable parent_table, final PgTable table, final boolean as_attr, final boolean update) throws PgSchemaException {
+
+		super(npb, parent_table, table);
+
+		this.update = update;
+
+		if (table.writable)
+			init(as_attr);
+
+	}
+
+	/**
+	 * Initialize node parser.
+	 *
+	 * @param as_attr whether parent node as attribute
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	@Override
+	protected void init(boolean as_attr) throws PgSchemaException {
+
+		this.as_attr = as_attr;
+
+		// differential update collects rows of all tables, which are bound to the statement prepared in advance
+
+		if (update && npb.rel_data_ext)
+			upsert = table.has_unique_primary_key || npb.schema.isDiffUpdatable(table);
+
+		pg_view = !npb.schema.option.realize_simple_brdg && table.simple_bridge;
+
+		if (table.writable) {
+
+			if (!pg_view) {
+
+				try {
+
+					// upsert
+
+					if (upsert) {
+
+						if (table.ps2 == null)
+							table.ps2 = npb.db_conn.prepareStatement(getUnnestSql(true));
+
+						if (table.unnest_upsert_rows == null)
+							table.unnest_upsert_rows = new ArrayList<String[]>();
+
+						rows = table.unnest_upsert_rows;
+
+					}
+
+					// insert
+
+					else {
+
+						if (table.ps == null)
+							table.ps = npb.db_conn.prepareStatement(getUnnestSql(false));
+
+						if (table.unnest_rows == null)
+							table.unnest_rows = new ArrayList<String[]>();
+
+						rows = table.unnest_rows;
+
+					}
+
+				} catch (SQLException e) {
+					throw new PgSchemaException(e);
+				}
+
+			}
+
+			values = new String[_fields_size];
+
+		}
+
+	}
+
+	/**
+	 * Return SQL statement of unnest() array insert.
+	 *
+	 * @param upsert whether to upsert
+	 * @return String SQL statement
+	 */
+	private String getUnnestSql(boolean upsert) {
+
+		StringBuilder sql = new StringBuilder();
+
+		PgField field;
+
+		sql.append("INSERT INTO " + table.pgname + " SELECT ");
+
+		for (int f = 0; f < _fields_size; f++) {
+
+			field = _fields.get(f);
+
+			sql.append(field.getPgCastOfText("u.c" + f, table.schema_pgname) + ", ");
+
+		}
+
+		sql.setLength(sql.length() - 2);
+		sql.append(" FROM unnest( ");
+
+		for (int f = 0; f < _fields_size; f++)
+			sql.append("?::text[], ");
+
+		sql.setLength(sql.length() - 2);
+		sql.append(" ) AS u ( ");
+
+		for (int f = 0; f < _fields_size; f++)
+			sql.append("c" + f + ", ");
+
+		sql.setLength(sql.length() - 2);
+		sql.append(" )");
+
+		if (upsert) {
+
+			sql.append(" ON CONFLICT ( " + table.primary_key_pgname + " ) ");
+
+			// no column to be updated except for conflict key
+
+			if (_fields.stream().allMatch(field -> field.primary_key)) {
+
+				sql.append("DO NOTHING");
+
+				return sql.toString();
+			}
+
+			sql.append("DO UPDATE SET ");
+
+			for (int f = 0; f < _fields_size; f++) {
+
+				field = _fields.get(f);
+
+				if (field.primary_key)
+					continue;
+
+				String _name = PgSchemaUtil.avoidPgReservedWords(field.pname);
+
+				sql.append(_name + "=EXCLUDED." + _name + ", ");
+
+			}
+
+			sql.setLength(sql.length() - 2);
+
+		}
+
+		return sql.toString();
+	}
+
+	/**
+	 * Traverse nested node.
+	 *
+	 * @param parent_node parent node
+	 * @param nested_key nested key
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	@Override
+	protected void traverseNestedNode(final Node parent_node, final PgSchemaNestedKey nested_key) throws PgSchemaException {
+
+		PgSchemaNode2PgUnnest node_parser = new PgSchemaNode2PgUnnest(npb, table, nested_key.table, nested_key.as_attr, update);
+		PgSchemaNodeTester node_test = node_parser.node_test;
+
+		node_test.prepForTraversal(table, parent_node, nested_key);
+
+		try {
+
+			for (Node node = parent_node.getFirstChild(); node != null; node = node.getNextSibling()) {
+
+				if (node.getNodeType() != Node.ELEMENT_NODE)
+					continue;
+
+				if (node_test.isOmissibleNode(node))
+					continue;
+
+				if (node_parser.parseProcNode())
+					break;
+
+			}
+
+			if (node_parser.visited)
+				return;
+
+			node_parser.parseNode(parent_node);
+
+		} finally {
+			node_parser.clear();
+		}
+
+	}
+
+	/**
+	 * Parse processing node.
+	 *
+	 * @throws PgSchemaException the pg schema exception
+	 */
+	@Override
+	protected void parse() throws PgSchemaException {
+
+		if (table.visited_key.equals(current_key = node_test.proc_key))
+			return;
+
+		if (table.has_path_restriction)
+			extractParentAncestorNodeName();
+
+		Node proc_node = node_test.proc_node;
+
+		clear();
+
+		if (!table.writable) {
+
+			if (total_nested_fields > 0)
+				table.nested_fields.forEach(field -> setNestedKey(proc_node, field));
+
+			return;
+		}
+
+		if (visited) {
+
+			not_complete = null_simple_list = false;
+
+			Arrays.fill(values, null);
+
+		}
+
+		PgField field;
+
+		long row_bytes = _fields_size * 8;
+
+		if (npb.rel_data_ext) {
+
+			for (int f = 0; f < _fields_size; f++) {
+
+				field = _fields.get(f);
+
+				// document_key
+
+				if (field.document_key)
+					values[f] = npb.document_id;
+
+				// primary_key
+
+				else if (field.primary_key)
+					values[f] = npb.getHashKeyText(node_test.primary_key);
+
+				// foreign_key
+
+				else if (field.foreign_key) {
+
+					if (parent_table.xname.equals(field.foreign_table_xname))
+						values[f] = npb.getHashKeyText(node_test.parent_key);
+
+				}
+
+				// nested_key
+
+				else if (field.nested_key) {
+
+					String nested_key;
+
+					if ((nested_key = setNestedKey(proc_node, field)) != null)
+						values[f] = npb.getHashKeyText(nested_key);
+
+				}
+
+				// attribute, simple_content, element
+
+				else if (field.content_holder) {
+
+					if (setContent(proc_node, field)) {
+
+						if (!content.isEmpty()) {
+
+							values[f] = content;
+
+							row_bytes += content.length();
+
+						}
+
+					} else if (field.required) {
+
+						not_complete = true;
+
+						return;
+					}
+
+				}
+
+				// any, any_attribute
+
+				else if (field.any_content_holder) {
+
+					try {
+
+						if (npb.setAnyContent(proc_node, table, field)) {
+
+							values[f] = npb.content;
+
+							row_bytes += npb.content.length();
+
+						}
+
+					} catch (TransformerException | IOException | SAXException e) {
+						throw new PgSchemaException(e);
+					}
+
+				}
+
+				// serial_key
+
+				else if (field.serial_key) {
+					values[f] = npb.is_def_ser_size ? Integer.toString(node_test.node_ordinal) : Short.toString((short) node_test.node_ordinal);
+				}
+
+				// xpath_key
+
+				else if (field.xpath_key)
+					values[f] = npb.getHashKeyText(current_key.substring(npb.document_id_len));
+
+			}
+
+		}
+
+		else {
+
+			for (int f = 0; f < _fields_size; f++) {
+
+				field = _fields.get(f);
+
+				// nested_key should be processed
+
+				if (field.nested_key)
+					setNestedKey(proc_node, field);
+
+				// document_key
+
+				else if (field.document_key)
+					values[f] = npb.document_id;
+
+				// attribute, simple_content, element
+
+				else if (field.content_holder) {
+
+					if (setContent(proc_node, field)) {
+
+						if (!content.isEmpty()) {
+
+							values[f] = content;
+
+							row_bytes += content.length();
+
+						}
+
+					} else if (field.required) {
+
+						not_complete = true;
+
+						return;
+					}
+
+				}
+
+				// any, any_attribute
+
+				else if (field.any_content_holder) {
+
+					try {
+
+						if (npb.setAnyContent(proc_node, table, field)) {
+
+							values[f] = npb.content;
+
+							row_bytes += npb.content.length();
+
+						}
+
+					} catch (TransformerException | IOException | SAXException e) {
+						throw new PgSchemaException(e);
+					}
+
+				}
+
+				// serial_key
+
+				else if (field.serial_key) {
+					values[f] = npb.is_def_ser_size ? Integer.toString(node_test.node_ordinal) : Short.toString((short) node_test.node_ordinal);
+				}
+
+				// xpath_key
+
+				else if (field.xpath_key)
+					values[f] = npb.getHashKeyText(current_key.substring(npb.document_id_len));
+
+			}
+
+		}
+
+		if (null_simple_list && (total_nested_fields == 0 || nested_keys.size() == 0))
+			return;
+
+		if (!pg_view) {
+
+			rows.add(values.clone());
+
+			npb.schema.addJdbcBatch(row_bytes);
+
+		}
+
+		table.visited_key = current_key;
+
+	}
+
+}
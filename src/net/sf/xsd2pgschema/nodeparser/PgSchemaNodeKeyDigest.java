@@ -0,0 +1,175 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.nodeparser;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import net.sf.xsd2pgschema.PgHashDigest;
+import net.sf.xsd2pgschema.PgSchemaUtil;
+
+/**
+ * Incremental digest of path keys, where a key is digested by extending the cloned state of its ancestor key with the remaining steps.
+ *
+ * @author yokochi
+ */
+public class PgSchemaNodeKeyDigest {
+
+	/** The instance of message digest in reset state. */
+	private MessageDigest md_hash_key;
+
+	/** The stack of keys, where each key is an ancestor of the following one. */
+	private String[] keys = new String[16];
+
+	/** The digest states of the keys. */
+	private MessageDigest[] states = new MessageDigest[16];
+
+	/** The digests of the keys. */
+	private byte[][] digests = new byte[16][];
+
+	/** The size of stack. */
+	private int size = 0;
+
+	/** The buffer of UTF-8 encoded steps. */
+	private byte[] buffer = new byte[256];
+
+	/**
+	 * Instance of PgSchemaNodeKeyDigest.
+	 *
+	 * @param md_hash_key instance of message digest, which should be cloneable
+	 */
+	public PgSchemaNodeKeyDigest(MessageDigest md_hash_key) {
+
+		this.md_hash_key = md_hash_key;
+
+	}
+
+	/**
+	 * Return whether message digest is cloneable.
+	 *
+	 * @param md_hash_key instance of message digest
+	 * @return boolean whether message digest is cloneable
+	 */
+	public static boolean isCloneable(MessageDigest md_hash_key) {
+
+		try {
+
+			md_hash_key.clone();
+
+			return true;
+
+		} catch (CloneNotSupportedException e) {
+			return false;
+		}
+
+	}
+
+	/**
+	 * Return digest of key, which is identical to digest of UTF-8 encoded key.
+	 * Returned array should not be modified.
+	 *
+	 * @param key key string
+	 * @return byte[] digest of key
+	 */
+	public byte[] digest(String key) {
+
+		int key_len = key.length();
+
+		int base = -1;
+
+		String prefix;
+
+		int len;
+
+		char c;
+
+		for (int i = size - 1; i >= 0; i--) {
+
+			prefix = keys[i];
+
+			len = prefix.length();
+
+			if (len == key_len) {
+
+				if (key.equals(prefix))
+					return digests[i];
+
+				continue;
+			}
+
+			if (len < key_len && ((c = key.charAt(len)) == '/' || c == '[') && key.startsWith(prefix)) {
+
+				base = i;
+
+				break;
+			}
+
+		}
+
+		try {
+
+			MessageDigest state = (MessageDigest) (base < 0 ? md_hash_key : states[base]).clone();
+
+			int begin = base < 0 ? 0 : keys[base].length();
+
+			if (buffer.length < (key_len - begin) * 3)
+				buffer = new byte[(key_len - begin) * 3];
+
+			state.update(buffer, 0, PgHashDigest.encode(key, begin, buffer));
+
+			byte[] digest = ((MessageDigest) state.clone()).digest();
+
+			// keys not derived from the stack (e.g. xpath key without document id) are not pushed
+
+			if (base >= 0 || size == 0) {
+
+				size = base + 1;
+
+				if (size == keys.length) {
+
+					keys = Arrays.copyOf(keys, size * 2);
+					states = Arrays.copyOf(states, size * 2);
+					digests = Arrays.copyOf(digests, size * 2);
+
+				}
+
+				keys[size] = key;
+				states[size] = state;
+				digests[size] = digest;
+
+				size++;
+
+			}
+
+			return digest;
+
+		} catch (CloneNotSupportedException e) {
+
+			try {
+				return md_hash_key.digest(key.getBytes(PgSchemaUtil.def_charset));
+			} finally {
+				md_hash_key.reset();
+			}
+
+		}
+
+	}
+
+}
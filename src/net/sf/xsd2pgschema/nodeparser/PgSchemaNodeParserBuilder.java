@@ -19,10 +19,10 @@ limitations under the License.
 
 package net.sf.xsd2pgschema.nodeparser;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -52,6 +52,7 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import net.sf.xsd2pgschema.PgField;
+import net.sf.xsd2pgschema.PgHashDigest;
 import net.sf.xsd2pgschema.PgSchema;
 import net.sf.xsd2pgschema.PgSchemaException;
 import net.sf.xsd2pgschema.PgSchemaUtil;
@@ -101,6 +102,12 @@ public class PgSchemaNodeParserBuilder {
 	/** The instance of message digest. */
 	protected MessageDigest md_hash_key;
 
+	/** The non-cryptographic hash function (null indicates JCA message digest). */
+	protected PgHashDigest hash_digest = null;
+
+	/** The incremental digest of path keys (null indicates digesting each key from the beginning). */
+	protected PgSchemaNodeKeyDigest key_digest = null;
+
 	/** The document id. */
 	protected String document_id;
 
@@ -151,6 +158,14 @@ public class PgSchemaNodeParserBuilder {
 		case full_text_indexing:
 			hash_size = schema.option.hash_size;
 			md_hash_key = schema.md_hash_key;
+
+			if (md_hash_key instanceof PgHashDigest)
+				hash_digest = (PgHashDigest) md_hash_key;
+
+			// path keys share digest states of their ancestors
+
+			else if (md_hash_key != null && PgSchemaNodeKeyDigest.isCloneable(md_hash_key))
+				key_digest = new PgSchemaNodeKeyDigest(md_hash_key);
 			break;
 		case json_conversion:
 			throw new PgSchemaException("Use another instance for JSON conversion: PgSchemaNodeParserBuilder(JsonBuilder)");
@@ -512,6 +527,22 @@ public class PgSchemaNodeParserBuilder {
 		return has_any_attr;
 	}
 
+	/**
+	 * Return hash key text in PostgreSQL input format (not quoted as SQL literal).
+	 *
+	 * @param key_name source string
+	 * @return String hash key text
+	 */
+	protected String getHashKeyText(String key_name) {
+
+		String key = getHashKeyString(key_name);
+
+		if (md_hash_key == null || !hash_size.equals(PgHashSize.native_default))
+			return key;
+
+		return key.substring(2, key.length() - 1).replace("\\\\", "\\"); // strip E'' quotation and escape
+	}
+
 	/**
 	 * Determine hash key of source string.
 	 *
@@ -523,25 +554,15 @@ public class PgSchemaNodeParserBuilder {
 		if (md_hash_key == null) // debug mode
 			return key_name;
 
-		try {
-
-			byte[] bytes = md_hash_key.digest(key_name.getBytes(PgSchemaUtil.def_charset));
-
-			switch (hash_size) {
-			case native_default:
-				return "E'\\\\x" + DatatypeConverter.printHexBinary(bytes) + "'"; // PostgreSQL hex format
-			case unsigned_long_64:
-				BigInteger blong = new BigInteger(bytes);
-				return Long.toString(Math.abs(blong.longValue())); // use lower order 64 bits
-			case unsigned_int_32:
-				BigInteger bint = new BigInteger(bytes);
-				return Integer.toString(Math.abs(bint.intValue())); // use lower order 32 bits
-			default:
-				return key_name;
-			}
-
-		} finally {
-			md_hash_key.reset();
+		switch (hash_size) {
+		case native_default:
+			return "E'\\\\x" + DatatypeConverter.printHexBinary(getHashKeyBytes(key_name)) + "'"; // PostgreSQL hex format
+		case unsigned_long_64:
+			return Long.toString(getHashKeyLong(key_name));
+		case unsigned_int_32:
+			return Integer.toString(getHashKeyInt(key_name));
+		default:
+			return key_name;
 		}
 
 	}
@@ -554,6 +575,9 @@ public class PgSchemaNodeParserBuilder {
 	 */
 	private byte[] getHashKeyBytes(String key_name) {
 
+		if (key_digest != null)
+			return key_digest.digest(key_name);
+
 		try {
 
 			return md_hash_key.digest(key_name.getBytes(PgSchemaUtil.def_charset));
@@ -572,13 +596,15 @@ public class PgSchemaNodeParserBuilder {
 	 */
 	private int getHashKeyInt(String key_name) {
 
-		try {
+		if (hash_digest != null)
+			return Math.abs(hash_digest.hashInt(key_name)); // use lower order 32 bits
 
-			byte[] hash = md_hash_key.digest(key_name.getBytes(PgSchemaUtil.def_charset));
+		if (key_digest != null)
+			return Math.abs(PgHashDigest.getLowerInt(key_digest.digest(key_name))); // use lower order 32 bits
 
-			BigInteger bint = new BigInteger(hash);
+		try {
 
-			return Math.abs(bint.intValue()); // use lower order 32 bits
+			return Math.abs(PgHashDigest.getLowerInt(md_hash_key.digest(key_name.getBytes(PgSchemaUtil.def_charset)))); // use lower order 32 bits
 
 		} finally {
 			md_hash_key.reset();
@@ -594,13 +620,15 @@ public class PgSchemaNodeParserBuilder {
 	 */
 	private long getHashKeyLong(String key_name) {
 
-		try {
+		if (hash_digest != null)
+			return Math.abs(hash_digest.hashLong(key_name)); // use lower order 64 bits
 
-			byte[] hash = md_hash_key.digest(key_name.getBytes(PgSchemaUtil.def_charset));
+		if (key_digest != null)
+			return Math.abs(PgHashDigest.getLowerLong(key_digest.digest(key_name))); // use lower order 64 bits
 
-			BigInteger bint = new BigInteger(hash);
+		try {
 
-			return Math.abs(bint.longValue()); // use lower order 64 bits
+			return Math.abs(PgHashDigest.getLowerLong(md_hash_key.digest(key_name.getBytes(PgSchemaUtil.def_charset)))); // use lower order 64 bits
 
 		} finally {
 			md_hash_key.reset();
@@ -678,7 +706,59 @@ public class PgSchemaNodeParserBuilder {
 	}
 
 	/**
-	 * Parse root node and write to data (CSV/TSV) file.
+	 * Write hash key in PostgreSQL binary COPY format.
+	 *
+	 * @param out data output stream
+	 * @param current_key current key
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	protected void writeHashKey(DataOutputStream out, String current_key) throws IOException {
+
+		switch (hash_size) {
+		case native_default:
+			byte[] bytes = getHashKeyBytes(current_key);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			break;
+		case unsigned_int_32:
+			out.writeInt(4);
+			out.writeInt(getHashKeyInt(current_key));
+			break;
+		case unsigned_long_64:
+			out.writeInt(8);
+			out.writeLong(getHashKeyLong(current_key));
+			break;
+		default:
+			byte[] key_bytes = current_key.getBytes(PgSchemaUtil.def_charset);
+			out.writeInt(key_bytes.length);
+			out.write(key_bytes);
+		}
+
+	}
+
+	/**
+	 * Write serial key in PostgreSQL binary COPY format.
+	 *
+	 * @param out data output stream
+	 * @param ordinal serial id
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	protected void writeSerKey(DataOutputStream out, int ordinal) throws IOException {
+
+		if (is_def_ser_size) {
+			out.writeInt(4);
+			out.writeInt(ordinal);
+		}
+
+		else {
+			out.writeInt(2);
+			out.writeShort((short) ordinal);
+		}
+
+	}
+
+	/**
+	 * Parse root node and write to data (CSV/TSV/binary) file.
 	 *
 	 * @param root_table root table
 	 * @param root_node root node
@@ -686,6 +766,17 @@ public class PgSchemaNodeParserBuilder {
 	 */
 	public void xml2PgCsv(PgTable root_table, Node root_node) throws PgSchemaException {
 
+		if (schema.option.pg_binary_copy) {
+
+			PgSchemaNode2PgBin np = new PgSchemaNode2PgBin(this, null, root_table, false);
+
+			np.parseRootNode(root_node);
+
+			np.clear();
+
+			return;
+		}
+
 		PgSchemaNode2PgCsv np = new PgSchemaNode2PgCsv(this, null, root_table, false);
 
 		np.parseRootNode(root_node);
@@ -704,6 +795,17 @@ public class PgSchemaNodeParserBuilder {
 	 */
 	public void xml2PgSql(PgTable root_table, Node root_node, boolean update) throws PgSchemaException {
 
+		if (schema.isUnnestInsert()) {
+
+			PgSchemaNode2PgUnnest np = new PgSchemaNode2PgUnnest(this, null, root_table, false, update);
+
+			np.parseRootNode(root_node);
+
+			np.clear();
+
+			return;
+		}
+
 		PgSchemaNode2PgSql np = new PgSchemaNode2PgSql(this, null, root_table, false, update);
 
 		np.parseRootNode(root_node);
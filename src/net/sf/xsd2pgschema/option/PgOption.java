@@ -88,6 +88,48 @@ public class PgOption {
 	/** The maximum foreign keys in a table for creation of PostgreSQL index on the simple content. */
 	public int max_fks_for_simple_cont_index = PgSchemaUtil.pg_max_fks_for_simple_cont_index;
 
+	/** The maximum rows of JDBC batch kept across nodes and documents (0 indicates executing JDBC batch per node). */
+	public int jdbc_batch_size = 0;
+
+	/** The maximum bytes of JDBC batch kept across nodes and documents. */
+	public long jdbc_batch_bytes = PgSchemaUtil.def_jdbc_batch_bytes;
+
+	/** Whether to insert rows via column arrays expanded by unnest() instead of row-by-row JDBC batch. */
+	public boolean unnest_insert = false;
+
+	/** Whether to write only rows changed in updating documents instead of deleting and inserting all rows of them. */
+	public boolean diff_update = false;
+
+	/** The number of documents committed in a transaction (0 indicates committing per document). */
+	public int group_commit_docs = 0;
+
+	/** The maximum interval of group commit in milliseconds (0 indicates no interval). */
+	public long group_commit_interval = 0;
+
+	/** Whether to stream data to PostgreSQL via COPY command without intermediate files. */
+	public boolean direct_copy = false;
+
+	/** The maximum bytes of buffered PostgreSQL COPY data. */
+	public int copy_buffer_bytes = PgSchemaUtil.def_copy_buffer_bytes;
+
+	/** The number of connections to copy data files in parallel. */
+	public int copy_thrds = 1;
+
+	/** The size of chunk to split large CSV/TSV file in parallel data migration (0 indicates no split). */
+	public long copy_chunk_bytes = PgSchemaUtil.def_copy_chunk_bytes;
+
+	/** The number of connections to create PostgreSQL indexes in parallel. */
+	public int index_thrds = 1;
+
+	/** Whether to drop PostgreSQL indexes before data migration and rebuild them afterward. */
+	public boolean rebuild_index = false;
+
+	/** Whether to load data into UNLOGGED staging tables and swap them in afterward. */
+	public boolean initial_load = false;
+
+	/** Whether to copy data files with FREEZE option, where the table is truncated in advance (effective only in initial load mode with a single connection). */
+	public boolean copy_freeze = false;
+
 	/** The internal status corresponding to --create-non-uniq-pkey-index option. */
 	private boolean _create_non_uniq_pkey_index = false;
 
@@ -149,7 +191,7 @@ public class PgOption {
 	 * @return String database URL
 	 */
 	public String getDbUrl(String encoding) {
-		return "jdbc:postgresql://" + pg_host + ":" + pg_port + "/" + name + "?charSet=" + encoding;
+		return "jdbc:postgresql://" + pg_host + ":" + pg_port + "/" + name + "?charSet=" + encoding + (initial_load ? "&currentSchema=" + PgSchemaUtil.pg_staging_schema_name + "," + PgSchemaUtil.pg_public_schema_name : "");
 	}
 
 	/**
@@ -187,6 +229,177 @@ public class PgOption {
 
 	}
 
+	/**
+	 * Set maximum rows of JDBC batch.
+	 *
+	 * @param jdbc_batch_size argument value
+	 */
+	public void setJdbcBatchSize(String jdbc_batch_size) {
+
+		if (jdbc_batch_size.endsWith("k"))
+			this.jdbc_batch_size = (int) (Float.valueOf(jdbc_batch_size.substring(0, jdbc_batch_size.indexOf('k'))) * 1024);
+
+		else if (jdbc_batch_size.endsWith("M"))
+			this.jdbc_batch_size = (int) (Float.valueOf(jdbc_batch_size.substring(0, jdbc_batch_size.indexOf('M'))) * 1024 * 1024);
+
+		else
+			this.jdbc_batch_size = Integer.valueOf(jdbc_batch_size);
+
+		if (this.jdbc_batch_size < 0) {
+			System.err.println("Maximum rows of JDBC batch is negative. Set to the default value.");
+			this.jdbc_batch_size = 0;
+		}
+
+	}
+
+	/**
+	 * Set maximum bytes of JDBC batch.
+	 *
+	 * @param jdbc_batch_bytes argument value
+	 */
+	public void setJdbcBatchBytes(String jdbc_batch_bytes) {
+
+		if (jdbc_batch_bytes.endsWith("k"))
+			this.jdbc_batch_bytes = (long) (Float.valueOf(jdbc_batch_bytes.substring(0, jdbc_batch_bytes.indexOf('k'))) * 1024);
+
+		else if (jdbc_batch_bytes.endsWith("M"))
+			this.jdbc_batch_bytes = (long) (Float.valueOf(jdbc_batch_bytes.substring(0, jdbc_batch_bytes.indexOf('M'))) * 1024 * 1024);
+
+		else if (jdbc_batch_bytes.endsWith("G"))
+			this.jdbc_batch_bytes = (long) (Float.valueOf(jdbc_batch_bytes.substring(0, jdbc_batch_bytes.indexOf('G'))) * 1024 * 1024 * 1024);
+
+		else
+			this.jdbc_batch_bytes = Long.valueOf(jdbc_batch_bytes);
+
+		if (this.jdbc_batch_bytes <= 0) {
+			System.err.println("Maximum bytes of JDBC batch is not positive. Set to the default value.");
+			this.jdbc_batch_bytes = PgSchemaUtil.def_jdbc_batch_bytes;
+		}
+
+	}
+
+	/**
+	 * Set maximum bytes of buffered PostgreSQL COPY data.
+	 *
+	 * @param copy_buffer_bytes argument value
+	 */
+	public void setCopyBufferBytes(String copy_buffer_bytes) {
+
+		if (copy_buffer_bytes.endsWith("k"))
+			this.copy_buffer_bytes = (int) (Float.valueOf(copy_buffer_bytes.substring(0, copy_buffer_bytes.indexOf('k'))) * 1024);
+
+		else if (copy_buffer_bytes.endsWith("M"))
+			this.copy_buffer_bytes = (int) (Float.valueOf(copy_buffer_bytes.substring(0, copy_buffer_bytes.indexOf('M'))) * 1024 * 1024);
+
+		else
+			this.copy_buffer_bytes = Integer.valueOf(copy_buffer_bytes);
+
+		if (this.copy_buffer_bytes <= 0) {
+			System.err.println("Maximum bytes of buffered COPY data is not positive. Set to the default value.");
+			this.copy_buffer_bytes = PgSchemaUtil.def_copy_buffer_bytes;
+		}
+
+	}
+
+	/**
+	 * Set number of connections to copy data files in parallel.
+	 *
+	 * @param copy_thrds argument value
+	 */
+	public void setCopyThrds(String copy_thrds) {
+
+		this.copy_thrds = Integer.valueOf(copy_thrds);
+
+		if (this.copy_thrds <= 0) {
+			System.err.println("Number of connections for COPY is not positive. Set to the default value.");
+			this.copy_thrds = 1;
+		}
+
+	}
+
+	/**
+	 * Set number of connections to create PostgreSQL indexes in parallel.
+	 *
+	 * @param index_thrds argument value
+	 */
+	public void setIndexThrds(String index_thrds) {
+
+		this.index_thrds = Integer.valueOf(index_thrds);
+
+		if (this.index_thrds <= 0) {
+			System.err.println("Number of connections for index creation is not positive. Set to the default value.");
+			this.index_thrds = 1;
+		}
+
+	}
+
+	/**
+	 * Set size of chunk to split large CSV/TSV file in parallel data migration.
+	 *
+	 * @param copy_chunk_bytes argument value
+	 */
+	public void setCopyChunkBytes(String copy_chunk_bytes) {
+
+		if (copy_chunk_bytes.endsWith("k"))
+			this.copy_chunk_bytes = (long) (Float.valueOf(copy_chunk_bytes.substring(0, copy_chunk_bytes.indexOf('k'))) * 1024);
+
+		else if (copy_chunk_bytes.endsWith("M"))
+			this.copy_chunk_bytes = (long) (Float.valueOf(copy_chunk_bytes.substring(0, copy_chunk_bytes.indexOf('M'))) * 1024 * 1024);
+
+		else if (copy_chunk_bytes.endsWith("G"))
+			this.copy_chunk_bytes = (long) (Float.valueOf(copy_chunk_bytes.substring(0, copy_chunk_bytes.indexOf('G'))) * 1024 * 1024 * 1024);
+
+		else
+			this.copy_chunk_bytes = Long.valueOf(copy_chunk_bytes);
+
+		if (this.copy_chunk_bytes < 0) {
+			System.err.println("Size of chunk for COPY is negative. Set to the default value.");
+			this.copy_chunk_bytes = PgSchemaUtil.def_copy_chunk_bytes;
+		}
+
+	}
+
+	/**
+	 * Set number of documents committed in a transaction.
+	 *
+	 * @param group_commit_docs argument value
+	 */
+	public void setGroupCommitDocs(String group_commit_docs) {
+
+		this.group_commit_docs = Integer.valueOf(group_commit_docs);
+
+		if (this.group_commit_docs < 0) {
+			System.err.println("Number of documents for group commit is negative. Set to the default value.");
+			this.group_commit_docs = 0;
+		}
+
+	}
+
+	/**
+	 * Set maximum interval of group commit in milliseconds.
+	 *
+	 * @param group_commit_interval argument value
+	 */
+	public void setGroupCommitInterval(String group_commit_interval) {
+
+		this.group_commit_interval = Long.valueOf(group_commit_interval);
+
+		if (this.group_commit_interval < 0) {
+			System.err.println("Interval of group commit is negative. Set to the default value.");
+			this.group_commit_interval = 0;
+		}
+
+	}
+
+	/**
+	 * Return whether to commit several documents in a transaction.
+	 *
+	 * @return boolean whether to commit several documents in a transaction
+	 */
+	public boolean isGroupCommit() {
+		return group_commit_docs > 1 || group_commit_interval > 0;
+	}
+
 	/**
 	 * Set internal status corresponding to --create-non-uniq-pkey-index and --no-create-non-uniq-pkey-index options.
 	 *
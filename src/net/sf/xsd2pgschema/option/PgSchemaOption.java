@@ -106,6 +106,9 @@ public class PgSchemaOption implements Serializable {
 	/** The current delimiter code. */
 	public char pg_delimiter = '\t';
 
+	/** Whether to use binary COPY format in PostgreSQL data migration. */
+	public boolean pg_binary_copy = false;
+
 	/** Whether to set annotation as comment in PostgreSQL DB. */
 	public boolean pg_comment_on = false;
 
@@ -202,6 +205,18 @@ public class PgSchemaOption implements Serializable {
 	/** Whether to run diagnostic synchronization (set all constraints deferred). */
 	public boolean sync_rescue = false;
 
+	/** The sampling rate of XML files whose check sum is verified even if size, modified time and inode are unchanged. */
+	@Flat
+	public float sync_verify_rate = 0.0f;
+
+	/** The change manifest file name, which lists documents to be synchronized instead of identifying XML files by check sum. */
+	@Flat
+	public String sync_manifest_name = null;
+
+	/** Whether XML documents are split on the fly, so that stored documents absent from XML files are not known in advance (no deletion). */
+	@Flat
+	public boolean split_on_the_fly = false;
+
 	/** Whether in-place document key exists. */
 	public boolean in_place_document_key = false;
 
@@ -459,6 +474,15 @@ public class PgSchemaOption implements Serializable {
 
 	}
 
+	/**
+	 * Use binary COPY format.
+	 */
+	public void usePgBinary() {
+
+		pg_binary_copy = true;
+
+	}
+
 	/**
 	 * Set case insensitive mode.
 	 */
@@ -587,6 +611,31 @@ public class PgSchemaOption implements Serializable {
 		return true;
 	}
 
+	/**
+	 * Set sampling rate of XML files whose check sum is verified even if size, modified time and inode are unchanged.
+	 *
+	 * @param sync_verify_rate sampling rate between 0.0 and 1.0
+	 * @return boolean whether sampling rate is valid
+	 */
+	public boolean setSyncVerifyRate(String sync_verify_rate) {
+
+		try {
+
+			float rate = Float.parseFloat(sync_verify_rate);
+
+			if (rate < 0.0f || rate > 1.0f)
+				return false;
+
+			this.sync_verify_rate = rate;
+
+		} catch (NumberFormatException e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		return true;
+	}
+
 	/**
 	 * Return whether synchronization is possible.
 	 *
@@ -594,7 +643,7 @@ public class PgSchemaOption implements Serializable {
 	 * @return boolean whether synchronization is possible
 	 */
 	public boolean isSynchronizable(boolean allow_sync_weak) {
-		return (allow_sync_weak && sync_weak) || (sync && check_sum_dir_name != null && (_check_sum_dir_exists || (_check_sum_dir_exists = Files.isDirectory(Paths.get(check_sum_dir_name)))));
+		return (allow_sync_weak && sync_weak) || (sync && sync_manifest_name != null) || (sync && check_sum_dir_name != null && (_check_sum_dir_exists || (_check_sum_dir_exists = Files.isDirectory(Paths.get(check_sum_dir_name)))));
 	}
 
 	/**
@@ -849,6 +898,9 @@ public class PgSchemaOption implements Serializable {
 		if (!pg_null.equals(option.pg_null))
 			return false;
 
+		if (pg_binary_copy != option.pg_binary_copy)
+			return false;
+
 		if (del_invalid_xml != option.del_invalid_xml)
 			return false;
 
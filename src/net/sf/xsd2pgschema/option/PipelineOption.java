@@ -0,0 +1,130 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.option;
+
+/**
+ * Pipeline option.
+ *
+ * @author yokochi
+ */
+public class PipelineOption {
+
+	/** The number of threads reading and decompressing XML files ahead of parser threads (0 indicates no prefetch stage). */
+	public int prefetch_thrds = 0;
+
+	/** The capacity of queue of prefetched XML files. */
+	public int prefetch_queue_size = def_queue_size;
+
+	/** The memory budget of prefetched XML files in bytes (0 indicates no limit). */
+	public long prefetch_mem_budget = 0;
+
+	/** Whether to map plain XML files into memory instead of reading them in prefetch stage. */
+	public boolean prefetch_mmap = false;
+
+	/** The number of threads writing row batches to PostgreSQL (0 indicates that parser threads write by themselves). */
+	public int writer_thrds = 0;
+
+	/** The capacity of queue of row batches. */
+	public int writer_queue_size = def_queue_size;
+
+	/** The default capacity of queue between pipeline stages. */
+	public static final int def_queue_size = 16;
+
+	/**
+	 * Set number of prefetch threads.
+	 *
+	 * @param prefetch_thrds argument value
+	 */
+	public void setPrefetchThrds(String prefetch_thrds) {
+
+		this.prefetch_thrds = Integer.valueOf(prefetch_thrds);
+
+		if (this.prefetch_thrds < 0) {
+			System.err.println("Number of prefetch threads is negative. Set to the default value.");
+			this.prefetch_thrds = 0;
+		}
+
+	}
+
+	/**
+	 * Set capacity of queue of prefetched XML files.
+	 *
+	 * @param prefetch_queue_size argument value
+	 */
+	public void setPrefetchQueueSize(String prefetch_queue_size) {
+
+		this.prefetch_queue_size = Integer.valueOf(prefetch_queue_size);
+
+		if (this.prefetch_queue_size <= 0) {
+			System.err.println("Capacity of prefetch queue is not positive. Set to the default value.");
+			this.prefetch_queue_size = def_queue_size;
+		}
+
+	}
+
+	/**
+	 * Set memory budget of prefetched XML files.
+	 *
+	 * @param prefetch_mem_budget argument value in megabytes
+	 */
+	public void setPrefetchMemBudget(String prefetch_mem_budget) {
+
+		this.prefetch_mem_budget = Long.valueOf(prefetch_mem_budget) * 1024L * 1024L;
+
+		if (this.prefetch_mem_budget < 0) {
+			System.err.println("Memory budget of prefetch stage is negative. Set to the default value.");
+			this.prefetch_mem_budget = 0;
+		}
+
+	}
+
+	/**
+	 * Set number of writer threads.
+	 *
+	 * @param writer_thrds argument value
+	 */
+	public void setWriterThrds(String writer_thrds) {
+
+		this.writer_thrds = Integer.valueOf(writer_thrds);
+
+		if (this.writer_thrds < 0) {
+			System.err.println("Number of writer threads is negative. Set to the default value.");
+			this.writer_thrds = 0;
+		}
+
+	}
+
+	/**
+	 * Set capacity of queue of row batches.
+	 *
+	 * @param writer_queue_size argument value
+	 */
+	public void setWriterQueueSize(String writer_queue_size) {
+
+		this.writer_queue_size = Integer.valueOf(writer_queue_size);
+
+		if (this.writer_queue_size <= 0) {
+			System.err.println("Capacity of writer queue is not positive. Set to the default value.");
+			this.writer_queue_size = def_queue_size;
+		}
+
+	}
+
+}
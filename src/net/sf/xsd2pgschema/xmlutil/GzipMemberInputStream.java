@@ -0,0 +1,301 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.xmlutil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream reading members of concatenated gzip file in order, while GZIPInputStream reads them as a single stream.
+ *
+ * @author yokochi
+ */
+public class GzipMemberInputStream extends InputStream {
+
+	/** The size of input buffer. */
+	private static final int buffer_size = 8192;
+
+	/** The underlying input stream. */
+	private PushbackInputStream in;
+
+	/** The input buffer. */
+	private byte[] buffer = new byte[buffer_size];
+
+	/** The length of input buffer set to inflater. */
+	private int buffer_len = 0;
+
+	/** The inflater. */
+	private Inflater inflater = new Inflater(true);
+
+	/** The CRC-32 of current member. */
+	private CRC32 crc = new CRC32();
+
+	/** The original file name of current member (null indicates no file name). */
+	private String member_name = null;
+
+	/** Whether current member is read through. */
+	private boolean member_end = true;
+
+	/**
+	 * Instance of GzipMemberInputStream.
+	 *
+	 * @param in input stream of gzip file
+	 */
+	public GzipMemberInputStream(InputStream in) {
+
+		this.in = new PushbackInputStream(in, buffer_size);
+
+	}
+
+	/**
+	 * Move to the next member, skipping the rest of current member.
+	 *
+	 * @return boolean whether the next member exists
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public boolean nextMember() throws IOException {
+
+		byte[] b = new byte[buffer_size];
+
+		while (!member_end)
+			read(b, 0, b.length);
+
+		int id1 = in.read();
+
+		// trailing zero padding or garbage is ignored as GZIPInputStream does
+
+		if (id1 != 0x1f)
+			return false;
+
+		if (readByte() != 0x8b || readByte() != 8)
+			throw new ZipException("Not in GZIP format");
+
+		int flags = readByte();
+
+		// skip modification time, extra flags and operating system
+
+		skipBytes(6);
+
+		// FEXTRA
+
+		if ((flags & 4) != 0)
+			skipBytes(readByte() | (readByte() << 8));
+
+		// FNAME
+
+		member_name = (flags & 8) != 0 ? readZeroTerminated() : null;
+
+		// FCOMMENT
+
+		if ((flags & 16) != 0)
+			readZeroTerminated();
+
+		// FHCRC
+
+		if ((flags & 2) != 0)
+			skipBytes(2);
+
+		inflater.reset();
+		crc.reset();
+
+		member_end = false;
+
+		return true;
+	}
+
+	/**
+	 * Return original file name of current member.
+	 *
+	 * @return String original file name (null indicates no file name)
+	 */
+	public String getMemberName() {
+		return member_name;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+
+		byte[] b = new byte[1];
+
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0)
+			return 0;
+
+		if (member_end)
+			return -1;
+
+		try {
+
+			while (true) {
+
+				int n = inflater.inflate(b, off, len);
+
+				if (n > 0) {
+
+					crc.update(b, off, n);
+
+					return n;
+				}
+
+				if (inflater.finished()) {
+
+					// return bytes of the next member to the underlying stream
+
+					int rem = inflater.getRemaining();
+
+					if (rem > 0)
+						in.unread(buffer, buffer_len - rem, rem);
+
+					readTrailer();
+
+					member_end = true;
+
+					return -1;
+				}
+
+				if (inflater.needsDictionary())
+					throw new ZipException("Invalid gzip member");
+
+				if (inflater.needsInput()) {
+
+					buffer_len = in.read(buffer, 0, buffer.length);
+
+					if (buffer_len == -1)
+						throw new EOFException("Unexpected end of ZLIB input stream");
+
+					inflater.setInput(buffer, 0, buffer_len);
+
+				}
+
+			}
+
+		} catch (DataFormatException e) {
+			throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid ZLIB data format");
+		}
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+
+		inflater.end();
+
+		in.close();
+
+	}
+
+	/**
+	 * Read and verify trailer of current member.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void readTrailer() throws IOException {
+
+		long crc32 = readInt();
+		long isize = readInt();
+
+		if (crc32 != crc.getValue())
+			throw new ZipException("Corrupt GZIP trailer (CRC-32 mismatch)");
+
+		if (isize != (inflater.getBytesWritten() & 0xffffffffL))
+			throw new ZipException("Corrupt GZIP trailer (size mismatch)");
+
+	}
+
+	/**
+	 * Read unsigned little-endian 32-bit integer.
+	 *
+	 * @return long unsigned integer
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private long readInt() throws IOException {
+		return (readByte() | (readByte() << 8) | (readByte() << 16) | ((long) readByte() << 24));
+	}
+
+	/**
+	 * Read a byte.
+	 *
+	 * @return int unsigned byte
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private int readByte() throws IOException {
+
+		int b = in.read();
+
+		if (b == -1)
+			throw new EOFException("Unexpected end of GZIP input stream");
+
+		return b;
+	}
+
+	/**
+	 * Skip bytes.
+	 *
+	 * @param size number of bytes to be skipped
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void skipBytes(int size) throws IOException {
+
+		for (int i = 0; i < size; i++)
+			readByte();
+
+	}
+
+	/**
+	 * Read zero-terminated ISO-8859-1 string.
+	 *
+	 * @return String string
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private String readZeroTerminated() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		int b;
+
+		while ((b = readByte()) != 0)
+			out.write(b);
+
+		return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+}
@@ -0,0 +1,439 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.xmlutil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Input stream reading regular file entries of tar archive in order, where each entry is preceded by 512-byte header.
+ *
+ * @author yokochi
+ */
+public class TarEntryInputStream extends InputStream {
+
+	/** The block size of tar archive. */
+	private static final int block_size = 512;
+
+	/** The underlying input stream. */
+	private InputStream in;
+
+	/** The header block. */
+	private byte[] header = new byte[block_size];
+
+	/** The remaining bytes of current entry. */
+	private long remaining = 0;
+
+	/** The padding bytes following current entry. */
+	private long padding = 0;
+
+	/**
+	 * Instance of TarEntryInputStream.
+	 *
+	 * @param in input stream of tar archive
+	 */
+	public TarEntryInputStream(InputStream in) {
+
+		this.in = in;
+
+	}
+
+	/**
+	 * Move to the next regular file entry, skipping directories, links and extended headers.
+	 *
+	 * @return String path name of the next entry (null indicates end of archive)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public String getNextEntry() throws IOException {
+
+		String long_name = null;
+
+		long pax_size = -1;
+
+		while (true) {
+
+			skipFully(remaining + padding);
+
+			remaining = padding = 0;
+
+			if (!readBlock(header))
+				return null;
+
+			// two zero blocks terminate archive
+
+			if (isZeroBlock(header))
+				return null;
+
+			verifyChecksum();
+
+			long size = parseNumber(124, 12);
+
+			char type = (char) header[156];
+
+			switch (type) {
+			case 'L': // GNU long name of the next entry
+				long_name = trimName(readData(size));
+				continue;
+			case 'x': // POSIX extended header of the next entry
+				HashMap<String, String> records = parsePax(readData(size));
+				if (records.containsKey("path"))
+					long_name = records.get("path");
+				if (records.containsKey("size")) {
+					try {
+						pax_size = Long.parseLong(records.get("size"));
+					} catch (NumberFormatException e) {
+						throw new IOException("Not in tar format (invalid extended header)");
+					}
+				}
+				continue;
+			case '0':
+			case '\0':
+			case '7':
+				break;
+			default: // directory, link, device, global extended header, etc.
+				remaining = pax_size >= 0 ? pax_size : size;
+				padding = getPadding(remaining);
+				long_name = null;
+				pax_size = -1;
+				continue;
+			}
+
+			if (pax_size >= 0)
+				size = pax_size;
+
+			String name = long_name;
+
+			if (name == null) {
+
+				name = parseString(0, 100);
+
+				// ustar prefix of path name
+
+				if (parseString(257, 5).equals("ustar")) {
+
+					String prefix = parseString(345, 155);
+
+					if (!prefix.isEmpty())
+						name = prefix + "/" + name;
+
+				}
+
+			}
+
+			remaining = size;
+			padding = getPadding(size);
+
+			return name;
+		}
+
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+
+		byte[] b = new byte[1];
+
+		return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+
+		if (len == 0)
+			return 0;
+
+		if (remaining == 0)
+			return -1;
+
+		int n = in.read(b, off, (int) Math.min(len, remaining));
+
+		if (n == -1)
+			throw new EOFException("Unexpected end of tar archive");
+
+		remaining -= n;
+
+		return n;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+
+		in.close();
+
+	}
+
+	/**
+	 * Read a block.
+	 *
+	 * @param block block to be filled
+	 * @return boolean whether block has been read (false indicates end of stream)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private boolean readBlock(byte[] block) throws IOException {
+
+		int off = 0;
+
+		while (off < block.length) {
+
+			int n = in.read(block, off, block.length - off);
+
+			if (n == -1) {
+
+				if (off == 0)
+					return false;
+
+				throw new EOFException("Unexpected end of tar archive");
+			}
+
+			off += n;
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read data of extended header.
+	 *
+	 * @param size size of data
+	 * @return byte[] data
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private byte[] readData(long size) throws IOException {
+
+		if (size > Integer.MAX_VALUE - block_size)
+			throw new IOException("Too large extended header of tar archive");
+
+		byte[] data = new byte[(int) (size + getPadding(size))];
+
+		if (!readBlock(data))
+			throw new EOFException("Unexpected end of tar archive");
+
+		byte[] _data = new byte[(int) size];
+
+		System.arraycopy(data, 0, _data, 0, _data.length);
+
+		return _data;
+	}
+
+	/**
+	 * Skip bytes of underlying input stream.
+	 *
+	 * @param size number of bytes to be skipped
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void skipFully(long size) throws IOException {
+
+		while (size > 0) {
+
+			long n = in.skip(size);
+
+			if (n <= 0) {
+
+				if (in.read() == -1)
+					throw new EOFException("Unexpected end of tar archive");
+
+				n = 1;
+			}
+
+			size -= n;
+
+		}
+
+	}
+
+	/**
+	 * Return padding bytes to the next block.
+	 *
+	 * @param size size of entry
+	 * @return long padding bytes
+	 */
+	private long getPadding(long size) {
+		return (block_size - size % block_size) % block_size;
+	}
+
+	/**
+	 * Return whether block consists of zero bytes.
+	 *
+	 * @param block block
+	 * @return boolean whether block consists of zero bytes
+	 */
+	private boolean isZeroBlock(byte[] block) {
+
+		for (byte b : block) {
+
+			if (b != 0)
+				return false;
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Verify check sum of header, which is calculated while the check sum field is filled with spaces.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void verifyChecksum() throws IOException {
+
+		long chk_sum = 0;
+
+		for (int i = 0; i < block_size; i++)
+			chk_sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+
+		if (chk_sum != parseNumber(148, 8))
+			throw new IOException("Not in tar format (invalid header check sum)");
+
+	}
+
+	/**
+	 * Parse numeric field of header, which is octal string or big-endian binary number flagged by the highest bit.
+	 *
+	 * @param offset offset of field
+	 * @param length length of field
+	 * @return long numeric value
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private long parseNumber(int offset, int length) throws IOException {
+
+		long value = 0;
+
+		if ((header[offset] & 0x80) != 0) {
+
+			for (int i = offset + 1; i < offset + length; i++)
+				value = (value << 8) | (header[i] & 0xff);
+
+			return value;
+		}
+
+		for (int i = offset; i < offset + length; i++) {
+
+			byte b = header[i];
+
+			if (b == 0 || (b == ' ' && value > 0))
+				break;
+
+			if (b == ' ')
+				continue;
+
+			if (b < '0' || b > '7')
+				throw new IOException("Not in tar format (invalid numeric field)");
+
+			value = (value << 3) + (b - '0');
+
+		}
+
+		return value;
+	}
+
+	/**
+	 * Parse string field of header.
+	 *
+	 * @param offset offset of field
+	 * @param length length of field
+	 * @return String string value
+	 */
+	private String parseString(int offset, int length) {
+
+		int end = offset;
+
+		while (end < offset + length && header[end] != 0)
+			end++;
+
+		return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Return path name stored in data of GNU long name entry.
+	 *
+	 * @param data data of entry
+	 * @return String path name
+	 */
+	private String trimName(byte[] data) {
+
+		int end = 0;
+
+		while (end < data.length && data[end] != 0)
+			end++;
+
+		return new String(data, 0, end, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Return records of POSIX extended header, which consists of "length key=value\n" records.
+	 *
+	 * @param data data of extended header
+	 * @return HashMap records of extended header
+	 */
+	private HashMap<String, String> parsePax(byte[] data) {
+
+		HashMap<String, String> records = new HashMap<String, String>();
+
+		int pos = 0;
+
+		while (pos < data.length) {
+
+			int space = pos;
+
+			while (space < data.length && data[space] != ' ')
+				space++;
+
+			if (space == data.length)
+				break;
+
+			int length;
+
+			try {
+				length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+			} catch (NumberFormatException e) {
+				break;
+			}
+
+			if (length <= space - pos || pos + length > data.length)
+				break;
+
+			String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+
+			int eq = record.indexOf('=');
+
+			if (eq > 0)
+				records.put(record.substring(0, eq), record.substring(eq + 1));
+
+			pos += length;
+
+		}
+
+		return records;
+	}
+
+}
@@ -0,0 +1,344 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.xmlutil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.apache.commons.codec.binary.Hex;
+
+import net.sf.xsd2pgschema.PgSchemaUtil;
+
+import net.sf.xsd2pgschema.option.PgSchemaOption;
+import net.sf.xsd2pgschema.option.XmlFileFilter;
+
+/**
+ * Change manifest, which lists added, modified and deleted documents identified by a single synchronization pass,
+ * so that several targets are synchronized without identifying XML files again.
+ * Each target is recorded in the manifest once the changes have been applied to it.
+ *
+ * @author yokochi
+ */
+public class XmlChangeManifest {
+
+	/** The header of change manifest. */
+	private static final String header = "# xsd2pgschema change manifest";
+
+	/** The compiled pattern matches algorithm of check sum in header. */
+	private static final Pattern check_sum_algorithm_pattern = Pattern.compile(", check sum by ([^,]+),");
+
+	/** The record type of added document. */
+	private static final String added = "A";
+
+	/** The record type of modified document. */
+	private static final String modified = "M";
+
+	/** The record type of deleted document. */
+	private static final String deleted = "D";
+
+	/** The record type of target where the changes have been applied. */
+	private static final String applied = "APPLIED";
+
+	/** The instances of change manifest. */
+	private static HashMap<Path, XmlChangeManifest> manifests = new HashMap<Path, XmlChangeManifest>();
+
+	/** The change manifest file path. */
+	private Path manifest_path;
+
+	/** The added or modified document ids (key=document id, value=check sum, empty if not recorded). */
+	private HashMap<String, String> changed_doc_ids = new HashMap<String, String>();
+
+	/** The algorithm name of message digest for check sum (null indicates no check sum recorded). */
+	private String check_sum_algorithm = null;
+
+	/** The deleted document ids. */
+	private HashSet<String> deleted_doc_ids = new HashSet<String>();
+
+	/** The targets where the changes have been applied. */
+	private HashSet<String> applied_targets = new HashSet<String>();
+
+	/** The number of documents failed to be applied in current run. */
+	private AtomicInteger failures = new AtomicInteger();
+
+	/**
+	 * Return change manifest specified by synchronization option, which is shared by all threads.
+	 *
+	 * @param option PostgreSQL data model option
+	 * @return XmlChangeManifest change manifest
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static synchronized XmlChangeManifest getInstance(PgSchemaOption option) throws IOException {
+
+		Path manifest_path = Paths.get(option.sync_manifest_name).toAbsolutePath();
+
+		XmlChangeManifest manifest = manifests.get(manifest_path);
+
+		if (manifest == null)
+			manifests.put(manifest_path, manifest = new XmlChangeManifest(manifest_path));
+
+		return manifest;
+	}
+
+	/**
+	 * Instance of change manifest.
+	 *
+	 * @param manifest_path change manifest file path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private XmlChangeManifest(Path manifest_path) throws IOException {
+
+		this.manifest_path = manifest_path;
+
+		try (BufferedReader reader = Files.newBufferedReader(manifest_path, StandardCharsets.UTF_8)) {
+
+			String line = reader.readLine();
+
+			if (line == null || !line.startsWith(header))
+				throw new IOException("'" + manifest_path.toString() + "' is not a change manifest.");
+
+			Matcher matcher = check_sum_algorithm_pattern.matcher(line);
+
+			if (matcher.find())
+				check_sum_algorithm = matcher.group(1);
+
+			String[] record;
+
+			while ((line = reader.readLine()) != null) {
+
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+
+				record = line.split("\t", -1);
+
+				if (record.length < 2)
+					throw new IOException("Malformed record in change manifest '" + manifest_path.toString() + "': " + line);
+
+				switch (record[0]) {
+				case added:
+				case modified:
+					changed_doc_ids.put(record[1], record.length > 2 ? record[2] : "");
+					break;
+				case deleted:
+					deleted_doc_ids.add(record[1]);
+					break;
+				case applied:
+					applied_targets.add(record[1]);
+					break;
+				default:
+					throw new IOException("Unknown record type in change manifest '" + manifest_path.toString() + "': " + line);
+				}
+
+			}
+
+		}
+
+	}
+
+	/**
+	 * Write change manifest, which replaces existing one atomically.
+	 *
+	 * @param manifest_path change manifest file path
+	 * @param check_sum_algorithm algorithm name of message digest for check sum
+	 * @param new_doc_rows added documents (key=document id, value=check sum)
+	 * @param up_doc_rows modified documents (key=document id, value=check sum)
+	 * @param del_doc_ids deleted document ids
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static void write(Path manifest_path, String check_sum_algorithm, Map<String, String> new_doc_rows, Map<String, String> up_doc_rows, Set<String> del_doc_ids) throws IOException {
+
+		Path tmp_path = Paths.get(manifest_path.toString() + ".tmp");
+
+		try (BufferedWriter writer = Files.newBufferedWriter(tmp_path, StandardCharsets.UTF_8)) {
+
+			writer.write(header + ", check sum by " + check_sum_algorithm + ", created at " + new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()));
+			writer.newLine();
+
+			for (String document_id : new TreeSet<String>(new_doc_rows.keySet())) {
+				writer.write(added + "\t" + document_id + "\t" + new_doc_rows.get(document_id));
+				writer.newLine();
+			}
+
+			for (String document_id : new TreeSet<String>(up_doc_rows.keySet())) {
+				writer.write(modified + "\t" + document_id + "\t" + up_doc_rows.get(document_id));
+				writer.newLine();
+			}
+
+			for (String document_id : new TreeSet<String>(del_doc_ids)) {
+				writer.write(deleted + "\t" + document_id);
+				writer.newLine();
+			}
+
+		}
+
+		Files.move(tmp_path, manifest_path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	/**
+	 * Return whether document is added or modified.
+	 *
+	 * @param document_id document id
+	 * @return boolean whether document is added or modified
+	 */
+	public boolean isChanged(String document_id) {
+		return changed_doc_ids.containsKey(document_id);
+	}
+
+	/**
+	 * Return deleted document ids.
+	 *
+	 * @return Set set of deleted document ids
+	 */
+	public Set<String> getDeletedDocIds() {
+		return Collections.unmodifiableSet(deleted_doc_ids);
+	}
+
+	/**
+	 * Remove XML files of documents neither added nor modified from XML file queue,
+	 * and XML files whose check sum disagrees with the manifest, which are counted as failures.
+	 *
+	 * @param xml_file_queue XML file queue
+	 * @param xml_file_filter XML file filter
+	 */
+	public void filter(LinkedBlockingQueue<Path> xml_file_queue, XmlFileFilter xml_file_filter) {
+
+		Set<Path> removed = xml_file_queue.parallelStream().filter(xml_file_path -> !accept(xml_file_path, xml_file_filter)).collect(Collectors.toSet());
+
+		xml_file_queue.removeAll(removed);
+
+		removed.clear();
+
+	}
+
+	/**
+	 * Return whether XML file is listed as added or modified document and its check sum agrees with the manifest.
+	 *
+	 * @param xml_file_path XML file path
+	 * @param xml_file_filter XML file filter
+	 * @return boolean whether XML file is to be applied
+	 */
+	private boolean accept(Path xml_file_path, XmlFileFilter xml_file_filter) {
+
+		String check_sum = changed_doc_ids.get(new XmlParser(xml_file_path, xml_file_filter).document_id);
+
+		if (check_sum == null)
+			return false;
+
+		if (check_sum.isEmpty() || check_sum_algorithm == null)
+			return true;
+
+		try {
+
+			MessageDigest md_chk_sum = MessageDigest.getInstance(check_sum_algorithm);
+
+			try (InputStream in = Files.newInputStream(xml_file_path)) {
+
+				byte[] buffer = new byte[PgSchemaUtil.def_buffered_output_stream_buffer_size];
+
+				int len;
+
+				while ((len = in.read(buffer)) != -1)
+					md_chk_sum.update(buffer, 0, len);
+
+			}
+
+			if (Hex.encodeHexString(md_chk_sum.digest()).equals(check_sum))
+				return true;
+
+			System.err.println("Skipped " + xml_file_path.toString() + " whose check sum disagrees with change manifest " + manifest_path.toString() + ".");
+
+		} catch (IOException | NoSuchAlgorithmException e) {
+			e.printStackTrace();
+		}
+
+		addFailure();
+
+		return false;
+	}
+
+	/**
+	 * Return whether the changes have been applied to target.
+	 *
+	 * @param target target name
+	 * @return boolean whether the changes have been applied to target
+	 */
+	public synchronized boolean isApplied(String target) {
+		return applied_targets.contains(target);
+	}
+
+	/**
+	 * Count a document failed to be applied, which prevents the manifest from being marked as applied.
+	 */
+	public void addFailure() {
+
+		failures.incrementAndGet();
+
+	}
+
+	/**
+	 * Record that the changes have been applied to target, unless any document failed to be applied.
+	 *
+	 * @param target target name
+	 * @return boolean whether the manifest has been marked as applied
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public synchronized boolean markApplied(String target) throws IOException {
+
+		if (failures.get() > 0) {
+
+			System.err.println(failures.get() + " documents failed to be applied to " + target + ", so that " + manifest_path.toString() + " is not marked as applied.");
+
+			return false;
+		}
+
+		if (!applied_targets.add(target))
+			return true;
+
+		// single append per record, so that loaders of other targets may share the manifest
+
+		Files.write(manifest_path, (applied + "\t" + target + "\t" + new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ").format(new Date()) + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+
+		return true;
+	}
+
+}
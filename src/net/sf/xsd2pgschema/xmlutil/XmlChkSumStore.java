@@ -0,0 +1,729 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.xmlutil;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+import net.sf.xsd2pgschema.PgSchemaUtil;
+import net.sf.xsd2pgschema.option.PgSchemaOption;
+
+/**
+ * Check sum store, which keeps check sums of all XML documents in a single append-only log.
+ * Each check sum is journaled with size, modified time and inode of XML file, so that unchanged XML files are identified without reading.
+ *
+ * @author yokochi
+ */
+public class XmlChkSumStore {
+
+	/** The prefix of check sum store file name. */
+	public static final String store_file_prefix = "check_sum_store.";
+
+	/** The extension of check sum store file name. */
+	public static final String store_file_ext = ".log";
+
+	/** The magic number of check sum store. */
+	private static final int magic = 0x58434b53;
+
+	/** The number of appended records between fsync. */
+	private static final int sync_interval = 1024;
+
+	/** The instances of check sum store. */
+	private static HashMap<Path, XmlChkSumStore> stores = new HashMap<Path, XmlChkSumStore>();
+
+	/** The check sum store file path. */
+	private Path store_path;
+
+	/** The algorithm name of message digest. */
+	private String algorithm;
+
+	/** The latest check sum entries keyed by XML file name. */
+	private ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/** The file channel of check sum store. */
+	private FileChannel channel;
+
+	/** The output stream appending records. */
+	private DataOutputStream out;
+
+	/** The number of records in check sum store. */
+	private int records = 0;
+
+	/** The number of records appended since last fsync. */
+	private int unsynced = 0;
+
+	/**
+	 * Check sum entry.
+	 */
+	public static class Entry {
+
+		/** The check sum. */
+		public final byte[] check_sum;
+
+		/** The last modified time of XML file in milliseconds when check sum was recorded. */
+		public final long last_modified;
+
+		/** The size of XML file when check sum was recorded (-1 indicates unknown size). */
+		public final long size;
+
+		/** The file key (inode) of XML file when check sum was recorded (empty indicates unknown file key). */
+		public final String file_key;
+
+		/**
+		 * Instance of Entry.
+		 *
+		 * @param check_sum check sum
+		 * @param last_modified last modified time of XML file in milliseconds
+		 * @param size size of XML file
+		 * @param file_key file key of XML file
+		 */
+		public Entry(byte[] check_sum, long last_modified, long size, String file_key) {
+
+			this.check_sum = check_sum;
+			this.last_modified = last_modified;
+			this.size = size;
+			this.file_key = file_key;
+
+		}
+
+		/**
+		 * Instance of Entry.
+		 *
+		 * @param check_sum check sum
+		 * @param attrs file attributes of XML file (null indicates XML document in memory)
+		 */
+		public Entry(byte[] check_sum, BasicFileAttributes attrs) {
+
+			this(check_sum, attrs != null ? attrs.lastModifiedTime().toMillis() : 0L, attrs != null ? attrs.size() : -1L, getFileKey(attrs));
+
+		}
+
+		/**
+		 * Return whether size, modified time and file key of XML file agree with the entry.
+		 *
+		 * @param attrs file attributes of XML file
+		 * @return boolean whether metadata of XML file agrees with the entry
+		 */
+		public boolean hasSameStat(BasicFileAttributes attrs) {
+			return attrs != null && last_modified == attrs.lastModifiedTime().toMillis() && size == attrs.size() && file_key.equals(getFileKey(attrs));
+		}
+
+	}
+
+	/**
+	 * Return file key of XML file, which consists of device and inode on POSIX file systems.
+	 *
+	 * @param attrs file attributes of XML file
+	 * @return String file key (empty indicates unknown file key)
+	 */
+	private static String getFileKey(BasicFileAttributes attrs) {
+
+		Object file_key = attrs != null ? attrs.fileKey() : null;
+
+		return file_key != null ? file_key.toString() : "";
+	}
+
+	/**
+	 * Return check sum store in check sum directory, which is shared by all threads.
+	 *
+	 * @param option PostgreSQL data model option
+	 * @return XmlChkSumStore check sum store
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static synchronized XmlChkSumStore getInstance(PgSchemaOption option) throws IOException {
+
+		Path store_path = Paths.get(option.check_sum_dir_name, store_file_prefix + option.check_sum_ext + store_file_ext).toAbsolutePath();
+
+		XmlChkSumStore store = stores.get(store_path);
+
+		if (store == null) {
+
+			// flush pending records and fsync at exit
+
+			if (stores.isEmpty())
+				Runtime.getRuntime().addShutdownHook(new Thread(() -> closeAll()));
+
+			stores.put(store_path, store = new XmlChkSumStore(store_path, option.check_sum_algorithm, option.check_sum_ext));
+
+		}
+
+		return store;
+	}
+
+	/**
+	 * Close all check sum stores.
+	 */
+	public static synchronized void closeAll() {
+
+		stores.values().forEach(store -> store.close());
+
+		stores.clear();
+
+	}
+
+	/**
+	 * Instance of XmlChkSumStore.
+	 *
+	 * @param store_path check sum store file path
+	 * @param algorithm algorithm name of message digest
+	 * @param check_sum_ext extension of legacy check sum file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private XmlChkSumStore(Path store_path, String algorithm, String check_sum_ext) throws IOException {
+
+		this.store_path = store_path;
+		this.algorithm = algorithm;
+
+		channel = FileChannel.open(store_path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		long valid_size = channel.size() > 0 ? load() : 0;
+
+		// discard torn record at the tail
+
+		if (valid_size < channel.size())
+			channel.truncate(valid_size);
+
+		channel.position(valid_size);
+
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), PgSchemaUtil.def_buffered_output_stream_buffer_size));
+
+		if (valid_size == 0) {
+
+			out.writeInt(magic);
+			writeString(algorithm);
+
+			importCheckSumFiles(check_sum_ext);
+
+			sync();
+
+		}
+
+	}
+
+	/**
+	 * Load records of check sum store via memory-mapped file.
+	 *
+	 * @return long size of valid records
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private long load() throws IOException {
+
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+		long valid_size = 0;
+
+		try {
+
+			if (buffer.getInt() != magic || !readString(buffer).equals(algorithm))
+				throw new IOException(store_path.toString() + " is not a check sum store of " + algorithm + ".");
+
+			valid_size = buffer.position();
+
+			String key, file_key;
+			long last_modified, size;
+			byte[] check_sum;
+
+			while (buffer.hasRemaining()) {
+
+				key = readString(buffer);
+				last_modified = buffer.getLong();
+				size = buffer.getLong();
+				file_key = readString(buffer);
+				check_sum = new byte[buffer.get() & 0xff];
+				buffer.get(check_sum);
+
+				if (check_sum.length > 0)
+					entries.put(key, new Entry(check_sum, last_modified, size, file_key));
+				else
+					entries.remove(key);
+
+				records++;
+
+				valid_size = buffer.position();
+
+			}
+
+		} catch (BufferUnderflowException e) {
+			System.err.println("Discarded incomplete record at the tail of " + store_path.toString() + ".");
+		}
+
+		return valid_size;
+	}
+
+	/**
+	 * Import check sum files in check sum directory, which were written one per XML document.
+	 *
+	 * @param check_sum_ext extension of check sum file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void importCheckSumFiles(String check_sum_ext) throws IOException {
+
+		String suffix = "." + check_sum_ext;
+
+		int imported = records;
+
+		try (Stream<Path> stream = Files.list(store_path.getParent())) {
+
+			stream.filter(check_sum_path -> check_sum_path.getFileName().toString().endsWith(suffix) && Files.isRegularFile(check_sum_path)).forEach(check_sum_path -> {
+
+				String file_name = check_sum_path.getFileName().toString();
+
+				try (BufferedReader br = Files.newBufferedReader(check_sum_path)) {
+
+					String check_sum = br.readLine();
+
+					if (check_sum != null)
+						put(file_name.substring(0, file_name.length() - suffix.length()), new Entry(Hex.decodeHex(check_sum.trim().toCharArray()), Files.getLastModifiedTime(check_sum_path).toMillis(), -1L, ""));
+
+				} catch (IOException | DecoderException e) {
+					System.err.println("Skipped check sum file: " + file_name);
+				}
+
+			});
+
+		}
+
+		if (records > imported)
+			System.out.println("Imported " + (records - imported) + " check sum files into " + store_path.getFileName().toString() + ".");
+
+	}
+
+	/**
+	 * Return check sum entry of XML file.
+	 *
+	 * @param xml_file_name XML file name
+	 * @return Entry check sum entry (null indicates no check sum)
+	 */
+	public Entry get(String xml_file_name) {
+		return entries.get(xml_file_name);
+	}
+
+	/**
+	 * Return XML file names having check sum.
+	 *
+	 * @return Set XML file names
+	 */
+	public Set<String> keySet() {
+		return entries.keySet();
+	}
+
+	/**
+	 * Return whether XML file is unchanged judging from size, modified time and file key, without reading content.
+	 *
+	 * @param xml_file_name XML file name
+	 * @param attrs file attributes of XML file
+	 * @param verify_rate sampling rate of XML files whose content is verified anyway
+	 * @return boolean whether XML file is unchanged
+	 */
+	public boolean isUnchanged(String xml_file_name, BasicFileAttributes attrs, float verify_rate) {
+
+		Entry entry = entries.get(xml_file_name);
+
+		if (entry == null || !entry.hasSameStat(attrs))
+			return false;
+
+		return verify_rate <= 0.0f || (verify_rate < 1.0f && ThreadLocalRandom.current().nextFloat() >= verify_rate);
+	}
+
+	/**
+	 * Identify XML file by agreement of check sum, and record new check sum.
+	 *
+	 * @param xml_file_name XML file name
+	 * @param check_sum check sum of XML file
+	 * @param attrs file attributes of XML file (null indicates XML document in memory)
+	 * @param dry_run whether not to record new check sum
+	 * @return boolean identity of XML file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public boolean identify(String xml_file_name, byte[] check_sum, BasicFileAttributes attrs, boolean dry_run) throws IOException {
+
+		Entry entry = entries.get(xml_file_name);
+
+		boolean identity = entry != null && MessageDigest.isEqual(entry.check_sum, check_sum);
+
+		if (!dry_run && (!identity || (attrs != null && !entry.hasSameStat(attrs))))
+			put(xml_file_name, new Entry(check_sum, attrs));
+
+		return identity;
+	}
+
+	/**
+	 * Record check sum entry of XML file.
+	 *
+	 * @param xml_file_name XML file name
+	 * @param entry check sum entry
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public synchronized void put(String xml_file_name, Entry entry) throws IOException {
+
+		entries.put(xml_file_name, entry);
+
+		append(xml_file_name, entry);
+
+	}
+
+	/**
+	 * Remove check sum of XML file.
+	 *
+	 * @param xml_file_name XML file name
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public synchronized void remove(String xml_file_name) throws IOException {
+
+		if (entries.remove(xml_file_name) != null)
+			append(xml_file_name, new Entry(new byte[0], 0L, -1L, ""));
+
+	}
+
+	/**
+	 * Append a record, where empty check sum indicates removal.
+	 *
+	 * @param xml_file_name XML file name
+	 * @param entry check sum entry
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void append(String xml_file_name, Entry entry) throws IOException {
+
+		writeRecord(xml_file_name, entry);
+
+		records++;
+
+		if (++unsynced >= sync_interval)
+			sync();
+
+	}
+
+	/**
+	 * Flush appended records and fsync check sum store.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void sync() throws IOException {
+
+		out.flush();
+
+		channel.force(false);
+
+		unsynced = 0;
+
+	}
+
+	/**
+	 * Close check sum store, which is compacted if obsolete records dominate.
+	 */
+	private synchronized void close() {
+
+		if (!channel.isOpen())
+			return;
+
+		try {
+
+			sync();
+
+			channel.close();
+
+			if (records > entries.size() * 2 + sync_interval)
+				compact();
+
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+	}
+
+	/**
+	 * Rewrite check sum store with the latest records only.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void compact() throws IOException {
+
+		Path tmp_path = Paths.get(store_path.toString() + ".tmp");
+
+		channel = FileChannel.open(tmp_path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+		out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), PgSchemaUtil.def_buffered_output_stream_buffer_size));
+
+		out.writeInt(magic);
+		writeString(algorithm);
+
+		records = 0;
+
+		for (java.util.Map.Entry<String, Entry> entry : entries.entrySet()) {
+
+			writeRecord(entry.getKey(), entry.getValue());
+
+			records++;
+
+		}
+
+		sync();
+
+		channel.close();
+
+		Files.move(tmp_path, store_path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	/**
+	 * Write a record.
+	 *
+	 * @param xml_file_name XML file name
+	 * @param entry check sum entry
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeRecord(String xml_file_name, Entry entry) throws IOException {
+
+		writeString(xml_file_name);
+		out.writeLong(entry.last_modified);
+		out.writeLong(entry.size);
+		writeString(entry.file_key);
+		out.writeByte(entry.check_sum.length);
+		out.write(entry.check_sum);
+
+	}
+
+	/**
+	 * Write string in UTF-8 preceded by its length.
+	 *
+	 * @param str string
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void writeString(String str) throws IOException {
+
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+		out.writeShort(bytes.length);
+		out.write(bytes);
+
+	}
+
+	/**
+	 * Read string in UTF-8 preceded by its length.
+	 *
+	 * @param buffer byte buffer
+	 * @return String string
+	 */
+	private static String readString(MappedByteBuffer buffer) {
+
+		byte[] bytes = new byte[buffer.getShort() & 0xffff];
+
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Return check sum deferred until XML file is read by parser.
+	 *
+	 * @param xml_file_name XML file name
+	 * @param md_chk_sum instance of message digest for check sum
+	 * @param attrs file attributes of XML file
+	 * @return DeferredCheckSum check sum deferred until XML file is read by parser
+	 */
+	public DeferredCheckSum defer(String xml_file_name, MessageDigest md_chk_sum, BasicFileAttributes attrs) {
+
+		md_chk_sum.reset();
+
+		return new DeferredCheckSum(xml_file_name, md_chk_sum, attrs);
+	}
+
+	/**
+	 * Check sum calculated while parser reads XML file.
+	 */
+	public class DeferredCheckSum {
+
+		/** The XML file name. */
+		private String xml_file_name;
+
+		/** The instance of message digest for check sum. */
+		private MessageDigest md_chk_sum;
+
+		/** The file attributes of XML file. */
+		private BasicFileAttributes attrs;
+
+		/** The input stream updating message digest. */
+		private DigestStream in = null;
+
+		/**
+		 * Instance of DeferredCheckSum.
+		 *
+		 * @param xml_file_name XML file name
+		 * @param md_chk_sum instance of message digest for check sum
+		 * @param attrs file attributes of XML file
+		 */
+		private DeferredCheckSum(String xml_file_name, MessageDigest md_chk_sum, BasicFileAttributes attrs) {
+
+			this.xml_file_name = xml_file_name;
+			this.md_chk_sum = md_chk_sum;
+			this.attrs = attrs;
+
+		}
+
+		/**
+		 * Return input stream updating message digest with raw content of XML file.
+		 *
+		 * @param in input stream of XML file
+		 * @return InputStream input stream updating message digest
+		 */
+		public InputStream wrap(InputStream in) {
+			return this.in = new DigestStream(in, md_chk_sum);
+		}
+
+		/**
+		 * Record check sum after parser has read XML file.
+		 *
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		public void commit() throws IOException {
+
+			if (in == null)
+				return;
+
+			in.close();
+
+			put(xml_file_name, new Entry(md_chk_sum.digest(), attrs));
+
+			in = null;
+
+		}
+
+	}
+
+	/**
+	 * Input stream updating message digest, which consumes the rest of content on close.
+	 */
+	private static class DigestStream extends FilterInputStream {
+
+		/** The instance of message digest. */
+		private MessageDigest md;
+
+		/** Whether the stream is closed. */
+		private boolean closed = false;
+
+		/**
+		 * Instance of DigestStream.
+		 *
+		 * @param in input stream
+		 * @param md instance of message digest
+		 */
+		private DigestStream(InputStream in, MessageDigest md) {
+
+			super(in);
+
+			this.md = md;
+
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+
+			int b = in.read();
+
+			if (b != -1)
+				md.update((byte) b);
+
+			return b;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			int read = in.read(b, off, len);
+
+			if (read > 0)
+				md.update(b, off, read);
+
+			return read;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#skip(long)
+		 */
+		@Override
+		public long skip(long n) throws IOException {
+
+			byte[] b = new byte[(int) Math.min(n, 8192)];
+
+			int read = read(b, 0, b.length);
+
+			return read > 0 ? read : 0;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+
+			if (closed)
+				return;
+
+			byte[] b = new byte[8192];
+
+			while (read(b, 0, b.length) != -1);
+
+			closed = true;
+
+			in.close();
+
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.FilterInputStream#markSupported()
+		 */
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+	}
+
+}
@@ -19,25 +19,23 @@ limitations under the License.
 
 package net.sf.xsd2pgschema.xmlutil;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipInputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 
-import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import net.sf.xsd2pgschema.PgSchemaUtil;
 import net.sf.xsd2pgschema.option.PgSchemaOption;
 import net.sf.xsd2pgschema.option.XmlFileFilter;
 
@@ -63,6 +61,9 @@ public class XmlParser {
 	/** The base name of XML file. */
 	public String basename;
 
+	/** The check sum of XML file calculated by the last identification (null indicates not calculated). */
+	public byte[] check_sum = null;
+
 	/**
 	 * Instance of XML parser.
 	 *
@@ -77,7 +78,52 @@ public class XmlParser {
 
 		init(xml_file_path, xml_file_filter);
 
-		parse(doc_builder, validator, xml_file_filter);
+		parse(doc_builder, validator, xml_file_filter, null);
+
+	}
+
+	/**
+	 * Instance of XML parser from prefetched content.
+	 *
+	 * @param doc_builder instance of DocumentBuilder
+	 * @param validator instance of XmlValidator
+	 * @param xml_file prefetched XML file, whose content is released after parsing
+	 * @param xml_file_filter XML file filter
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws SAXException the SAX exception
+	 */
+	public XmlParser(DocumentBuilder doc_builder, XmlValidator validator, XmlPrefetchedFile xml_file, XmlFileFilter xml_file_filter) throws IOException, SAXException {
+
+		init(xml_file.xml_file_path, xml_file_filter);
+
+		if (!xml_file.isPrefetched()) {
+
+			parse(doc_builder, validator, xml_file_filter, xml_file.deferred_chk_sum);
+
+			xml_file.deferred_chk_sum = null;
+
+			return;
+		}
+
+		try {
+
+			if (isSinglePass(validator))
+				document = validator.parse(doc_builder, xml_file.newInputStream(), xml_file_path);
+
+			else {
+
+				document = doc_builder.parse(xml_file.newInputStream());
+
+				if (validator != null)
+					validator.exec(xml_file.newInputStream(), xml_file_path, null, false, false);
+
+				doc_builder.reset();
+
+			}
+
+		} finally {
+			xml_file.release();
+		}
 
 	}
 
@@ -94,7 +140,7 @@ public class XmlParser {
 
 		init(xml_file_path, xml_file_filter);
 
-		validate(validator, option.isSynchronizable(false) ? getCheckSumFilePath(option) : null, option.del_invalid_xml, option.verbose);
+		validate(validator, option.isSynchronizable(false) ? XmlChkSumStore.getInstance(option) : null, option.del_invalid_xml, option.verbose);
 
 	}
 
@@ -173,17 +219,31 @@ public class XmlParser {
 	 * @param doc_builder instance of DocumentBuilder
 	 * @param validator instance of XmlValidator
 	 * @param xml_file_filter XML file filter
+	 * @param deferred_chk_sum check sum calculated while reading XML file (null indicates no check sum)
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws SAXException the SAX exception
 	 */
-	private void parse(DocumentBuilder doc_builder, XmlValidator validator, XmlFileFilter xml_file_filter) throws IOException, SAXException {
+	private void parse(DocumentBuilder doc_builder, XmlValidator validator, XmlFileFilter xml_file_filter, XmlChkSumStore.DeferredCheckSum deferred_chk_sum) throws IOException, SAXException {
 
 		InputStream in = Files.newInputStream(xml_file_path);
 
+		if (deferred_chk_sum != null)
+			in = deferred_chk_sum.wrap(in);
+
+		boolean single_pass = isSinglePass(validator);
+
 		switch (FilenameUtils.getExtension(xml_file_name)) {
 		case "gz":
 			GZIPInputStream gzin = new GZIPInputStream(in);
 
+			if (single_pass) {
+
+				document = validator.parse(doc_builder, gzin, xml_file_path);
+
+				gzin.close();
+				break;
+			}
+
 			document = doc_builder.parse(gzin);
 
 			if (validator != null) {
@@ -202,6 +262,15 @@ public class XmlParser {
 			break;
 		case "zip":
 			ZipInputStream zin = new ZipInputStream(in);
+			zin.getNextEntry();
+
+			if (single_pass) {
+
+				document = validator.parse(doc_builder, zin, xml_file_path);
+
+				zin.close();
+				break;
+			}
 
 			document = doc_builder.parse(zin);
 
@@ -212,6 +281,7 @@ public class XmlParser {
 
 				in = Files.newInputStream(xml_file_path);
 				zin = new ZipInputStream(in);
+				zin.getNextEntry();
 
 				validator.exec(zin, xml_file_path, null, false, false);
 
@@ -220,6 +290,13 @@ public class XmlParser {
 			zin.close();
 			break;
 		default:
+			if (single_pass) {
+
+				document = validator.parse(doc_builder, in, xml_file_path);
+
+				break;
+			}
+
 			document = doc_builder.parse(in);
 
 			if (validator != null) {
@@ -235,111 +312,208 @@ public class XmlParser {
 
 		in.close();
 
+		if (deferred_chk_sum != null)
+			deferred_chk_sum.commit();
+
 		doc_builder.reset();
 
 	}
 
 	/**
-	 * Validate XML document.
+	 * Return whether XML Schema validation is applied to the parsed document without reading XML file again.
 	 *
 	 * @param validator instance of XmlValidator
-	 * @param check_sum_file_path check sum file path to be deleted in case of validation error
-	 * @param del_invalid_xml whether to delete invalid XML
-	 * @param verbose verbose mode
+	 * @return boolean whether the parsed document is validated
+	 */
+	private boolean isSinglePass(XmlValidator validator) {
+		return validator != null && validator.isSinglePass();
+	}
+
+	/**
+	 * Read whole XML file into memory, decompressing it if necessary.
+	 *
+	 * @param xml_file_path XML file path
+	 * @return byte[] decompressed content of XML file
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	private void validate(XmlValidator validator, Path check_sum_file_path, boolean del_invalid_xml, boolean verbose) throws IOException {
+	public static byte[] readFully(Path xml_file_path) throws IOException {
+
+		byte[] content;
 
 		InputStream in = Files.newInputStream(xml_file_path);
 
-		switch (FilenameUtils.getExtension(xml_file_name)) {
+		switch (FilenameUtils.getExtension(xml_file_path.getFileName().toString())) {
 		case "gz":
-			GZIPInputStream gzin = new GZIPInputStream(in);
-			validator.exec(gzin, xml_file_path, check_sum_file_path, del_invalid_xml, verbose);
+			GZIPInputStream gzin = new GZIPInputStream(in, PgSchemaUtil.def_buffered_output_stream_buffer_size);
+			content = IOUtils.toByteArray(gzin);
 			gzin.close();
 			break;
 		case "zip":
 			ZipInputStream zin = new ZipInputStream(in);
-			validator.exec(zin, xml_file_path, check_sum_file_path, del_invalid_xml, verbose);
+			zin.getNextEntry();
+			content = IOUtils.toByteArray(zin);
 			zin.close();
 			break;
 		default:
-			validator.exec(in, xml_file_path, check_sum_file_path, del_invalid_xml, verbose);
+			content = IOUtils.toByteArray(in, Files.size(xml_file_path));
 		}
 
 		in.close();
 
+		return content;
 	}
 
 	/**
-	 * Return check sum file path.
+	 * Validate XML document.
 	 *
-	 * @param option PostgreSQL data model option
-	 * @return Path check sum file path
+	 * @param validator instance of XmlValidator
+	 * @param chk_sum_store check sum store where check sum is removed in case of validation error
+	 * @param del_invalid_xml whether to delete invalid XML
+	 * @param verbose verbose mode
+	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	private Path getCheckSumFilePath(PgSchemaOption option) {
-		return Paths.get(option.check_sum_dir_name, xml_file_name + "." + option.check_sum_ext);
+	private void validate(XmlValidator validator, XmlChkSumStore chk_sum_store, boolean del_invalid_xml, boolean verbose) throws IOException {
+
+		InputStream in = Files.newInputStream(xml_file_path);
+
+		switch (FilenameUtils.getExtension(xml_file_name)) {
+		case "gz":
+			GZIPInputStream gzin = new GZIPInputStream(in);
+			validator.exec(gzin, xml_file_path, chk_sum_store, del_invalid_xml, verbose);
+			gzin.close();
+			break;
+		case "zip":
+			ZipInputStream zin = new ZipInputStream(in);
+			zin.getNextEntry();
+			validator.exec(zin, xml_file_path, chk_sum_store, del_invalid_xml, verbose);
+			zin.close();
+			break;
+		default:
+			validator.exec(in, xml_file_path, chk_sum_store, del_invalid_xml, verbose);
+		}
+
+		in.close();
+
 	}
 
 	/**
 	 * Identify XML document by agreement of check sum.
+	 * Check sum of XML file neither in memory nor recorded in check sum store is deferred until parser reads it, unless dry run,
+	 * while recorded XML file is hashed in advance so that unchanged content is not loaded again.
 	 *
 	 * @param option PostgreSQL data model option
 	 * @param md_chk_sum instance of message digest for check sum
+	 * @param xml_file prefetched XML file
 	 * @return boolean identity of XML document
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public boolean identify(PgSchemaOption option, MessageDigest md_chk_sum) throws IOException {
+	public boolean identify(PgSchemaOption option, MessageDigest md_chk_sum, XmlPrefetchedFile xml_file) throws IOException {
 
-		boolean identity = false;
+		// documents listed in change manifest are regarded as modified ones
 
-		if (option.isSynchronizable(false)) {
+		if (!option.isSynchronizable(false) || option.sync_manifest_name != null)
+			return false;
 
-			Path check_sum_path = getCheckSumFilePath(option);
+		XmlChkSumStore chk_sum_store = XmlChkSumStore.getInstance(option);
 
-			boolean check_sum_exists = Files.exists(check_sum_path);
-			boolean check_last_modified = check_sum_exists ? Files.getLastModifiedTime(xml_file_path).compareTo(Files.getLastModifiedTime(check_sum_path)) <= 0 : false;
+		BasicFileAttributes attrs = null;
 
-			if (!option.sync_rescue && check_last_modified)
+		if (!xml_file.in_memory) {
+
+			attrs = Files.readAttributes(xml_file_path, BasicFileAttributes.class);
+
+			// skip hashing if size, modified time and inode are unchanged
+
+			if (!option.sync_rescue && chk_sum_store.isUnchanged(xml_file_name, attrs, option.sync_verify_rate))
 				return true;
 
-			InputStream in = Files.newInputStream(xml_file_path);
+		}
 
-			String new_check_sum = String.valueOf(Hex.encodeHex(md_chk_sum.digest(IOUtils.readFully(in, (int) Files.size(xml_file_path)))));
+		// prefetched content is identical to XML file unless decompressed
 
-			in.close();
+		if (xml_file.isPrefetched() && (xml_file.in_memory || !isCompressed())) {
 
-			if (check_sum_exists) {
+			xml_file.digest(md_chk_sum);
 
-				BufferedReader br = Files.newBufferedReader(check_sum_path);
+			return chk_sum_store.identify(xml_file_name, check_sum = md_chk_sum.digest(), attrs, option.sync_dry_run);
+		}
 
-				String old_check_sum = br.readLine();
+		if (option.sync_dry_run || xml_file.isPrefetched() || chk_sum_store.get(xml_file_name) != null)
+			return identify(option, md_chk_sum, chk_sum_store, attrs);
 
-				if (old_check_sum != null && old_check_sum.equals(new_check_sum))
-					identity = true;
+		xml_file.deferred_chk_sum = chk_sum_store.defer(xml_file_name, md_chk_sum, attrs);
 
-				br.close();
+		return false;
+	}
 
-				if (!option.sync_dry_run && identity && !check_last_modified)
-					Files.setLastModifiedTime(check_sum_path, Files.getLastModifiedTime(xml_file_path));
+	/**
+	 * Identify XML document by agreement of check sum, which is calculated by streaming XML file.
+	 *
+	 * @param option PostgreSQL data model option
+	 * @param md_chk_sum instance of message digest for check sum
+	 * @return boolean identity of XML document
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public boolean identify(PgSchemaOption option, MessageDigest md_chk_sum) throws IOException {
 
-			}
+		// documents listed in change manifest are regarded as modified ones
 
-			if (!identity && !option.sync_dry_run) {
+		if (!option.isSynchronizable(false) || option.sync_manifest_name != null)
+			return false;
 
-				BufferedWriter bw = Files.newBufferedWriter(check_sum_path);
+		XmlChkSumStore chk_sum_store = XmlChkSumStore.getInstance(option);
 
-				bw.write(new_check_sum);
+		BasicFileAttributes attrs = Files.readAttributes(xml_file_path, BasicFileAttributes.class);
 
-				bw.close();
+		if (!option.sync_rescue && chk_sum_store.isUnchanged(xml_file_name, attrs, option.sync_verify_rate))
+			return true;
 
-			}
+		return identify(option, md_chk_sum, chk_sum_store, attrs);
+	}
+
+	/**
+	 * Identify XML document by agreement of check sum, which is calculated by streaming XML file.
+	 *
+	 * @param option PostgreSQL data model option
+	 * @param md_chk_sum instance of message digest for check sum
+	 * @param chk_sum_store check sum store
+	 * @param attrs file attributes of XML file
+	 * @return boolean identity of XML document
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private boolean identify(PgSchemaOption option, MessageDigest md_chk_sum, XmlChkSumStore chk_sum_store, BasicFileAttributes attrs) throws IOException {
+
+		md_chk_sum.reset();
 
-			md_chk_sum.reset();
+		try (InputStream in = Files.newInputStream(xml_file_path)) {
 
+			byte[] buffer = new byte[PgSchemaUtil.def_buffered_output_stream_buffer_size];
+
+			int len;
+
+			while ((len = in.read(buffer)) != -1)
+				md_chk_sum.update(buffer, 0, len);
+
+		}
+
+		return chk_sum_store.identify(xml_file_name, check_sum = md_chk_sum.digest(), attrs, option.sync_dry_run);
+	}
+
+	/**
+	 * Return whether XML file is compressed.
+	 *
+	 * @return boolean whether XML file is compressed
+	 */
+	private boolean isCompressed() {
+
+		switch (FilenameUtils.getExtension(xml_file_name)) {
+		case "gz":
+		case "zip":
+			return true;
+		default:
+			return false;
 		}
 
-		return identity;
 	}
 
 }
@@ -0,0 +1,334 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.xmlutil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FilenameUtils;
+
+import net.sf.xsd2pgschema.PgSchemaUtil;
+
+/**
+ * Pool of buffers holding prefetched XML files within memory budget.
+ *
+ * @author yokochi
+ */
+public class XmlPrefetchBufferPool {
+
+	/** The memory budget in bytes. */
+	private long mem_budget;
+
+	/** Whether to map plain XML file into memory instead of reading it. */
+	private boolean mmap;
+
+	/** The total bytes of buffers in use. */
+	private long used_bytes = 0;
+
+	/** The total bytes of idle buffers. */
+	private long idle_bytes = 0;
+
+	/** The idle buffers. */
+	private LinkedList<byte[]> idle_buffers = new LinkedList<byte[]>();
+
+	/** The unit size of buffer. */
+	private static final int buffer_unit_size = 65536;
+
+	/** The maximum size of buffer. */
+	private static final int max_buffer_size = Integer.MAX_VALUE - buffer_unit_size;
+
+	/**
+	 * Instance of XmlPrefetchBufferPool.
+	 *
+	 * @param mem_budget memory budget in bytes (0 indicates no limit)
+	 * @param mmap whether to map plain XML file into memory
+	 */
+	public XmlPrefetchBufferPool(long mem_budget, boolean mmap) {
+
+		this.mem_budget = mem_budget > 0 ? mem_budget : Long.MAX_VALUE;
+		this.mmap = mmap;
+
+	}
+
+	/**
+	 * Read XML file into memory, decompressing it if necessary.
+	 *
+	 * @param xml_file_path XML file path
+	 * @return XmlPrefetchedFile prefetched XML file (content is null if XML file is too large to be prefetched)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws InterruptedException the interrupted exception
+	 */
+	public XmlPrefetchedFile prefetch(Path xml_file_path) throws IOException, InterruptedException {
+
+		long file_size = Files.size(xml_file_path);
+
+		switch (FilenameUtils.getExtension(xml_file_path.getFileName().toString())) {
+		case "gz":
+			try (InputStream in = Files.newInputStream(xml_file_path); GZIPInputStream gzin = new GZIPInputStream(in, PgSchemaUtil.def_buffered_output_stream_buffer_size)) {
+				return read(xml_file_path, gzin, PgSchemaUtil.isArchiveEntry(xml_file_path) ? file_size * 4 : getGzipOrigSize(xml_file_path, file_size));
+			}
+		case "zip":
+			try (InputStream in = Files.newInputStream(xml_file_path); ZipInputStream zin = new ZipInputStream(in)) {
+
+				ZipEntry entry = zin.getNextEntry();
+
+				return read(xml_file_path, zin, entry != null && entry.getSize() > 0 ? entry.getSize() : file_size * 4);
+			}
+		default:
+			if (file_size > max_buffer_size)
+				return new XmlPrefetchedFile(xml_file_path);
+
+			if (mmap && !PgSchemaUtil.isArchiveEntry(xml_file_path)) {
+
+				try (FileChannel channel = FileChannel.open(xml_file_path, StandardOpenOption.READ)) {
+
+					MappedByteBuffer mapped_content = channel.map(FileChannel.MapMode.READ_ONLY, 0, file_size);
+
+					mapped_content.load();
+
+					return new XmlPrefetchedFile(xml_file_path, mapped_content);
+				}
+
+			}
+
+			try (InputStream in = Files.newInputStream(xml_file_path)) {
+				return read(xml_file_path, in, file_size);
+			}
+		}
+
+	}
+
+	/**
+	 * Read whole input stream into pooled buffer.
+	 *
+	 * @param xml_file_path XML file path
+	 * @param in input stream of XML file
+	 * @param size_hint expected size of content
+	 * @return XmlPrefetchedFile prefetched XML file (content is null if XML file is too large to be prefetched)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws InterruptedException the interrupted exception
+	 */
+	private XmlPrefetchedFile read(Path xml_file_path, InputStream in, long size_hint) throws IOException, InterruptedException {
+
+		// content expected to exceed the maximum buffer size or memory budget is left to be read from XML file
+
+		if (size_hint >= max_buffer_size || size_hint >= mem_budget)
+			return new XmlPrefetchedFile(xml_file_path);
+
+		byte[] buffer = acquire((int) Math.max(size_hint, 0) + 1);
+
+		int length = 0, read_size;
+
+		try {
+
+			while ((read_size = in.read(buffer, length, buffer.length - length)) != -1) {
+
+				length += read_size;
+
+				if (length == buffer.length) {
+
+					int size = (int) Math.min((long) buffer.length * 2, max_buffer_size);
+
+					if (buffer.length >= max_buffer_size || size > mem_budget) {
+
+						release(buffer);
+
+						return new XmlPrefetchedFile(xml_file_path);
+					}
+
+					buffer = grow(buffer, length, size);
+
+				}
+
+			}
+
+		} catch (IOException e) {
+			release(buffer);
+			throw e;
+		}
+
+		return new XmlPrefetchedFile(xml_file_path, buffer, length, this);
+	}
+
+	/**
+	 * Return original size of gzip file stored in its trailer.
+	 *
+	 * @param xml_file_path XML file path
+	 * @param file_size size of gzip file
+	 * @return long original size of gzip file (modulo 2^32)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private long getGzipOrigSize(Path xml_file_path, long file_size) throws IOException {
+
+		if (file_size < 4)
+			return 0;
+
+		ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+		try (FileChannel channel = FileChannel.open(xml_file_path, StandardOpenOption.READ)) {
+
+			while (trailer.hasRemaining() && channel.read(trailer, file_size - 4 + trailer.position()) > 0);
+
+		}
+
+		return trailer.hasRemaining() ? file_size * 4 : trailer.getInt(0) & 0xffffffffL;
+	}
+
+	/**
+	 * Acquire buffer, waiting for other buffers to be released if memory budget is exhausted.
+	 *
+	 * @param size required size of buffer
+	 * @return byte[] buffer
+	 * @throws InterruptedException the interrupted exception
+	 */
+	private synchronized byte[] acquire(int size) throws InterruptedException {
+
+		int capacity = getCapacity(size);
+
+		while (true) {
+
+			byte[] buffer = pollIdleBuffer(size);
+
+			if (buffer != null)
+				return buffer;
+
+			// a buffer exceeding memory budget is allowed if no other buffer is in use
+
+			if (used_bytes == 0 || used_bytes + capacity <= mem_budget)
+				break;
+
+			wait();
+
+		}
+
+		return allocate(capacity);
+	}
+
+	/**
+	 * Grow buffer keeping its content, which is allowed to exceed memory budget transiently.
+	 *
+	 * @param buffer current buffer
+	 * @param length length of content
+	 * @param size required size of buffer
+	 * @return byte[] grown buffer
+	 */
+	private synchronized byte[] grow(byte[] buffer, int length, int size) {
+
+		byte[] _buffer = pollIdleBuffer(size);
+
+		if (_buffer == null)
+			_buffer = allocate(getCapacity(size));
+
+		System.arraycopy(buffer, 0, _buffer, 0, length);
+
+		release(buffer);
+
+		return _buffer;
+	}
+
+	/**
+	 * Release buffer so that it can be reused.
+	 *
+	 * @param buffer buffer
+	 */
+	public synchronized void release(byte[] buffer) {
+
+		used_bytes -= buffer.length;
+
+		if (used_bytes + idle_bytes + buffer.length <= mem_budget) {
+
+			idle_buffers.add(buffer);
+			idle_bytes += buffer.length;
+
+		}
+
+		notifyAll();
+
+	}
+
+	/**
+	 * Poll the smallest idle buffer being large enough.
+	 *
+	 * @param size required size of buffer
+	 * @return byte[] idle buffer (null indicates that no idle buffer fits)
+	 */
+	private byte[] pollIdleBuffer(int size) {
+
+		byte[] buffer = null;
+
+		for (byte[] idle_buffer : idle_buffers) {
+
+			if (idle_buffer.length >= size && (buffer == null || idle_buffer.length < buffer.length))
+				buffer = idle_buffer;
+
+		}
+
+		if (buffer == null)
+			return null;
+
+		idle_buffers.remove(buffer);
+
+		idle_bytes -= buffer.length;
+		used_bytes += buffer.length;
+
+		return buffer;
+	}
+
+	/**
+	 * Allocate new buffer, evicting idle buffers to keep memory budget.
+	 *
+	 * @param capacity capacity of buffer
+	 * @return byte[] new buffer
+	 */
+	private byte[] allocate(int capacity) {
+
+		while (!idle_buffers.isEmpty() && used_bytes + idle_bytes + capacity > mem_budget)
+			idle_bytes -= idle_buffers.removeFirst().length;
+
+		used_bytes += capacity;
+
+		return new byte[capacity];
+	}
+
+	/**
+	 * Return capacity of buffer rounded up to unit size.
+	 *
+	 * @param size required size of buffer
+	 * @return int capacity of buffer
+	 */
+	private int getCapacity(int size) {
+
+		long capacity = ((long) size + buffer_unit_size - 1) / buffer_unit_size * buffer_unit_size;
+
+		return (int) Math.min(capacity, max_buffer_size);
+	}
+
+}
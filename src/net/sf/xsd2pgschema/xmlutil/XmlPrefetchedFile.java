@@ -0,0 +1,215 @@
+/*
+    xsd2pgschema - Database replication tool based on XML Schema
+    Copyright 2020 Masashi Yokochi
+
+    https://sourceforge.net/projects/xsd2pgschema/
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package net.sf.xsd2pgschema.xmlutil;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * XML file read in advance of parsing.
+ *
+ * @author yokochi
+ */
+public class XmlPrefetchedFile {
+
+	/** The XML file path. */
+	public Path xml_file_path;
+
+	/** The decompressed content of XML file (null indicates that XML file should be read by parser). */
+	public byte[] content;
+
+	/** The length of content. */
+	public int length;
+
+	/** Whether XML document exists only in memory (e.g. XML document split on the fly). */
+	public boolean in_memory = false;
+
+	/** The check sum to be calculated while parser reads XML file (null indicates no pending check sum). */
+	public XmlChkSumStore.DeferredCheckSum deferred_chk_sum = null;
+
+	/** The memory-mapped content of plain XML file. */
+	private ByteBuffer mapped_content = null;
+
+	/** The buffer pool where content returns (null indicates unpooled content). */
+	private XmlPrefetchBufferPool buffer_pool = null;
+
+	/**
+	 * Instance of XmlPrefetchedFile (XML file to be read by parser).
+	 *
+	 * @param xml_file_path XML file path
+	 */
+	public XmlPrefetchedFile(Path xml_file_path) {
+
+		this.xml_file_path = xml_file_path;
+
+	}
+
+	/**
+	 * Instance of XmlPrefetchedFile.
+	 *
+	 * @param xml_file_path XML file path
+	 * @param content decompressed content of XML file
+	 */
+	public XmlPrefetchedFile(Path xml_file_path, byte[] content) {
+
+		this.xml_file_path = xml_file_path;
+		this.content = content;
+
+		length = content != null ? content.length : 0;
+
+	}
+
+	/**
+	 * Instance of XmlPrefetchedFile (pooled content).
+	 *
+	 * @param xml_file_path XML file path
+	 * @param content pooled buffer holding decompressed content of XML file
+	 * @param length length of content
+	 * @param buffer_pool buffer pool where content returns
+	 */
+	public XmlPrefetchedFile(Path xml_file_path, byte[] content, int length, XmlPrefetchBufferPool buffer_pool) {
+
+		this.xml_file_path = xml_file_path;
+		this.content = content;
+		this.length = length;
+		this.buffer_pool = buffer_pool;
+
+	}
+
+	/**
+	 * Instance of XmlPrefetchedFile (memory-mapped content).
+	 *
+	 * @param xml_file_path XML file path
+	 * @param mapped_content memory-mapped content of plain XML file
+	 */
+	public XmlPrefetchedFile(Path xml_file_path, ByteBuffer mapped_content) {
+
+		this.xml_file_path = xml_file_path;
+		this.mapped_content = mapped_content;
+
+		length = mapped_content.limit();
+
+	}
+
+	/**
+	 * Return whether content is held in memory.
+	 *
+	 * @return boolean whether content is held in memory
+	 */
+	public boolean isPrefetched() {
+		return content != null || mapped_content != null;
+	}
+
+	/**
+	 * Return new input stream of content.
+	 *
+	 * @return InputStream input stream of content
+	 */
+	public InputStream newInputStream() {
+		return mapped_content != null ? new ByteBufferInputStream(mapped_content.duplicate()) : new ByteArrayInputStream(content, 0, length);
+	}
+
+	/**
+	 * Update message digest with content.
+	 *
+	 * @param md instance of message digest
+	 */
+	public void digest(MessageDigest md) {
+
+		if (mapped_content != null)
+			md.update(mapped_content.duplicate());
+		else
+			md.update(content, 0, length);
+
+	}
+
+	/**
+	 * Release content, returning pooled buffer.
+	 */
+	public void release() {
+
+		if (content != null && buffer_pool != null)
+			buffer_pool.release(content);
+
+		content = null;
+		mapped_content = null;
+
+	}
+
+	/**
+	 * Input stream reading byte buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		/** The byte buffer. */
+		private ByteBuffer buffer;
+
+		/**
+		 * Instance of ByteBufferInputStream.
+		 *
+		 * @param buffer byte buffer
+		 */
+		public ByteBufferInputStream(ByteBuffer buffer) {
+
+			this.buffer = buffer;
+
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read()
+		 */
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) {
+
+			if (len == 0)
+				return 0;
+
+			if (!buffer.hasRemaining())
+				return -1;
+
+			len = Math.min(len, buffer.remaining());
+
+			buffer.get(b, off, len);
+
+			return len;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.io.InputStream#available()
+		 */
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+	}
+
+}
@@ -24,8 +24,24 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 
 import org.apache.xerces.parsers.DOMParser;
+import org.apache.xerces.parsers.XMLGrammarPreparser;
+import org.apache.xerces.util.ErrorHandlerWrapper;
+import org.apache.xerces.util.SymbolTable;
+import org.apache.xerces.util.XMLGrammarPoolImpl;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.grammars.XMLGrammarDescription;
+import org.apache.xerces.xni.grammars.XMLGrammarPool;
+import org.apache.xerces.xni.parser.XMLInputSource;
+import org.w3c.dom.Document;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -43,11 +59,23 @@ import net.sf.xsd2pgschema.PgSchemaUtil;
 public class XmlValidator {
 
 	/** The DOM parser. */
-	private DOMParser dom_parser = new DOMParser();
+	private DOMParser dom_parser;
 
 	/** The error handler. */
 	private ErrHandler err_handler = new ErrHandler();
 
+	/** The validator of parsed document (null indicates well-formed check only). */
+	private Validator doc_validator = null;
+
+	/** Whether parsed document is validated without reading XML file again. */
+	private boolean single_pass = true;
+
+	/** The grammar pools of XML Schema shared by all validators. */
+	private static HashMap<String, XMLGrammarPool> grammar_pools = new HashMap<String, XMLGrammarPool>();
+
+	/** The compiled XML Schemas shared by all validators. */
+	private static HashMap<String, Schema> schemas = new HashMap<String, Schema>();
+
 	/**
 	 * Instance of XML validator.
 	 *
@@ -56,26 +84,181 @@ public class XmlValidator {
 	 */
 	public XmlValidator(Path xsd_file_path, boolean full_check) {
 
-		if (full_check) {
+		XMLGrammarPool grammar_pool = full_check ? getGrammarPool(xsd_file_path) : null;
 
-			try {
+		dom_parser = grammar_pool != null ? new DOMParser(new SymbolTable(), grammar_pool) : new DOMParser();
+
+		try {
+
+			// keep document as is for data conversion
+
+			dom_parser.setFeature("http://apache.org/xml/features/dom/create-entity-ref-nodes", false);
+
+			if (full_check) {
 
 				dom_parser.setFeature("http://xml.org/sax/features/validation", true);
 				dom_parser.setFeature("http://apache.org/xml/features/validation/schema", true);
 				dom_parser.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true);
+				dom_parser.setFeature("http://apache.org/xml/features/validation/schema/normalized-value", false);
+				dom_parser.setFeature("http://apache.org/xml/features/validation/schema/element-default", false);
+				dom_parser.setFeature("http://apache.org/xml/features/validation/schema/augment-psvi", false);
 				dom_parser.setProperty("http://java.sun.com/xml/jaxp/properties/schemaLanguage", PgSchemaUtil.xs_namespace_uri);
-				dom_parser.setProperty("http://java.sun.com/xml/jaxp/properties/schemaSource", xsd_file_path.toAbsolutePath().toString());
 
-			} catch (SAXNotRecognizedException e) {
-				e.printStackTrace();
-			} catch (SAXNotSupportedException e) {
-				e.printStackTrace();
+				// compiled grammar is retrieved from the pool
+
+				if (grammar_pool == null)
+					dom_parser.setProperty("http://java.sun.com/xml/jaxp/properties/schemaSource", xsd_file_path.toAbsolutePath().toString());
+
 			}
 
+		} catch (SAXNotRecognizedException e) {
+			e.printStackTrace();
+		} catch (SAXNotSupportedException e) {
+			e.printStackTrace();
 		}
 
 		dom_parser.setErrorHandler(err_handler);
 
+		// validator of parsed document is created from compiled XML Schema, which is thread-safe
+
+		Schema schema = full_check ? getSchema(xsd_file_path) : null;
+
+		if (schema != null) {
+
+			doc_validator = schema.newValidator();
+			doc_validator.setErrorHandler(err_handler);
+
+		}
+
+		// XML Schema validation falls back to DOM parser unless XML Schema is compiled
+
+		else if (full_check)
+			single_pass = false;
+
+	}
+
+	/**
+	 * Return whether parsed document is validated without reading XML file again.
+	 *
+	 * @return boolean whether parse() is available
+	 */
+	public boolean isSinglePass() {
+		return single_pass;
+	}
+
+	/**
+	 * Return compiled XML Schema.
+	 *
+	 * @param xsd_file_path XML Schema file path
+	 * @return Schema compiled XML Schema (null if XML Schema is not compilable)
+	 */
+	private static synchronized Schema getSchema(Path xsd_file_path) {
+
+		String xsd_file_id = xsd_file_path.toAbsolutePath().toString();
+
+		if (schemas.containsKey(xsd_file_id))
+			return schemas.get(xsd_file_id);
+
+		Schema schema = null;
+
+		try {
+
+			SchemaFactory schema_fac = SchemaFactory.newInstance(PgSchemaUtil.xs_namespace_uri);
+
+			try {
+				schema_fac.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true);
+			} catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+			}
+
+			schema_fac.setErrorHandler(new ErrHandler());
+
+			schema = schema_fac.newSchema(xsd_file_path.toFile());
+
+		} catch (SAXException e) {
+			e.printStackTrace();
+		}
+
+		schemas.put(xsd_file_id, schema);
+
+		return schema;
+	}
+
+	/**
+	 * Return grammar pool holding pre-parsed XML Schema.
+	 *
+	 * @param xsd_file_path XML Schema file path
+	 * @return XMLGrammarPool locked grammar pool (null if XML Schema is not pre-parsable)
+	 */
+	private static synchronized XMLGrammarPool getGrammarPool(Path xsd_file_path) {
+
+		String xsd_file_id = xsd_file_path.toAbsolutePath().toString();
+
+		if (grammar_pools.containsKey(xsd_file_id))
+			return grammar_pools.get(xsd_file_id);
+
+		XMLGrammarPool grammar_pool = new XMLGrammarPoolImpl();
+
+		XMLGrammarPreparser preparser = new XMLGrammarPreparser();
+
+		preparser.registerPreparser(XMLGrammarDescription.XML_SCHEMA, null);
+		preparser.setProperty("http://apache.org/xml/properties/internal/grammar-pool", grammar_pool);
+		preparser.setFeature("http://xml.org/sax/features/namespaces", true);
+		preparser.setFeature("http://apache.org/xml/features/validation/schema", true);
+		preparser.setFeature("http://apache.org/xml/features/validation/schema-full-checking", true);
+		preparser.setErrorHandler(new ErrorHandlerWrapper(new ErrHandler()));
+
+		try {
+
+			preparser.preparseGrammar(XMLGrammarDescription.XML_SCHEMA, new XMLInputSource(null, xsd_file_id, null));
+
+			grammar_pool.lockPool();
+
+		} catch (IOException | XNIException e) {
+			e.printStackTrace();
+			grammar_pool = null;
+		}
+
+		grammar_pools.put(xsd_file_id, grammar_pool);
+
+		return grammar_pool;
+	}
+
+	/**
+	 * Parse XML document by document builder and validate the parsed document without reading XML file again.
+	 * The document is exactly what document builder returns, where neither default nor fixed attributes are inserted.
+	 *
+	 * @param doc_builder instance of DocumentBuilder
+	 * @param in InputStream of XML file
+	 * @param xml_file_path XML file path
+	 * @return Document parsed XML document
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws SAXException the SAX exception
+	 */
+	public Document parse(DocumentBuilder doc_builder, InputStream in, Path xml_file_path) throws IOException, SAXException {
+
+		Document document;
+
+		try {
+			document = doc_builder.parse(in);
+		} finally {
+			doc_builder.reset();
+		}
+
+		// well-formed check has been done by document builder
+
+		if (doc_validator == null)
+			return document;
+
+		err_handler.init();
+
+		// Validator.reset() is not called because it discards the error handler
+
+		doc_validator.validate(new DOMSource(document, xml_file_path.toAbsolutePath().toString()));
+
+		if (!err_handler.success)
+			System.err.println(xml_file_path.getFileName().toString() + " is invalid.");
+
+		return document;
 	}
 
 	/**
@@ -83,12 +266,12 @@ public class XmlValidator {
 	 *
 	 * @param in InputStream of XML file
 	 * @param xml_file_path XML file path
-	 * @param chk_sum_file_path check sum file path to be deleted in case of invalid XML
+	 * @param chk_sum_store check sum store where check sum is removed in case of invalid XML
 	 * @param del_invalid_xml whether to delete invalid XML
 	 * @param verbose verbose mode
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
-	public void exec(InputStream in, Path xml_file_path, Path chk_sum_file_path, boolean del_invalid_xml, boolean verbose) throws IOException {
+	public void exec(InputStream in, Path xml_file_path, XmlChkSumStore chk_sum_store, boolean del_invalid_xml, boolean verbose) throws IOException {
 
 		err_handler.init();
 
@@ -106,13 +289,17 @@ public class XmlValidator {
 
 		if (!err_handler.success) {
 
+			// XML document in archive is left as is
+
+			del_invalid_xml &= !PgSchemaUtil.isArchiveEntry(xml_file_path);
+
 			System.err.println(xml_file_name + " is invalid" + (del_invalid_xml ? " and has been deleted." : "."));
 
 			if (del_invalid_xml)
 				Files.delete(xml_file_path);
 
-			if (chk_sum_file_path != null)
-				Files.deleteIfExists(chk_sum_file_path);
+			if (chk_sum_store != null)
+				chk_sum_store.remove(xml_file_name);
 
 		}
 
@@ -33,6 +33,7 @@ import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Arrays;
 
 import javax.xml.parsers.*;
 
@@ -93,9 +94,21 @@ public class tsv2pgsql {
 			else if (args[i].equals("--test-ddl"))
 				pg_option.test = true;
 
+			else if (args[i].equals("--copy-thrds") && i + 1 < args.length)
+				pg_option.setCopyThrds(args[++i]);
+
+			else if (args[i].equals("--copy-chunk-bytes") && i + 1 < args.length)
+				pg_option.setCopyChunkBytes(args[++i]);
+
 			else if (args[i].equals("--min-rows-for-index") && i + 1 < args.length)
 				pg_option.setMinRowsForIndex(args[++i]);
 
+			else if (args[i].equals("--index-thrds") && i + 1 < args.length)
+				pg_option.setIndexThrds(args[++i]);
+
+			else if (args[i].equals("--rebuild-index"))
+				pg_option.rebuild_index = true;
+
 			else if (args[i].equals("--create-non-uniq-pkey-index"))
 				pg_option.setCreateNonUniqPKeyIndex(true);
 
@@ -207,6 +220,9 @@ public class tsv2pgsql {
 			else if (args[i].equals("--pg-map-date"))
 				option.pg_date = PgDateType.date;
 
+			else if (args[i].equals("--pg-binary"))
+				option.usePgBinary();
+
 			else if (args[i].equals("--pg-comma-delimiter"))
 				option.usePgCsv();
 
@@ -298,6 +314,13 @@ public class tsv2pgsql {
 
 			Connection db_conn = DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass);
 
+			Connection[] db_conns = new Connection[Math.max(pg_option.copy_thrds, pg_option.index_thrds)];
+
+			db_conns[0] = db_conn;
+
+			for (int i = 1; i < db_conns.length; i++)
+				db_conns[i] = DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass);
+
 			pg_option.clear();
 
 			// test PostgreSQL DDL with schema
@@ -305,34 +328,19 @@ public class tsv2pgsql {
 			if (pg_option.test)
 				client.schema.testPgSql(db_conn, pg_option, true);
 
-			client.schema.pgCsv2PgSql(db_conn, work_dir);
-
-			System.out.println("Done " + (option.pg_delimiter == '\t' ? "tsv" : "csv") + " -> db (" + pg_option.name + ").");
+			// drop index before data migration, which is rebuilt afterward
 
-			if (pg_option.create_non_uniq_pkey_index)
-				client.schema.createNonUniqPKeyIndex(db_conn, pg_option);
-			else if (pg_option.drop_non_uniq_pkey_index)
-				client.schema.dropNonUniqPKeyIndex(db_conn);
+			if (pg_option.rebuild_index)
+				client.schema.dropIndexBeforeLoad(db_conn, pg_option);
 
-			if (pg_option.create_doc_key_index)
-				client.schema.createDocKeyIndex(db_conn, pg_option);
-			else if (pg_option.drop_doc_key_index)
-				client.schema.dropDocKeyIndex(db_conn);
+			client.schema.pgCsv2PgSql(Arrays.copyOf(db_conns, pg_option.copy_thrds), work_dir, pg_option.copy_chunk_bytes);
 
-			if (pg_option.create_attr_index)
-				client.schema.createAttrIndex(db_conn, pg_option);
-			else if (pg_option.drop_attr_index)
-				client.schema.dropAttrIndex(db_conn);
+			System.out.println("Done " + (option.pg_binary_copy ? "binary" : option.pg_delimiter == '\t' ? "tsv" : "csv") + " -> db (" + pg_option.name + ").");
 
-			if (pg_option.create_elem_index)
-				client.schema.createElemIndex(db_conn, pg_option);
-			else if (pg_option.drop_elem_index)
-				client.schema.dropElemIndex(db_conn);
+			client.schema.buildIndex(db_conns, pg_option);
 
-			if (pg_option.create_simple_cont_index)
-				client.schema.createSimpleContIndex(db_conn, pg_option);
-			else if (pg_option.drop_simple_cont_index)
-				client.schema.dropSimpleContIndex(db_conn);
+			for (int i = 1; i < db_conns.length; i++)
+				db_conns[i].close();
 
 			db_conn.close();
 
@@ -355,7 +363,11 @@ public class tsv2pgsql {
 		System.err.println("        --db-host PG_HOST_NAME (default=\"" + PgSchemaUtil.pg_host + "\")");
 		System.err.println("        --db-port PG_PORT_NUMBER (default=" + PgSchemaUtil.pg_port + ")");
 		System.err.println("        --test-ddl (perform consistency test on PostgreSQL DDL)");
+		System.err.println("        --copy-thrds COPY_THRDS (number of connections to copy independent tables in parallel, default=1)");
+		System.err.println("        --copy-chunk-bytes COPY_CHUNK_BYTES (split large CSV/TSV file into chunks copied in parallel, effective with --copy-thrds, default=" + PgSchemaUtil.def_copy_chunk_bytes / 1024 / 1024 + "M)");
 		System.err.println("        --min-rows-for-index MIN_ROWS_FOR_INDEX (default=" + PgSchemaUtil.pg_min_rows_for_index + ")");
+		System.err.println("        --index-thrds INDEX_THRDS (number of connections to create index in parallel, larger table first, default=1)");
+		System.err.println("        --rebuild-index (drop index to be created before data migration and rebuild it afterward, suited for bulk load)");
 		System.err.println("        --create-non-uniq-pkey-index (create PostgreSQL index on non-unique primary key if not exists, default)");
 		System.err.println("        --no-create-non-uniq-pkey-index (do not create PostgreSQL index on non-unique primary key)");
 		System.err.println("        --drop-non-uniq-pkey-index (drop PostgreSQL index on non-unique primary if exists)");
@@ -393,6 +405,7 @@ public class tsv2pgsql {
 		System.err.println("        --pg-map-float-decimal (map xs:decimal to single precision 32 bits)");
 		System.err.println("        --pg-map-timestamp (map xs:date to PostgreSQL timestamp type according to the W3C rules)");
 		System.err.println("        --pg-map-date (map xs:date to PostgreSQL date type, default)");
+		System.err.println("        --pg-binary (load PostgreSQL binary COPY format files)");
 		System.err.println("        --pg-comma-delimiter (use comma separated file)");
 		System.err.println("        --no-cache-xsd (retrieve XML Schemata without caching)");
 		System.err.println("        --doc-key-name DOC_KEY_NAME (default=\"" + option.def_document_key_name + "\")");
@@ -19,9 +19,13 @@ limitations under the License.
 
 import net.sf.xsd2pgschema.*;
 import net.sf.xsd2pgschema.docbuilder.*;
+import net.sf.xsd2pgschema.implement.PipelineQueue;
 import net.sf.xsd2pgschema.implement.Xml2JsonThrd;
+import net.sf.xsd2pgschema.implement.XmlSplitThrd;
+import net.sf.xsd2pgschema.implement.XmlSplitterImpl;
 import net.sf.xsd2pgschema.option.*;
 import net.sf.xsd2pgschema.serverutil.*;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -40,6 +44,8 @@ import javax.xml.parsers.*;
 import org.nustaq.serialization.FSTConfiguration;
 import org.xml.sax.SAXException;
 
+import com.github.antlr.grammars_v4.xpath.xpathListenerException;
+
 /**
  * Convert XML documents to JSON documents.
  *
@@ -57,6 +63,9 @@ public class xml2json {
 	 */
 	public static void main(String[] args) {
 
+		/** The XPath expression for document key to split large XML files on the fly. */
+		String split_xpath_doc_key = "";
+
 		/** The PostgreSQL data model option. */
 		PgSchemaOption option = new PgSchemaOption(false);
 
@@ -207,6 +216,9 @@ public class xml2json {
 				option.full_check = false;
 			}
 
+			else if (args[i].equals("--split-by") && i + 1 < args.length)
+				split_xpath_doc_key = args[++i];
+
 			else if (args[i].equals("--type-check"))
 				option.type_check = true;
 
@@ -287,7 +299,29 @@ public class xml2json {
 
 		xml_file_names.clear();
 
-		if (xml_file_queue.size() < max_thrds)
+		// split large XML files on the fly and feed split XML documents to parser threads
+
+		XmlSplitterImpl splitter = null;
+
+		if (!split_xpath_doc_key.isEmpty()) {
+
+			boolean verbose = option.verbose;
+
+			try {
+				splitter = new XmlSplitterImpl(1, 1, PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false), null, xml_file_queue, option, fst_conf, split_xpath_doc_key);
+			} catch (IOException | NoSuchAlgorithmException | ParserConfigurationException | SAXException | PgSchemaException | xpathListenerException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+			option.verbose = verbose;
+			option.split_on_the_fly = true;
+
+			xml_file_queue = new LinkedBlockingQueue<Path>();
+
+		}
+
+		else if (xml_file_queue.size() < max_thrds)
 			max_thrds = xml_file_queue.size();
 
 		Path json_dir_path = Paths.get(json_dir_name);
@@ -307,6 +341,8 @@ public class xml2json {
 
 		Thread[] thrd = new Thread[max_thrds];
 
+		PipelineQueue<XmlPrefetchedFile> xml_split_queue = splitter != null ? XmlSplitThrd.createQueue(new PipelineOption(), max_thrds) : null;
+
 		long start_time = System.currentTimeMillis();
 
 		// PgSchema server is alive
@@ -347,7 +383,7 @@ public class xml2json {
 
 					try {
 
-						Thread _thrd = thrd[thrd_id] = new Thread(new Xml2JsonThrd(thrd_id, get_thrd[thrd_id], clients, json_dir_path, xml_file_filter, xml_file_queue, jsonb_option), thrd_name);
+						Thread _thrd = thrd[thrd_id] = new Thread(new Xml2JsonThrd(thrd_id, get_thrd[thrd_id], clients, json_dir_path, xml_file_filter, xml_file_queue, xml_split_queue, jsonb_option), thrd_name);
 
 						_thrd.start();
 
@@ -378,7 +414,7 @@ public class xml2json {
 					if (thrd_id > 0)
 						is = PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false);
 
-					Thread _thrd = thrd[thrd_id] = new Thread(new Xml2JsonThrd(thrd_id, is, json_dir_path, xml_file_filter, xml_file_queue, xml_post_editor, option, jsonb_option), thrd_name);
+					Thread _thrd = thrd[thrd_id] = new Thread(new Xml2JsonThrd(thrd_id, is, json_dir_path, xml_file_filter, xml_file_queue, xml_split_queue, xml_post_editor, option, jsonb_option), thrd_name);
 
 					_thrd.start();
 
@@ -391,6 +427,8 @@ public class xml2json {
 
 		}
 
+		Thread[] split_thrd = splitter != null ? XmlSplitThrd.start(splitter, xml_split_queue, xml_file_filter.getAbsoluteExt()) : new Thread[0];
+
 		for (int thrd_id = 0; thrd_id < max_thrds; thrd_id++) {
 
 			try {
@@ -404,6 +442,19 @@ public class xml2json {
 
 		}
 
+		for (Thread _split_thrd : split_thrd) {
+
+			try {
+				_split_thrd.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		PgSchemaUtil.closeArchives();
+
 		long end_time = System.currentTimeMillis();
 
 		System.out.println("Execution time: " + (end_time - start_time) + " ms");
@@ -425,6 +476,7 @@ public class xml2json {
 		System.err.println("        --no-validate (turn off XML Schema validation, default)");
 		System.err.println("        --well-formed (validate only whether document is well-formed)");
 		System.err.println("        --type-check (validate data type/range while data conversion)");
+		System.err.println("        --split-by XPATH_EXPR_FOR_DOC_KEY (split large XML files in memory and parse split documents on the fly)");
 		System.err.println("        --xml-file-ext FILE_EXTENSION [xml (default) | gz (indicates xml.gz suffix) | zip (indicates xml.zip suffix)]");
 		System.err.println("        --schema-ver JSON_SCHEMA_VER (choose from \"2019_09\" (default), \"draft_v8\", \"draft_v7\", \"draft_v6\", \"draft_v4\", or \"latest\" as \"" + JsonSchemaVersion.defaultVersion().toString().replaceAll("draft_", "") + "\")");
 		System.err.println("        --obj-json (use object-oriented JSON format)");
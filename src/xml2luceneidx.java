@@ -18,10 +18,12 @@ limitations under the License.
  */
 
 import net.sf.xsd2pgschema.*;
-import net.sf.xsd2pgschema.implement.Xml2LuceneIdxThrd;
+import net.sf.xsd2pgschema.implement.*;
 import net.sf.xsd2pgschema.option.*;
 import net.sf.xsd2pgschema.serverutil.*;
 import net.sf.xsd2pgschema.type.*;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -42,6 +44,8 @@ import org.apache.lucene.index.IndexWriter;
 import org.nustaq.serialization.FSTConfiguration;
 import org.xml.sax.SAXException;
 
+import com.github.antlr.grammars_v4.xpath.xpathListenerException;
+
 /**
  * Lucene full-text indexing.
  *
@@ -59,6 +63,9 @@ public class xml2luceneidx {
 	 */
 	public static void main(String[] args) {
 
+		/** The XPath expression for document key to split large XML files on the fly. */
+		String split_xpath_doc_key = "";
+
 		/** The check sum directory name. */
 		String check_sum_dir_name = "";
 
@@ -83,6 +90,9 @@ public class xml2luceneidx {
 		/** The index filter. */
 		IndexFilter index_filter = new IndexFilter();
 
+		/** The pipeline option. */
+		PipelineOption pipe_option = new PipelineOption();
+
 		/** The XML file queue. */
 		LinkedBlockingQueue<Path> xml_file_queue;
 
@@ -95,6 +105,9 @@ public class xml2luceneidx {
 		/** The set of document id stored in index (key=document id, value=shard id). */
 		HashMap<String, Integer> doc_rows = null;
 
+		/** The sorted document ids of XML files shared by all shards. */
+		String[] file_doc_ids = null;
+
 		/** The shard size. */
 		int shard_size = 1;
 
@@ -217,6 +230,9 @@ public class xml2luceneidx {
 				option.full_check = false;
 			}
 
+			else if (args[i].equals("--split-by") && i + 1 < args.length)
+				split_xpath_doc_key = args[++i];
+
 			else if (args[i].equals("--type-check"))
 				option.type_check = true;
 
@@ -255,11 +271,22 @@ public class xml2luceneidx {
 				option.sync_weak = true;
 			}
 
+			else if (args[i].equals("--sync-manifest") && i + 1 < args.length) {
+				option.sync = true;
+				option.sync_weak = false;
+				option.sync_manifest_name = args[++i];
+			}
+
 			else if (args[i].equals("--checksum-by") && i + 1 < args.length) {
 				if (!option.setCheckSumAlgorithm(args[++i]))
 					showUsage();
 			}
 
+			else if (args[i].equals("--sync-verify-rate") && i + 1 < args.length) {
+				if (!option.setSyncVerifyRate(args[++i]))
+					showUsage();
+			}
+
 			else if (args[i].equals("--shard-size") && i + 1 < args.length) {
 				shard_size = Integer.valueOf(args[++i]);
 
@@ -278,6 +305,18 @@ public class xml2luceneidx {
 				}
 			}
 
+			else if (args[i].equals("--prefetch-thrds") && i + 1 < args.length)
+				pipe_option.setPrefetchThrds(args[++i]);
+
+			else if (args[i].equals("--prefetch-queue-size") && i + 1 < args.length)
+				pipe_option.setPrefetchQueueSize(args[++i]);
+
+			else if (args[i].equals("--prefetch-mem-budget") && i + 1 < args.length)
+				pipe_option.setPrefetchMemBudget(args[++i]);
+
+			else if (args[i].equals("--prefetch-mmap"))
+				pipe_option.prefetch_mmap = true;
+
 			else if (touch_xml) {
 				String xml_file_name = args[i];
 
@@ -334,6 +373,59 @@ public class xml2luceneidx {
 
 		xml_file_names.clear();
 
+		// restrict XML files to documents added or modified in change manifest
+
+		XmlChangeManifest sync_manifest = null;
+
+		String sync_target = Paths.get(idx_dir_name).toAbsolutePath().toString();
+
+		if (option.sync && option.sync_manifest_name != null) {
+
+			if (!split_xpath_doc_key.isEmpty()) {
+				System.err.println("Change manifest is not available for XML documents split on the fly.");
+				showUsage();
+			}
+
+			try {
+
+				sync_manifest = XmlChangeManifest.getInstance(option);
+
+				if (sync_manifest.isApplied(sync_target)) {
+					System.out.println(option.sync_manifest_name + " has been applied to " + sync_target + ".");
+					return;
+				}
+
+				sync_manifest.filter(xml_file_queue, xml_file_filter);
+
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		// split large XML files on the fly and feed split XML documents to parser threads
+
+		XmlSplitterImpl splitter = null;
+
+		if (!split_xpath_doc_key.isEmpty()) {
+
+			boolean verbose = option.verbose;
+
+			try {
+				splitter = new XmlSplitterImpl(1, 1, PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false), null, xml_file_queue, option, fst_conf, split_xpath_doc_key);
+			} catch (IOException | NoSuchAlgorithmException | ParserConfigurationException | SAXException | PgSchemaException | xpathListenerException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+			option.verbose = verbose;
+			option.split_on_the_fly = true;
+
+			xml_file_queue = new LinkedBlockingQueue<Path>();
+
+		}
+
 		max_thrds = max_thrds / shard_size; // number of thread per a shard
 
 		if (max_thrds == 0)
@@ -356,28 +448,37 @@ public class xml2luceneidx {
 
 		if (option.sync) {
 
-			if (check_sum_dir_name.isEmpty()) {
-				System.err.println("Check sum directory is empty.");
-				showUsage();
-			}
+			if (sync_manifest == null) {
 
-			Path check_sum_dir_path = Paths.get(check_sum_dir_name);
+				if (check_sum_dir_name.isEmpty()) {
+					System.err.println("Check sum directory is empty.");
+					showUsage();
+				}
 
-			if (!Files.isDirectory(check_sum_dir_path)) {
+				Path check_sum_dir_path = Paths.get(check_sum_dir_name);
+
+				if (!Files.isDirectory(check_sum_dir_path)) {
+
+					try {
+						Files.createDirectory(check_sum_dir_path);
+					} catch (IOException e) {
+						e.printStackTrace();
+						System.exit(1);
+					}
 
-				try {
-					Files.createDirectory(check_sum_dir_path);
-				} catch (IOException e) {
-					e.printStackTrace();
-					System.exit(1);
 				}
 
-			}
+				option.check_sum_dir_name = check_sum_dir_name;
 
-			option.check_sum_dir_name = check_sum_dir_name;
+			}
 
 			doc_rows = new HashMap<String, Integer>();
 
+			// sort document ids of XML files once for all shards
+
+			if (sync_manifest == null && !option.split_on_the_fly)
+				file_doc_ids = PgSchemaUtil.getSortedDocIds(xml_file_queue, xml_file_filter);
+
 		}
 
 		final String class_name = MethodHandles.lookup().lookupClass().getName();
@@ -385,6 +486,10 @@ public class xml2luceneidx {
 		Xml2LuceneIdxThrd[] shard_thrd = new Xml2LuceneIdxThrd[shard_size];
 		Thread[] thrd = new Thread[shard_size * max_thrds];
 
+		// pipeline stages connected by bounded queues
+
+		PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue = splitter != null ? XmlSplitThrd.createQueue(pipe_option, shard_size * max_thrds) : XmlPrefetchThrd.createQueue(pipe_option, shard_size * max_thrds);
+
 		long start_time = System.currentTimeMillis();
 
 		// PgSchema server is alive
@@ -437,9 +542,9 @@ public class xml2luceneidx {
 							Thread _thrd;
 
 							if (thrd_id == 0)
-								_thrd = thrd[_thrd_id] = new Thread(shard_thrd[shard_id] = new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, get_thrd[_thrd_id], _thrd_id, clients, xml_file_filter, xml_file_queue, index_filter, idx_dir_path, writers, doc_rows), thrd_name);
+								_thrd = thrd[_thrd_id] = new Thread(shard_thrd[shard_id] = new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, get_thrd[_thrd_id], _thrd_id, clients, xml_file_filter, xml_file_queue, xml_prefetch_queue, index_filter, idx_dir_path, writers, doc_rows, file_doc_ids), thrd_name);
 							else
-								_thrd = thrd[_thrd_id] = new Thread(new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, get_thrd[_thrd_id], _thrd_id, clients, xml_file_filter, xml_file_queue, index_filter, idx_dir_path, writers, doc_rows), thrd_name);
+								_thrd = thrd[_thrd_id] = new Thread(new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, get_thrd[_thrd_id], _thrd_id, clients, xml_file_filter, xml_file_queue, xml_prefetch_queue, index_filter, idx_dir_path, writers, doc_rows, file_doc_ids), thrd_name);
 
 							_thrd.start();
 
@@ -478,9 +583,9 @@ public class xml2luceneidx {
 						Thread _thrd;
 
 						if (thrd_id == 0)
-							_thrd = thrd[_thrd_id] = new Thread(shard_thrd[shard_id] = new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, is, xml_file_filter, xml_file_queue, xml_post_editor, option, index_filter, idx_dir_path, writers, doc_rows), thrd_name);
+							_thrd = thrd[_thrd_id] = new Thread(shard_thrd[shard_id] = new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, is, xml_file_filter, xml_file_queue, xml_prefetch_queue, xml_post_editor, option, index_filter, idx_dir_path, writers, doc_rows, file_doc_ids), thrd_name);
 						else
-							_thrd = thrd[_thrd_id] = new Thread(new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, is, xml_file_filter, xml_file_queue, xml_post_editor, option, index_filter, idx_dir_path, writers, doc_rows), thrd_name);
+							_thrd = thrd[_thrd_id] = new Thread(new Xml2LuceneIdxThrd(shard_id, shard_size, thrd_id, is, xml_file_filter, xml_file_queue, xml_prefetch_queue, xml_post_editor, option, index_filter, idx_dir_path, writers, doc_rows, file_doc_ids), thrd_name);
 
 						_thrd.start();
 
@@ -495,6 +600,10 @@ public class xml2luceneidx {
 
 		}
 
+		// start prefetch stage after the sync pre-pass of thread 0 has traversed XML file queue
+
+		Thread[] prefetch_thrd = splitter != null ? XmlSplitThrd.start(splitter, xml_prefetch_queue, xml_file_filter.getAbsoluteExt()) : xml_prefetch_queue != null ? XmlPrefetchThrd.start(pipe_option, xml_file_queue, xml_prefetch_queue) : new Thread[0];
+
 		for (int shard_id = 0; shard_id < shard_size; shard_id++) {
 
 			for (int thrd_id = 0; thrd_id < max_thrds; thrd_id++) {
@@ -523,6 +632,33 @@ public class xml2luceneidx {
 
 		}
 
+		for (Thread _prefetch_thrd : prefetch_thrd) {
+
+			try {
+				_prefetch_thrd.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		if (sync_manifest != null) {
+
+			try {
+				sync_manifest.markApplied(sync_target);
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		if (xml_prefetch_queue != null)
+			xml_prefetch_queue.showStatistics();
+
+		PgSchemaUtil.closeArchives();
+
 		long end_time = System.currentTimeMillis();
 
 		System.out.println("Execution time: " + (end_time - start_time) + " ms");
@@ -539,6 +675,8 @@ public class xml2luceneidx {
 		System.err.println("        --update (insert if not exists, and update if required, default)");
 		System.err.println("        --sync CHECK_SUM_DIRECTORY (insert if not exists, update if required, and delete rows if XML not exists)");
 		System.err.println("        --sync-weak (insert if not exists, no update even if exists, no deletion)");
+		System.err.println("        --sync-manifest MANIFEST_FILE (insert or update documents listed in change manifest created by chksumstat --manifest, and delete rows listed as deleted)");
+		System.err.println("        --sync-verify-rate RATE (sampling rate of XML files verified by check sum even if size, mtime and inode are unchanged, default=0.0)");
 		System.err.println("        --rel (turn on relational model extension)");
 		System.err.println("        --no-rel (turn off relational model extension, default)");
 		System.err.println("        --inline-simple-cont (enable inlining simple content)");
@@ -547,6 +685,7 @@ public class xml2luceneidx {
 		System.err.println("        --no-validate (turn off XML Schema validation, default)");
 		System.err.println("        --well-formed (validate only whether document is well-formed)");
 		System.err.println("        --type-check (validate data type/range while data conversion)");
+		System.err.println("        --split-by XPATH_EXPR_FOR_DOC_KEY (split large XML files in memory and parse split documents on the fly)");
 		System.err.println("        --xml-file-ext FILE_EXTENSION [xml (default) | gz (indicates xml.gz suffix) | zip (indicates xml.zip suffix)]");
 		System.err.println("        --shard-size SHARD_SIZE (default=1)");
 		System.err.println("        --min-word-len MIN_WORD_LENGTH (default is " + PgSchemaUtil.min_word_len + ")");
@@ -561,7 +700,7 @@ public class xml2luceneidx {
 		System.err.println("        --attr-date (all date values are stored as attribute)");
 		System.err.println("        --attr-time (all time values are stored as attribute)");
 		System.err.println("        --no-cache-xsd (retrieve XML Schemata without caching)");
-		System.err.println("        --hash-by ALGORITHM [MD2 | MD5 | SHA-1 (default) | SHA-224 | SHA-256 | SHA-384 | SHA-512]");
+		System.err.println("        --hash-by ALGORITHM [MD2 | MD5 | SHA-1 (default) | SHA-224 | SHA-256 | SHA-384 | SHA-512 | XXHASH64 | MURMUR3-128 | SIPHASH-2-4]");
 		System.err.println("        --hash-size BIT_SIZE [int (32 bits) | long (64 bits, default) | native (default bits of algorithm) | debug (string)]");
 		System.err.println("        --xml-file-prerix-digest DIGESTIBLE_PREFIX (default=\"\")");
 		System.err.println("        --xml-file-ext-digest DIGESTIBLE_EXTENSION (default=\".\")");
@@ -576,6 +715,10 @@ public class xml2luceneidx {
 		System.err.println("        --pgschema-serv-host PG_SCHEMA_SERV_HOST_NAME (default=\"" + PgSchemaUtil.pg_schema_server_host + "\")");
 		System.err.println("        --pgschema-serv-port PG_SCHEMA_SERV_PORT_NUMBER (default=" + PgSchemaUtil.pg_schema_server_port + ")");
 		System.err.println("        --max-thrds MAX_THRDS (default is number of available processors)");
+		System.err.println("        --prefetch-thrds PREFETCH_THRDS (number of threads reading and decompressing XML files ahead of parser threads, default=0 disables prefetch stage)");
+		System.err.println("        --prefetch-queue-size PREFETCH_QUEUE_SIZE (capacity of queue of prefetched XML files, default=" + PipelineOption.def_queue_size + ")");
+		System.err.println("        --prefetch-mem-budget PREFETCH_MEM_BUDGET (memory budget of prefetched XML files in megabytes, default=0 indicates no limit)");
+		System.err.println("        --prefetch-mmap (map plain XML files into memory in prefetch stage)");
 		System.exit(1);
 
 	}
@@ -18,10 +18,12 @@ limitations under the License.
  */
 
 import net.sf.xsd2pgschema.*;
-import net.sf.xsd2pgschema.implement.Xml2PgSqlThrd;
+import net.sf.xsd2pgschema.implement.*;
 import net.sf.xsd2pgschema.option.*;
 import net.sf.xsd2pgschema.serverutil.*;
 import net.sf.xsd2pgschema.type.*;
+import net.sf.xsd2pgschema.xmlutil.XmlChangeManifest;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -32,6 +34,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -41,6 +44,8 @@ import javax.xml.parsers.*;
 import org.nustaq.serialization.FSTConfiguration;
 import org.xml.sax.SAXException;
 
+import com.github.antlr.grammars_v4.xpath.xpathListenerException;
+
 /**
  * PostgreSQL data migration.
  *
@@ -55,6 +60,9 @@ public class xml2pgsql {
 	 */
 	public static void main(String[] args) {
 
+		/** The XPath expression for document key to split large XML files on the fly. */
+		String split_xpath_doc_key = "";
+
 		/** The check sum directory name. */
 		String check_sum_dir_name = "";
 
@@ -75,6 +83,9 @@ public class xml2pgsql {
 		/** The XML post editor. */
 		XmlPostEditor xml_post_editor = new XmlPostEditor();
 
+		/** The pipeline option. */
+		PipelineOption pipe_option = new PipelineOption();
+
 		/** The XML file queue. */
 		LinkedBlockingQueue<Path> xml_file_queue;
 
@@ -150,6 +161,39 @@ public class xml2pgsql {
 			else if (args[i].equals("--min-rows-for-index") && i + 1 < args.length)
 				pg_option.setMinRowsForIndex(args[++i]);
 
+			else if (args[i].equals("--index-thrds") && i + 1 < args.length)
+				pg_option.setIndexThrds(args[++i]);
+
+			else if (args[i].equals("--rebuild-index"))
+				pg_option.rebuild_index = true;
+
+			else if (args[i].equals("--initial-load"))
+				pg_option.initial_load = true;
+
+			else if (args[i].equals("--jdbc-batch-size") && i + 1 < args.length)
+				pg_option.setJdbcBatchSize(args[++i]);
+
+			else if (args[i].equals("--jdbc-batch-bytes") && i + 1 < args.length)
+				pg_option.setJdbcBatchBytes(args[++i]);
+
+			else if (args[i].equals("--unnest-insert"))
+				pg_option.unnest_insert = true;
+
+			else if (args[i].equals("--diff-update"))
+				pg_option.diff_update = true;
+
+			else if (args[i].equals("--direct-copy"))
+				pg_option.direct_copy = true;
+
+			else if (args[i].equals("--copy-buffer-bytes") && i + 1 < args.length)
+				pg_option.setCopyBufferBytes(args[++i]);
+
+			else if (args[i].equals("--group-commit") && i + 1 < args.length)
+				pg_option.setGroupCommitDocs(args[++i]);
+
+			else if (args[i].equals("--group-commit-interval") && i + 1 < args.length)
+				pg_option.setGroupCommitInterval(args[++i]);
+
 			else if (args[i].equals("--create-non-uniq-pkey-index"))
 				pg_option.setCreateNonUniqPKeyIndex(true);
 
@@ -273,6 +317,9 @@ public class xml2pgsql {
 			else if (args[i].equals("--pg-map-date"))
 				option.pg_date = PgDateType.date;
 
+			else if (args[i].equals("--pg-binary"))
+				option.usePgBinary();
+
 			else if (args[i].equals("--no-cache-xsd"))
 				option.cache_xsd = false;
 
@@ -290,6 +337,9 @@ public class xml2pgsql {
 				option.full_check = false;
 			}
 
+			else if (args[i].equals("--split-by") && i + 1 < args.length)
+				split_xpath_doc_key = args[++i];
+
 			else if (args[i].equals("--type-check"))
 				option.type_check = true;
 
@@ -347,6 +397,12 @@ public class xml2pgsql {
 				option.sync = false;
 			}
 
+			else if (args[i].equals("--sync-manifest") && i + 1 < args.length) {
+				pg_option.tryToCreateDocKeyIndex(option.sync = true);
+				option.sync_weak = false;
+				option.sync_manifest_name = args[++i];
+			}
+
 			else if (args[i].equals("--sync-rescue"))
 				option.sync_rescue = true;
 
@@ -355,6 +411,11 @@ public class xml2pgsql {
 					showUsage();
 			}
 
+			else if (args[i].equals("--sync-verify-rate") && i + 1 < args.length) {
+				if (!option.setSyncVerifyRate(args[++i]))
+					showUsage();
+			}
+
 			else if (args[i].equals("--max-thrds") && i + 1 < args.length) {
 				max_thrds = Integer.valueOf(args[++i]);
 
@@ -364,6 +425,24 @@ public class xml2pgsql {
 				}
 			}
 
+			else if (args[i].equals("--prefetch-thrds") && i + 1 < args.length)
+				pipe_option.setPrefetchThrds(args[++i]);
+
+			else if (args[i].equals("--prefetch-queue-size") && i + 1 < args.length)
+				pipe_option.setPrefetchQueueSize(args[++i]);
+
+			else if (args[i].equals("--prefetch-mem-budget") && i + 1 < args.length)
+				pipe_option.setPrefetchMemBudget(args[++i]);
+
+			else if (args[i].equals("--prefetch-mmap"))
+				pipe_option.prefetch_mmap = true;
+
+			else if (args[i].equals("--writer-thrds") && i + 1 < args.length)
+				pipe_option.setWriterThrds(args[++i]);
+
+			else if (args[i].equals("--writer-queue-size") && i + 1 < args.length)
+				pipe_option.setWriterQueueSize(args[++i]);
+
 			else if (touch_xml) {
 				String xml_file_name = args[i];
 
@@ -384,6 +463,58 @@ public class xml2pgsql {
 
 		option.resolveDocKeyOption();
 
+		// writer threads receive row batches as COPY data and commit per batch
+
+		if (pipe_option.writer_thrds > 0) {
+
+			pg_option.direct_copy = true;
+
+			if (pg_option.isGroupCommit()) {
+
+				System.err.println("Group commit is ignored since writer threads commit per row batch.");
+
+				pg_option.group_commit_docs = 0;
+				pg_option.group_commit_interval = 0;
+
+			}
+
+		}
+
+		// split documents exist only in memory, so that they can not be replayed one by one if the group fails
+
+		if (!split_xpath_doc_key.isEmpty() && pg_option.isGroupCommit()) {
+			System.err.println("Group commit is not available for XML documents split on the fly.");
+			showUsage();
+		}
+
+		if (pg_option.diff_update) {
+
+			if (!option.rel_data_ext || !option.pg_retain_key) {
+				System.err.println("Differential update requires relational data extension with retained primary key.");
+				showUsage();
+			}
+
+			if (pg_option.direct_copy) {
+				System.out.println("Ignored --diff-update option because COPY command deletes rows of updating document in advance.");
+				pg_option.diff_update = false;
+			}
+
+		}
+
+		if (pg_option.initial_load) {
+
+			if (option.pg_named_schema) {
+				System.err.println("Initial load is not supported with PostgreSQL named schema.");
+				showUsage();
+			}
+
+			if (option.sync || option.sync_weak) {
+				System.out.println("Ignored synchronization option because initial load inserts all documents into empty staging tables.");
+				pg_option.tryToCreateDocKeyIndex(option.sync = option.sync_weak = false);
+			}
+
+		}
+
 		if ((option.sync || option.sync_weak) && !option.document_key && !option.in_place_document_key) {
 			System.err.println("Either document key or in-place document key must be exist to enable synchronization.");
 			showUsage();
@@ -427,7 +558,60 @@ public class xml2pgsql {
 
 		xml_file_names.clear();
 
-		if (xml_file_queue.size() < max_thrds)
+		// restrict XML files to documents added or modified in change manifest
+
+		XmlChangeManifest sync_manifest = null;
+
+		String sync_target = pg_option.getDbUrl();
+
+		if (option.sync && option.sync_manifest_name != null) {
+
+			if (!split_xpath_doc_key.isEmpty()) {
+				System.err.println("Change manifest is not available for XML documents split on the fly.");
+				showUsage();
+			}
+
+			try {
+
+				sync_manifest = XmlChangeManifest.getInstance(option);
+
+				if (sync_manifest.isApplied(sync_target)) {
+					System.out.println(option.sync_manifest_name + " has been applied to " + sync_target + ".");
+					return;
+				}
+
+				sync_manifest.filter(xml_file_queue, xml_file_filter);
+
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		// split large XML files on the fly and feed split XML documents to parser threads
+
+		XmlSplitterImpl splitter = null;
+
+		if (!split_xpath_doc_key.isEmpty()) {
+
+			boolean verbose = option.verbose;
+
+			try {
+				splitter = new XmlSplitterImpl(1, 1, PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false), null, xml_file_queue, option, fst_conf, split_xpath_doc_key);
+			} catch (IOException | NoSuchAlgorithmException | ParserConfigurationException | SAXException | PgSchemaException | xpathListenerException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+			option.verbose = verbose;
+			option.split_on_the_fly = true;
+
+			xml_file_queue = new LinkedBlockingQueue<Path>();
+
+		}
+
+		else if (xml_file_queue.size() < max_thrds)
 			max_thrds = xml_file_queue.size();
 
 		if (pg_option.name.isEmpty()) {
@@ -435,7 +619,7 @@ public class xml2pgsql {
 			showUsage();
 		}
 
-		if (option.sync) {
+		if (option.sync && sync_manifest == null) {
 
 			if (check_sum_dir_name.isEmpty()) {
 				System.err.println("Check sum directory is empty.");
@@ -465,6 +649,59 @@ public class xml2pgsql {
 
 		Thread[] thrd = new Thread[max_thrds];
 
+		Xml2PgSqlThrd[] proc_thrd = new Xml2PgSqlThrd[max_thrds];
+
+		// pipeline stages connected by bounded queues
+
+		PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue = splitter != null ? XmlSplitThrd.createQueue(pipe_option, max_thrds) : XmlPrefetchThrd.createQueue(pipe_option, max_thrds);
+		PipelineQueue<PgCopyBatch> copy_batch_queue = PgCopyWriterThrd.createQueue(pipe_option, max_thrds);
+
+		// synchronization plan is built by the first thread and shared by all threads
+
+		PgSyncPlan sync_plan = new PgSyncPlan();
+
+		if (splitter != null)
+			sync_plan.setUnknownFiles();
+
+		else if (sync_manifest != null)
+			sync_plan.setChangeManifest(sync_manifest);
+
+		// UNLOGGED staging tables are swapped in place of current tables after data migration
+
+		PgStagingLoader staging_loader = null;
+
+		if (pg_option.initial_load) {
+
+			try {
+
+				staging_loader = new PgStagingLoader(DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass), new PgSchemaClientImpl(PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false), option, fst_conf, client_type, class_name, xml_post_editor).schema);
+
+				staging_loader.create();
+
+			} catch (IOException | ParserConfigurationException | SAXException | SQLException | PgSchemaException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		Thread[] writer_thrd = new Thread[pipe_option.writer_thrds];
+
+		for (int thrd_id = 0; thrd_id < pipe_option.writer_thrds; thrd_id++) {
+
+			try {
+
+				writer_thrd[thrd_id] = new Thread(new PgCopyWriterThrd(copy_batch_queue, sync_manifest, pg_option), class_name + "-writer-" + thrd_id);
+
+				writer_thrd[thrd_id].start();
+
+			} catch (SQLException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
 		long start_time = System.currentTimeMillis();
 
 		// PgSchema server is alive
@@ -505,7 +742,7 @@ public class xml2pgsql {
 
 					try {
 
-						Thread _thrd = thrd[thrd_id] = new Thread(new Xml2PgSqlThrd(thrd_id, get_thrd[thrd_id], clients, xml_file_filter, xml_file_queue, pg_option), thrd_name);
+						Thread _thrd = thrd[thrd_id] = new Thread(proc_thrd[thrd_id] = new Xml2PgSqlThrd(thrd_id, get_thrd[thrd_id], clients, xml_file_filter, xml_file_queue, xml_prefetch_queue, copy_batch_queue, sync_plan, pg_option), thrd_name);
 
 						_thrd.start();
 
@@ -536,7 +773,7 @@ public class xml2pgsql {
 					if (thrd_id > 0)
 						is = PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false);
 
-					Thread _thrd = thrd[thrd_id] = new Thread(new Xml2PgSqlThrd(thrd_id, is, xml_file_filter, xml_file_queue, xml_post_editor, option, pg_option), thrd_name);
+					Thread _thrd = thrd[thrd_id] = new Thread(proc_thrd[thrd_id] = new Xml2PgSqlThrd(thrd_id, is, xml_file_filter, xml_file_queue, xml_prefetch_queue, copy_batch_queue, sync_plan, xml_post_editor, option, pg_option), thrd_name);
 
 					_thrd.start();
 
@@ -549,6 +786,10 @@ public class xml2pgsql {
 
 		}
 
+		// start prefetch stage after the sync pre-pass of thread 0 has traversed XML file queue
+
+		Thread[] prefetch_thrd = splitter != null ? XmlSplitThrd.start(splitter, xml_prefetch_queue, xml_file_filter.getAbsoluteExt()) : xml_prefetch_queue != null ? XmlPrefetchThrd.start(pipe_option, xml_file_queue, xml_prefetch_queue) : new Thread[0];
+
 		if (!pg_option.name.isEmpty())
 			pg_option.clear();
 
@@ -565,6 +806,71 @@ public class xml2pgsql {
 
 		}
 
+		for (Thread _prefetch_thrd : prefetch_thrd) {
+
+			try {
+				_prefetch_thrd.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		for (Thread _writer_thrd : writer_thrd) {
+
+			try {
+				_writer_thrd.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		// build index once all threads have finished loading
+
+		try {
+			proc_thrd[0].buildIndex();
+		} catch (PgSchemaException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		if (staging_loader != null) {
+
+			try {
+				staging_loader.swap();
+			} catch (PgSchemaException e) {
+				e.printStackTrace();
+				System.exit(1);
+			} finally {
+				staging_loader.close();
+			}
+
+		}
+
+		if (sync_manifest != null) {
+
+			try {
+				sync_manifest.markApplied(sync_target);
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		if (xml_prefetch_queue != null)
+			xml_prefetch_queue.showStatistics();
+
+		if (copy_batch_queue != null)
+			copy_batch_queue.showStatistics();
+
+		sync_plan.showStatistics();
+
+		PgSchemaUtil.closeArchives();
+
 		long end_time = System.currentTimeMillis();
 
 		System.out.println("Execution time: " + (end_time - start_time) + " ms");
@@ -587,6 +893,9 @@ public class xml2pgsql {
 		System.err.println("        --db-port PG_PORT_NUMBER (default=" + PgSchemaUtil.pg_port + ")");
 		System.err.println("        --test-ddl (perform consistency test on PostgreSQL DDL)");
 		System.err.println("        --min-rows-for-index MIN_ROWS_FOR_INDEX (default=" + PgSchemaUtil.pg_min_rows_for_index + ")");
+		System.err.println("        --index-thrds INDEX_THRDS (number of connections to create index in parallel, larger table first, default=1)");
+		System.err.println("        --rebuild-index (drop index to be created before data migration and rebuild it afterward, suited for bulk load)");
+		System.err.println("        --initial-load (load into UNLOGGED staging tables and swap them in place of current tables afterward, insert only, not available if views depend on current tables)");
 		System.err.println("        --create-non-uniq-pkey-index (create PostgreSQL index on non-unique primary key if not exists, default)");
 		System.err.println("        --no-create-non-uniq-pkey-index (do not create PostgreSQL index on non-unique primary key)");
 		System.err.println("        --drop-non-uniq-pkey-index (drop PostgreSQL index on non-unique primary if exists)");
@@ -608,6 +917,7 @@ public class xml2pgsql {
 		System.err.println("        --update (insert if not exists, and update if required, default)");
 		System.err.println("        --sync CHECK_SUM_DIRECTORY (insert if not exists, update if required, and delete rows if XML not exists, select --create-doc-key-index option by default)");
 		System.err.println("        --sync-weak (insert if not exists, no update even if exists, no deletion, select --create-doc-key-index option by default)");
+		System.err.println("        --sync-manifest MANIFEST_FILE (insert or update documents listed in change manifest created by chksumstat --manifest, and delete rows listed as deleted, select --create-doc-key-index option by default)");
 		System.err.println("        --sync-rescue (diagnostic synchronization, set all constraints deferred)");
 		System.err.println("        --no-rel (turn off relational model extension)");
 		System.err.println("        --inline-simple-cont (enable inlining simple content)");
@@ -622,6 +932,7 @@ public class xml2pgsql {
 		System.err.println("        --no-validate (turn off XML Schema validation, default)");
 		System.err.println("        --well-formed (validate only whether document is well-formed)");
 		System.err.println("        --type-check (validate data type/range while data conversion)");
+		System.err.println("        --split-by XPATH_EXPR_FOR_DOC_KEY (split large XML files in memory and parse split documents on the fly, not available with --group-commit)");
 		System.err.println("        --xml-file-ext FILE_EXTENSION [xml (default) | gz (indicates xml.gz suffix) | zip (indicates xml.zip suffix)]");
 		System.err.println("Option: --case-insensitive (all table and column names are lowercase)");
 		System.err.println("        --pg-public-schema (utilize \"public\" schema, default)");
@@ -634,9 +945,11 @@ public class xml2pgsql {
 		System.err.println("        --pg-map-float-decimal (map xs:decimal to single precision 32 bits)");
 		System.err.println("        --pg-map-timestamp (map xs:date to PostgreSQL timestamp type according to the W3C rules)");
 		System.err.println("        --pg-map-date (map xs:date to PostgreSQL date type, default)");
+		System.err.println("        --pg-binary (use PostgreSQL binary COPY format, effective with --direct-copy)");
 		System.err.println("        --no-cache-xsd (retrieve XML Schemata without caching)");
 		System.err.println("        --checksum-by ALGORITHM [MD2 | MD5 (default) | SHA-1 | SHA-224 | SHA-256 | SHA-384 | SHA-512]");
-		System.err.println("        --hash-by ALGORITHM [MD2 | MD5 | SHA-1 (default) | SHA-224 | SHA-256 | SHA-384 | SHA-512]");
+		System.err.println("        --sync-verify-rate RATE (sampling rate of XML files verified by check sum even if size, mtime and inode are unchanged, default=0.0)");
+		System.err.println("        --hash-by ALGORITHM [MD2 | MD5 | SHA-1 (default) | SHA-224 | SHA-256 | SHA-384 | SHA-512 | XXHASH64 | MURMUR3-128 | SIPHASH-2-4]");
 		System.err.println("        --hash-size BIT_SIZE [int (32 bits) | long (64 bits, default) | native (default bits of algorithm) | debug (string)]");
 		System.err.println("        --ser-size BIT_SIZE [short (16 bits) | int (32 bits, default)]");
 		System.err.println("        --xml-file-prerix-digest DIGESTIBLE_PREFIX (default=\"\")");
@@ -657,6 +970,20 @@ public class xml2pgsql {
 		System.err.println("        --pgschema-serv-host PG_SCHEMA_SERV_HOST_NAME (default=\"" + PgSchemaUtil.pg_schema_server_host + "\")");
 		System.err.println("        --pgschema-serv-port PG_SCHEMA_SERV_PORT_NUMBER (default=" + PgSchemaUtil.pg_schema_server_port + ")");
 		System.err.println("        --max-thrds MAX_THRDS (default is number of available processors)");
+		System.err.println("        --prefetch-thrds PREFETCH_THRDS (number of threads reading and decompressing XML files ahead of parser threads, default=0 disables prefetch stage)");
+		System.err.println("        --prefetch-queue-size PREFETCH_QUEUE_SIZE (capacity of queue of prefetched XML files, default=" + PipelineOption.def_queue_size + ")");
+		System.err.println("        --prefetch-mem-budget PREFETCH_MEM_BUDGET (memory budget of prefetched XML files in megabytes, default=0 indicates no limit)");
+		System.err.println("        --prefetch-mmap (map plain XML files into memory in prefetch stage)");
+		System.err.println("        --writer-thrds WRITER_THRDS (number of threads writing row batches via COPY command, enable --direct-copy, default=0 lets parser threads write)");
+		System.err.println("        --writer-queue-size WRITER_QUEUE_SIZE (capacity of queue of row batches, default=" + PipelineOption.def_queue_size + ")");
+		System.err.println("        --jdbc-batch-size JDBC_BATCH_SIZE (keep JDBC batch across nodes and documents up to given rows, default=0 executes JDBC batch per node)");
+		System.err.println("        --jdbc-batch-bytes JDBC_BATCH_BYTES (keep JDBC batch up to given bytes, effective with --jdbc-batch-size, default=" + PgSchemaUtil.def_jdbc_batch_bytes / 1024 / 1024 + "M)");
+		System.err.println("        --unnest-insert (insert rows of each table via column arrays expanded by unnest(), keep up to --jdbc-batch-size rows, default=" + PgSchemaUtil.def_unnest_batch_size + ")");
+		System.err.println("        --diff-update (write only rows changed in updating documents instead of deleting all rows of them in advance, enable --unnest-insert)");
+		System.err.println("        --direct-copy (stream data via PostgreSQL COPY command without intermediate files, delete rows of updating document in advance)");
+		System.err.println("        --copy-buffer-bytes COPY_BUFFER_BYTES (send buffered COPY data when exceeding given bytes, effective with --direct-copy, default=" + PgSchemaUtil.def_copy_buffer_bytes / 1024 / 1024 + "M)");
+		System.err.println("        --group-commit DOCS (commit every given number of documents, replay one by one if the group fails, default=0 commits per document)");
+		System.err.println("        --group-commit-interval MILLISECONDS (commit at least every given milliseconds, replay one by one if the group fails)");
 		System.exit(1);
 
 	}
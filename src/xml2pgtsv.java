@@ -18,10 +18,11 @@ limitations under the License.
  */
 
 import net.sf.xsd2pgschema.*;
-import net.sf.xsd2pgschema.implement.Xml2PgCsvThrd;
+import net.sf.xsd2pgschema.implement.*;
 import net.sf.xsd2pgschema.option.*;
 import net.sf.xsd2pgschema.serverutil.*;
 import net.sf.xsd2pgschema.type.*;
+import net.sf.xsd2pgschema.xmlutil.XmlPrefetchedFile;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -32,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -78,6 +80,9 @@ public class xml2pgtsv {
 		/** The XML post editor. */
 		XmlPostEditor xml_post_editor = new XmlPostEditor();
 
+		/** The pipeline option. */
+		PipelineOption pipe_option = new PipelineOption();
+
 		/** The XML file queue. */
 		LinkedBlockingQueue<Path> xml_file_queue;
 
@@ -153,9 +158,24 @@ public class xml2pgtsv {
 			else if (args[i].equals("--test-ddl"))
 				pg_option.test = true;
 
+			else if (args[i].equals("--copy-thrds") && i + 1 < args.length)
+				pg_option.setCopyThrds(args[++i]);
+
+			else if (args[i].equals("--copy-chunk-bytes") && i + 1 < args.length)
+				pg_option.setCopyChunkBytes(args[++i]);
+
 			else if (args[i].equals("--min-rows-for-index") && i + 1 < args.length)
 				pg_option.setMinRowsForIndex(args[++i]);
 
+			else if (args[i].equals("--index-thrds") && i + 1 < args.length)
+				pg_option.setIndexThrds(args[++i]);
+
+			else if (args[i].equals("--rebuild-index"))
+				pg_option.rebuild_index = true;
+
+			else if (args[i].equals("--initial-load"))
+				pg_option.initial_load = true;
+
 			else if (args[i].equals("--create-non-uniq-pkey-index"))
 				pg_option.setCreateNonUniqPKeyIndex(true);
 
@@ -279,6 +299,9 @@ public class xml2pgtsv {
 			else if (args[i].equals("--pg-map-date"))
 				option.pg_date = PgDateType.date;
 
+			else if (args[i].equals("--pg-binary"))
+				option.usePgBinary();
+
 			else if (args[i].equals("--pg-comma-delimiter"))
 				option.usePgCsv();
 
@@ -352,6 +375,11 @@ public class xml2pgtsv {
 					showUsage();
 			}
 
+			else if (args[i].equals("--sync-verify-rate") && i + 1 < args.length) {
+				if (!option.setSyncVerifyRate(args[++i]))
+					showUsage();
+			}
+
 			else if (args[i].equals("--max-thrds") && i + 1 < args.length) {
 				max_thrds = Integer.valueOf(args[++i]);
 
@@ -361,6 +389,18 @@ public class xml2pgtsv {
 				}
 			}
 
+			else if (args[i].equals("--prefetch-thrds") && i + 1 < args.length)
+				pipe_option.setPrefetchThrds(args[++i]);
+
+			else if (args[i].equals("--prefetch-queue-size") && i + 1 < args.length)
+				pipe_option.setPrefetchQueueSize(args[++i]);
+
+			else if (args[i].equals("--prefetch-mem-budget") && i + 1 < args.length)
+				pipe_option.setPrefetchMemBudget(args[++i]);
+
+			else if (args[i].equals("--prefetch-mmap"))
+				pipe_option.prefetch_mmap = true;
+
 			else if (touch_xml) {
 				String xml_file_name = args[i];
 
@@ -381,6 +421,25 @@ public class xml2pgtsv {
 
 		option.resolveDocKeyOption();
 
+		if (pg_option.initial_load) {
+
+			if (pg_option.name.isEmpty()) {
+				System.err.println("Database name is empty.");
+				showUsage();
+			}
+
+			if (option.pg_named_schema) {
+				System.err.println("Initial load is not supported with PostgreSQL named schema.");
+				showUsage();
+			}
+
+			if (option.sync) {
+				System.out.println("Ignored --sync option because initial load inserts all documents into empty staging tables.");
+				pg_option.tryToCreateDocKeyIndex(option.sync = false);
+			}
+
+		}
+
 		if (option.sync && !option.document_key && !option.in_place_document_key) {
 			System.out.println("Ignored --sync option because either document key or in-place document key was not defined.");
 			pg_option.tryToCreateDocKeyIndex(option.sync = false);
@@ -427,6 +486,8 @@ public class xml2pgtsv {
 		if (xml_file_queue.size() < max_thrds)
 			max_thrds = xml_file_queue.size();
 
+		pg_option.copy_freeze = pg_option.initial_load && max_thrds == 1 && pg_option.copy_thrds == 1;
+
 		Path work_dir = Paths.get(work_dir_name);
 
 		if (!Files.isDirectory(work_dir)) {
@@ -470,6 +531,31 @@ public class xml2pgtsv {
 
 		Thread[] thrd = new Thread[max_thrds];
 
+		Xml2PgCsvThrd[] proc_thrd = new Xml2PgCsvThrd[max_thrds];
+
+		// pipeline stages connected by bounded queues
+
+		PipelineQueue<XmlPrefetchedFile> xml_prefetch_queue = XmlPrefetchThrd.createQueue(pipe_option, max_thrds);
+
+		// UNLOGGED staging tables are swapped in place of current tables after data migration
+
+		PgStagingLoader staging_loader = null;
+
+		if (pg_option.initial_load) {
+
+			try {
+
+				staging_loader = new PgStagingLoader(DriverManager.getConnection(pg_option.getDbUrl(PgSchemaUtil.def_encoding), pg_option.user.isEmpty() ? System.getProperty("user.name") : pg_option.user, pg_option.pass), new PgSchemaClientImpl(PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false), option, fst_conf, client_type, class_name, xml_post_editor).schema);
+
+				staging_loader.create();
+
+			} catch (IOException | ParserConfigurationException | SAXException | SQLException | PgSchemaException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
 		long start_time = System.currentTimeMillis();
 
 		// PgSchema server is alive
@@ -510,7 +596,7 @@ public class xml2pgtsv {
 
 					try {
 
-						Thread _thrd = thrd[thrd_id] = new Thread(new Xml2PgCsvThrd(thrd_id, get_thrd[thrd_id], clients, work_dir, xml_file_filter, xml_file_queue, pg_option), thrd_name);
+						Thread _thrd = thrd[thrd_id] = new Thread(proc_thrd[thrd_id] = new Xml2PgCsvThrd(thrd_id, get_thrd[thrd_id], clients, work_dir, xml_file_filter, xml_file_queue, xml_prefetch_queue, pg_option), thrd_name);
 
 						_thrd.start();
 
@@ -541,7 +627,7 @@ public class xml2pgtsv {
 					if (thrd_id > 0)
 						is = PgSchemaUtil.getSchemaInputStream(option.root_schema_location, null, false);
 
-					Thread _thrd = thrd[thrd_id] = new Thread(new Xml2PgCsvThrd(thrd_id, is, work_dir, xml_file_filter, xml_file_queue, xml_post_editor, option, pg_option), thrd_name);
+					Thread _thrd = thrd[thrd_id] = new Thread(proc_thrd[thrd_id] = new Xml2PgCsvThrd(thrd_id, is, work_dir, xml_file_filter, xml_file_queue, xml_prefetch_queue, xml_post_editor, option, pg_option), thrd_name);
 
 					_thrd.start();
 
@@ -554,6 +640,10 @@ public class xml2pgtsv {
 
 		}
 
+		// start prefetch stage after the sync pre-pass of thread 0 has traversed XML file queue
+
+		Thread[] prefetch_thrd = xml_prefetch_queue != null ? XmlPrefetchThrd.start(pipe_option, xml_file_queue, xml_prefetch_queue) : new Thread[0];
+
 		if (!pg_option.name.isEmpty())
 			pg_option.clear();
 
@@ -570,6 +660,44 @@ public class xml2pgtsv {
 
 		}
 
+		for (Thread _prefetch_thrd : prefetch_thrd) {
+
+			try {
+				_prefetch_thrd.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+		}
+
+		// build index once all threads have finished loading
+
+		try {
+			proc_thrd[0].buildIndex();
+		} catch (PgSchemaException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		if (staging_loader != null) {
+
+			try {
+				staging_loader.swap();
+			} catch (PgSchemaException e) {
+				e.printStackTrace();
+				System.exit(1);
+			} finally {
+				staging_loader.close();
+			}
+
+		}
+
+		if (xml_prefetch_queue != null)
+			xml_prefetch_queue.showStatistics();
+
+		PgSchemaUtil.closeArchives();
+
 		long end_time = System.currentTimeMillis();
 
 		System.out.println("Execution time: " + (end_time - start_time) + " ms");
@@ -606,7 +734,12 @@ public class xml2pgtsv {
 		System.err.println("        --db-host PG_HOST_NAME (default=\"" + PgSchemaUtil.pg_host + "\")");
 		System.err.println("        --db-port PG_PORT_NUMBER (default=" + PgSchemaUtil.pg_port + ")");
 		System.err.println("        --test-ddl (perform consistency test on PostgreSQL DDL)");
+		System.err.println("        --copy-thrds COPY_THRDS (number of connections to copy independent tables in parallel, default=1)");
+		System.err.println("        --copy-chunk-bytes COPY_CHUNK_BYTES (split large CSV/TSV file into chunks copied in parallel, effective with --copy-thrds, default=" + PgSchemaUtil.def_copy_chunk_bytes / 1024 / 1024 + "M)");
 		System.err.println("        --min-rows-for-index MIN_ROWS_FOR_INDEX (default=" + PgSchemaUtil.pg_min_rows_for_index + ")");
+		System.err.println("        --index-thrds INDEX_THRDS (number of connections to create index in parallel, larger table first, default=1)");
+		System.err.println("        --rebuild-index (drop index to be created before data migration and rebuild it afterward, suited for bulk load)");
+		System.err.println("        --initial-load (load into UNLOGGED staging tables and swap them in place of current tables afterward, insert only, not available if views depend on current tables)");
 		System.err.println("        --create-non-uniq-pkey-index (create PostgreSQL index on non-unique primary key if not exists, default)");
 		System.err.println("        --no-create-non-uniq-pkey-index (do not create PostgreSQL index on non-unique primary key)");
 		System.err.println("        --drop-non-uniq-pkey-index (drop PostgreSQL index on non-unique primary if exists)");
@@ -636,11 +769,13 @@ public class xml2pgtsv {
 		System.err.println("        --pg-map-float-decimal (map xs:decimal to single precision 32 bits)");
 		System.err.println("        --pg-map-timestamp (map xs:date to PostgreSQL timestamp type according to the W3C rules)");
 		System.err.println("        --pg-map-date (map xs:date to PostgreSQL date type, default)");
+		System.err.println("        --pg-binary (write PostgreSQL binary COPY format files instead of TSV)");
 		System.err.println("        --pg-comma-delimiter (use comma separated file)");
 		System.err.println("        --no-cache-xsd (retrieve XML Schemata without caching)");
 		System.err.println("        --sync CHECK_SUM_DIRECTORY (generate check sum files for differential udpate, select --create-doc-key-index option by default)");
 		System.err.println("        --checksum-by ALGORITHM [MD2 | MD5 (default) | SHA-1 | SHA-224 | SHA-256 | SHA-384 | SHA-512]");
-		System.err.println("        --hash-by ALGORITHM [MD2 | MD5 | SHA-1 (default) | SHA-224 | SHA-256 | SHA-384 | SHA-512]");
+		System.err.println("        --sync-verify-rate RATE (sampling rate of XML files verified by check sum even if size, mtime and inode are unchanged, default=0.0)");
+		System.err.println("        --hash-by ALGORITHM [MD2 | MD5 | SHA-1 (default) | SHA-224 | SHA-256 | SHA-384 | SHA-512 | XXHASH64 | MURMUR3-128 | SIPHASH-2-4]");
 		System.err.println("        --hash-size BIT_SIZE [int (32 bits) | long (64 bits, default) | native (default bits of algorithm) | debug (string)]");
 		System.err.println("        --ser-size BIT_SIZE [short (16 bits) | int (32 bits, default)]");
 		System.err.println("        --xml-file-prerix-digest DIGESTIBLE_PREFIX (default=\"\")");
@@ -661,6 +796,10 @@ public class xml2pgtsv {
 		System.err.println("        --pgschema-serv-host PG_SCHEMA_SERV_HOST_NAME (default=\"" + PgSchemaUtil.pg_schema_server_host + "\")");
 		System.err.println("        --pgschema-serv-port PG_SCHEMA_SERV_PORT_NUMBER (default=" + PgSchemaUtil.pg_schema_server_port + ")");
 		System.err.println("        --max-thrds MAX_THRDS (default is number of available processors)");
+		System.err.println("        --prefetch-thrds PREFETCH_THRDS (number of threads reading and decompressing XML files ahead of parser threads, default=0 disables prefetch stage)");
+		System.err.println("        --prefetch-queue-size PREFETCH_QUEUE_SIZE (capacity of queue of prefetched XML files, default=" + PipelineOption.def_queue_size + ")");
+		System.err.println("        --prefetch-mem-budget PREFETCH_MEM_BUDGET (memory budget of prefetched XML files in megabytes, default=0 indicates no limit)");
+		System.err.println("        --prefetch-mmap (map plain XML files into memory in prefetch stage)");
 		System.exit(1);
 
 	}
@@ -83,6 +83,15 @@ public class xmlsplitter {
 		/** The shard size. */
 		int shard_size = 1;
 
+		/** Whether to append split XML documents to packed shard archives. */
+		boolean pack_shard = false;
+
+		/** The available processors. */
+		int cpu_num = Runtime.getRuntime().availableProcessors();
+
+		/** The max threads. */
+		int max_thrds = cpu_num;
+
 		boolean touch_xml = false;
 
 		for (int i = 0; i < args.length; i++) {
@@ -152,6 +161,18 @@ public class xmlsplitter {
 				}
 			}
 
+			else if (args[i].equals("--pack-shard"))
+				pack_shard = true;
+
+			else if (args[i].equals("--max-thrds") && i + 1 < args.length) {
+				max_thrds = Integer.valueOf(args[++i]);
+
+				if (max_thrds <= 0 || max_thrds > cpu_num * 2) {
+					System.err.println("Out of range (max_thrds).");
+					showUsage();
+				}
+			}
+
 			else if (touch_xml) {
 				String xml_file_name = args[i];
 
@@ -225,7 +246,10 @@ public class xmlsplitter {
 
 			String original_caller = MethodHandles.lookup().lookupClass().getName();
 
-			XmlSplitterImpl splitter = new XmlSplitterImpl(shard_size, is, xml_dir_path, xml_file_queue, option, fst_conf, xpath_doc_key);
+			XmlSplitterImpl splitter = new XmlSplitterImpl(shard_size, max_thrds, is, xml_dir_path, xml_file_queue, option, fst_conf, xpath_doc_key);
+
+			if (pack_shard)
+				splitter.setPackShard();
 
 			splitter.exec();
 
@@ -237,6 +261,8 @@ public class xmlsplitter {
 			System.exit(1);
 		}
 
+		PgSchemaUtil.closeArchives();
+
 	}
 
 	/**
@@ -250,6 +276,8 @@ public class xmlsplitter {
 		System.err.println("        --xpath-doc-key XPATH_EXPR_FOR_DOC_KEY");
 		System.err.println("        --no-wild-card (turn off wild card extension)");
 		System.err.println("        --shard-size SHARD_SIZE (default=1)");
+		System.err.println("        --pack-shard (append split XML documents to compressed shard archives, " + PgSchemaUtil.shard_dir_prefix + "N.zip, which are accepted as input of other tools)");
+		System.err.println("        --max-thrds MAX_THRDS (default is number of available processors)");
 		System.err.println("Option: --pg-public-schema (utilize \"public\" schema, default)");
 		System.err.println("        --pg-named-schema (enable explicit named schema)");
 		System.err.println("        --no-cache-xsd (retrieve XML Schemata without caching)");